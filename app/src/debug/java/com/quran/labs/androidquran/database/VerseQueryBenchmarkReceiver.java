@@ -0,0 +1,138 @@
+package com.quran.labs.androidquran.database;
+
+import com.quran.labs.androidquran.data.Constants;
+import com.quran.labs.androidquran.data.QuranInfo;
+import com.quran.labs.androidquran.task.QuranTaskExecutor;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.database.Cursor;
+
+import timber.log.Timber;
+
+/**
+ * Compares reading every page of a translation through rowid ranges with
+ * reading it through the sura and ayah query. Only in debug builds, run
+ * with:
+ *
+ * adb shell am broadcast -a com.quran.labs.androidquran.BENCHMARK_VERSES \
+ *   --es database quran.en.sahih.db [--es table verses]
+ *
+ * The results are logged.
+ */
+public class VerseQueryBenchmarkReceiver extends BroadcastReceiver {
+  private static final String EXTRA_DATABASE = "database";
+  private static final String EXTRA_TABLE = "table";
+  private static final int ROUNDS = 3;
+
+  // total time spent on each kind of query, in nanoseconds
+  private long mRowidTime;
+  private long mSuraAyahTime;
+
+  @Override
+  public void onReceive(Context context, Intent intent) {
+    final String database = intent.getStringExtra(EXTRA_DATABASE);
+    if (database == null) {
+      Timber.w("no database to benchmark");
+      return;
+    }
+
+    final String table = intent.hasExtra(EXTRA_TABLE) ?
+        intent.getStringExtra(EXTRA_TABLE) : DatabaseHandler.VERSE_TABLE;
+    final Context appContext = context.getApplicationContext();
+    final PendingResult result = goAsync();
+    QuranTaskExecutor.BACKGROUND.execute("VerseQueryBenchmark", new Runnable() {
+      @Override
+      public void run() {
+        try {
+          benchmark(appContext, database, table);
+        } catch (Exception e) {
+          Timber.e(e, "unable to benchmark %s", database);
+        } finally {
+          result.finish();
+        }
+      }
+    });
+  }
+
+  private void benchmark(Context context, String database, String table) {
+    final DatabaseHandler handler =
+        DatabaseHandler.getDatabaseHandler(context, database);
+    if (!handler.validDatabase()) {
+      Timber.w("unable to open %s", database);
+      return;
+    }
+
+    if (!handler.hasAyahIdRowids(table)) {
+      Timber.w("rowids of %s in %s aren't ayah ids, so only the sura and " +
+          "ayah query is used", table, database);
+      return;
+    }
+
+    int mismatches = 0;
+    for (int round = 0; round < ROUNDS; round++) {
+      for (int page = Constants.PAGES_FIRST; page <= Constants.PAGES_LAST; page++) {
+        final Integer[] bounds = QuranInfo.getPageBounds(page);
+        final long rowidChecksum;
+        final long suraAyahChecksum;
+        // alternate which query goes first, so neither always gets the
+        // warmer page cache
+        if (page % 2 == 0) {
+          rowidChecksum = readByAyahIds(handler, bounds, table);
+          suraAyahChecksum = readBySuraAyah(handler, bounds, table);
+        } else {
+          suraAyahChecksum = readBySuraAyah(handler, bounds, table);
+          rowidChecksum = readByAyahIds(handler, bounds, table);
+        }
+
+        if (rowidChecksum != suraAyahChecksum) {
+          mismatches++;
+        }
+      }
+    }
+
+    final int queries = ROUNDS * Constants.PAGES_LAST;
+    Timber.i("%s (%s): %d pages, %d rounds", database, table,
+        Constants.PAGES_LAST, ROUNDS);
+    Timber.i("rowid range: %dus per page", mRowidTime / queries / 1000);
+    Timber.i("sura and ayah: %dus per page", mSuraAyahTime / queries / 1000);
+    Timber.i("%d pages with different results", mismatches);
+  }
+
+  private long readByAyahIds(DatabaseHandler handler,
+      Integer[] bounds, String table) {
+    final long start = System.nanoTime();
+    final long checksum = read(handler.getVersesByAyahIds(
+        QuranInfo.getAyahId(bounds[0], bounds[1]),
+        QuranInfo.getAyahId(bounds[2], bounds[3]), table));
+    mRowidTime += System.nanoTime() - start;
+    return checksum;
+  }
+
+  private long readBySuraAyah(DatabaseHandler handler,
+      Integer[] bounds, String table) {
+    final long start = System.nanoTime();
+    final long checksum = read(handler.getVersesBySuraAyah(
+        bounds[0], bounds[1], bounds[2], bounds[3], table));
+    mSuraAyahTime += System.nanoTime() - start;
+    return checksum;
+  }
+
+  /**
+   * Read every row of the cursor, the way the translation view does.
+   * @return a checksum of the verses that were read
+   */
+  private static long read(Cursor cursor) {
+    long checksum = 0;
+    try {
+      while (cursor.moveToNext()) {
+        checksum = 31 * checksum + cursor.getInt(1) * 1000 + cursor.getInt(2);
+        checksum += cursor.getString(3).length();
+      }
+    } finally {
+      DatabaseUtils.closeCursor(cursor);
+    }
+    return checksum;
+  }
+}
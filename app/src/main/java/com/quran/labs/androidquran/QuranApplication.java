@@ -4,6 +4,7 @@ import com.crashlytics.android.Crashlytics;
 import com.quran.labs.androidquran.component.ApplicationComponent;
 import com.quran.labs.androidquran.component.DaggerApplicationComponent;
 import com.quran.labs.androidquran.module.ApplicationModule;
+import com.quran.labs.androidquran.util.QuranMemoryGovernor;
 import com.quran.labs.androidquran.util.QuranSettings;
 import com.quran.labs.androidquran.util.RecordingLogTree;
 
@@ -28,6 +29,7 @@ public class QuranApplication extends Application {
     Fabric.with(this, new Crashlytics());
     Timber.plant(new RecordingLogTree());
     initializeInjector();
+    registerComponentCallbacks(QuranMemoryGovernor.getInstance());
   }
 
   private void initializeInjector() {
@@ -8,6 +8,7 @@ import com.quran.labs.androidquran.service.util.DefaultDownloadReceiver;
 import com.quran.labs.androidquran.service.util.PermissionUtil;
 import com.quran.labs.androidquran.service.util.QuranDownloadNotifier;
 import com.quran.labs.androidquran.service.util.ServiceIntentHelper;
+import com.quran.labs.androidquran.task.QuranTaskExecutor;
 import com.quran.labs.androidquran.ui.QuranActivity;
 import com.quran.labs.androidquran.util.QuranFileUtils;
 import com.quran.labs.androidquran.util.QuranScreenInfo;
@@ -30,6 +31,7 @@ import android.text.TextUtils;
 import android.widget.Toast;
 
 import java.io.File;
+import java.util.concurrent.RejectedExecutionException;
 
 import timber.log.Timber;
 
@@ -179,7 +181,14 @@ public class QuranDataActivity extends Activity implements
 
     // check whether or not we need to download
     mCheckPagesTask = new CheckPagesAsyncTask(this);
-    mCheckPagesTask.execute();
+    try {
+      mCheckPagesTask.executeOnExecutor(
+          QuranTaskExecutor.BACKGROUND.forTask("CheckPagesAsyncTask"));
+    } catch (RejectedExecutionException ree) {
+      // nothing can be shown until the pages are checked, so don't wait
+      mCheckPagesTask = new CheckPagesAsyncTask(this);
+      mCheckPagesTask.executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR);
+    }
   }
 
   private void requestExternalSdcardPermission() {
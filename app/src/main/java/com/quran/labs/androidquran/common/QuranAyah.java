@@ -17,6 +17,14 @@ public class QuranAyah implements Parcelable {
   // is translation or tafseer text arabic or not
   private boolean mIsArabic = false;
 
+  // other translations shown after the main one, and their names
+  private String[] mExtraTranslations = null;
+  private String[] mExtraTranslationNames = null;
+
+  // the styled text shown in the translation view, built when the ayah is
+  // loaded. it isn't parceled, and is built again when needed.
+  private CharSequence mDisplayText = null;
+
   public QuranAyah(int sura, int ayah) {
     mSura = sura;
     mAyah = ayah;
@@ -28,6 +36,8 @@ public class QuranAyah implements Parcelable {
     this.mText = in.readString();
     this.mTranslation = in.readString();
     this.mIsArabic = in.readByte() != 0;
+    this.mExtraTranslations = in.createStringArray();
+    this.mExtraTranslationNames = in.createStringArray();
   }
 
 
@@ -63,6 +73,38 @@ public class QuranAyah implements Parcelable {
     mIsArabic = isArabic;
   }
 
+  /**
+   * Set the other translations of this ayah, to be shown after the main
+   * translation.
+   * @param names the names of the translations
+   * @param translations the text of each translation, or null for those
+   *                     that don't have this ayah
+   */
+  public void setExtraTranslations(String[] names, String[] translations) {
+    mExtraTranslationNames = names;
+    mExtraTranslations = translations;
+  }
+
+  public int getExtraTranslationCount() {
+    return mExtraTranslations == null ? 0 : mExtraTranslations.length;
+  }
+
+  public String getExtraTranslationName(int index) {
+    return mExtraTranslationNames[index];
+  }
+
+  public String getExtraTranslation(int index) {
+    return mExtraTranslations[index];
+  }
+
+  public CharSequence getDisplayText() {
+    return mDisplayText;
+  }
+
+  public void setDisplayText(CharSequence displayText) {
+    mDisplayText = displayText;
+  }
+
   @Override
   public int describeContents() {
     return 0;
@@ -75,6 +117,8 @@ public class QuranAyah implements Parcelable {
     dest.writeString(this.mText);
     dest.writeString(this.mTranslation);
     dest.writeByte(mIsArabic ? (byte) 1 : (byte) 0);
+    dest.writeStringArray(this.mExtraTranslations);
+    dest.writeStringArray(this.mExtraTranslationNames);
   }
 
   public static final Parcelable.Creator<QuranAyah> CREATOR = new Parcelable.Creator<QuranAyah>() {
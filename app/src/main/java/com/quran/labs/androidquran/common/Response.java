@@ -1,6 +1,7 @@
 package com.quran.labs.androidquran.common;
 
 import android.graphics.Bitmap;
+import android.graphics.BitmapRegionDecoder;
 
 public class Response {
   public static final int ERROR_SD_CARD_NOT_FOUND = 1;
@@ -10,6 +11,7 @@ public class Response {
   public static final int WARN_COULD_NOT_SAVE_FILE = 5;
 
   private Bitmap mBitmap;
+  private BitmapRegionDecoder mRegionDecoder;
   private int mWarningCode;
   private int mErrorCode;
   private int mPageNumber;
@@ -42,6 +44,16 @@ public class Response {
     mWarningCode = warningCode;
   }
 
+  /**
+   * A response for a page that is too large to decode at once
+   * @param regionDecoder the decoder to decode tiles of the page with
+   * @param preview a low resolution preview of the whole page
+   */
+  public Response(BitmapRegionDecoder regionDecoder, Bitmap preview) {
+    mRegionDecoder = regionDecoder;
+    mBitmap = preview;
+  }
+
   public Response(int warningCode, int errorCode) {
     mWarningCode = warningCode;
     mErrorCode = errorCode;
@@ -71,10 +83,21 @@ public class Response {
     return mWidthParam;
   }
 
+  /**
+   * @return the page, or a preview of the page if it is tiled
+   */
   public Bitmap getBitmap() {
     return mBitmap;
   }
 
+  public BitmapRegionDecoder getRegionDecoder() {
+    return mRegionDecoder;
+  }
+
+  public boolean isTiled() {
+    return mRegionDecoder != null;
+  }
+
   public boolean isSuccessful() {
     return mErrorCode == 0;
   }
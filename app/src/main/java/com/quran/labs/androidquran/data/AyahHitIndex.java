@@ -0,0 +1,287 @@
+package com.quran.labs.androidquran.data;
+
+import java.util.Arrays;
+
+/**
+ * Finds the ayah at a point on a page. The lines of the page are sorted by
+ * their top, and the ayah bounds within each line are sorted by their left,
+ * so a lookup is a binary search for the line followed by a binary search
+ * within the line, and doesn't allocate anything.
+ *
+ * When no ayah contains the point, the closest ayah on the closest line is
+ * returned, the same way taps between lines or in the margins have always
+ * been handled: the closest line is the one with the top or bottom edge
+ * nearest to the point, and the closest ayah on it is the one with the left
+ * or right edge nearest to the point. These are binary searches too: the
+ * tops and bottoms of all the entries on the page are kept sorted, and each
+ * line keeps the largest right edge of its entries so far, left to right.
+ * Ties go to the entry that comes first, line by line and left to right.
+ */
+public class AyahHitIndex {
+  private static final int NO_ENTRY = -1;
+  // bits used for the bounds and entry number in the sort keys
+  private static final int KEY_BITS = 20;
+  private static final long KEY_MASK = (1L << KEY_BITS) - 1;
+
+  // lines, sorted by top. line l has entries [mLineStarts[l], mLineStarts[l + 1])
+  private final int[] mLineTops;
+  private final int[] mLineBottoms;
+  private final int[] mLineStarts;
+
+  // the distinct tops and bottoms of the entries, sorted, along with the
+  // first line with an entry having each one
+  private final int[] mEdges;
+  private final int[] mEdgeLines;
+
+  // entries, grouped by line and sorted by left within each line, along
+  // with the largest right of the entries in the line up to each one
+  private final int[] mLefts;
+  private final int[] mMaxRights;
+  private final int[] mTops;
+  private final int[] mRights;
+  private final int[] mBottoms;
+  private final int[] mSuras;
+  private final int[] mAyahs;
+
+  /**
+   * Build the hit index of a page.
+   * @param index the glyph index to build from
+   * @param page the page
+   */
+  AyahHitIndex(GlyphIndex index, int page) {
+    final int first = index.getFirstEntry(page);
+    final int count = index.getEndEntry(page) - first;
+
+    // sort the entries by line number, then by left
+    final long[] entryKeys = new long[count];
+    for (int i = 0; i < count; i++) {
+      final int entry = first + i;
+      entryKeys[i] = ((long) index.getLine(entry) << (2 * KEY_BITS)) |
+          ((index.getMinX(entry) & KEY_MASK) << KEY_BITS) | i;
+    }
+    Arrays.sort(entryKeys);
+
+    // find where each line starts, and how tall it is
+    int lineCount = 0;
+    final int[] lineStarts = new int[count + 1];
+    final int[] lineTops = new int[count];
+    final int[] lineBottoms = new int[count];
+    for (int i = 0; i < count; i++) {
+      final int entry = first + (int) (entryKeys[i] & KEY_MASK);
+      if (i == 0 || (entryKeys[i] >>> (2 * KEY_BITS)) !=
+          (entryKeys[i - 1] >>> (2 * KEY_BITS))) {
+        lineStarts[lineCount] = i;
+        lineTops[lineCount] = index.getMinY(entry);
+        lineBottoms[lineCount] = index.getMaxY(entry);
+        lineCount++;
+      } else {
+        lineTops[lineCount - 1] = Math.min(lineTops[lineCount - 1], index.getMinY(entry));
+        lineBottoms[lineCount - 1] = Math.max(lineBottoms[lineCount - 1], index.getMaxY(entry));
+      }
+    }
+    lineStarts[lineCount] = count;
+
+    // line numbers almost always go down the page, but sort by top anyway
+    final long[] lineKeys = new long[lineCount];
+    for (int l = 0; l < lineCount; l++) {
+      lineKeys[l] = ((lineTops[l] & KEY_MASK) << KEY_BITS) | l;
+    }
+    Arrays.sort(lineKeys);
+
+    mLineTops = new int[lineCount];
+    mLineBottoms = new int[lineCount];
+    mLineStarts = new int[lineCount + 1];
+    mLefts = new int[count];
+    mMaxRights = new int[count];
+    mTops = new int[count];
+    mRights = new int[count];
+    mBottoms = new int[count];
+    mSuras = new int[count];
+    mAyahs = new int[count];
+
+    int position = 0;
+    for (int l = 0; l < lineCount; l++) {
+      final int line = (int) (lineKeys[l] & KEY_MASK);
+      mLineTops[l] = lineTops[line];
+      mLineBottoms[l] = lineBottoms[line];
+      mLineStarts[l] = position;
+      for (int i = lineStarts[line]; i < lineStarts[line + 1]; i++) {
+        final int entry = first + (int) (entryKeys[i] & KEY_MASK);
+        mLefts[position] = index.getMinX(entry);
+        mTops[position] = index.getMinY(entry);
+        mRights[position] = index.getMaxX(entry);
+        mBottoms[position] = index.getMaxY(entry);
+        mSuras[position] = index.getSura(entry);
+        mAyahs[position] = index.getAyah(entry);
+        mMaxRights[position] = position == mLineStarts[l] ? mRights[position] :
+            Math.max(mMaxRights[position - 1], mRights[position]);
+        position++;
+      }
+    }
+    mLineStarts[lineCount] = position;
+
+    // sort the edges, keeping the first line of each distinct one
+    final long[] edgeKeys = new long[2 * count];
+    for (int l = 0; l < lineCount; l++) {
+      for (int i = mLineStarts[l]; i < mLineStarts[l + 1]; i++) {
+        edgeKeys[2 * i] = ((mTops[i] & KEY_MASK) << KEY_BITS) | l;
+        edgeKeys[2 * i + 1] = ((mBottoms[i] & KEY_MASK) << KEY_BITS) | l;
+      }
+    }
+    Arrays.sort(edgeKeys);
+
+    int edgeCount = 0;
+    final int[] edges = new int[edgeKeys.length];
+    final int[] edgeLines = new int[edgeKeys.length];
+    for (int i = 0; i < edgeKeys.length; i++) {
+      final int edge = (int) (edgeKeys[i] >>> KEY_BITS);
+      if (edgeCount == 0 || edges[edgeCount - 1] != edge) {
+        edges[edgeCount] = edge;
+        edgeLines[edgeCount] = (int) (edgeKeys[i] & KEY_MASK);
+        edgeCount++;
+      }
+    }
+    mEdges = Arrays.copyOf(edges, edgeCount);
+    mEdgeLines = Arrays.copyOf(edgeLines, edgeCount);
+  }
+
+  /**
+   * Find the ayah at a point on the page.
+   * @param x the x coordinate, in page coordinates
+   * @param y the y coordinate, in page coordinates
+   * @return the entry of the ayah (to pass to {@link #getSura(int)} and
+   * {@link #getAyah(int)}), or -1 if the page has no ayahs
+   */
+  public int findEntry(float x, float y) {
+    final int lineCount = mLineTops.length;
+    if (lineCount == 0) {
+      return NO_ENTRY;
+    }
+
+    // the last line starting above the point. tall glyphs can make a line
+    // overlap the one below it, so the point could be in the line before.
+    final int line = findLastAtOrBefore(mLineTops, 0, lineCount, y);
+    for (int l = line; l >= 0 && l >= line - 1; l--) {
+      if (y <= mLineBottoms[l]) {
+        final int entry = findInLine(l, x, y);
+        if (entry != NO_ENTRY) {
+          return entry;
+        }
+      }
+    }
+
+    // no exact match, so take the closest ayah on the closest line
+    return findClosestInLine(findClosestLine(y), x);
+  }
+
+  /**
+   * @return the entry in the line containing the point, or -1 if none do
+   */
+  private int findInLine(int line, float x, float y) {
+    final int start = mLineStarts[line];
+    final int end = mLineStarts[line + 1];
+    final int entry = findLastAtOrBefore(mLefts, start, end, x);
+    // neighboring ayahs can overlap a little, so check the one before too
+    for (int i = entry; i >= start && i >= entry - 1; i--) {
+      if (x <= mRights[i] && y >= mTops[i] && y <= mBottoms[i]) {
+        return i;
+      }
+    }
+    return NO_ENTRY;
+  }
+
+  /**
+   * @return the line with the entry whose top or bottom is closest to y
+   */
+  private int findClosestLine(float y) {
+    final int below = findLastAtOrBefore(mEdges, 0, mEdges.length, y);
+    if (below < 0) {
+      return mEdgeLines[0];
+    } else if (below == mEdges.length - 1) {
+      return mEdgeLines[below];
+    }
+
+    final float belowDelta = y - mEdges[below];
+    final float aboveDelta = mEdges[below + 1] - y;
+    if (belowDelta < aboveDelta) {
+      return mEdgeLines[below];
+    } else if (aboveDelta < belowDelta) {
+      return mEdgeLines[below + 1];
+    }
+    return Math.min(mEdgeLines[below], mEdgeLines[below + 1]);
+  }
+
+  /**
+   * @return the entry in the line spanning x, or the one whose left or
+   * right is closest to x if none do
+   */
+  private int findClosestInLine(int line, float x) {
+    final int start = mLineStarts[line];
+    final int end = mLineStarts[line + 1];
+
+    // entries up to this one start at or before x
+    final int last = findLastAtOrBefore(mLefts, start, end, x);
+    if (last >= start && mMaxRights[last] >= x) {
+      // the first entry to reach x spans it
+      return findFirstReaching(start, last, x);
+    }
+
+    // none span x, so the closest is either the one before x reaching the
+    // farthest right, or the first one after x
+    final int next = last + 1;
+    if (last < start) {
+      return next;
+    } else if (next == end || x - mMaxRights[last] <= mLefts[next] - x) {
+      return findFirstReaching(start, last, mMaxRights[last]);
+    }
+    return next;
+  }
+
+  /**
+   * @return the first entry in [start, last] whose right is at least x,
+   * given that the largest right up to the last one is
+   */
+  private int findFirstReaching(int start, int last, float x) {
+    int low = start;
+    int high = last;
+    while (low < high) {
+      final int mid = (low + high) >>> 1;
+      if (mMaxRights[mid] >= x) {
+        high = mid;
+      } else {
+        low = mid + 1;
+      }
+    }
+    return low;
+  }
+
+  /**
+   * @return the last index in [start, end) whose value is at most the
+   * given value, or start - 1 if there isn't one
+   */
+  private static int findLastAtOrBefore(int[] values, int start, int end, float value) {
+    int low = start;
+    int high = end - 1;
+    while (low <= high) {
+      final int mid = (low + high) >>> 1;
+      if (values[mid] <= value) {
+        low = mid + 1;
+      } else {
+        high = mid - 1;
+      }
+    }
+    return high;
+  }
+
+  public int getSura(int entry) {
+    return mSuras[entry];
+  }
+
+  public int getAyah(int entry) {
+    return mAyahs[entry];
+  }
+
+  public int getEntryCount() {
+    return mSuras.length;
+  }
+}
@@ -1,17 +1,25 @@
 package com.quran.labs.androidquran.data;
 
 import com.quran.labs.androidquran.database.DatabaseUtils;
+import com.quran.labs.androidquran.task.QuranTaskExecutor;
 import com.quran.labs.androidquran.util.QuranFileUtils;
+import com.quran.labs.androidquran.util.QuranMemoryGovernor;
 
 import android.content.Context;
 import android.database.Cursor;
 import android.database.SQLException;
 import android.database.sqlite.SQLiteDatabase;
 import android.graphics.RectF;
+import android.support.annotation.Nullable;
 
 import java.io.File;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+
+import timber.log.Timber;
 
 public class AyahInfoDatabaseHandler {
 
@@ -29,6 +37,17 @@ public class AyahInfoDatabaseHandler {
 
   private static Map<String, AyahInfoDatabaseHandler> sHandlerMap = new HashMap<>();
 
+  private File mDatabaseFile;
+  private volatile PageBoundsTable mPageBounds;
+  private volatile GlyphIndex mGlyphIndex;
+  private final Runnable mPreloadRunnable = new Runnable() {
+    @Override
+    public void run() {
+      getPageBoundsTable();
+      getGlyphIndex();
+    }
+  };
+
   public static synchronized AyahInfoDatabaseHandler getDatabaseHandler(
       Context context, String databaseName) {
     AyahInfoDatabaseHandler handler = sHandlerMap.get(databaseName);
@@ -43,41 +62,214 @@ public class AyahInfoDatabaseHandler {
 		String base = QuranFileUtils.getQuranAyahDatabaseDirectory(context);
 		if (base == null) return;
 		String path = base + File.separator + databaseName;
+		mDatabaseFile = new File(path);
 		database = SQLiteDatabase.openDatabase(path, null,
 				SQLiteDatabase.NO_LOCALIZED_COLLATORS);
+    QuranMemoryGovernor.getInstance().register(new GlyphIndexMemoryConsumer());
 	}
 	
 	public boolean validDatabase(){
 		return database != null && database.isOpen();
 	}
 
-   public Cursor getVersesBoundsForPage(int page){
-      if (!validDatabase()) return null;
-      return database.query(GLYPHS_TABLE,
-              new String[]{ COL_PAGE, COL_LINE, COL_SURA, COL_AYAH,
-                      COL_POSITION, MIN_X, MIN_Y, MAX_X, MAX_Y },
-              COL_PAGE + "=" + page,
-              null, null, null,
-              COL_SURA + "," + COL_AYAH + "," + COL_POSITION);
-   }
-	
-	public RectF getPageBounds(int page) {
-		if (!validDatabase()){ return null; }
+  /**
+   * Get the index of the glyphs table, loading it if necessary. This reads
+   * the whole table, so it shouldn't be called on the main thread.
+   * @return the glyph index, or null if it couldn't be loaded
+   */
+  @Nullable
+  public GlyphIndex getGlyphIndex() {
+    GlyphIndex index = mGlyphIndex;
+    if (index == null) {
+      synchronized (this) {
+        index = mGlyphIndex;
+        if (index == null) {
+          index = loadGlyphIndex();
+          mGlyphIndex = index;
+        }
+      }
+    }
+    return index;
+  }
+
+  /**
+   * @return the glyph index if it is already loaded, or null otherwise
+   */
+  @Nullable
+  public GlyphIndex getLoadedGlyphIndex() {
+    return mGlyphIndex;
+  }
 
-      Cursor c = null;
+  /**
+   * Load the page bounds and glyph index in the background, so that they
+   * are ready by the time the pages using them are shown.
+   */
+  public void preload() {
+    if ((mPageBounds == null || mGlyphIndex == null) && validDatabase()) {
       try {
-         String[] colNames = new String[] {
-               "MIN(" + MIN_X + ")", "MIN(" + MIN_Y + ")",
-               "MAX(" + MAX_X + ")", "MAX(" + MAX_Y + ")"};
-         c = database.query(GLYPHS_TABLE,
-                 colNames, COL_PAGE + "=" + page, null, null, null, null);
-         if (!c.moveToFirst()){ return null; }
-         return new RectF(c.getInt(0), c.getInt(1), c.getInt(2), c.getInt(3));
+        QuranTaskExecutor.PAGE_DATA.execute("preload", mPreloadRunnable);
+      } catch (RejectedExecutionException ree) {
+        // the pages load what they need when they're shown anyway
+        Timber.d("not preloading, page data queue is full");
+      }
+    }
+  }
+
+  private GlyphIndex loadGlyphIndex() {
+    if (!validDatabase()) return null;
+
+    Cursor c = null;
+    try {
+      c = database.query(GLYPHS_TABLE,
+          new String[]{ COL_PAGE, COL_LINE, COL_SURA, COL_AYAH,
+              COL_POSITION, MIN_X, MIN_Y, MAX_X, MAX_Y },
+          null, null, null, null,
+          COL_PAGE + "," + COL_SURA + "," + COL_AYAH + "," + COL_POSITION);
+      final GlyphIndex.Builder builder = new GlyphIndex.Builder();
+      while (c.moveToNext()) {
+        builder.addGlyph(c.getInt(0), c.getInt(1), c.getInt(2), c.getInt(3),
+            c.getInt(4), c.getInt(5), c.getInt(6), c.getInt(7), c.getInt(8));
+      }
+      return builder.build();
+    } catch (Exception e) {
+      // happens when the glyphs table doesn't exist somehow
+      Timber.e(e, "unable to load the glyph index");
+      return null;
+    } finally {
+      DatabaseUtils.closeCursor(c);
+    }
+  }
+
+  /**
+   * Get the bounds of the glyphs on a page, computing the bounds of all
+   * pages if necessary (which shouldn't happen on the main thread).
+   * @return the bounds of the page, or null if there are none
+   */
+  @Nullable
+  public RectF getPageBounds(int page) {
+    return getPageBounds(getPageBoundsTable(), page);
+  }
+
+  /**
+   * @return the bounds of the page if the page bounds are already loaded,
+   * or null otherwise
+   */
+  @Nullable
+  public RectF getLoadedPageBounds(int page) {
+    return getPageBounds(mPageBounds, page);
+  }
+
+  @Nullable
+  private static RectF getPageBounds(PageBoundsTable table, int page) {
+    if (table == null || !table.hasPage(page)) {
+      return null;
+    }
+    return new RectF(table.getLeft(page), table.getTop(page),
+        table.getRight(page), table.getBottom(page));
+  }
+
+  /**
+   * Get the page bounds and ayah bounds of several pages at once (ex the
+   * two pages shown side by side in landscape). Both come from the glyph
+   * index, so this is at most one pass over the glyphs table for all the
+   * pages (and none once the index is loaded). This shouldn't be called on
+   * the main thread.
+   * @param pages the pages
+   * @return the coordinates of each page, in the same order as the pages,
+   * or null if the glyph index couldn't be loaded
+   */
+  @Nullable
+  public List<PageCoordinates> getPageCoordinates(int... pages) {
+    final GlyphIndex index = getGlyphIndex();
+    if (index == null) {
+      return null;
+    }
+
+    final PageBoundsTable table = getPageBoundsTable(index);
+    final List<PageCoordinates> result = new ArrayList<>(pages.length);
+    for (int page : pages) {
+      result.add(new PageCoordinates(page,
+          getPageBounds(table, page), index.getAyahBounds(page)));
+    }
+    return result;
+  }
+
+  @Nullable
+  private PageBoundsTable getPageBoundsTable() {
+    return getPageBoundsTable(mGlyphIndex);
+  }
+
+  /**
+   * @param index the glyph index to compute the bounds from if they were
+   *              never saved, or null to query them from the database
+   */
+  @Nullable
+  private PageBoundsTable getPageBoundsTable(@Nullable GlyphIndex index) {
+    PageBoundsTable table = mPageBounds;
+    if (table == null) {
+      synchronized (this) {
+        table = mPageBounds;
+        if (table == null && validDatabase()) {
+          table = PageBoundsTable.read(mDatabaseFile);
+          if (table == null) {
+            table = index != null ?
+                PageBoundsTable.fromGlyphIndex(index) : computePageBounds();
+            if (table != null && !table.write(mDatabaseFile)) {
+              Timber.d("unable to save the page bounds of %s", mDatabaseFile);
+            }
+          }
+          mPageBounds = table;
+        }
       }
-      catch (Exception e){
-         return null;
-      } finally {
-        DatabaseUtils.closeCursor(c);
+    }
+    return table;
+  }
+
+  private PageBoundsTable computePageBounds() {
+    Cursor c = null;
+    try {
+      String[] colNames = new String[] { COL_PAGE,
+          "MIN(" + MIN_X + ")", "MIN(" + MIN_Y + ")",
+          "MAX(" + MAX_X + ")", "MAX(" + MAX_Y + ")"};
+      c = database.query(GLYPHS_TABLE,
+          colNames, null, null, COL_PAGE, null, COL_PAGE);
+      if (!c.moveToLast()) {
+        return null;
       }
-   }
+
+      final PageBoundsTable table = new PageBoundsTable(c.getInt(0));
+      c.moveToPosition(-1);
+      while (c.moveToNext()) {
+        table.setBounds(c.getInt(0),
+            c.getInt(1), c.getInt(2), c.getInt(3), c.getInt(4));
+      }
+      return table;
+    } catch (Exception e) {
+      Timber.e(e, "unable to compute page bounds");
+      return null;
+    } finally {
+      DatabaseUtils.closeCursor(c);
+    }
+  }
+
+  /**
+   * Drops the glyph index when memory is critically low; it is loaded
+   * again the next time it is needed.
+   */
+  private class GlyphIndexMemoryConsumer
+      implements QuranMemoryGovernor.MemoryConsumer {
+
+    @Override
+    public long getMemoryCost() {
+      final GlyphIndex index = mGlyphIndex;
+      return index == null ? 0 : index.getMemoryCost();
+    }
+
+    @Override
+    public void setCapacityFraction(float fraction) {
+      if (fraction <= 0) {
+        mGlyphIndex = null;
+      }
+    }
+  }
 }
@@ -0,0 +1,27 @@
+package com.quran.labs.androidquran.data;
+
+/**
+ * Packs a sura and ayah into a single int, so that ayahs can be used as
+ * keys (in sets of highlights, or maps of ayah bounds) without building
+ * and hashing "sura:ayah" strings. Keys sort in the order of the ayahs in
+ * the mushaf.
+ */
+public final class AyahKey {
+  private static final int AYAH_BITS = 16;
+  private static final int AYAH_MASK = (1 << AYAH_BITS) - 1;
+
+  private AyahKey() {
+  }
+
+  public static int of(int sura, int ayah) {
+    return (sura << AYAH_BITS) | ayah;
+  }
+
+  public static int getSura(int key) {
+    return key >>> AYAH_BITS;
+  }
+
+  public static int getAyah(int key) {
+    return key & AYAH_MASK;
+  }
+}
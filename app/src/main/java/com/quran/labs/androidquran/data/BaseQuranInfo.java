@@ -2,14 +2,12 @@ package com.quran.labs.androidquran.data;
 
 import com.quran.labs.androidquran.R;
 import com.quran.labs.androidquran.common.QuranAyah;
+import com.quran.labs.androidquran.util.IntSet;
 import com.quran.labs.androidquran.util.QuranUtils;
 
 import android.content.Context;
 import android.text.TextUtils;
 
-import java.util.LinkedHashSet;
-import java.util.Set;
-
 import static com.quran.labs.androidquran.data.Constants.PAGES_LAST;
 import static com.quran.labs.androidquran.data.Constants.PAGES_LAST_DUAL;
 
@@ -252,6 +250,21 @@ public class BaseQuranInfo {
     return ayahId;
   }
 
+  /**
+   * @return the sura and ayah of an ayah id (as returned by
+   * {@link #getAyahId(int, int)}), or null if the ayah id is out of range
+   */
+  public static SuraAyah getSuraAyahFromAyahId(int ayahId) {
+    int sura = 1;
+    int ayah = ayahId;
+    while (sura <= SURA_NUM_AYAHS.length && ayah > SURA_NUM_AYAHS[sura - 1]) {
+      ayah -= SURA_NUM_AYAHS[sura - 1];
+      sura++;
+    }
+    return ayah < 1 || sura > SURA_NUM_AYAHS.length ?
+        null : new SuraAyah(sura, ayah);
+  }
+
   public static int getNumAyahs(int sura) {
     if ((sura < 1) || (sura > Constants.SURAS_COUNT)) return -1;
     return SURA_NUM_AYAHS[sura - 1];
@@ -290,8 +303,8 @@ public class BaseQuranInfo {
     return context.getString(R.string.quran_sura_title, getSuraNameFromPage(context, page));
   }
 
-  public static Set<String> getAyahKeysOnPage(int page, SuraAyah lowerBound, SuraAyah upperBound) {
-    Set<String> ayahKeys = new LinkedHashSet<>();
+  public static IntSet getAyahKeysOnPage(int page, SuraAyah lowerBound, SuraAyah upperBound) {
+    IntSet ayahKeys = new IntSet();
     Integer[] bounds = QuranInfo.getPageBounds(page);
     if (bounds != null) {
       SuraAyah start = new SuraAyah(bounds[0], bounds[1]);
@@ -304,7 +317,7 @@ public class BaseQuranInfo {
       }
       SuraAyah.Iterator iterator = SuraAyah.getIterator(start, end);
       while (iterator.next()) {
-        ayahKeys.add(iterator.getSura() + ":" + iterator.getAyah());
+        ayahKeys.add(AyahKey.of(iterator.getSura(), iterator.getAyah()));
       }
     }
     return ayahKeys;
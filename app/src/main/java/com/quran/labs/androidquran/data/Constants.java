@@ -8,6 +8,8 @@ public class Constants {
   // Numerics
   public static final int DEFAULT_NIGHT_MODE_TEXT_BRIGHTNESS = 255;
   public static final int DEFAULT_TEXT_SIZE = 15;
+  // in megabytes
+  public static final int DEFAULT_RAW_PAGE_CACHE_SIZE = 64;
 
   // 10 days in ms
   public static final int TRANSLATION_REFRESH_TIME = 60 * 60 * 24 * 10 * 1000;
@@ -40,6 +42,7 @@ public class Constants {
       "landscapeOrientation";
   public static final String PREF_TRANSLATION_TEXT_SIZE = "translationTextSize";
   public static final String PREF_ACTIVE_TRANSLATION = "activeTranslation";
+  public static final String PREF_EXTRA_TRANSLATIONS = "extraTranslations";
   public static final String PREF_NIGHT_MODE = "nightMode";
   public static final String PREF_NIGHT_MODE_TEXT_BRIGHTNESS = "nightModeTextBrightness";
   public static final String PREF_DEFAULT_QARI = "defaultQari";
@@ -71,4 +74,5 @@ public class Constants {
   public static final String PREF_LOGS = "sendLogsKey";
   public static final String PREF_DID_PRESENT_PERMISSIONS_DIALOG =
       "didPresentStoragePermissionDialog";
+  public static final String PREF_RAW_PAGE_CACHE_SIZE = "rawPageCacheSize";
 }
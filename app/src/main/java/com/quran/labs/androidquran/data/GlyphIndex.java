@@ -0,0 +1,246 @@
+package com.quran.labs.androidquran.data;
+
+import com.quran.labs.androidquran.common.AyahBounds;
+
+import android.util.SparseArray;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The glyphs table of an ayah info database, packed into primitive arrays
+ * so that the coordinates of a page can be looked up without going back to
+ * the database. Glyphs of the same ayah on the same line are merged into a
+ * single entry (which is all the page views ever use), and the entries of
+ * each page are stored contiguously, ordered by sura, ayah and position, so
+ * a page is just the range of entries from {@link #getFirstEntry(int)} to
+ * {@link #getEndEntry(int)}.
+ */
+public class GlyphIndex {
+  // bytes per entry (8 ints)
+  private static final int ENTRY_SIZE = 8 * 4;
+
+  private final int[] mPageOffsets;
+  private final int[] mLines;
+  private final int[] mSuras;
+  private final int[] mAyahs;
+  private final int[] mPositions;
+  private final int[] mMinX;
+  private final int[] mMinY;
+  private final int[] mMaxX;
+  private final int[] mMaxY;
+  // built the first time each page is hit tested
+  private final AyahHitIndex[] mHitIndexes;
+
+  private GlyphIndex(Builder builder) {
+    final int size = builder.mSize;
+    mLines = Arrays.copyOf(builder.mLines, size);
+    mSuras = Arrays.copyOf(builder.mSuras, size);
+    mAyahs = Arrays.copyOf(builder.mAyahs, size);
+    mPositions = Arrays.copyOf(builder.mPositions, size);
+    mMinX = Arrays.copyOf(builder.mMinX, size);
+    mMinY = Arrays.copyOf(builder.mMinY, size);
+    mMaxX = Arrays.copyOf(builder.mMaxX, size);
+    mMaxY = Arrays.copyOf(builder.mMaxY, size);
+
+    // entries of page p are [mPageOffsets[p], mPageOffsets[p + 1])
+    final int lastPage = size == 0 ? 0 : builder.mPages[size - 1];
+    mPageOffsets = new int[lastPage + 2];
+    int entry = 0;
+    for (int page = 0; page <= lastPage + 1; page++) {
+      while (entry < size && builder.mPages[entry] < page) {
+        entry++;
+      }
+      mPageOffsets[page] = entry;
+    }
+    mHitIndexes = new AyahHitIndex[lastPage + 1];
+  }
+
+  /**
+   * @return the index of the first entry of the page
+   */
+  public int getFirstEntry(int page) {
+    return page < 0 || page >= mPageOffsets.length - 1 ? 0 : mPageOffsets[page];
+  }
+
+  /**
+   * @return one past the index of the last entry of the page
+   */
+  public int getEndEntry(int page) {
+    return page < 0 || page >= mPageOffsets.length - 1 ? 0 : mPageOffsets[page + 1];
+  }
+
+  public boolean hasPage(int page) {
+    return getEndEntry(page) > getFirstEntry(page);
+  }
+
+  public int getLine(int entry) {
+    return mLines[entry];
+  }
+
+  public int getSura(int entry) {
+    return mSuras[entry];
+  }
+
+  public int getAyah(int entry) {
+    return mAyahs[entry];
+  }
+
+  public int getPosition(int entry) {
+    return mPositions[entry];
+  }
+
+  public int getMinX(int entry) {
+    return mMinX[entry];
+  }
+
+  public int getMinY(int entry) {
+    return mMinY[entry];
+  }
+
+  public int getMaxX(int entry) {
+    return mMaxX[entry];
+  }
+
+  public int getMaxY(int entry) {
+    return mMaxY[entry];
+  }
+
+  public int getEntryCount() {
+    return mLines.length;
+  }
+
+  /**
+   * @return the last page the index has glyphs for
+   */
+  public int getLastPage() {
+    return mPageOffsets.length - 2;
+  }
+
+  /**
+   * @return an estimate of the memory used by the index, in bytes
+   */
+  public long getMemoryCost() {
+    return (long) mLines.length * ENTRY_SIZE + 4L * mPageOffsets.length;
+  }
+
+  /**
+   * Get the index used to find the ayah at a point on a page.
+   * @param page the page
+   * @return the hit index of the page, or null if there are no glyphs for
+   * the page
+   */
+  public AyahHitIndex getHitIndex(int page) {
+    if (!hasPage(page)) {
+      return null;
+    }
+
+    // hit indexes are immutable, so building one twice is harmless
+    AyahHitIndex hitIndex = mHitIndexes[page];
+    if (hitIndex == null) {
+      hitIndex = new AyahHitIndex(this, page);
+      mHitIndexes[page] = hitIndex;
+    }
+    return hitIndex;
+  }
+
+  /**
+   * Get the bounds of the ayahs on a page, in the form the page views use.
+   * @param page the page
+   * @return the bounds of each ayah on each line, keyed by {@link AyahKey},
+   * or null if there are no glyphs for the page
+   */
+  public SparseArray<List<AyahBounds>> getAyahBounds(int page) {
+    final int first = getFirstEntry(page);
+    final int end = getEndEntry(page);
+    if (first >= end) {
+      return null;
+    }
+
+    final SparseArray<List<AyahBounds>> map = new SparseArray<>();
+    for (int i = first; i < end; i++) {
+      final int key = AyahKey.of(mSuras[i], mAyahs[i]);
+      List<AyahBounds> bounds = map.get(key);
+      if (bounds == null) {
+        bounds = new ArrayList<>();
+        map.put(key, bounds);
+      }
+      bounds.add(new AyahBounds(mLines[i], mPositions[i],
+          mMinX[i], mMinY[i], mMaxX[i], mMaxY[i]));
+    }
+    return map;
+  }
+
+  /**
+   * Builds an index from glyphs ordered by page, sura, ayah and position.
+   */
+  public static class Builder {
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private int mSize;
+    private int[] mPages = new int[INITIAL_CAPACITY];
+    private int[] mLines = new int[INITIAL_CAPACITY];
+    private int[] mSuras = new int[INITIAL_CAPACITY];
+    private int[] mAyahs = new int[INITIAL_CAPACITY];
+    private int[] mPositions = new int[INITIAL_CAPACITY];
+    private int[] mMinX = new int[INITIAL_CAPACITY];
+    private int[] mMinY = new int[INITIAL_CAPACITY];
+    private int[] mMaxX = new int[INITIAL_CAPACITY];
+    private int[] mMaxY = new int[INITIAL_CAPACITY];
+
+    /**
+     * Add a glyph. Glyphs must be added in order of page, sura, ayah and
+     * position.
+     */
+    public Builder addGlyph(int page, int line, int sura, int ayah,
+        int position, int minX, int minY, int maxX, int maxY) {
+      final int last = mSize - 1;
+      if (last >= 0 && mPages[last] == page && mSuras[last] == sura &&
+          mAyahs[last] == ayah && mLines[last] == line) {
+        // same ayah on the same line, so grow the last entry
+        mMinX[last] = Math.min(mMinX[last], minX);
+        mMinY[last] = Math.min(mMinY[last], minY);
+        mMaxX[last] = Math.max(mMaxX[last], maxX);
+        mMaxY[last] = Math.max(mMaxY[last], maxY);
+        return this;
+      } else if (last >= 0 && page < mPages[last]) {
+        throw new IllegalArgumentException(
+            "glyphs must be ordered by page: " + page + " after " + mPages[last]);
+      }
+
+      if (mSize == mLines.length) {
+        grow();
+      }
+
+      mPages[mSize] = page;
+      mLines[mSize] = line;
+      mSuras[mSize] = sura;
+      mAyahs[mSize] = ayah;
+      mPositions[mSize] = position;
+      mMinX[mSize] = minX;
+      mMinY[mSize] = minY;
+      mMaxX[mSize] = maxX;
+      mMaxY[mSize] = maxY;
+      mSize++;
+      return this;
+    }
+
+    private void grow() {
+      final int capacity = mLines.length * 2;
+      mPages = Arrays.copyOf(mPages, capacity);
+      mLines = Arrays.copyOf(mLines, capacity);
+      mSuras = Arrays.copyOf(mSuras, capacity);
+      mAyahs = Arrays.copyOf(mAyahs, capacity);
+      mPositions = Arrays.copyOf(mPositions, capacity);
+      mMinX = Arrays.copyOf(mMinX, capacity);
+      mMinY = Arrays.copyOf(mMinY, capacity);
+      mMaxX = Arrays.copyOf(mMaxX, capacity);
+      mMaxY = Arrays.copyOf(mMaxY, capacity);
+    }
+
+    public GlyphIndex build() {
+      return new GlyphIndex(this);
+    }
+  }
+}
@@ -0,0 +1,196 @@
+package com.quran.labs.androidquran.data;
+
+import com.quran.labs.androidquran.util.QuranFileUtils;
+
+import android.support.annotation.Nullable;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * The bounds of the glyphs on every page of an ayah info database. These
+ * are computed once (in a single pass over the glyphs table) and kept in a
+ * small file next to the database, so that page bounds never need a query
+ * after that. The file records the size and modified time of the database
+ * it was computed from, and is ignored if the database has since changed.
+ */
+public class PageBoundsTable {
+  static final String FILE_EXTENSION = ".bounds";
+  private static final String PARTIAL_FILE_EXTENSION = ".part";
+
+  private static final int MAGIC = 0x51504742;
+  // left, top, right, bottom for each page
+  private static final int VALUES_PER_PAGE = 4;
+
+  private final int[] mBounds;
+
+  /**
+   * @param lastPage the last page the table can hold bounds for
+   */
+  PageBoundsTable(int lastPage) {
+    mBounds = new int[(lastPage + 1) * VALUES_PER_PAGE];
+    // pages without bounds have right < left
+    Arrays.fill(mBounds, -1);
+    for (int i = 0; i < mBounds.length; i += VALUES_PER_PAGE) {
+      mBounds[i] = 0;
+    }
+  }
+
+  void setBounds(int page, int left, int top, int right, int bottom) {
+    final int offset = page * VALUES_PER_PAGE;
+    mBounds[offset] = left;
+    mBounds[offset + 1] = top;
+    mBounds[offset + 2] = right;
+    mBounds[offset + 3] = bottom;
+  }
+
+  public boolean hasPage(int page) {
+    return page >= 0 && page < getPageCount() &&
+        mBounds[page * VALUES_PER_PAGE + 2] >= mBounds[page * VALUES_PER_PAGE];
+  }
+
+  public int getLeft(int page) {
+    return mBounds[page * VALUES_PER_PAGE];
+  }
+
+  public int getTop(int page) {
+    return mBounds[page * VALUES_PER_PAGE + 1];
+  }
+
+  public int getRight(int page) {
+    return mBounds[page * VALUES_PER_PAGE + 2];
+  }
+
+  public int getBottom(int page) {
+    return mBounds[page * VALUES_PER_PAGE + 3];
+  }
+
+  /**
+   * Compute the bounds of every page from a glyph index. Merging glyphs
+   * into entries keeps their outer bounds, so these are the same as the
+   * bounds computed from the glyphs table.
+   */
+  static PageBoundsTable fromGlyphIndex(GlyphIndex index) {
+    final int lastPage = index.getLastPage();
+    final PageBoundsTable table = new PageBoundsTable(lastPage);
+    for (int page = 0; page <= lastPage; page++) {
+      final int first = index.getFirstEntry(page);
+      final int end = index.getEndEntry(page);
+      if (first < end) {
+        int left = index.getMinX(first);
+        int top = index.getMinY(first);
+        int right = index.getMaxX(first);
+        int bottom = index.getMaxY(first);
+        for (int i = first + 1; i < end; i++) {
+          left = Math.min(left, index.getMinX(i));
+          top = Math.min(top, index.getMinY(i));
+          right = Math.max(right, index.getMaxX(i));
+          bottom = Math.max(bottom, index.getMaxY(i));
+        }
+        table.setBounds(page, left, top, right, bottom);
+      }
+    }
+    return table;
+  }
+
+  private int getPageCount() {
+    return mBounds.length / VALUES_PER_PAGE;
+  }
+
+  /**
+   * @return the file the bounds of the given database are kept in
+   */
+  static File getFile(File database) {
+    return new File(database.getPath() + FILE_EXTENSION);
+  }
+
+  /**
+   * Read the bounds that were computed for a database.
+   * @param database the ayah info database
+   * @return the bounds, or null if they were never written, or were
+   * computed from a different version of the database.
+   */
+  @Nullable
+  static PageBoundsTable read(File database) {
+    final File file = getFile(database);
+    if (!file.isFile()) {
+      return null;
+    }
+
+    DataInputStream input = null;
+    try {
+      input = new DataInputStream(
+          new BufferedInputStream(new FileInputStream(file)));
+      if (input.readInt() != MAGIC ||
+          input.readLong() != database.length() ||
+          input.readLong() != database.lastModified()) {
+        return null;
+      }
+
+      final int pageCount = input.readInt();
+      if (pageCount <= 0 || file.length() !=
+          getFileSize(pageCount * VALUES_PER_PAGE)) {
+        return null;
+      }
+
+      final PageBoundsTable table = new PageBoundsTable(pageCount - 1);
+      for (int i = 0; i < table.mBounds.length; i++) {
+        table.mBounds[i] = input.readInt();
+      }
+      return table;
+    } catch (IOException e) {
+      return null;
+    } finally {
+      QuranFileUtils.closeQuietly(input);
+    }
+  }
+
+  /**
+   * Write the bounds next to the database they were computed from.
+   * @param database the ayah info database
+   * @return whether the bounds were written
+   */
+  boolean write(File database) {
+    final File file = getFile(database);
+    // write to a partial file first so that the bounds are never read
+    // while they are only partially written.
+    final File partialFile = new File(file.getPath() + PARTIAL_FILE_EXTENSION);
+    DataOutputStream output = null;
+    boolean written = false;
+    try {
+      output = new DataOutputStream(
+          new BufferedOutputStream(new FileOutputStream(partialFile)));
+      output.writeInt(MAGIC);
+      output.writeLong(database.length());
+      output.writeLong(database.lastModified());
+      output.writeInt(getPageCount());
+      for (int value : mBounds) {
+        output.writeInt(value);
+      }
+      output.flush();
+      written = true;
+    } catch (IOException e) {
+      // written stays false
+    } finally {
+      QuranFileUtils.closeQuietly(output);
+    }
+
+    if (written && partialFile.renameTo(file)) {
+      return true;
+    }
+    partialFile.delete();
+    return false;
+  }
+
+  private static long getFileSize(int valueCount) {
+    // magic, database length, database modified time, page count, values
+    return 4 + 8 + 8 + 4 + 4L * valueCount;
+  }
+}
@@ -0,0 +1,47 @@
+package com.quran.labs.androidquran.data;
+
+import com.quran.labs.androidquran.common.AyahBounds;
+
+import android.graphics.RectF;
+import android.support.annotation.Nullable;
+import android.util.SparseArray;
+
+import java.util.List;
+
+/**
+ * Everything a page view needs from the ayah info database for one page:
+ * the bounds of the page, and the bounds of each ayah on it.
+ */
+public class PageCoordinates {
+  private final int mPage;
+  private final RectF mPageBounds;
+  private final SparseArray<List<AyahBounds>> mAyahBounds;
+
+  public PageCoordinates(int page, RectF pageBounds,
+      SparseArray<List<AyahBounds>> ayahBounds) {
+    mPage = page;
+    mPageBounds = pageBounds;
+    mAyahBounds = ayahBounds;
+  }
+
+  public int getPage() {
+    return mPage;
+  }
+
+  /**
+   * @return the bounds of the glyphs on the page, or null if there are none
+   */
+  @Nullable
+  public RectF getPageBounds() {
+    return mPageBounds;
+  }
+
+  /**
+   * @return the bounds of each ayah on each line, keyed by {@link AyahKey},
+   * or null if there are none
+   */
+  @Nullable
+  public SparseArray<List<AyahBounds>> getAyahBounds() {
+    return mAyahBounds;
+  }
+}
@@ -0,0 +1,108 @@
+package com.quran.labs.androidquran.data;
+
+import com.quran.labs.androidquran.common.QuranAyah;
+import com.quran.labs.androidquran.util.QuranMemoryGovernor;
+import com.quran.labs.androidquran.util.TrimmableLruCache;
+
+import android.app.ActivityManager;
+import android.content.Context;
+import android.support.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The verses of recently shown translation pages, keyed by translation
+ * database (or comma separated databases, when other translations are
+ * shown alongside the main one), page, and whether the arabic text was
+ * loaded with them, so that flipping between translation pages doesn't go
+ * back to the database.
+ * The verses of a translation need to be invalidated whenever it is
+ * updated or removed.
+ */
+public class TranslationCache {
+  // fraction of the memory class to use for cached verses
+  private static final int CACHE_MEMORY_DIVISOR = 32;
+  // rough size of a verse, excluding its text
+  private static final int VERSE_OVERHEAD = 64;
+
+  private static TranslationCache sInstance;
+
+  private final TrimmableLruCache<String, List<QuranAyah>> mCache;
+
+  public static synchronized TranslationCache getInstance(Context context) {
+    if (sInstance == null) {
+      sInstance = new TranslationCache(context.getApplicationContext());
+    }
+    return sInstance;
+  }
+
+  private TranslationCache(Context context) {
+    final int memoryClass = ((ActivityManager) context
+        .getSystemService(Context.ACTIVITY_SERVICE)).getMemoryClass();
+    final int cacheSize = 1024 * 1024 * memoryClass / CACHE_MEMORY_DIVISOR;
+    mCache = new TrimmableLruCache<String, List<QuranAyah>>(cacheSize) {
+      @Override
+      protected int sizeOf(String key, List<QuranAyah> verses) {
+        int size = 0;
+        for (int i = 0, count = verses.size(); i < count; i++) {
+          final QuranAyah verse = verses.get(i);
+          size += VERSE_OVERHEAD + 2 * (getLength(verse.getText()) +
+              getLength(verse.getTranslation()) +
+              getLength(verse.getDisplayText()));
+          for (int j = 0, extras = verse.getExtraTranslationCount(); j < extras; j++) {
+            size += 2 * getLength(verse.getExtraTranslation(j));
+          }
+        }
+        return size;
+      }
+    };
+    QuranMemoryGovernor.getInstance().register(mCache);
+  }
+
+  private static int getLength(CharSequence text) {
+    return text == null ? 0 : text.length();
+  }
+
+  /**
+   * @return the cached verses of the page, or null if they aren't cached
+   */
+  @Nullable
+  public List<QuranAyah> get(String database, int page, boolean withArabic) {
+    return mCache.get(getKey(database, page, withArabic));
+  }
+
+  public boolean contains(String database, int page, boolean withArabic) {
+    return get(database, page, withArabic) != null;
+  }
+
+  /**
+   * Cache the verses of a page. The cached list can't be modified.
+   */
+  public void put(String database, int page,
+      boolean withArabic, List<QuranAyah> verses) {
+    mCache.put(getKey(database, page, withArabic),
+        Collections.unmodifiableList(new ArrayList<>(verses)));
+    mCache.trimToLimit();
+  }
+
+  /**
+   * Remove all the cached verses of a translation, including those it
+   * was shown alongside other translations in.
+   * @param database the translation database
+   */
+  public void invalidate(String database) {
+    for (String key : mCache.snapshot().keySet()) {
+      final String databases = key.substring(0, key.indexOf(':'));
+      if (Arrays.asList(databases.split(",")).contains(database)) {
+        mCache.remove(key);
+      }
+    }
+  }
+
+  private static String getKey(String database, int page, boolean withArabic) {
+    return database + ":" + page + (withArabic ? ":ar" : "");
+  }
+}
@@ -2,26 +2,45 @@ package com.quran.labs.androidquran.database;
 
 import android.content.Context;
 import android.database.Cursor;
+import android.database.CursorWrapper;
 import android.database.DefaultDatabaseErrorHandler;
 import android.database.SQLException;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteDatabaseCorruptException;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
 import android.provider.BaseColumns;
 import android.support.annotation.NonNull;
 import android.support.v4.content.ContextCompat;
 
 import com.crashlytics.android.Crashlytics;
 import com.quran.labs.androidquran.R;
+import com.quran.labs.androidquran.data.Constants;
+import com.quran.labs.androidquran.data.QuranInfo;
 import com.quran.labs.androidquran.util.QuranFileUtils;
+import com.quran.labs.androidquran.util.QuranMemoryGovernor;
 
 import java.io.File;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import timber.log.Timber;
 
 
+/**
+ * Queries a translation, tafseer or arabic text database. There is one
+ * handler per database, but its database is only kept open while it is
+ * being used: databases that haven't been used for {@link #IDLE_TIMEOUT}
+ * are closed (as are all unused ones when memory is low), and reopened the
+ * next time they are queried.
+ *
+ * A database is in use from the time a query starts until the cursor it
+ * returns is closed, so callers must close the cursors they get.
+ */
 public class DatabaseHandler {
   public static String COL_SURA = "sura";
   public static String COL_AYAH = "ayah";
@@ -36,14 +55,89 @@ public class DatabaseHandler {
   private static final String MATCH_END = "</font>";
   private static final String ELLIPSES = "<b>...</b>";
 
-  private static Map<String, DatabaseHandler> sDatabaseMap = new HashMap<>();
+  // how long a database stays open after it was last used
+  private static final long IDLE_TIMEOUT = 60 * 1000;
+  // rough memory used by an open database, mostly sqlite's page cache
+  private static final long OPEN_DATABASE_COST = 512 * 1024;
 
+  private static Map<String, DatabaseHandler> sDatabaseMap = new HashMap<>();
+  private static boolean sIsMemoryConsumerRegistered;
+  private static Handler sSweepHandler;
+  private static boolean sIsSweepScheduled;
+  private static final AtomicInteger sReopenCount = new AtomicInteger();
+  private static final AtomicInteger sIdleCloseCount = new AtomicInteger();
+
+  private static final Runnable sSweepRunnable = new Runnable() {
+    @Override
+    public void run() {
+      synchronized (DatabaseHandler.class) {
+        sIsSweepScheduled = false;
+      }
+      closeIdleDatabases(IDLE_TIMEOUT);
+    }
+  };
+
+  private static final QuranMemoryGovernor.MemoryConsumer sMemoryConsumer =
+      new QuranMemoryGovernor.MemoryConsumer() {
+        @Override
+        public long getMemoryCost() {
+          return OPEN_DATABASE_COST * getOpenDatabaseCount();
+        }
+
+        @Override
+        public void setCapacityFraction(float fraction) {
+          if (fraction < 1.0f) {
+            closeIdleDatabases(0);
+          }
+        }
+      };
+
+  private final String mDatabaseName;
+  private final String mPath;
   private int mSchemaVersion = 1;
   private String mMatchString;
-  private SQLiteDatabase mDatabase = null;
+  private volatile boolean mIsCorrupt;
+  private final IdlePool<SQLiteDatabase> mPool = new IdlePool<SQLiteDatabase>() {
+    @Override
+    protected SQLiteDatabase open() {
+      if (mPath == null || mIsCorrupt) {
+        return null;
+      }
+
+      try {
+        final SQLiteDatabase database = openDatabase();
+        if (database != null) {
+          sReopenCount.incrementAndGet();
+        }
+        return database;
+      } catch (SQLException se) {
+        // the database was removed (or replaced by a broken one)
+        return null;
+      }
+    }
+
+    @Override
+    protected boolean isOpen(SQLiteDatabase database) {
+      return database.isOpen();
+    }
+
+    @Override
+    protected void close(SQLiteDatabase database) {
+      Timber.d("closing idle database %s", mDatabaseName);
+      database.close();
+      sIdleCloseCount.incrementAndGet();
+    }
+  };
+  // whether each table's rowids are ayah ids, checked the first time
+  private final Map<String, Boolean> mHasAyahIdRowids = new HashMap<>();
 
   public static synchronized DatabaseHandler getDatabaseHandler(
       Context context, String databaseName) {
+    if (!sIsMemoryConsumerRegistered) {
+      QuranMemoryGovernor.getInstance().register(sMemoryConsumer);
+      sIsMemoryConsumerRegistered = true;
+    }
+
     DatabaseHandler handler = sDatabaseMap.get(databaseName);
     if (handler == null) {
       handler = new DatabaseHandler(context.getApplicationContext(), databaseName);
@@ -54,29 +148,118 @@ public class DatabaseHandler {
 
   private DatabaseHandler(Context context, String databaseName)
       throws SQLException {
+    mDatabaseName = databaseName;
     String base = QuranFileUtils.getQuranDatabaseDirectory(context);
-    if (base == null) return;
-    String path = base + File.separator + databaseName;
-    Crashlytics.log("opening database file: " + path);
+    if (base == null) {
+      mPath = null;
+      return;
+    }
+    mPath = base + File.separator + databaseName;
+    mPool.setOpened(openDatabase(), SystemClock.uptimeMillis());
+
+    mSchemaVersion = getSchemaVersion();
+    mMatchString = "<font color=\"" +
+        ContextCompat.getColor(context, R.color.translation_highlight) +
+        "\">";
+    scheduleSweep();
+  }
+
+  private SQLiteDatabase openDatabase() throws SQLException {
+    Crashlytics.log("opening database file: " + mPath);
     try {
-      mDatabase = SQLiteDatabase.openDatabase(path, null,
+      return SQLiteDatabase.openDatabase(mPath, null,
         SQLiteDatabase.NO_LOCALIZED_COLLATORS, new DefaultDatabaseErrorHandler());
     } catch (SQLiteDatabaseCorruptException sce) {
-      Crashlytics.log("corrupt database: " + databaseName);
+      Crashlytics.log("corrupt database: " + mDatabaseName);
+      mIsCorrupt = true;
+      return null;
     } catch (SQLException se){
-      Crashlytics.log("database file " + path +
-          (new File(path).exists()? " exists" : " doesn't exist"));
+      Crashlytics.log("database file " + mPath +
+          (new File(mPath).exists()? " exists" : " doesn't exist"));
       throw se;
     }
+  }
 
-    mSchemaVersion = getSchemaVersion();
-    mMatchString = "<font color=\"" +
-        ContextCompat.getColor(context, R.color.translation_highlight) +
-        "\">";
+  /**
+   * Get the database, reopening it if it was closed, and mark it as in use
+   * until {@link #releaseDatabase()} is called.
+   * @return the database, or null if it can't be opened
+   */
+  private SQLiteDatabase acquireDatabase() {
+    return mPool.acquire();
+  }
+
+  private void releaseDatabase() {
+    mPool.release(SystemClock.uptimeMillis());
+    scheduleSweep();
+  }
+
+  /**
+   * Keep the database in use until the cursor is closed, or release it now
+   * if there's no cursor.
+   */
+  private Cursor holdUntilClosed(Cursor cursor) {
+    if (cursor == null) {
+      releaseDatabase();
+      return null;
+    }
+    return new PooledCursor(cursor, mPool.lease());
+  }
+
+  private static synchronized List<DatabaseHandler> getHandlers() {
+    return new ArrayList<>(sDatabaseMap.values());
+  }
+
+  private static void closeIdleDatabases(long idleTime) {
+    final long now = SystemClock.uptimeMillis();
+    boolean hasOpenDatabases = false;
+    for (DatabaseHandler handler : getHandlers()) {
+      hasOpenDatabases |= handler.mPool.closeIfIdle(idleTime, now);
+    }
+
+    if (hasOpenDatabases) {
+      scheduleSweep();
+    }
   }
 
+  private static synchronized void scheduleSweep() {
+    if (!sIsSweepScheduled) {
+      if (sSweepHandler == null) {
+        sSweepHandler = new Handler(Looper.getMainLooper());
+      }
+      sIsSweepScheduled = true;
+      sSweepHandler.postDelayed(sSweepRunnable, IDLE_TIMEOUT);
+    }
+  }
+
+  private static int getOpenDatabaseCount() {
+    int open = 0;
+    for (DatabaseHandler handler : getHandlers()) {
+      if (handler.mPool.isOpen()) {
+        open++;
+      }
+    }
+    return open;
+  }
+
+  public static String getStats() {
+    final int handlers;
+    synchronized (DatabaseHandler.class) {
+      handlers = sDatabaseMap.size();
+    }
+    return "databases: " + getOpenDatabaseCount() + " of " + handlers +
+        " open, " + sIdleCloseCount.get() + " closed while idle, " +
+        sReopenCount.get() + " reopened";
+  }
+
+  /**
+   * @return whether the database can be queried. This only checks, and
+   * doesn't open the database if it was closed while idle; queries do that
+   * when they acquire it.
+   */
   public boolean validDatabase() {
-    return mDatabase != null && mDatabase.isOpen();
+    return mPath != null && !mIsCorrupt &&
+        (mPool.isOpen() || new File(mPath).exists());
   }
 
   public Cursor getVerses(int sura, int minAyah, int maxAyah) {
@@ -85,13 +268,14 @@ public class DatabaseHandler {
 
   private int getProperty(@NonNull String column) {
     int value = 1;
-    if (!validDatabase()) {
+    final SQLiteDatabase database = acquireDatabase();
+    if (database == null) {
       return value;
     }
 
     Cursor cursor = null;
     try {
-      cursor = mDatabase.query(PROPERTIES_TABLE, new String[]{ COL_VALUE },
+      cursor = database.query(PROPERTIES_TABLE, new String[]{ COL_VALUE },
           COL_PROPERTY + "= ?", new String[]{ column }, null, null, null);
       if (cursor != null && cursor.moveToFirst()) {
         value = cursor.getInt(0);
@@ -101,6 +285,7 @@ public class DatabaseHandler {
       return value;
     } finally {
       DatabaseUtils.closeCursor(cursor);
+      releaseDatabase();
     }
   }
 
@@ -122,6 +307,41 @@ public class DatabaseHandler {
         return null;
     }
 
+    // ayah ids of ayahs past the end of a sura belong to the next sura
+    if (isValidAyah(minSura, minAyah) && isValidAyah(maxSura, maxAyah) &&
+        hasAyahIdRowids(table)) {
+      return getVersesByAyahIds(QuranInfo.getAyahId(minSura, minAyah),
+          QuranInfo.getAyahId(maxSura, maxAyah), table);
+    }
+    return getVersesBySuraAyah(minSura, minAyah, maxSura, maxAyah, table);
+  }
+
+  /**
+   * Get the verses with ayah ids in the given range, by looking up their
+   * rowids (which are an index, even for fts tables). The query only
+   * changes with the table, so sqlite's statement cache keeps it compiled.
+   * Only valid for tables where {@link #hasAyahIdRowids(String)} is true.
+   */
+  Cursor getVersesByAyahIds(int minAyahId, int maxAyahId, String table) {
+    final SQLiteDatabase database = acquireDatabase();
+    if (database == null) {
+      return null;
+    }
+
+    Cursor cursor = null;
+    try {
+      cursor = database.rawQuery("SELECT rowid as _id, " + COL_SURA + ", " +
+              COL_AYAH + ", " + COL_TEXT + " FROM " + table +
+              " WHERE rowid BETWEEN ? AND ? ORDER BY rowid",
+          new String[]{ String.valueOf(minAyahId), String.valueOf(maxAyahId) });
+    } finally {
+      cursor = holdUntilClosed(cursor);
+    }
+    return cursor;
+  }
+
+  Cursor getVersesBySuraAyah(int minSura, int minAyah, int maxSura,
+                             int maxAyah, String table) {
     StringBuilder whereQuery = new StringBuilder();
     whereQuery.append("(");
 
@@ -156,10 +376,83 @@ public class DatabaseHandler {
 
     whereQuery.append(")");
 
-    return mDatabase.query(table,
-        new String[] { "rowid as _id", COL_SURA, COL_AYAH, COL_TEXT },
-        whereQuery.toString(), null, null, null,
-        COL_SURA + "," + COL_AYAH);
+    final SQLiteDatabase database = acquireDatabase();
+    if (database == null) {
+      return null;
+    }
+
+    Cursor cursor = null;
+    try {
+      cursor = database.query(table,
+          new String[] { "rowid as _id", COL_SURA, COL_AYAH, COL_TEXT },
+          whereQuery.toString(), null, null, null,
+          COL_SURA + "," + COL_AYAH);
+    } finally {
+      cursor = holdUntilClosed(cursor);
+    }
+    return cursor;
+  }
+
+  private static boolean isValidAyah(int sura, int ayah) {
+    return sura >= 1 && sura <= Constants.SURAS_COUNT &&
+        ayah >= 1 && ayah <= QuranInfo.getNumAyahs(sura);
+  }
+
+  /**
+   * @return whether the rowid of every verse in the table is its ayah id
+   * (which is the case for all the databases we ship), so that verses can
+   * be looked up by rowid.
+   */
+  boolean hasAyahIdRowids(String table) {
+    synchronized (mHasAyahIdRowids) {
+      Boolean result = mHasAyahIdRowids.get(table);
+      if (result == null) {
+        result = checkAyahIdRowids(table);
+        mHasAyahIdRowids.put(table, result);
+      }
+      return result;
+    }
+  }
+
+  /**
+   * Check the rowids of the first ayah of every sura and of the last ayah,
+   * and that there are no rows past the last ayah. A database missing some
+   * verses, or ordered differently, fails this.
+   */
+  private boolean checkAyahIdRowids(String table) {
+    final int lastAyahId = QuranInfo.getAyahId(Constants.SURAS_COUNT,
+        QuranInfo.getNumAyahs(Constants.SURAS_COUNT));
+    final StringBuilder ids = new StringBuilder();
+    for (int sura = 1; sura <= Constants.SURAS_COUNT; sura++) {
+      ids.append(QuranInfo.getAyahId(sura, 1)).append(",");
+    }
+    ids.append(lastAyahId);
+
+    final SQLiteDatabase database = acquireDatabase();
+    if (database == null) {
+      return false;
+    }
+
+    Cursor cursor = null;
+    try {
+      cursor = database.rawQuery("SELECT rowid, " + COL_SURA + ", " +
+          COL_AYAH + " FROM " + table + " WHERE rowid IN (" + ids +
+          ") OR rowid > " + lastAyahId, null);
+      int matches = 0;
+      while (cursor.moveToNext()) {
+        if (cursor.getInt(0) !=
+            QuranInfo.getAyahId(cursor.getInt(1), cursor.getInt(2))) {
+          return false;
+        }
+        matches++;
+      }
+      return matches == Constants.SURAS_COUNT + 1;
+    } catch (SQLException se) {
+      return false;
+    } finally {
+      DatabaseUtils.closeCursor(cursor);
+      releaseDatabase();
+    }
   }
 
   public Cursor getVerse(int sura, int ayah) {
@@ -178,7 +471,18 @@ public class DatabaseHandler {
     Timber.d("querying verses by ids for tags...");
     final String sql = "SELECT rowid as _id, " + COL_SURA + ", " + COL_AYAH + ", " + COL_TEXT +
         " FROM " + ARABIC_TEXT_TABLE + " WHERE rowid in(" + builder.toString() + ")";
-    return mDatabase.rawQuery(sql, null);
+    final SQLiteDatabase database = acquireDatabase();
+    if (database == null) {
+      return null;
+    }
+
+    Cursor cursor = null;
+    try {
+      cursor = database.rawQuery(sql, null);
+    } finally {
+      cursor = holdUntilClosed(cursor);
+    }
+    return cursor;
   }
 
   public Cursor search(String query, boolean withSnippets) {
@@ -230,11 +534,40 @@ public class DatabaseHandler {
         operator + " ? " + " limit 150";
     Crashlytics.log("search query: " + qtext + ", query: " + query);
 
+    final SQLiteDatabase database = acquireDatabase();
+    if (database == null) {
+      return null;
+    }
+
+    Cursor cursor = null;
     try {
-      return mDatabase.rawQuery(qtext, new String[]{ query });
+      cursor = database.rawQuery(qtext, new String[]{ query });
     } catch (Exception e){
       Crashlytics.logException(e);
-      return null;
+    } finally {
+      cursor = holdUntilClosed(cursor);
+    }
+    return cursor;
+  }
+
+  /**
+   * A cursor that keeps its database in use until it is closed, so that the
+   * database isn't closed under it while it is being read.
+   */
+  private static class PooledCursor extends CursorWrapper {
+    private final IdlePool<?>.Lease mLease;
+
+    PooledCursor(Cursor cursor, IdlePool<?>.Lease lease) {
+      super(cursor);
+      mLease = lease;
+    }
+
+    @Override
+    public void close() {
+      super.close();
+      if (mLease.release(SystemClock.uptimeMillis())) {
+        scheduleSweep();
+      }
     }
   }
 }
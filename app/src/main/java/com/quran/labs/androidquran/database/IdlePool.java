@@ -0,0 +1,113 @@
+package com.quran.labs.androidquran.database;
+
+/**
+ * Keeps track of who is using a resource (a database), so that it can be
+ * closed once no one has used it for a while and opened again the next
+ * time it is needed. Opening and closing are left to subclasses, and times
+ * are passed in, so that the bookkeeping doesn't need a real database.
+ */
+abstract class IdlePool<T> {
+  // guarded by this
+  private T mResource;
+  private int mUsers;
+  private long mLastUsed;
+
+  /**
+   * @return the opened resource, or null if it can't be opened
+   */
+  protected abstract T open();
+
+  protected abstract boolean isOpen(T resource);
+
+  protected abstract void close(T resource);
+
+  /**
+   * Start with a resource that was already opened, as if it was last used
+   * at the given time.
+   */
+  synchronized void setOpened(T resource, long now) {
+    mResource = resource;
+    mLastUsed = now;
+  }
+
+  /**
+   * Get the resource, opening it again if it was closed, and mark it as in
+   * use until {@link #release(long)} is called.
+   * @return the resource, or null if it can't be opened
+   */
+  synchronized T acquire() {
+    if (mResource == null || !isOpen(mResource)) {
+      mResource = open();
+    }
+
+    if (mResource != null) {
+      mUsers++;
+    }
+    return mResource;
+  }
+
+  /**
+   * Mark one use of the resource (from {@link #acquire()}) as done.
+   */
+  synchronized void release(long now) {
+    mUsers--;
+    mLastUsed = now;
+  }
+
+  /**
+   * @return a lease on one use of the resource, which was already acquired
+   */
+  Lease lease() {
+    return new Lease();
+  }
+
+  /**
+   * Close the resource if it is open and no one has used it for the given
+   * time.
+   * @return whether the resource is still open
+   */
+  synchronized boolean closeIfIdle(long idleTime, long now) {
+    if (mResource == null) {
+      return false;
+    }
+
+    if (mUsers == 0 && now - mLastUsed >= idleTime) {
+      close(mResource);
+      mResource = null;
+      return false;
+    }
+    return true;
+  }
+
+  synchronized boolean isOpen() {
+    return mResource != null;
+  }
+
+  synchronized int getUsers() {
+    return mUsers;
+  }
+
+  /**
+   * One use of the resource, for when it is released by someone other than
+   * the one who acquired it (like the cursor from a query). Releasing a
+   * lease more than once only releases the use the first time.
+   */
+  class Lease {
+    private boolean mIsReleased;
+
+    /**
+     * @return whether this released the use, or false if it was already
+     * released
+     */
+    boolean release(long now) {
+      synchronized (this) {
+        if (mIsReleased) {
+          return false;
+        }
+        mIsReleased = true;
+      }
+      IdlePool.this.release(now);
+      return true;
+    }
+  }
+}
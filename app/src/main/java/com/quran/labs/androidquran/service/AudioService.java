@@ -31,6 +31,7 @@ import com.quran.labs.androidquran.service.util.AudioFocusable;
 import com.quran.labs.androidquran.service.util.AudioRequest;
 import com.quran.labs.androidquran.service.util.QuranDownloadNotifier;
 import com.quran.labs.androidquran.service.util.RepeatInfo;
+import com.quran.labs.androidquran.task.QuranTaskExecutor;
 import com.quran.labs.androidquran.ui.PagerActivity;
 import com.quran.labs.androidquran.util.AudioUtils;
 
@@ -67,11 +68,13 @@ import android.support.v4.media.session.MediaButtonReceiver;
 import android.support.v4.media.session.MediaSessionCompat;
 import android.support.v4.media.session.PlaybackStateCompat;
 import android.support.v7.app.NotificationCompat;
+import android.util.LruCache;
 import android.util.SparseIntArray;
 
 import java.io.File;
 import java.io.IOException;
 import java.lang.ref.WeakReference;
+import java.util.concurrent.RejectedExecutionException;
 
 import timber.log.Timber;
 
@@ -105,6 +108,9 @@ public class AudioService extends Service implements OnCompletionListener,
   private static final int REQUEST_CODE_STOP = 4;
   private static final int REQUEST_CODE_RESUME = 5;
 
+  // number of suras to keep ayah timings for
+  private static final int GAPLESS_CACHE_SIZE = 8;
+
   public static class AudioUpdateIntent {
 
     public static final String INTENT_NAME = "com.quran.labs.androidquran.audio.AudioUpdate";
@@ -203,6 +209,9 @@ public class AudioService extends Service implements OnCompletionListener,
   private Bitmap mDisplayIcon;
   private SparseIntArray mGaplessSuraData = null;
   private AsyncTask<Integer, Void, SparseIntArray> mTimingTask = null;
+  // ayah timings of recently played suras, by database and sura
+  private final LruCache<String, SparseIntArray> mGaplessCache =
+      new LruCache<>(GAPLESS_CACHE_SIZE);
 
   public static final int MSG_START_AUDIO = 1;
   public static final int MSG_UPDATE_AUDIO_POS = 2;
@@ -424,6 +433,39 @@ public class AudioService extends Service implements OnCompletionListener,
     return START_NOT_STICKY;
   }
 
+  /**
+   * Load the ayah timings of the current sura, from the cache if they were
+   * already read, or in the background otherwise.
+   */
+  private void loadGaplessData() {
+    if (mTimingTask != null) {
+      mTimingTask.cancel(true);
+      mTimingTask = null;
+    }
+
+    final String dbPath = mAudioRequest.getGaplessDatabaseFilePath();
+    final int sura = mAudioRequest.getCurrentSura();
+    final SparseIntArray timings = mGaplessCache.get(getGaplessCacheKey(dbPath, sura));
+    if (timings != null) {
+      mGaplessSura = sura;
+      mGaplessSuraData = timings;
+    } else {
+      mTimingTask = new ReadGaplessDataTask(dbPath);
+      try {
+        mTimingTask.executeOnExecutor(
+            QuranTaskExecutor.BACKGROUND.forTask("ReadGaplessDataTask"), sura);
+      } catch (RejectedExecutionException ree) {
+        // playback waits for the timings, so don't wait for the queue
+        mTimingTask = new ReadGaplessDataTask(dbPath);
+        mTimingTask.executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR, sura);
+      }
+    }
+  }
+
+  private static String getGaplessCacheKey(String dbPath, int sura) {
+    return dbPath + ":" + sura;
+  }
+
   private class ReadGaplessDataTask extends AsyncTask<Integer, Void, SparseIntArray> {
 
     private int mSura = 0;
@@ -466,6 +508,9 @@ public class AudioService extends Service implements OnCompletionListener,
       mGaplessSura = mSura;
       mGaplessSuraData = map;
       mTimingTask = null;
+      if (map != null) {
+        mGaplessCache.put(getGaplessCacheKey(mDatabasePath, mSura), map);
+      }
     }
   }
 
@@ -630,12 +675,7 @@ public class AudioService extends Service implements OnCompletionListener,
 
     if (State.Stopped == mState) {
       if (mAudioRequest.isGapless()) {
-        if (mTimingTask != null) {
-          mTimingTask.cancel(true);
-        }
-        String dbPath = mAudioRequest.getGaplessDatabaseFilePath();
-        mTimingTask = new ReadGaplessDataTask(dbPath);
-        mTimingTask.execute(mAudioRequest.getCurrentSura());
+        loadGaplessData();
       }
 
       // If we're stopped, just go ahead to the next file and start playing
@@ -1080,13 +1120,7 @@ public class AudioService extends Service implements OnCompletionListener,
     // if gapless and sura changed, get the new data
     if (mAudioRequest.isGapless()) {
       if (mGaplessSura != mAudioRequest.getCurrentSura()) {
-        if (mTimingTask != null) {
-          mTimingTask.cancel(true);
-        }
-
-        String dbPath = mAudioRequest.getGaplessDatabaseFilePath();
-        mTimingTask = new ReadGaplessDataTask(dbPath);
-        mTimingTask.execute(mAudioRequest.getCurrentSura());
+        loadGaplessData();
       }
     }
 
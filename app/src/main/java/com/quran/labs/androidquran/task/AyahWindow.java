@@ -0,0 +1,105 @@
+package com.quran.labs.androidquran.task;
+
+/**
+ * The range of ayah ids loaded by a {@link TranslationStream}. It grows by
+ * a batch at either end, and when it gets too big, the ayahs at the other
+ * end are dropped.
+ */
+class AyahWindow {
+  private final int mBatchSize;
+  private final int mMaxAyahs;
+  private final int mLastAyahId;
+
+  // the loaded ayah ids, or 0 when nothing is loaded
+  private int mFirstAyahId;
+  private int mLastLoadedAyahId;
+
+  /**
+   * @param batchSize the number of ayahs to load at a time
+   * @param maxAyahs the number of ayahs to keep loaded
+   * @param lastAyahId the last ayah id there is
+   */
+  AyahWindow(int batchSize, int maxAyahs, int lastAyahId) {
+    mBatchSize = batchSize;
+    mMaxAyahs = maxAyahs;
+    mLastAyahId = lastAyahId;
+  }
+
+  void clear() {
+    mFirstAyahId = 0;
+    mLastLoadedAyahId = 0;
+  }
+
+  int getFirstAyahId() {
+    return mFirstAyahId;
+  }
+
+  int getLastAyahId() {
+    return mLastLoadedAyahId;
+  }
+
+  /**
+   * @return the ayah id to start the first batch at, given the one asked for
+   */
+  int getStartAyahId(int ayahId) {
+    return Math.max(1, Math.min(ayahId, mLastAyahId));
+  }
+
+  /**
+   * @return whether there are ayahs after the loaded ones
+   */
+  boolean hasNext() {
+    return mLastLoadedAyahId > 0 && mLastLoadedAyahId < mLastAyahId;
+  }
+
+  /**
+   * @return whether there are ayahs before the loaded ones
+   */
+  boolean hasPrevious() {
+    return mFirstAyahId > 1;
+  }
+
+  /**
+   * @return the last ayah id of the batch starting at the given one, when
+   * loading after the loaded ayahs
+   */
+  int getNextBatchEnd(int firstAyahId) {
+    return Math.min(firstAyahId + mBatchSize - 1, mLastAyahId);
+  }
+
+  /**
+   * @return the first ayah id of the batch before the loaded ayahs
+   */
+  int getPreviousBatchStart() {
+    return Math.max(1, mFirstAyahId - mBatchSize);
+  }
+
+  /**
+   * Add a batch after the loaded ayahs (or the first batch).
+   * @return whether ayahs at the start had to be dropped
+   */
+  boolean append(int firstAyahId, int lastAyahId) {
+    if (mFirstAyahId == 0) {
+      mFirstAyahId = firstAyahId;
+    }
+    mLastLoadedAyahId = lastAyahId;
+    if (mLastLoadedAyahId - mFirstAyahId + 1 > mMaxAyahs) {
+      mFirstAyahId = mLastLoadedAyahId - mMaxAyahs + 1;
+      return true;
+    }
+    return false;
+  }
+
+  /**
+   * Add a batch before the loaded ayahs.
+   * @return whether ayahs at the end had to be dropped
+   */
+  boolean prepend(int firstAyahId) {
+    mFirstAyahId = firstAyahId;
+    if (mLastLoadedAyahId - mFirstAyahId + 1 > mMaxAyahs) {
+      mLastLoadedAyahId = mFirstAyahId + mMaxAyahs - 1;
+      return true;
+    }
+    return false;
+  }
+}
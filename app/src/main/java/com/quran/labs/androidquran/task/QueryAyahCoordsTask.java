@@ -1,24 +1,23 @@
 package com.quran.labs.androidquran.task;
 
-import com.quran.labs.androidquran.common.AyahBounds;
 import com.quran.labs.androidquran.data.AyahInfoDatabaseHandler;
-import com.quran.labs.androidquran.database.DatabaseUtils;
+import com.quran.labs.androidquran.data.PageCoordinates;
 import com.quran.labs.androidquran.ui.PagerActivity;
 import com.quran.labs.androidquran.ui.helpers.AyahSelectedListener;
 import com.quran.labs.androidquran.ui.helpers.HighlightType;
 
 import android.content.Context;
-import android.database.Cursor;
 import android.os.AsyncTask;
 import android.view.MotionEvent;
 
-import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 
+/**
+ * Loads the page bounds and ayah bounds of one or more pages, all in one
+ * go. The result is null if the coordinates couldn't be loaded.
+ */
 public class QueryAyahCoordsTask extends
-        AsyncTask<Integer, Void, List<Map<String, List<AyahBounds>>>> {
+        AsyncTask<Integer, Void, List<PageCoordinates>> {
    protected int mSura;
    protected int mAyah;
    protected int mPage;
@@ -59,60 +58,13 @@ public class QueryAyahCoordsTask extends
    }
 
    @Override
-   protected List<Map<String, List<AyahBounds>>> doInBackground(
-           Integer... params){
+   protected List<PageCoordinates> doInBackground(Integer... params){
       if (mAyahInfoDatabaseHandler == null || params == null){ return null; }
 
-      List<Map<String, List<AyahBounds>>> result =
-              new ArrayList<>();
-
-      for (Integer param : params) {
-         Cursor cursor = null;
-         try {
-            cursor = mAyahInfoDatabaseHandler
-                .getVersesBoundsForPage(param);
-
-            if (cursor == null || !cursor.moveToFirst()) {
-               return null;
-            }
-
-            Map<String, List<AyahBounds>> map = new HashMap<>();
-            do {
-               int sura = cursor.getInt(2);
-               int ayah = cursor.getInt(3);
-               String key = sura + ":" + ayah;
-               List<AyahBounds> bounds = map.get(key);
-               if (bounds == null) {
-                  bounds = new ArrayList<>();
-               }
-
-               AyahBounds last = null;
-               if (bounds.size() > 0) {
-                  last = bounds.get(bounds.size() - 1);
-               }
-
-               AyahBounds bound = new AyahBounds(cursor.getInt(1),
-                   cursor.getInt(4), cursor.getInt(5),
-                   cursor.getInt(6), cursor.getInt(7),
-                   cursor.getInt(8));
-               if (last != null && last.getLine() == bound.getLine()) {
-                  last.engulf(bound);
-               } else {
-                  bounds.add(bound);
-               }
-               map.put(key, bounds);
-            }
-            while (cursor.moveToNext());
-
-            result.add(map);
-         } catch (Exception e) {
-            // happens when the glyphs table doesn't exist somehow
-            return null;
-         } finally {
-            DatabaseUtils.closeCursor(cursor);
-         }
+      final int[] pages = new int[params.length];
+      for (int i = 0; i < params.length; i++) {
+         pages[i] = params[i];
       }
-
-      return result;
+      return mAyahInfoDatabaseHandler.getPageCoordinates(pages);
    }
 }
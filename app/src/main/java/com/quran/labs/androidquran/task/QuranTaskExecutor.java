@@ -0,0 +1,216 @@
+package com.quran.labs.androidquran.task;
+
+import com.quran.labs.androidquran.util.LatencyHistogram;
+
+import android.os.Process;
+import android.support.annotation.NonNull;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A small, bounded pool for one kind of background work. Each kind of work
+ * gets its own pool, so that (for example) a slow translation query never
+ * holds up loading the coordinates of the page on screen, which is what
+ * happens when everything shares AsyncTask's serial executor.
+ *
+ * The time each task spends waiting in the queue is recorded by task name,
+ * and shows up in the debug info.
+ *
+ * The queue of each pool is bounded. When it is full, tasks that were
+ * cancelled while waiting are dropped to make room, and if there still
+ * isn't any, a RejectedExecutionException is thrown for the caller to
+ * handle ({@link TaskGroup} cancels the task).
+ */
+public class QuranTaskExecutor extends ThreadPoolExecutor {
+  // ayah coordinates and page bounds of the pages being shown
+  public static final QuranTaskExecutor PAGE_DATA =
+      new QuranTaskExecutor("page data", 2);
+  // translation and tafseer text
+  public static final QuranTaskExecutor TRANSLATIONS =
+      new QuranTaskExecutor("translations", 2);
+  // the queries of each database a translation page is read from. these
+  // never wait on other tasks, so translation tasks can wait on them.
+  public static final QuranTaskExecutor TRANSLATION_QUERIES =
+      new QuranTaskExecutor("translation queries", 3);
+  // laying out the text of translation pages
+  public static final QuranTaskExecutor TEXT_LAYOUT =
+      new QuranTaskExecutor("text layout", 1);
+  // anything else that isn't waiting to be shown (checking pages, audio
+  // timings, etc)
+  public static final QuranTaskExecutor BACKGROUND =
+      new QuranTaskExecutor("background", 1);
+
+  private static final QuranTaskExecutor[] EXECUTORS =
+      { PAGE_DATA, TRANSLATIONS, TRANSLATION_QUERIES, TEXT_LAYOUT, BACKGROUND };
+  private static final int KEEP_ALIVE_SECONDS = 30;
+  // far more than a few pages' worth of tasks
+  private static final int QUEUE_SIZE = 64;
+
+  private final String mName;
+  // queue wait histograms, by task name
+  private final Map<String, LatencyHistogram> mQueueWaits = new TreeMap<>();
+  private final Map<String, Executor> mTaskExecutors = new TreeMap<>();
+
+  private QuranTaskExecutor(String name, int threadCount) {
+    super(threadCount, threadCount, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+        new LinkedBlockingQueue<Runnable>(QUEUE_SIZE), new QuranThreadFactory(name),
+        new PurgeCancelledPolicy());
+    mName = name;
+    allowCoreThreadTimeOut(true);
+  }
+
+  /**
+   * Get an executor that runs tasks on this pool, recording how long they
+   * wait in the queue under the given name.
+   * @param name the name of the task
+   * @return the executor, to pass to AsyncTask.executeOnExecutor
+   */
+  public Executor forTask(final String name) {
+    synchronized (mTaskExecutors) {
+      Executor executor = mTaskExecutors.get(name);
+      if (executor == null) {
+        executor = new Executor() {
+          @Override
+          public void execute(@NonNull Runnable command) {
+            QuranTaskExecutor.this.execute(
+                new TimedRunnable(command, getQueueWaitHistogram(name)));
+          }
+        };
+        mTaskExecutors.put(name, executor);
+      }
+      return executor;
+    }
+  }
+
+  /**
+   * Run a task on this pool, recording how long it waits in the queue
+   * under the given name.
+   */
+  public void execute(String name, Runnable command) {
+    forTask(name).execute(command);
+  }
+
+  /**
+   * Remove the tasks that were cancelled while waiting in the queue.
+   * @return whether any were removed
+   */
+  private boolean purgeCancelled() {
+    boolean removed = false;
+    final Iterator<Runnable> iterator = getQueue().iterator();
+    while (iterator.hasNext()) {
+      final Runnable runnable = iterator.next();
+      if (runnable instanceof TimedRunnable &&
+          ((TimedRunnable) runnable).isCancelled()) {
+        iterator.remove();
+        removed = true;
+      }
+    }
+    return removed;
+  }
+
+  private LatencyHistogram getQueueWaitHistogram(String name) {
+    synchronized (mQueueWaits) {
+      LatencyHistogram histogram = mQueueWaits.get(name);
+      if (histogram == null) {
+        histogram = new LatencyHistogram();
+        mQueueWaits.put(name, histogram);
+      }
+      return histogram;
+    }
+  }
+
+  @Override
+  public String toString() {
+    final StringBuilder builder = new StringBuilder(mName)
+        .append(" (").append(getMaximumPoolSize()).append(" threads, ")
+        .append(getQueue().size()).append(" queued)");
+    synchronized (mQueueWaits) {
+      for (Map.Entry<String, LatencyHistogram> entry : mQueueWaits.entrySet()) {
+        builder.append("\n  ").append(entry.getKey())
+            .append(" queue wait: ").append(entry.getValue());
+      }
+    }
+    return builder.toString();
+  }
+
+  /**
+   * @return the queue wait statistics of all the task pools
+   */
+  public static String getStats() {
+    final StringBuilder builder = new StringBuilder("task pools:");
+    for (QuranTaskExecutor executor : EXECUTORS) {
+      builder.append("\n").append(executor);
+    }
+    return builder.toString();
+  }
+
+  private static class TimedRunnable implements Runnable {
+    private final Runnable mRunnable;
+    private final LatencyHistogram mQueueWait;
+    private final long mQueuedTime;
+
+    TimedRunnable(Runnable runnable, LatencyHistogram queueWait) {
+      mRunnable = runnable;
+      mQueueWait = queueWait;
+      mQueuedTime = System.nanoTime();
+    }
+
+    boolean isCancelled() {
+      // AsyncTasks and submitted callables are queued as futures
+      return mRunnable instanceof Future && ((Future<?>) mRunnable).isCancelled();
+    }
+
+    @Override
+    public void run() {
+      mQueueWait.record(
+          TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - mQueuedTime));
+      mRunnable.run();
+    }
+  }
+
+  private static class PurgeCancelledPolicy implements RejectedExecutionHandler {
+
+    @Override
+    public void rejectedExecution(Runnable runnable, ThreadPoolExecutor executor) {
+      final QuranTaskExecutor quranExecutor = (QuranTaskExecutor) executor;
+      // every thread is busy when the queue is full, so queueing the task
+      // directly doesn't leave it waiting without a thread to run it
+      if (!executor.isShutdown() && quranExecutor.purgeCancelled() &&
+          executor.getQueue().offer(runnable)) {
+        return;
+      }
+      throw new RejectedExecutionException(quranExecutor.mName + " queue is full");
+    }
+  }
+
+  private static class QuranThreadFactory implements ThreadFactory {
+    private final String mName;
+    private final AtomicInteger mCount = new AtomicInteger();
+
+    QuranThreadFactory(String name) {
+      mName = name;
+    }
+
+    @Override
+    public Thread newThread(@NonNull final Runnable runnable) {
+      return new Thread(new Runnable() {
+        @Override
+        public void run() {
+          Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+          runnable.run();
+        }
+      }, mName + " #" + mCount.incrementAndGet());
+    }
+  }
+}
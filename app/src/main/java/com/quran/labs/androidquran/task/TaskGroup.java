@@ -0,0 +1,64 @@
+package com.quran.labs.androidquran.task;
+
+import android.os.AsyncTask;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+
+import timber.log.Timber;
+
+/**
+ * The tasks started by a fragment (or anything else with a lifecycle), so
+ * that they can all be cancelled at once when it goes away - the same idea
+ * as a CompositeSubscription, but for AsyncTasks. Tasks are run on one of
+ * the {@link QuranTaskExecutor} pools.
+ */
+public class TaskGroup {
+  private final List<AsyncTask<?, ?, ?>> mTasks = new ArrayList<>();
+
+  /**
+   * Run a task on the given pool, as part of this group. If the pool's
+   * queue is full, the task is cancelled instead.
+   * @param task the task
+   * @param executor the pool to run it on
+   * @param params the parameters to pass to the task
+   * @return the task
+   */
+  @SuppressWarnings("unchecked")
+  public <Params, Result> AsyncTask<Params, ?, Result> execute(
+      AsyncTask<Params, ?, Result> task, QuranTaskExecutor executor,
+      Params... params) {
+    removeFinishedTasks();
+    mTasks.add(task);
+    try {
+      task.executeOnExecutor(
+          executor.forTask(task.getClass().getSimpleName()), params);
+    } catch (RejectedExecutionException ree) {
+      Timber.e(ree, "unable to run %s", task.getClass().getSimpleName());
+      // delivers onCancelled, like any other task that doesn't get to run
+      task.cancel(true);
+    }
+    return task;
+  }
+
+  /**
+   * Cancel all the tasks in this group that haven't finished yet.
+   */
+  public void cancelAll() {
+    for (int i = 0, size = mTasks.size(); i < size; i++) {
+      mTasks.get(i).cancel(true);
+    }
+    mTasks.clear();
+  }
+
+  private void removeFinishedTasks() {
+    final Iterator<AsyncTask<?, ?, ?>> iterator = mTasks.iterator();
+    while (iterator.hasNext()) {
+      if (iterator.next().getStatus() == AsyncTask.Status.FINISHED) {
+        iterator.remove();
+      }
+    }
+  }
+}
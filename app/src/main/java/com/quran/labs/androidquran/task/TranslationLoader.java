@@ -0,0 +1,231 @@
+package com.quran.labs.androidquran.task;
+
+import com.quran.labs.androidquran.common.QuranAyah;
+import com.quran.labs.androidquran.data.QuranDataProvider;
+import com.quran.labs.androidquran.data.QuranInfo;
+import com.quran.labs.androidquran.database.DatabaseHandler;
+import com.quran.labs.androidquran.database.DatabaseUtils;
+import com.quran.labs.androidquran.ui.helpers.TranslationTextBuilder;
+
+import android.content.Context;
+import android.database.Cursor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+
+import timber.log.Timber;
+
+/**
+ * Reads the verses in a range of ayahs from one or more translation
+ * databases, along with their arabic text. Every database is queried at
+ * the same time, so loading takes as long as the slowest database instead
+ * of all of them together, and the verses of each database are put in
+ * place by ayah id as soon as its query is done. The text shown for each
+ * verse is built here too, so that the translation view doesn't have to.
+ */
+class TranslationLoader {
+  // column of the arabic text, as opposed to one of the translations
+  private static final int ARABIC_COLUMN = -1;
+
+  private TranslationLoader() {
+  }
+
+  /**
+   * Load verses. A verse is returned for every ayah that is in the first
+   * translation; the other translations are attached to those verses with
+   * {@link QuranAyah#setExtraTranslations(String[], String[])}.
+   * @param context the context
+   * @param databases the translation databases, the main one first
+   * @param extraNames the names of the databases after the first one
+   * @param bounds the starting sura and ayah, and ending sura and ayah
+   * @param wantArabic whether to load the arabic text of each verse too
+   * @return the verses, which are empty if the main translation couldn't
+   * be read (or loading was interrupted)
+   */
+  static List<QuranAyah> loadVerses(Context context, List<String> databases,
+      String[] extraNames, Integer[] bounds, boolean wantArabic) {
+    final int firstAyahId = QuranInfo.getAyahId(bounds[0], bounds[1]);
+    final int count = QuranInfo.getAyahId(bounds[2], bounds[3]) - firstAyahId + 1;
+    final List<QuranAyah> result = new ArrayList<>();
+    if (count <= 0 || databases.isEmpty()) {
+      return result;
+    }
+
+    final CompletionService<Column> service = new ExecutorCompletionService<>(
+        QuranTaskExecutor.TRANSLATION_QUERIES.forTask("TranslationQuery"));
+    final List<Future<Column>> futures = new ArrayList<>();
+    try {
+      for (int i = 0; i < databases.size(); i++) {
+        futures.add(service.submit(new QueryCallable(context, databases.get(i),
+            DatabaseHandler.VERSE_TABLE, i, bounds, firstAyahId, count)));
+      }
+      if (wantArabic) {
+        futures.add(service.submit(new QueryCallable(context,
+            QuranDataProvider.QURAN_ARABIC_DATABASE,
+            DatabaseHandler.ARABIC_TEXT_TABLE, ARABIC_COLUMN,
+            bounds, firstAyahId, count)));
+      }
+    } catch (RejectedExecutionException ree) {
+      Timber.e(ree, "unable to query translations");
+      for (int i = 0; i < futures.size(); i++) {
+        futures.get(i).cancel(true);
+      }
+      return result;
+    }
+
+    final QuranAyah[] verses = createVerses(bounds[0], bounds[1], count);
+    final int extraCount = databases.size() - 1;
+    final String[][] extraTranslations = new String[count][];
+    boolean haveMainTranslation = false;
+    try {
+      for (int i = 0; i < futures.size(); i++) {
+        final Column column;
+        try {
+          column = service.take().get();
+        } catch (ExecutionException e) {
+          Timber.e(e, "unable to load translation");
+          continue;
+        }
+
+        if (column.mTexts == null) {
+          continue;
+        }
+
+        for (int v = 0; v < count; v++) {
+          final String text = column.mTexts[v];
+          if (column.mIndex == ARABIC_COLUMN) {
+            verses[v].setText(text);
+          } else if (column.mIndex == 0) {
+            verses[v].setTranslation(text);
+            haveMainTranslation = true;
+          } else if (text != null) {
+            if (extraTranslations[v] == null) {
+              extraTranslations[v] = new String[extraCount];
+            }
+            extraTranslations[v][column.mIndex - 1] = text;
+          }
+        }
+      }
+    } catch (InterruptedException e) {
+      // the task was cancelled, so the other queries aren't needed anymore
+      for (int i = 0; i < futures.size(); i++) {
+        futures.get(i).cancel(true);
+      }
+      Thread.currentThread().interrupt();
+      return result;
+    }
+
+    if (!haveMainTranslation) {
+      return result;
+    }
+
+    final boolean isArabic = isArabicDatabase(databases.get(0));
+    for (int v = 0; v < count; v++) {
+      final QuranAyah verse = verses[v];
+      if (verse.getTranslation() != null) {
+        verse.setArabic(isArabic);
+        if (extraTranslations[v] != null) {
+          verse.setExtraTranslations(extraNames, extraTranslations[v]);
+        }
+        verse.setDisplayText(TranslationTextBuilder.buildAyahText(context, verse));
+        result.add(verse);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * @return whether the translation or tafseer is in arabic
+   */
+  private static boolean isArabicDatabase(String databaseName) {
+    return databaseName.contains(".ar.") ||
+        databaseName.equals("quran.muyassar.db");
+  }
+
+  /**
+   * @return a verse for each of the count ayahs starting at sura:ayah
+   */
+  private static QuranAyah[] createVerses(int sura, int ayah, int count) {
+    final QuranAyah[] verses = new QuranAyah[count];
+    for (int i = 0; i < count; i++) {
+      verses[i] = new QuranAyah(sura, ayah);
+      ayah++;
+      if (ayah > QuranInfo.getNumAyahs(sura)) {
+        sura++;
+        ayah = 1;
+      }
+    }
+    return verses;
+  }
+
+  /**
+   * The text of every ayah in the range from one database, by the offset
+   * of its ayah id from the first ayah id in the range.
+   */
+  private static class Column {
+    final int mIndex;
+    final String[] mTexts;
+
+    Column(int index, String[] texts) {
+      mIndex = index;
+      mTexts = texts;
+    }
+  }
+
+  private static class QueryCallable implements Callable<Column> {
+    private final Context mContext;
+    private final String mDatabaseName;
+    private final String mTable;
+    private final int mIndex;
+    private final Integer[] mBounds;
+    private final int mFirstAyahId;
+    private final int mCount;
+
+    QueryCallable(Context context, String databaseName, String table,
+        int index, Integer[] bounds, int firstAyahId, int count) {
+      mContext = context;
+      mDatabaseName = databaseName;
+      mTable = table;
+      mIndex = index;
+      mBounds = bounds;
+      mFirstAyahId = firstAyahId;
+      mCount = count;
+    }
+
+    @Override
+    public Column call() {
+      Cursor cursor = null;
+      try {
+        final DatabaseHandler handler =
+            DatabaseHandler.getDatabaseHandler(mContext, mDatabaseName);
+        cursor = handler.getVerses(mBounds[0], mBounds[1],
+            mBounds[2], mBounds[3], mTable);
+        if (cursor == null) {
+          return new Column(mIndex, null);
+        }
+
+        final String[] texts = new String[mCount];
+        while (cursor.moveToNext()) {
+          final int offset = QuranInfo.getAyahId(
+              cursor.getInt(1), cursor.getInt(2)) - mFirstAyahId;
+          if (offset >= 0 && offset < mCount) {
+            texts[offset] = cursor.getString(3);
+          }
+        }
+        return new Column(mIndex, texts);
+      } catch (Exception e) {
+        // ex the arabic database isn't downloaded
+        Timber.d(e, "unable to open: %s", mDatabaseName);
+        return new Column(mIndex, null);
+      } finally {
+        DatabaseUtils.closeCursor(cursor);
+      }
+    }
+  }
+}
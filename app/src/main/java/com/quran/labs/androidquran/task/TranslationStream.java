@@ -0,0 +1,201 @@
+package com.quran.labs.androidquran.task;
+
+import com.quran.labs.androidquran.common.QuranAyah;
+import com.quran.labs.androidquran.data.Constants;
+import com.quran.labs.androidquran.data.QuranInfo;
+import com.quran.labs.androidquran.data.SuraAyah;
+import com.quran.labs.androidquran.util.QuranSettings;
+
+import android.content.Context;
+import android.os.AsyncTask;
+import android.os.SystemClock;
+
+import java.util.List;
+
+/**
+ * Streams the verses of a translation in batches, for reading continuously
+ * instead of a page at a time. Each batch is the range of ayah ids right
+ * after the last loaded ayah or right before the first one, so loading a
+ * batch seeks straight to it rather than skipping over the ayahs before it
+ * (translation databases whose rowids are ayah ids are read by rowid
+ * range). Only {@link #MAX_LOADED_AYAHS} ayahs stay loaded; the ones
+ * farthest from where the reader is are dropped.
+ *
+ * When a batch fails to load, loading waits for a while before trying
+ * again (longer after each failure in a row), so that scrolling doesn't
+ * keep repeating a query that fails.
+ */
+public class TranslationStream {
+  public static final int BATCH_SIZE = 40;
+  public static final int MAX_LOADED_AYAHS = 200;
+  private static final long RETRY_DELAY = 1000;
+  private static final long MAX_RETRY_DELAY = 30 * 1000;
+
+  private static final int LAST_AYAH_ID = QuranInfo.getAyahId(
+      Constants.SURAS_COUNT, QuranInfo.getNumAyahs(Constants.SURAS_COUNT));
+
+  private final Context mContext;
+  private final String mDatabaseName;
+  private final Listener mListener;
+  private final TaskGroup mTaskGroup = new TaskGroup();
+  private final AyahWindow mWindow =
+      new AyahWindow(BATCH_SIZE, MAX_LOADED_AYAHS, LAST_AYAH_ID);
+  // the batch being loaded, or null
+  private BatchTask mLoadingTask;
+  // failed batches in a row, and when to try loading again after them
+  private int mFailures;
+  private long mRetryTime;
+
+  public interface Listener {
+    /**
+     * Called with the first batch, and with each batch after the loaded
+     * ayahs.
+     */
+    void onVersesAppended(List<QuranAyah> verses);
+
+    /**
+     * Called with each batch before the loaded ayahs.
+     */
+    void onVersesPrepended(List<QuranAyah> verses);
+
+    /**
+     * Called when ayahs are dropped, with the range of ayah ids that are
+     * still loaded.
+     */
+    void onVersesTrimmed(int firstAyahId, int lastAyahId);
+
+    /**
+     * Called when a batch fails to load, but not again for the failures
+     * right after it.
+     */
+    void onLoadFailed();
+  }
+
+  public TranslationStream(Context context,
+      String databaseName, Listener listener) {
+    mContext = context.getApplicationContext();
+    mDatabaseName = databaseName;
+    mListener = listener;
+  }
+
+  /**
+   * Start streaming from the given ayah.
+   */
+  public void start(int ayahId) {
+    cancel();
+    mWindow.clear();
+    mFailures = 0;
+    mRetryTime = 0;
+    final int firstAyahId = mWindow.getStartAyahId(ayahId);
+    load(firstAyahId, mWindow.getNextBatchEnd(firstAyahId), false);
+  }
+
+  /**
+   * Load the batch after the loaded ayahs, unless another batch is loading
+   * or it is too soon after a failure.
+   */
+  public void loadNext() {
+    if (canLoad() && mWindow.hasNext()) {
+      final int firstAyahId = mWindow.getLastAyahId() + 1;
+      load(firstAyahId, mWindow.getNextBatchEnd(firstAyahId), false);
+    }
+  }
+
+  /**
+   * Load the batch before the loaded ayahs, unless another batch is loading
+   * or it is too soon after a failure.
+   */
+  public void loadPrevious() {
+    if (canLoad() && mWindow.hasPrevious()) {
+      load(mWindow.getPreviousBatchStart(), mWindow.getFirstAyahId() - 1, true);
+    }
+  }
+
+  public void cancel() {
+    mLoadingTask = null;
+    mTaskGroup.cancelAll();
+  }
+
+  private boolean canLoad() {
+    return mLoadingTask == null && SystemClock.uptimeMillis() >= mRetryTime;
+  }
+
+  private void load(int firstAyahId, int lastAyahId, boolean isBefore) {
+    mLoadingTask = new BatchTask(firstAyahId, lastAyahId, isBefore);
+    mTaskGroup.execute(mLoadingTask, QuranTaskExecutor.TRANSLATIONS);
+  }
+
+  private void onBatchFailed() {
+    mFailures++;
+    final long delay = Math.min(RETRY_DELAY << Math.min(mFailures - 1, 16),
+        MAX_RETRY_DELAY);
+    mRetryTime = SystemClock.uptimeMillis() + delay;
+    if (mFailures == 1) {
+      mListener.onLoadFailed();
+    }
+  }
+
+  private void onBatchLoaded(int firstAyahId, int lastAyahId,
+      boolean isBefore, List<QuranAyah> verses) {
+    if (verses.isEmpty()) {
+      onBatchFailed();
+      return;
+    }
+    mFailures = 0;
+    mRetryTime = 0;
+
+    final boolean isTrimmed;
+    if (isBefore) {
+      isTrimmed = mWindow.prepend(firstAyahId);
+      mListener.onVersesPrepended(verses);
+    } else {
+      isTrimmed = mWindow.append(firstAyahId, lastAyahId);
+      mListener.onVersesAppended(verses);
+    }
+
+    if (isTrimmed) {
+      mListener.onVersesTrimmed(mWindow.getFirstAyahId(), mWindow.getLastAyahId());
+    }
+  }
+
+  private class BatchTask extends AsyncTask<Void, Void, List<QuranAyah>> {
+    private final int mBatchFirstAyahId;
+    private final int mBatchLastAyahId;
+    private final boolean mIsBefore;
+
+    BatchTask(int firstAyahId, int lastAyahId, boolean isBefore) {
+      mBatchFirstAyahId = firstAyahId;
+      mBatchLastAyahId = lastAyahId;
+      mIsBefore = isBefore;
+    }
+
+    @Override
+    protected List<QuranAyah> doInBackground(Void... params) {
+      final SuraAyah start = QuranInfo.getSuraAyahFromAyahId(mBatchFirstAyahId);
+      final SuraAyah end = QuranInfo.getSuraAyahFromAyahId(mBatchLastAyahId);
+      final Integer[] bounds = { start.sura, start.ayah, end.sura, end.ayah };
+      final List<String> databases =
+          TranslationTask.getDatabases(mContext, mDatabaseName);
+      final boolean wantArabic =
+          QuranSettings.getInstance(mContext).wantArabicInTranslationView();
+      return TranslationLoader.loadVerses(mContext, databases,
+          TranslationTask.getExtraNames(mContext, databases), bounds, wantArabic);
+    }
+
+    @Override
+    protected void onPostExecute(List<QuranAyah> verses) {
+      mLoadingTask = null;
+      onBatchLoaded(mBatchFirstAyahId, mBatchLastAyahId, mIsBefore, verses);
+    }
+
+    @Override
+    protected void onCancelled(List<QuranAyah> verses) {
+      // cancel() already cleared the loading task, so this one couldn't be
+      // run because the queue was full
+      if (mLoadingTask == this) {
+        mLoadingTask = null;
+        onBatchFailed();
+      }
+    }
+  }
+}
@@ -1,22 +1,25 @@
 package com.quran.labs.androidquran.task;
 
+import com.quran.labs.androidquran.common.LocalTranslation;
 import com.quran.labs.androidquran.common.QuranAyah;
-import com.quran.labs.androidquran.data.QuranDataProvider;
+import com.quran.labs.androidquran.data.Constants;
 import com.quran.labs.androidquran.data.QuranInfo;
-import com.quran.labs.androidquran.database.DatabaseHandler;
+import com.quran.labs.androidquran.data.TranslationCache;
+import com.quran.labs.androidquran.database.TranslationsDBAdapter;
 import com.quran.labs.androidquran.ui.PagerActivity;
 import com.quran.labs.androidquran.util.QuranSettings;
 import com.quran.labs.androidquran.widgets.TranslationView;
 
 import android.content.Context;
-import android.database.Cursor;
 import android.os.AsyncTask;
+import android.text.TextUtils;
 
 import java.lang.ref.WeakReference;
 import java.util.ArrayList;
 import java.util.List;
-
-import timber.log.Timber;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
  * Created with IntelliJ IDEA.
@@ -25,12 +28,22 @@ import timber.log.Timber;
  * Time: 11:03 PM
  */
 public class TranslationTask extends AsyncTask<Void, Void, List<QuranAyah>> {
+  // the prefetch of the pages around the last page loaded, and that page.
+  // only used on the main thread.
+  private static Future<?> sPrefetch;
+  private static int sPrefetchPage;
 
   private Context mContext;
 
+  // the page being loaded, or 0 when loading arbitrary ayah bounds
+  private int mPageNumber;
+  private boolean mWantArabic;
   private Integer[] mAyahBounds;
   private int mHighlightedAyah;
   private String mDatabaseName = null;
+  // the databases being read, and the names of all but the first
+  private List<String> mDatabases;
+  private String[] mExtraNames;
   private boolean mIsMissingData;
   private WeakReference<TranslationView> mTranslationView;
 
@@ -48,6 +61,7 @@ public class TranslationTask extends AsyncTask<Void, Void, List<QuranAyah>> {
       TranslationView view) {
     mContext = context;
     mDatabaseName = databaseName;
+    mPageNumber = pageNumber;
     mAyahBounds = QuranInfo.getPageBounds(pageNumber);
     mHighlightedAyah = highlightedAyah;
     mTranslationView = new WeakReference<>(view);
@@ -61,6 +75,15 @@ public class TranslationTask extends AsyncTask<Void, Void, List<QuranAyah>> {
     return QuranSettings.getInstance(mContext).wantArabicInTranslationView();
   }
 
+  @Override
+  protected void onPreExecute() {
+    // a different page is being loaded, so stop prefetching around the old
+    // one instead of having it compete with this load
+    if (mPageNumber > 0 && mPageNumber != sPrefetchPage) {
+      cancelPrefetch();
+    }
+  }
+
   @Override
   protected List<QuranAyah> doInBackground(Void... params) {
     Integer[] bounds = mAyahBounds;
@@ -68,70 +91,96 @@ public class TranslationTask extends AsyncTask<Void, Void, List<QuranAyah>> {
       return null;
     }
 
-    String databaseName = mDatabaseName;
+    mWantArabic = loadArabicAyahText();
+    mDatabases = getDatabases();
+    final String cacheKey = TextUtils.join(",", mDatabases);
+    final TranslationCache cache = mPageNumber > 0 ?
+        TranslationCache.getInstance(mContext) : null;
+    if (cache != null) {
+      final List<QuranAyah> cached =
+          cache.get(cacheKey, mPageNumber, mWantArabic);
+      if (cached != null) {
+        return cached;
+      }
+    }
 
-    // is this an arabic translation/tafseer or not
-    boolean isArabic = mDatabaseName.contains(".ar.") ||
-        mDatabaseName.equals("quran.muyassar.db");
-    List<QuranAyah> verses = new ArrayList<>();
+    mExtraNames = getExtraNames(mContext, mDatabases);
+    final List<QuranAyah> verses = TranslationLoader.loadVerses(mContext,
+        mDatabases, mExtraNames, bounds, mWantArabic);
+    mIsMissingData = isMissingArabic(verses, mWantArabic);
+    if (cache != null && !verses.isEmpty() && !mIsMissingData) {
+      cache.put(cacheKey, mPageNumber, mWantArabic, verses);
+    }
+    return verses;
+  }
 
-    try {
-      DatabaseHandler translationHandler =
-          DatabaseHandler.getDatabaseHandler(mContext, databaseName);
-      Cursor translationCursor =
-          translationHandler.getVerses(bounds[0], bounds[1],
-              bounds[2], bounds[3],
-              DatabaseHandler.VERSE_TABLE);
-
-      DatabaseHandler ayahHandler;
-      Cursor ayahCursor = null;
-
-      if (loadArabicAyahText()) {
-        try {
-          ayahHandler = DatabaseHandler.getDatabaseHandler(mContext,
-              QuranDataProvider.QURAN_ARABIC_DATABASE);
-          ayahCursor = ayahHandler.getVerses(bounds[0], bounds[1],
-              bounds[2], bounds[3],
-              DatabaseHandler.ARABIC_TEXT_TABLE);
-        } catch (Exception e) {
-          // ignore any exceptions due to no arabic database
-          mIsMissingData = true;
-        }
+  /**
+   * @return the databases to read, the main translation first, followed by
+   * the other translations to show alongside it when showing a page
+   */
+  private List<String> getDatabases() {
+    if (mPageNumber > 0) {
+      return getDatabases(mContext, mDatabaseName);
+    }
+
+    final List<String> databases = new ArrayList<>();
+    databases.add(mDatabaseName);
+    return databases;
+  }
+
+  /**
+   * @return the main translation database, followed by the other
+   * translations chosen to be shown alongside it
+   */
+  static List<String> getDatabases(Context context, String databaseName) {
+    final List<String> databases = new ArrayList<>();
+    databases.add(databaseName);
+    final List<String> extras =
+        QuranSettings.getInstance(context).getExtraTranslations();
+    for (int i = 0, size = extras.size(); i < size; i++) {
+      final String extra = extras.get(i);
+      if (!extra.equals(databaseName)) {
+        databases.add(extra);
       }
+    }
+    return databases;
+  }
 
-      if (translationCursor != null) {
-        boolean validAyahCursor = false;
-        if (ayahCursor != null && ayahCursor.moveToFirst()) {
-          validAyahCursor = true;
-        }
+  /**
+   * @return the names of the translations after the main one
+   */
+  static String[] getExtraNames(Context context,
+      List<String> databases) {
+    final String[] names = new String[databases.size() - 1];
+    if (names.length == 0) {
+      return names;
+    }
 
-        if (translationCursor.moveToFirst()) {
-          do {
-            int sura = translationCursor.getInt(1);
-            int ayah = translationCursor.getInt(2);
-            String translation = translationCursor.getString(3);
-            QuranAyah verse = new QuranAyah(sura, ayah);
-            verse.setTranslation(translation);
-            if (validAyahCursor) {
-              String text = ayahCursor.getString(3);
-              verse.setText(text);
-            }
-            verse.setArabic(isArabic);
-            verses.add(verse);
+    final List<LocalTranslation> translations =
+        new TranslationsDBAdapter(context).getTranslations();
+    for (int i = 0; i < names.length; i++) {
+      final String database = databases.get(i + 1);
+      names[i] = database;
+      if (translations != null) {
+        for (int j = 0, size = translations.size(); j < size; j++) {
+          final LocalTranslation item = translations.get(j);
+          if (database.equals(item.filename)) {
+            names[i] = TextUtils.isEmpty(item.translator) ?
+                item.name : item.translator;
+            break;
           }
-          while (translationCursor.moveToNext() &&
-              (!validAyahCursor || ayahCursor.moveToNext()));
-        }
-        translationCursor.close();
-        if (ayahCursor != null) {
-          ayahCursor.close();
         }
       }
-    } catch (Exception e) {
-      Timber.d(e, "unable to open: %s", databaseName);
     }
+    return names;
+  }
 
-    return verses;
+  /**
+   * @return whether the arabic text was wanted, but couldn't be loaded
+   */
+  private static boolean isMissingArabic(List<QuranAyah> verses,
+      boolean wantArabic) {
+    return wantArabic && !verses.isEmpty() && verses.get(0).getText() == null;
   }
 
   @Override
@@ -155,10 +204,89 @@ public class TranslationTask extends AsyncTask<Void, Void, List<QuranAyah>> {
       if (mContext != null && mContext instanceof PagerActivity) {
         ((PagerActivity) mContext).setLoading(false);
       }
+
+      if (mContext != null && mPageNumber > 0 &&
+          !result.isEmpty() && !mIsMissingData) {
+        prefetch(new PrefetchRunnable(mContext.getApplicationContext(),
+            mDatabases, mPageNumber, mWantArabic), mPageNumber);
+      }
     }
 
     if (view != null) {
       view.setDataMissing(mIsMissingData);
     }
   }
+
+  /**
+   * Prefetch the pages around a page in the background, replacing any
+   * prefetch that is already queued or running. Prefetches don't go on the
+   * translations pool, so they never hold up loading a page being shown.
+   */
+  private static void prefetch(PrefetchRunnable runnable, int page) {
+    cancelPrefetch();
+    final FutureTask<Void> prefetch = new FutureTask<>(runnable, null);
+    try {
+      QuranTaskExecutor.BACKGROUND.execute("TranslationPrefetch", prefetch);
+      sPrefetch = prefetch;
+      sPrefetchPage = page;
+    } catch (RejectedExecutionException ree) {
+      // prefetching is only worth it when there's room for it
+    }
+  }
+
+  private static void cancelPrefetch() {
+    if (sPrefetch != null) {
+      // a cancelled prefetch is dropped from the queue when room is needed,
+      // and one that is running stops between pages or queries
+      sPrefetch.cancel(true);
+      sPrefetch = null;
+      sPrefetchPage = 0;
+    }
+  }
+
+  /**
+   * Loads the pages before and after a page into the translation cache,
+   * so that they're ready when the user flips to them.
+   */
+  private static class PrefetchRunnable implements Runnable {
+    private final Context mContext;
+    private final List<String> mDatabases;
+    private final int mPage;
+    private final boolean mWantArabic;
+
+    PrefetchRunnable(Context context, List<String> databases,
+        int page, boolean wantArabic) {
+      mContext = context;
+      mDatabases = databases;
+      mPage = page;
+      mWantArabic = wantArabic;
+    }
+
+    @Override
+    public void run() {
+      final TranslationCache cache = TranslationCache.getInstance(mContext);
+      final String cacheKey = TextUtils.join(",", mDatabases);
+      String[] extraNames = null;
+      for (int page = mPage - 1; page <= mPage + 1; page += 2) {
+        if (Thread.currentThread().isInterrupted()) {
+          // cancelled because a different page is being shown
+          return;
+        }
+
+        if (page < Constants.PAGES_FIRST || page > Constants.PAGES_LAST ||
+            cache.contains(cacheKey, page, mWantArabic)) {
+          continue;
+        }
+
+        if (extraNames == null) {
+          extraNames = getExtraNames(mContext, mDatabases);
+        }
+        final List<QuranAyah> verses = TranslationLoader.loadVerses(mContext,
+            mDatabases, extraNames, QuranInfo.getPageBounds(page), mWantArabic);
+        if (!verses.isEmpty() && !isMissingArabic(verses, mWantArabic)) {
+          cache.put(cacheKey, page, mWantArabic, verses);
+        }
+      }
+    }
+  }
 }
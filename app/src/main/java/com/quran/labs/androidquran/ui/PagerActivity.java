@@ -78,10 +78,12 @@ import com.quran.labs.androidquran.ui.helpers.AyahTracker;
 import com.quran.labs.androidquran.ui.helpers.HighlightType;
 import com.quran.labs.androidquran.ui.helpers.QuranDisplayHelper;
 import com.quran.labs.androidquran.ui.helpers.QuranPageAdapter;
+import com.quran.labs.androidquran.ui.helpers.QuranPagePrefetcher;
 import com.quran.labs.androidquran.ui.helpers.QuranPageWorker;
 import com.quran.labs.androidquran.ui.helpers.SlidingPagerAdapter;
 import com.quran.labs.androidquran.ui.util.TranslationsSpinnerAdapter;
 import com.quran.labs.androidquran.util.AudioUtils;
+import com.quran.labs.androidquran.util.IntSet;
 import com.quran.labs.androidquran.util.QuranAppUtils;
 import com.quran.labs.androidquran.util.QuranFileUtils;
 import com.quran.labs.androidquran.util.QuranScreenInfo;
@@ -96,6 +98,8 @@ import com.quran.labs.androidquran.widgets.SlidingUpPanelLayout;
 
 import java.io.File;
 import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 import java.util.concurrent.Callable;
@@ -144,6 +148,7 @@ public class PagerActivity extends QuranActionBarActivity implements
   private static final long DEFAULT_HIDE_AFTER_TIME = 2000;
 
   private QuranPageWorker mWorker = null;
+  private QuranPagePrefetcher mPrefetcher = null;
   private QuranSettings mSettings = null;
   private long mLastPopupTime = 0;
   private boolean mIsActionBarHidden = true;
@@ -246,6 +251,7 @@ public class PagerActivity extends QuranActionBarActivity implements
     String filename = QuranFileUtils.getAyaPositionFileName();
     try {
       mAyahInfoAdapter = AyahInfoDatabaseHandler.getDatabaseHandler(this, filename);
+      mAyahInfoAdapter.preload();
     } catch (Exception e) {
       // no ayah info database available
     }
@@ -257,6 +263,7 @@ public class PagerActivity extends QuranActionBarActivity implements
             qsi.getTabletWidthParam());
         mTabletAyahInfoAdapter =
             AyahInfoDatabaseHandler.getDatabaseHandler(this, filename);
+        mTabletAyahInfoAdapter.preload();
       } catch (Exception e) {
         // no ayah info database available for tablet
       }
@@ -359,6 +366,7 @@ public class PagerActivity extends QuranActionBarActivity implements
     }
 
     mWorker = QuranPageWorker.getInstance(this);
+    mPrefetcher = new QuranPagePrefetcher(mWorker, mDualPages ? 2 : 1);
     mLastPopupTime = System.currentTimeMillis();
     mPagerAdapter = new QuranPageAdapter(
         getSupportFragmentManager(), mDualPages, mShowingTranslation);
@@ -402,6 +410,7 @@ public class PagerActivity extends QuranActionBarActivity implements
         Timber.d("onPageSelected(): %d", position);
         final int page = QuranInfo.getPageFromPos(position, mDualPages);
         mSettings.setLastPage(page);
+        updateVisiblePages(page);
         if (mSettings.shouldDisplayMarkerPopup()) {
           mLastPopupTime = QuranDisplayHelper.displayMarkerPopup(
               PagerActivity.this, page, mLastPopupTime);
@@ -449,6 +458,8 @@ public class PagerActivity extends QuranActionBarActivity implements
     } else {
       mViewPager.setCurrentItem(page);
     }
+    updateVisiblePages(
+        QuranInfo.getPageFromPos(mViewPager.getCurrentItem(), mDualPages));
 
     mSettings.setLastPage(PAGES_LAST - page);
     setLoading(false);
@@ -870,6 +881,9 @@ public class PagerActivity extends QuranActionBarActivity implements
 
     mCompositeSubscription.unsubscribe();
     mHandler.removeCallbacksAndMessages(null);
+    if (mPrefetcher != null) {
+      mPrefetcher.cancelAll();
+    }
     dismissProgressDialog();
     super.onDestroy();
   }
@@ -942,6 +956,17 @@ public class PagerActivity extends QuranActionBarActivity implements
       }
     }
 
+    MenuItem otherTranslations = menu.findItem(R.id.show_translations);
+    if (otherTranslations != null) {
+      otherTranslations.setVisible(mShowingTranslation &&
+          mTranslations != null && mTranslations.size() > 1);
+    }
+
+    MenuItem continuousReading = menu.findItem(R.id.continuous_reading);
+    if (continuousReading != null) {
+      continuousReading.setVisible(mShowingTranslation && mTranslations != null);
+    }
+
     MenuItem nightMode = menu.findItem(R.id.night_mode);
     if (nightMode != null) {
       SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(this);
@@ -966,6 +991,12 @@ public class PagerActivity extends QuranActionBarActivity implements
     } else if (itemId == R.id.goto_translation) {
       switchToTranslation();
       return true;
+    } else if (itemId == R.id.show_translations) {
+      showExtraTranslationsDialog();
+      return true;
+    } else if (itemId == R.id.continuous_reading) {
+      startContinuousReading();
+      return true;
     } else if (itemId == R.id.night_mode) {
       SharedPreferences prefs = PreferenceManager
           .getDefaultSharedPreferences(this);
@@ -1009,6 +1040,96 @@ public class PagerActivity extends QuranActionBarActivity implements
     }
   }
 
+  /**
+   * Let the user pick the translations to show alongside the active one.
+   */
+  private void showExtraTranslationsDialog() {
+    if (mTranslations == null) {
+      return;
+    }
+
+    final String activeDatabase =
+        TranslationUtils.getDefaultTranslation(this, mTranslations);
+    final List<String> extras = mSettings.getExtraTranslations();
+    final List<String> databases = new ArrayList<>();
+    final List<String> titles = new ArrayList<>();
+    for (int i = 0, size = mTranslations.size(); i < size; i++) {
+      final LocalTranslation item = mTranslations.get(i);
+      if (!item.filename.equals(activeDatabase)) {
+        databases.add(item.filename);
+        titles.add(mTranslationItems[i]);
+      }
+    }
+
+    final boolean[] checked = new boolean[databases.size()];
+    for (int i = 0; i < checked.length; i++) {
+      checked[i] = extras.contains(databases.get(i));
+    }
+
+    AlertDialog.Builder builder = new AlertDialog.Builder(this);
+    builder.setTitle(R.string.menu_other_translations)
+        .setMultiChoiceItems(titles.toArray(new String[titles.size()]), checked,
+            new DialogInterface.OnMultiChoiceClickListener() {
+              @Override
+              public void onClick(DialogInterface dialog, int which,
+                  boolean isChecked) {
+                checked[which] = isChecked;
+              }
+            })
+        .setPositiveButton(R.string.dialog_ok,
+            new DialogInterface.OnClickListener() {
+              @Override
+              public void onClick(DialogInterface dialog, int which) {
+                final Set<String> selected = new HashSet<>();
+                for (int i = 0; i < checked.length; i++) {
+                  if (checked[i]) {
+                    selected.add(databases.get(i));
+                  }
+                }
+                mSettings.setExtraTranslations(selected);
+                refreshTranslationPages(activeDatabase);
+              }
+            })
+        .setNegativeButton(R.string.cancel, null)
+        .show();
+  }
+
+  /**
+   * Read the active translation continuously, starting from the current page.
+   */
+  private void startContinuousReading() {
+    if (mTranslations == null) {
+      return;
+    }
+
+    final Integer[] bounds = QuranInfo.getPageBounds(getCurrentPage());
+    final Intent intent = new Intent(this, TranslationReaderActivity.class);
+    intent.putExtra(TranslationReaderActivity.EXTRA_DATABASE,
+        TranslationUtils.getDefaultTranslation(this, mTranslations));
+    intent.putExtra(TranslationReaderActivity.EXTRA_AYAH_ID,
+        QuranInfo.getAyahId(bounds[0], bounds[1]));
+    startActivity(intent);
+  }
+
+  /**
+   * Reload the translation pages around the current one.
+   * @param database the active translation
+   */
+  private void refreshTranslationPages(String database) {
+    int pos = mViewPager.getCurrentItem() - 1;
+    for (int count = 0; count < 3; count++) {
+      if (pos + count < 0) {
+        continue;
+      }
+      Fragment f = mPagerAdapter.getFragmentIfExists(pos + count);
+      if (f instanceof TranslationFragment) {
+        ((TranslationFragment) f).refresh(database);
+      } else if (f instanceof TabletFragment) {
+        ((TabletFragment) f).refresh(database);
+      }
+    }
+  }
+
   @Override
   public boolean onSearchRequested() {
     return super.onSearchRequested();
@@ -1048,6 +1169,7 @@ public class PagerActivity extends QuranActionBarActivity implements
     } else {
       mPagerAdapter.setTranslationMode();
       mShowingTranslation = true;
+      mPrefetcher.cancelAll();
       invalidateOptionsMenu();
       updateActionBarSpinner();
 
@@ -1077,20 +1199,7 @@ public class PagerActivity extends QuranActionBarActivity implements
               mTranslations.size() > itemPosition) {
             LocalTranslation item = mTranslations.get(itemPosition);
             mSettings.setActiveTranslation(item.filename);
-
-            int pos = mViewPager.getCurrentItem() - 1;
-            for (int count = 0; count < 3; count++) {
-              if (pos + count < 0) {
-                continue;
-              }
-              Fragment f = mPagerAdapter
-                  .getFragmentIfExists(pos + count);
-              if (f instanceof TranslationFragment) {
-                ((TranslationFragment) f).refresh(item.filename);
-              } else if (f instanceof TabletFragment) {
-                ((TabletFragment) f).refresh(item.filename);
-              }
-            }
+            refreshTranslationPages(item.filename);
             return true;
           }
           return false;
@@ -1303,6 +1412,20 @@ public class PagerActivity extends QuranActionBarActivity implements
     return mWorker;
   }
 
+  private void updateVisiblePages(int page) {
+    final QuranScreenInfo qsi = QuranScreenInfo.getInstance();
+    if (mDualPages) {
+      mWorker.setVisiblePages(page - 1, page);
+    } else {
+      mWorker.setVisiblePages(page, page);
+    }
+
+    if (!mShowingTranslation && qsi != null) {
+      mPrefetcher.onPageSelected(mDualPages ?
+          qsi.getTabletWidthParam() : qsi.getWidthParam(), page);
+    }
+  }
+
   public void highlightAyah(int sura, int ayah, HighlightType type) {
     if (type == HighlightType.AUDIO) {
         mLastPlayingSura = sura;
@@ -1377,6 +1500,7 @@ public class PagerActivity extends QuranActionBarActivity implements
                 }
                 mTranslationItems = titles;
                 mTranslations = translationItems;
+                invalidateOptionsMenu();
 
                 if (mShowingTranslation) {
                   updateActionBarSpinner();
@@ -1990,7 +2114,7 @@ public class PagerActivity extends QuranActionBarActivity implements
     for (int i = minPage; i <= maxPage; i++) {
       AyahTracker fragment = mPagerAdapter.getFragmentIfExistsForPage(i);
       if (fragment != null) {
-        Set<String> ayahKeys = QuranInfo.getAyahKeysOnPage(i, start, end);
+        IntSet ayahKeys = QuranInfo.getAyahKeysOnPage(i, start, end);
         fragment.highlightAyat(i, ayahKeys, HighlightType.SELECTION);
       }
     }
@@ -5,6 +5,7 @@ import com.quran.labs.androidquran.R;
 import com.quran.labs.androidquran.dao.translation.TranslationHeader;
 import com.quran.labs.androidquran.dao.translation.TranslationItem;
 import com.quran.labs.androidquran.dao.translation.TranslationRowData;
+import com.quran.labs.androidquran.data.TranslationCache;
 import com.quran.labs.androidquran.presenter.translation.TranslationManagerPresenter;
 import com.quran.labs.androidquran.service.QuranDownloadService;
 import com.quran.labs.androidquran.service.util.DefaultDownloadReceiver;
@@ -135,6 +136,8 @@ public class TranslationManagerActivity extends QuranActionBarActivity
           Timber.d(e, "error removing old database file");
         }
       }
+      TranslationCache.getInstance(this)
+          .invalidate(mDownloadingItem.translation.filename);
       TranslationItem updated = mDownloadingItem.withTranslationVersion(
           mDownloadingItem.translation.currentVersion);
       updateTranslationItem(updated);
@@ -306,12 +309,16 @@ public class TranslationManagerActivity extends QuranActionBarActivity
               public void onClick(DialogInterface dialog, int id) {
                 QuranFileUtils.removeTranslation(TranslationManagerActivity.this,
                     selectedItem.translation.filename);
+                TranslationCache.getInstance(TranslationManagerActivity.this)
+                    .invalidate(selectedItem.translation.filename);
                 TranslationItem updatedItem = selectedItem.withTranslationRemoved();
                 updateTranslationItem(updatedItem);
                 String current = mQuranSettings.getActiveTranslation();
                 if (current.equals(selectedItem.translation.filename)) {
                   mQuranSettings.removeActiveTranslation();
                 }
+                mQuranSettings.removeExtraTranslation(
+                    selectedItem.translation.filename);
                 generateListItems();
               }
             })
@@ -0,0 +1,121 @@
+package com.quran.labs.androidquran.ui;
+
+import com.quran.labs.androidquran.R;
+import com.quran.labs.androidquran.common.QuranAyah;
+import com.quran.labs.androidquran.task.TranslationStream;
+import com.quran.labs.androidquran.util.QuranSettings;
+import com.quran.labs.androidquran.widgets.TranslationView;
+
+import android.graphics.Color;
+import android.os.Bundle;
+import android.support.v4.content.ContextCompat;
+import android.view.MenuItem;
+import android.widget.Toast;
+
+import java.util.List;
+
+/**
+ * Shows a translation that scrolls continuously across pages, loading the
+ * ayahs ahead of (and behind) the reader as they scroll, instead of one
+ * page at a time.
+ */
+public class TranslationReaderActivity extends QuranActionBarActivity
+    implements TranslationStream.Listener, TranslationView.OnScrollEdgeListener {
+  public static final String EXTRA_DATABASE = "database";
+  public static final String EXTRA_AYAH_ID = "ayahId";
+  private static final String LAST_AYAH_ID = "LAST_AYAH_ID";
+
+  private TranslationView mTranslationView;
+  private TranslationStream mTranslationStream;
+  private int mStartAyahId;
+
+  @Override
+  public void onCreate(Bundle savedInstanceState) {
+    super.onCreate(savedInstanceState);
+
+    getSupportActionBar().setDisplayShowHomeEnabled(true);
+    getSupportActionBar().setDisplayHomeAsUpEnabled(true);
+
+    mTranslationView = new TranslationView(this);
+    mTranslationView.setOnScrollEdgeListener(this);
+    final QuranSettings settings = QuranSettings.getInstance(this);
+    if (settings.isNightMode()) {
+      mTranslationView.setBackgroundColor(Color.BLACK);
+    } else {
+      mTranslationView.setBackgroundColor(
+          ContextCompat.getColor(this, R.color.page_background));
+    }
+    setContentView(mTranslationView);
+
+    final Bundle extras = getIntent().getExtras();
+    final String database = extras == null ?
+        null : extras.getString(EXTRA_DATABASE);
+    if (database == null) {
+      finish();
+      return;
+    }
+
+    // start where the reader was before being recreated (after rotating,
+    // for example), rather than where the intent says
+    final int ayahId = savedInstanceState == null ?
+        0 : savedInstanceState.getInt(LAST_AYAH_ID, 0);
+    mStartAyahId = ayahId > 0 ? ayahId : extras.getInt(EXTRA_AYAH_ID, 1);
+    mTranslationStream = new TranslationStream(this, database, this);
+    mTranslationStream.start(mStartAyahId);
+  }
+
+  @Override
+  protected void onSaveInstanceState(Bundle state) {
+    // nothing may be shown yet if the first batch is still loading
+    final int ayahId = mTranslationView.getFirstVisibleAyahId();
+    state.putInt(LAST_AYAH_ID, ayahId > 0 ? ayahId : mStartAyahId);
+    super.onSaveInstanceState(state);
+  }
+
+  @Override
+  protected void onDestroy() {
+    if (mTranslationStream != null) {
+      mTranslationStream.cancel();
+    }
+    super.onDestroy();
+  }
+
+  @Override
+  public boolean onOptionsItemSelected(MenuItem item) {
+    if (item.getItemId() == android.R.id.home) {
+      finish();
+      return true;
+    }
+    return false;
+  }
+
+  @Override
+  public void onVersesAppended(List<QuranAyah> verses) {
+    mTranslationView.appendAyahs(verses);
+  }
+
+  @Override
+  public void onVersesPrepended(List<QuranAyah> verses) {
+    mTranslationView.prependAyahs(verses);
+  }
+
+  @Override
+  public void onVersesTrimmed(int firstAyahId, int lastAyahId) {
+    mTranslationView.trimAyahs(firstAyahId, lastAyahId);
+  }
+
+  @Override
+  public void onLoadFailed() {
+    Toast.makeText(this, R.string.translation_load_error, Toast.LENGTH_SHORT).show();
+  }
+
+  @Override
+  public void onNearStart() {
+    mTranslationStream.loadPrevious();
+  }
+
+  @Override
+  public void onNearEnd() {
+    mTranslationStream.loadNext();
+  }
+}
@@ -3,6 +3,8 @@ package com.quran.labs.androidquran.ui.fragment;
 import com.quran.labs.androidquran.R;
 import com.quran.labs.androidquran.common.LocalTranslation;
 import com.quran.labs.androidquran.common.QuranAyah;
+import com.quran.labs.androidquran.task.QuranTaskExecutor;
+import com.quran.labs.androidquran.task.TaskGroup;
 import com.quran.labs.androidquran.task.TranslationTask;
 import com.quran.labs.androidquran.ui.PagerActivity;
 import com.quran.labs.androidquran.ui.util.TranslationsSpinnerAdapter;
@@ -29,6 +31,7 @@ public class AyahTranslationFragment extends AyahActionFragment {
   private TranslationView mTranslationView;
   private View mEmptyState;
   private AsyncTask mCurrentTask;
+  private final TaskGroup mTaskGroup = new TaskGroup();
   private LocalTranslation mTranslationItem;
   private View mTranslationControls;
   private SpinnerCompat mTranslator;
@@ -60,6 +63,13 @@ public class AyahTranslationFragment extends AyahActionFragment {
     return view;
   }
 
+  @Override
+  public void onDestroyView() {
+    mTaskGroup.cancelAll();
+    mCurrentTask = null;
+    super.onDestroyView();
+  }
+
   private View.OnClickListener mOnClickListener = new View.OnClickListener() {
     @Override
     public void onClick(View v) {
@@ -139,8 +149,8 @@ public class AyahTranslationFragment extends AyahActionFragment {
       int pos = mTranslationAdapter.getPositionForActiveTranslation();
       mTranslationItem = mTranslationAdapter.getTranslationItem(pos);
       mTranslator.setSelection(pos);
-      mCurrentTask = new ShowTafsirTask(activity, bounds,
-          mTranslationItem.filename).execute();
+      mCurrentTask = mTaskGroup.execute(new ShowTafsirTask(activity, bounds,
+          mTranslationItem.filename), QuranTaskExecutor.TRANSLATIONS);
     }
   }
 
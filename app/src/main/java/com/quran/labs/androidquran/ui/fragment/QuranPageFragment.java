@@ -6,9 +6,16 @@ import com.quran.labs.androidquran.common.AyahBounds;
 import com.quran.labs.androidquran.common.QuranAyah;
 import com.quran.labs.androidquran.common.Response;
 import com.quran.labs.androidquran.dao.Bookmark;
+import com.quran.labs.androidquran.data.AyahHitIndex;
+import com.quran.labs.androidquran.data.AyahInfoDatabaseHandler;
+import com.quran.labs.androidquran.data.AyahKey;
+import com.quran.labs.androidquran.data.GlyphIndex;
+import com.quran.labs.androidquran.data.PageCoordinates;
 import com.quran.labs.androidquran.data.SuraAyah;
 import com.quran.labs.androidquran.task.QueryAyahCoordsTask;
 import com.quran.labs.androidquran.task.QueryPageCoordsTask;
+import com.quran.labs.androidquran.task.QuranTaskExecutor;
+import com.quran.labs.androidquran.task.TaskGroup;
 import com.quran.labs.androidquran.ui.PagerActivity;
 import com.quran.labs.androidquran.model.bookmark.BookmarkModel;
 import com.quran.labs.androidquran.ui.helpers.AyahSelectedListener;
@@ -17,6 +24,7 @@ import com.quran.labs.androidquran.ui.helpers.HighlightType;
 import com.quran.labs.androidquran.ui.helpers.QuranPageWorker;
 import com.quran.labs.androidquran.ui.util.ImageAyahUtils;
 import com.quran.labs.androidquran.ui.util.PageController;
+import com.quran.labs.androidquran.util.IntSet;
 import com.quran.labs.androidquran.util.QuranFileUtils;
 import com.quran.labs.androidquran.util.QuranScreenInfo;
 import com.quran.labs.androidquran.util.QuranSettings;
@@ -28,19 +36,18 @@ import android.app.Activity;
 import android.content.Context;
 import android.graphics.Matrix;
 import android.graphics.RectF;
-import android.graphics.drawable.BitmapDrawable;
+import android.graphics.drawable.Drawable;
 import android.os.AsyncTask;
 import android.os.Bundle;
 import android.os.Handler;
 import android.support.v4.app.Fragment;
+import android.util.SparseArray;
 import android.view.LayoutInflater;
 import android.view.MotionEvent;
 import android.view.View;
 import android.view.ViewGroup;
 
 import java.util.List;
-import java.util.Map;
-import java.util.Set;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 
@@ -61,7 +68,8 @@ public class QuranPageFragment extends Fragment
 
   private int mPageNumber;
   private AsyncTask mCurrentTask;
-  private Map<String, List<AyahBounds>> mCoordinatesData;
+  private final TaskGroup mTaskGroup = new TaskGroup();
+  private SparseArray<List<AyahBounds>> mCoordinatesData;
 
   private AyahSelectedListener mAyahSelectedListener;
 
@@ -75,6 +83,7 @@ public class QuranPageFragment extends Fragment
   private QuranImagePageLayout mQuranPageLayout;
   private CompositeSubscription mCompositeSubscription;
   private Handler mHandler = new Handler();
+  private Runnable mQueryPageCoordinatesRunnable;
 
   public static QuranPageFragment newInstance(int page) {
     final QuranPageFragment f = new QuranPageFragment();
@@ -161,12 +170,22 @@ public class QuranPageFragment extends Fragment
 
       downloadImage();
 
-      mHandler.postDelayed(new Runnable() {
-        @Override
-        public void run() {
-          new QueryPageCoordinatesTask(pagerActivity).execute(mPageNumber);
-        }
-      }, 1000);
+      final AyahInfoDatabaseHandler handler = getAyahInfoDatabase();
+      final RectF pageBounds = handler == null ?
+          null : handler.getLoadedPageBounds(mPageNumber);
+      if (pageBounds != null) {
+        setPageBounds(pageBounds);
+      } else {
+        mQueryPageCoordinatesRunnable = new Runnable() {
+          @Override
+          public void run() {
+            mQueryPageCoordinatesRunnable = null;
+            mTaskGroup.execute(new QueryPageCoordinatesTask(pagerActivity),
+                QuranTaskExecutor.PAGE_DATA, mPageNumber);
+          }
+        };
+        mHandler.postDelayed(mQueryPageCoordinatesRunnable, 1000);
+      }
 
       if (QuranSettings.getInstance(activity).shouldHighlightBookmarks()) {
         // Observable.timer by default runs on Schedulers.computation()
@@ -194,7 +213,7 @@ public class QuranPageFragment extends Fragment
   }
 
   @Override
-  public void onLoadImageResponse(BitmapDrawable drawable, Response response) {
+  public void onLoadImageResponse(Drawable drawable, Response response) {
     mPageLoadTask = null;
     if (mQuranPageLayout == null || !isAdded()) {
       return;
@@ -202,6 +221,7 @@ public class QuranPageFragment extends Fragment
 
     if (drawable != null) {
       mImageView.setImageDrawable(drawable);
+      setCoordinatesFromGlyphIndex();
       // TODO we should toast a warning if we couldn't save the image
       // (which would likely happen if we can't write to the sdcard,
       // but just got the page from the web).
@@ -231,11 +251,52 @@ public class QuranPageFragment extends Fragment
     }
   }
 
+  /**
+   * Set the ayah coordinates right away if the glyph index is already
+   * loaded, instead of waiting for them to be needed.
+   */
+  private void setCoordinatesFromGlyphIndex() {
+    if (mCoordinatesData != null) {
+      return;
+    }
+
+    final GlyphIndex index = getLoadedGlyphIndex();
+    if (index != null) {
+      mCoordinatesData = index.getAyahBounds(mPageNumber);
+      if (mCoordinatesData != null) {
+        mImageView.setCoordinateData(mCoordinatesData);
+      }
+    }
+  }
+
+  private GlyphIndex getLoadedGlyphIndex() {
+    final AyahInfoDatabaseHandler handler = getAyahInfoDatabase();
+    return handler == null ? null : handler.getLoadedGlyphIndex();
+  }
+
+  private AyahInfoDatabaseHandler getAyahInfoDatabase() {
+    final Activity activity = getActivity();
+    if (!(activity instanceof PagerActivity)) {
+      return null;
+    }
+    return ((PagerActivity) activity).getAyahInfoDatabase(
+        QuranScreenInfo.getInstance().getWidthParam());
+  }
+
+  private void setPageBounds(RectF pageBounds) {
+    mImageView.setPageBounds(pageBounds);
+    if (mOverlayText) {
+      mImageView.setOverlayText(mPageNumber, true);
+    }
+  }
+
   @Override
   public void onDestroyView() {
-    if (mCurrentTask != null) {
-      mCurrentTask.cancel(true);
+    if (mQueryPageCoordinatesRunnable != null) {
+      mHandler.removeCallbacks(mQueryPageCoordinatesRunnable);
+      mQueryPageCoordinatesRunnable = null;
     }
+    mTaskGroup.cancelAll();
     mCurrentTask = null;
     super.onDestroyView();
   }
@@ -274,8 +335,9 @@ public class QuranPageFragment extends Fragment
               }
 
               if (mCurrentTask == null) {
-                mCurrentTask = new GetAyahCoordsTask(
-                    getActivity()).execute(mPageNumber);
+                mCurrentTask = mTaskGroup.execute(
+                    new GetAyahCoordsTask(getActivity()),
+                    QuranTaskExecutor.PAGE_DATA, mPageNumber);
               }
             } else {
               mImageView.invalidate();
@@ -293,10 +355,7 @@ public class QuranPageFragment extends Fragment
     @Override
     protected void onPostExecute(RectF[] rect) {
       if (rect != null && rect.length == 1 && isAdded()) {
-        mImageView.setPageBounds(rect[0]);
-        if (mOverlayText) {
-          mImageView.setOverlayText(mPageNumber, true);
-        }
+        setPageBounds(rect[0]);
       }
     }
   }
@@ -318,10 +377,12 @@ public class QuranPageFragment extends Fragment
     }
 
     @Override
-    protected void onPostExecute(List<Map<String, List<AyahBounds>>> maps) {
+    protected void onPostExecute(List<PageCoordinates> pages) {
       if (isAdded()) {
-        if (maps != null && maps.size() > 0) {
-          mCoordinatesData = maps.get(0);
+        final SparseArray<List<AyahBounds>> ayahBounds =
+            pages == null || pages.isEmpty() ? null : pages.get(0).getAyahBounds();
+        if (ayahBounds != null) {
+          mCoordinatesData = ayahBounds;
           mImageView.setCoordinateData(mCoordinatesData);
         }
 
@@ -339,7 +400,7 @@ public class QuranPageFragment extends Fragment
 
   @Override
   public void highlightAyat(
-      int page, Set<String> ayahKeys, HighlightType type) {
+      int page, IntSet ayahKeys, HighlightType type) {
     if (page == mPageNumber && mQuranPageLayout != null) {
       mImageView.highlightAyat(ayahKeys, type);
       mImageView.invalidate();
@@ -357,8 +418,9 @@ public class QuranPageFragment extends Fragment
       }
 
       if (mCurrentTask == null) {
-        mCurrentTask = new GetAyahCoordsTask(
-            getActivity(), sura, ayah, type).execute(mPageNumber);
+        mCurrentTask = mTaskGroup.execute(
+            new GetAyahCoordsTask(getActivity(), sura, ayah, type),
+            QuranTaskExecutor.PAGE_DATA, mPageNumber);
       }
     } else {
       handleHighlightAyah(sura, ayah, type, scrollToAyah);
@@ -401,7 +463,7 @@ public class QuranPageFragment extends Fragment
   public AyahToolBar.AyahToolBarPosition getToolBarPosition(int sura, int ayah,
       int toolBarWidth, int toolBarHeight) {
     final List<AyahBounds> bounds = mCoordinatesData == null ? null :
-        mCoordinatesData.get(sura + ":" + ayah);
+        mCoordinatesData.get(AyahKey.of(sura, ayah));
     final int screenWidth = mImageView == null ? 0 : mImageView.getWidth();
     if (bounds != null && screenWidth > 0) {
       final int screenHeight = QuranScreenInfo.getInstance().getHeight();
@@ -427,8 +489,13 @@ public class QuranPageFragment extends Fragment
   }
 
   private void handlePress(MotionEvent event, EventType eventType) {
-    QuranAyah result = ImageAyahUtils.getAyahFromCoordinates(
-        mCoordinatesData, mImageView, event.getX(), event.getY());
+    final GlyphIndex index = getLoadedGlyphIndex();
+    final AyahHitIndex hitIndex = index == null ? null : index.getHitIndex(mPageNumber);
+    final QuranAyah result = hitIndex != null ?
+        ImageAyahUtils.getAyahFromCoordinates(
+            hitIndex, mImageView, event.getX(), event.getY()) :
+        ImageAyahUtils.getAyahFromCoordinates(
+            mCoordinatesData, mImageView, event.getX(), event.getY());
     if (result != null && mAyahSelectedListener != null) {
       SuraAyah suraAyah = new SuraAyah(result.getSura(), result.getAyah());
       mAyahSelectedListener.onAyahSelected(eventType, suraAyah, this);
@@ -456,8 +523,9 @@ public class QuranPageFragment extends Fragment
     }
     // Check we fetched the data
     if (mCoordinatesData == null) {
-      mCurrentTask = new GetAyahCoordsTask(getActivity(),
-          event, eventType).execute(mPageNumber);
+      mCurrentTask = mTaskGroup.execute(
+          new GetAyahCoordsTask(getActivity(), event, eventType),
+          QuranTaskExecutor.PAGE_DATA, mPageNumber);
       return false;
     }
     // All good
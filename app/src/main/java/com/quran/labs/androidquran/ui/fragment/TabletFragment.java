@@ -5,10 +5,16 @@ import com.quran.labs.androidquran.common.AyahBounds;
 import com.quran.labs.androidquran.common.QuranAyah;
 import com.quran.labs.androidquran.common.Response;
 import com.quran.labs.androidquran.dao.Bookmark;
+import com.quran.labs.androidquran.data.AyahHitIndex;
+import com.quran.labs.androidquran.data.AyahInfoDatabaseHandler;
+import com.quran.labs.androidquran.data.AyahKey;
+import com.quran.labs.androidquran.data.GlyphIndex;
+import com.quran.labs.androidquran.data.PageCoordinates;
 import com.quran.labs.androidquran.data.QuranInfo;
 import com.quran.labs.androidquran.data.SuraAyah;
 import com.quran.labs.androidquran.task.QueryAyahCoordsTask;
-import com.quran.labs.androidquran.task.QueryPageCoordsTask;
+import com.quran.labs.androidquran.task.QuranTaskExecutor;
+import com.quran.labs.androidquran.task.TaskGroup;
 import com.quran.labs.androidquran.task.TranslationTask;
 import com.quran.labs.androidquran.ui.PagerActivity;
 import com.quran.labs.androidquran.model.bookmark.BookmarkModel;
@@ -18,6 +24,7 @@ import com.quran.labs.androidquran.ui.helpers.HighlightType;
 import com.quran.labs.androidquran.ui.helpers.QuranPageWorker;
 import com.quran.labs.androidquran.ui.util.ImageAyahUtils;
 import com.quran.labs.androidquran.ui.util.PageController;
+import com.quran.labs.androidquran.util.IntSet;
 import com.quran.labs.androidquran.util.QuranFileUtils;
 import com.quran.labs.androidquran.util.QuranScreenInfo;
 import com.quran.labs.androidquran.util.QuranSettings;
@@ -31,18 +38,18 @@ import com.quran.labs.androidquran.widgets.TranslationView;
 import android.app.Activity;
 import android.content.Context;
 import android.graphics.RectF;
-import android.graphics.drawable.BitmapDrawable;
+import android.graphics.drawable.Drawable;
 import android.os.Bundle;
 import android.support.v4.app.Fragment;
+import android.util.SparseArray;
 import android.view.LayoutInflater;
 import android.view.MotionEvent;
 import android.view.View;
 import android.view.ViewGroup;
 import android.widget.ImageView;
 
+import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
-import java.util.Set;
 import java.util.concurrent.Future;
 
 import javax.inject.Inject;
@@ -70,12 +77,14 @@ public class TabletFragment extends Fragment
   private int mPageNumber;
   private boolean mOverlayText;
   private int mLastHighlightedPage;
+  private boolean mHasPageBounds;
   private AyahSelectedListener mAyahSelectedListener;
-  private List<Map<String, List<AyahBounds>>> mCoordinateData;
+  private List<SparseArray<List<AyahBounds>>> mCoordinateData;
   private TranslationView mLeftTranslation, mRightTranslation = null;
   private HighlightingImageView mLeftImageView, mRightImageView = null;
   private QuranSettings mQuranSettings;
   private CompositeSubscription mCompositeSubscription;
+  private final TaskGroup mTaskGroup = new TaskGroup();
 
   private TabletView mMainView;
 
@@ -195,7 +204,17 @@ public class TabletFragment extends Fragment
   }
 
   @Override
-  public void onLoadImageResponse(BitmapDrawable drawable, Response response) {
+  public void onDestroyView() {
+    mTaskGroup.cancelAll();
+    // the bounds and coordinates are set on the views, so a new view
+    // needs them again
+    mHasPageBounds = false;
+    mCoordinateData = null;
+    super.onDestroyView();
+  }
+
+  @Override
+  public void onLoadImageResponse(Drawable drawable, Response response) {
     if (drawable != null && response != null) {
       final int page = response.getPageNumber();
       if (page == mPageNumber - 1 && mRightImageView != null) {
@@ -205,6 +224,60 @@ public class TabletFragment extends Fragment
         mLeftPageLoadTask = null;
         mLeftImageView.setImageDrawable(drawable);
       }
+
+      if (mRightPageLoadTask == null && mLeftPageLoadTask == null) {
+        setCoordinatesFromGlyphIndex();
+      }
+    }
+  }
+
+  /**
+   * Set the ayah coordinates right away if the glyph index is already
+   * loaded, instead of waiting for them to be needed.
+   */
+  private void setCoordinatesFromGlyphIndex() {
+    if (mCoordinateData != null ||
+        mRightImageView == null || mLeftImageView == null) {
+      return;
+    }
+
+    final GlyphIndex index = getLoadedGlyphIndex();
+    if (index != null) {
+      final SparseArray<List<AyahBounds>> right = index.getAyahBounds(mPageNumber - 1);
+      final SparseArray<List<AyahBounds>> left = index.getAyahBounds(mPageNumber);
+      if (right != null && left != null) {
+        mRightImageView.setCoordinateData(right);
+        mLeftImageView.setCoordinateData(left);
+        mCoordinateData = new ArrayList<>(2);
+        mCoordinateData.add(right);
+        mCoordinateData.add(left);
+      }
+    }
+  }
+
+  private GlyphIndex getLoadedGlyphIndex() {
+    final AyahInfoDatabaseHandler handler = getAyahInfoDatabase();
+    return handler == null ? null : handler.getLoadedGlyphIndex();
+  }
+
+  private AyahInfoDatabaseHandler getAyahInfoDatabase() {
+    final Activity activity = getActivity();
+    if (!(activity instanceof PagerActivity)) {
+      return null;
+    }
+    return ((PagerActivity) activity).getAyahInfoDatabase(
+        QuranScreenInfo.getInstance().getTabletWidthParam());
+  }
+
+  private void setPageBounds(RectF rightBounds, RectF leftBounds) {
+    if (mRightImageView != null && mLeftImageView != null) {
+      mRightImageView.setPageBounds(rightBounds);
+      mLeftImageView.setPageBounds(leftBounds);
+      mHasPageBounds = true;
+      if (mOverlayText) {
+        mRightImageView.setOverlayText(mPageNumber - 1, true);
+        mLeftImageView.setOverlayText(mPageNumber, true);
+      }
     }
   }
 
@@ -225,8 +298,18 @@ public class TabletFragment extends Fragment
             worker.loadPage(widthParam, mPageNumber, this);
       }
 
-      new QueryPageCoordinatesTask(context)
-          .execute(mPageNumber - 1, mPageNumber);
+      final AyahInfoDatabaseHandler handler = getAyahInfoDatabase();
+      final RectF rightBounds = handler == null ?
+          null : handler.getLoadedPageBounds(mPageNumber - 1);
+      final RectF leftBounds = handler == null ?
+          null : handler.getLoadedPageBounds(mPageNumber);
+      if (rightBounds != null && leftBounds != null) {
+        setPageBounds(rightBounds, leftBounds);
+      } else {
+        // loads the ayah coordinates along with the page bounds
+        mTaskGroup.execute(new GetAyahCoordsTask(context),
+            QuranTaskExecutor.PAGE_DATA, mPageNumber - 1, mPageNumber);
+      }
 
       if (QuranSettings.getInstance(context).shouldHighlightBookmarks()) {
         highlightTagsTask();
@@ -235,10 +318,10 @@ public class TabletFragment extends Fragment
       if (context != null) {
         String database = mQuranSettings.getActiveTranslation();
         if (database != null) {
-          new TranslationTask(context, mPageNumber - 1, 0,
-              database, mRightTranslation).execute();
-          new TranslationTask(context, mPageNumber, 0,
-              database, mLeftTranslation).execute();
+          mTaskGroup.execute(new TranslationTask(context, mPageNumber - 1, 0,
+              database, mRightTranslation), QuranTaskExecutor.TRANSLATIONS);
+          mTaskGroup.execute(new TranslationTask(context, mPageNumber, 0,
+              database, mLeftTranslation), QuranTaskExecutor.TRANSLATIONS);
         }
       }
     }
@@ -248,10 +331,10 @@ public class TabletFragment extends Fragment
     if (database != null) {
       Activity activity = getActivity();
       if (activity != null) {
-        new TranslationTask(activity, mPageNumber - 1, 0,
-            database, mRightTranslation).execute();
-        new TranslationTask(activity, mPageNumber, 0,
-            database, mLeftTranslation).execute();
+        mTaskGroup.execute(new TranslationTask(activity, mPageNumber - 1, 0,
+            database, mRightTranslation), QuranTaskExecutor.TRANSLATIONS);
+        mTaskGroup.execute(new TranslationTask(activity, mPageNumber, 0,
+            database, mLeftTranslation), QuranTaskExecutor.TRANSLATIONS);
       }
     }
   }
@@ -285,7 +368,8 @@ public class TabletFragment extends Fragment
           @Override
           public void onCompleted() {
             if (mCoordinateData == null) {
-              new GetAyahCoordsTask(getActivity()).execute(mPageNumber - 1, mPageNumber);
+              mTaskGroup.execute(new GetAyahCoordsTask(getActivity()),
+                  QuranTaskExecutor.PAGE_DATA, mPageNumber - 1, mPageNumber);
             } else {
               mRightImageView.invalidate();
               mLeftImageView.invalidate();
@@ -315,28 +399,6 @@ public class TabletFragment extends Fragment
     mCompositeSubscription.add(s);
   }
 
-  private class QueryPageCoordinatesTask extends QueryPageCoordsTask {
-    public QueryPageCoordinatesTask(Context context) {
-      super(context, QuranScreenInfo.getInstance().getTabletWidthParam());
-    }
-
-    @Override
-    protected void onPostExecute(RectF[] rect) {
-      if (rect != null) {
-        if (mMode == Mode.ARABIC && rect.length == 2) {
-          if (mRightImageView != null && mLeftImageView != null) {
-            mRightImageView.setPageBounds(rect[0]);
-            mLeftImageView.setPageBounds(rect[1]);
-            if (mOverlayText) {
-              mRightImageView.setOverlayText(mPageNumber - 1, true);
-              mLeftImageView.setOverlayText(mPageNumber, true);
-            }
-          }
-        }
-      }
-    }
-  }
-
   private class GetAyahCoordsTask extends QueryAyahCoordsTask {
 
     public GetAyahCoordsTask(Context context) {
@@ -357,14 +419,24 @@ public class TabletFragment extends Fragment
     }
 
     @Override
-    protected void onPostExecute(List<Map<String, List<AyahBounds>>> maps) {
-      if (maps != null && maps.size() > 0) {
-        if (mMode == Mode.ARABIC && maps.size() == 2 &&
+    protected void onPostExecute(List<PageCoordinates> pages) {
+      if (pages != null && pages.size() == 2) {
+        final PageCoordinates right = pages.get(0);
+        final PageCoordinates left = pages.get(1);
+        if (mMode == Mode.ARABIC && !mHasPageBounds &&
+            right.getPageBounds() != null && left.getPageBounds() != null) {
+          setPageBounds(right.getPageBounds(), left.getPageBounds());
+        }
+
+        if (mMode == Mode.ARABIC &&
+            right.getAyahBounds() != null && left.getAyahBounds() != null &&
             mRightImageView != null && mLeftImageView != null) {
-          mRightImageView.setCoordinateData(maps.get(0));
-          mLeftImageView.setCoordinateData(maps.get(1));
+          mRightImageView.setCoordinateData(right.getAyahBounds());
+          mLeftImageView.setCoordinateData(left.getAyahBounds());
 
-          mCoordinateData = maps;
+          mCoordinateData = new ArrayList<>(2);
+          mCoordinateData.add(right.getAyahBounds());
+          mCoordinateData.add(left.getAyahBounds());
 
           if (mHighlightAyah) {
             handleHighlightAyah(mSura, mAyah, mHighlightType);
@@ -393,8 +465,8 @@ public class TabletFragment extends Fragment
     }
     // Check we fetched the data
     if (mCoordinateData == null) {
-      new GetAyahCoordsTask(getActivity(), event, eventType, page)
-          .execute(mPageNumber - 1, mPageNumber);
+      mTaskGroup.execute(new GetAyahCoordsTask(getActivity(), event, eventType, page),
+          QuranTaskExecutor.PAGE_DATA, mPageNumber - 1, mPageNumber);
       return false;
     }
     // All good
@@ -403,7 +475,7 @@ public class TabletFragment extends Fragment
 
   @Override
   public void highlightAyat(
-      int page, Set<String> ayahKeys, HighlightType type) {
+      int page, IntSet ayahKeys, HighlightType type) {
     final HighlightingImageView imageView;
     if (page == mPageNumber - 1) {
       imageView = mRightImageView;
@@ -427,8 +499,8 @@ public class TabletFragment extends Fragment
   @Override
   public void highlightAyah(int sura, int ayah, HighlightType type, boolean scrollToAyah) {
     if (mMode == Mode.ARABIC && mCoordinateData == null) {
-      new GetAyahCoordsTask(getActivity(), sura, ayah, type)
-          .execute(mPageNumber - 1, mPageNumber);
+      mTaskGroup.execute(new GetAyahCoordsTask(getActivity(), sura, ayah, type),
+          QuranTaskExecutor.PAGE_DATA, mPageNumber - 1, mPageNumber);
     } else {
       handleHighlightAyah(sura, ayah, type);
     }
@@ -437,12 +509,12 @@ public class TabletFragment extends Fragment
   @Override
   public AyahToolBar.AyahToolBarPosition getToolBarPosition(int sura, int ayah,
       int toolBarWidth, int toolBarHeight) {
-    final String key = sura + ":" + ayah;
+    final int key = AyahKey.of(sura, ayah);
     List<AyahBounds> bounds = null;
     if (mCoordinateData != null) {
-      for (final Map<String, List<AyahBounds>> pageBounds : mCoordinateData) {
-        if (pageBounds.containsKey(key)) {
-          bounds = pageBounds.get(key);
+      for (final SparseArray<List<AyahBounds>> pageBounds : mCoordinateData) {
+        bounds = pageBounds.get(key);
+        if (bounds != null) {
           break;
         }
       }
@@ -558,7 +630,7 @@ public class TabletFragment extends Fragment
       return null;
     }
 
-    Map<String, List<AyahBounds>> coords;
+    SparseArray<List<AyahBounds>> coords;
     if (mCoordinateData.size() == 1) {
       coords = mCoordinateData.get(0);
     } else {
@@ -576,6 +648,11 @@ public class TabletFragment extends Fragment
       imageView = mLeftImageView;
     }
 
+    final GlyphIndex index = getLoadedGlyphIndex();
+    final AyahHitIndex hitIndex = index == null ? null : index.getHitIndex(page);
+    if (hitIndex != null) {
+      return ImageAyahUtils.getAyahFromCoordinates(hitIndex, imageView, xc, yc);
+    }
     return ImageAyahUtils.getAyahFromCoordinates(coords, imageView, xc, yc);
   }
 
@@ -2,10 +2,13 @@ package com.quran.labs.androidquran.ui.fragment;
 
 import com.quran.labs.androidquran.common.Response;
 import com.quran.labs.androidquran.data.QuranInfo;
+import com.quran.labs.androidquran.task.QuranTaskExecutor;
+import com.quran.labs.androidquran.task.TaskGroup;
 import com.quran.labs.androidquran.task.TranslationTask;
 import com.quran.labs.androidquran.ui.PagerActivity;
 import com.quran.labs.androidquran.ui.helpers.AyahTracker;
 import com.quran.labs.androidquran.ui.helpers.HighlightType;
+import com.quran.labs.androidquran.util.IntSet;
 import com.quran.labs.androidquran.util.QuranSettings;
 import com.quran.labs.androidquran.widgets.AyahToolBar;
 import com.quran.labs.androidquran.widgets.QuranTranslationPageLayout;
@@ -14,15 +17,13 @@ import com.quran.labs.androidquran.widgets.TranslationView;
 import android.app.Activity;
 import android.content.Context;
 import android.content.res.Resources;
-import android.graphics.drawable.BitmapDrawable;
+import android.graphics.drawable.Drawable;
 import android.os.Bundle;
 import android.support.v4.app.Fragment;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
 
-import java.util.Set;
-
 public class TranslationFragment extends Fragment
     implements AyahTracker {
   private static final String PAGE_NUMBER_EXTRA = "pageNumber";
@@ -39,6 +40,7 @@ public class TranslationFragment extends Fragment
   private Resources mResources;
   private QuranSettings mQuranSettings;
   private boolean mJustCreated;
+  private final TaskGroup mTaskGroup = new TaskGroup();
 
   public static TranslationFragment newInstance(int page) {
     final TranslationFragment f = new TranslationFragment();
@@ -96,7 +98,13 @@ public class TranslationFragment extends Fragment
   }
 
   @Override
-  public void onLoadImageResponse(BitmapDrawable drawable, Response response) {
+  public void onDestroyView() {
+    mTaskGroup.cancelAll();
+    super.onDestroyView();
+  }
+
+  @Override
+  public void onLoadImageResponse(Drawable drawable, Response response) {
     // no op, we're not requesting images here
   }
 
@@ -136,7 +144,7 @@ public class TranslationFragment extends Fragment
 
   @Override
   public void highlightAyat(
-      int page, Set<String> ayahKeys, HighlightType type) {
+      int page, IntSet ayahKeys, HighlightType type) {
     // not yet supported
   }
 
@@ -169,8 +177,9 @@ public class TranslationFragment extends Fragment
     if (database != null) {
       Activity activity = getActivity();
       if (activity != null) {
-        new TranslationTask(activity, mPageNumber,
-            mHighlightedAyah, database, mTranslationView).execute();
+        mTaskGroup.execute(new TranslationTask(activity, mPageNumber,
+            mHighlightedAyah, database, mTranslationView),
+            QuranTaskExecutor.TRANSLATIONS);
       }
     }
   }
@@ -0,0 +1,98 @@
+package com.quran.labs.androidquran.ui.helpers;
+
+import java.util.Arrays;
+
+/**
+ * The rects to highlight on a page, grouped into layers (one per highlight
+ * type, in the order they are drawn). Rects are stored in flat arrays that
+ * are reused when the highlights change, so that drawing them doesn't
+ * allocate anything.
+ */
+public class HighlightRects {
+  private static final int VALUES_PER_RECT = 4;
+  private static final int INITIAL_CAPACITY = 16;
+
+  // for each layer, left, top, right and bottom of each rect
+  private float[][] mRects = new float[0][];
+  private int[] mRectCounts = new int[0];
+  private int mLayerCount;
+
+  public interface RectDrawer {
+    void drawRect(int layer, float left, float top, float right, float bottom);
+  }
+
+  /**
+   * Remove all the layers (while keeping their storage around)
+   */
+  public void clear() {
+    mLayerCount = 0;
+  }
+
+  /**
+   * Start a new layer. Rects added after this are added to it.
+   * @return the index of the new layer
+   */
+  public int startLayer() {
+    if (mLayerCount == mRects.length) {
+      final int capacity = Math.max(1, mRects.length * 2);
+      mRects = Arrays.copyOf(mRects, capacity);
+      mRectCounts = Arrays.copyOf(mRectCounts, capacity);
+    }
+
+    if (mRects[mLayerCount] == null) {
+      mRects[mLayerCount] = new float[INITIAL_CAPACITY * VALUES_PER_RECT];
+    }
+    mRectCounts[mLayerCount] = 0;
+    return mLayerCount++;
+  }
+
+  public void addRect(float left, float top, float right, float bottom) {
+    if (mLayerCount == 0) {
+      throw new IllegalStateException("addRect called before startLayer");
+    }
+
+    final int layer = mLayerCount - 1;
+    float[] rects = mRects[layer];
+    final int offset = mRectCounts[layer] * VALUES_PER_RECT;
+    if (offset == rects.length) {
+      rects = Arrays.copyOf(rects, rects.length * 2);
+      mRects[layer] = rects;
+    }
+
+    rects[offset] = left;
+    rects[offset + 1] = top;
+    rects[offset + 2] = right;
+    rects[offset + 3] = bottom;
+    mRectCounts[layer]++;
+  }
+
+  public int getLayerCount() {
+    return mLayerCount;
+  }
+
+  public int getRectCount(int layer) {
+    return mRectCounts[layer];
+  }
+
+  public boolean isEmpty() {
+    for (int i = 0; i < mLayerCount; i++) {
+      if (mRectCounts[i] > 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Draw every rect, layer by layer.
+   */
+  public void draw(RectDrawer drawer) {
+    for (int layer = 0; layer < mLayerCount; layer++) {
+      final float[] rects = mRects[layer];
+      final int end = mRectCounts[layer] * VALUES_PER_RECT;
+      for (int i = 0; i < end; i += VALUES_PER_RECT) {
+        drawer.drawRect(layer, rects[i], rects[i + 1], rects[i + 2], rects[i + 3]);
+      }
+    }
+  }
+}
@@ -1,9 +1,7 @@
 package com.quran.labs.androidquran.ui.helpers;
 
 import com.quran.labs.androidquran.R;
-import com.quran.labs.androidquran.common.Response;
 import com.quran.labs.androidquran.data.QuranInfo;
-import com.quran.labs.androidquran.util.QuranFileUtils;
 import com.quran.labs.androidquran.util.QuranUtils;
 
 import android.annotation.TargetApi;
@@ -18,27 +16,8 @@ import android.os.Build;
 import android.view.Display;
 import android.widget.Toast;
 
-import okhttp3.OkHttpClient;
-import timber.log.Timber;
-
 public class QuranDisplayHelper {
 
-  public static Response getQuranPage(OkHttpClient okHttpClient,
-      Context context, String widthParam, int page) {
-    Response response;
-    String filename = QuranFileUtils.getPageFileName(page);
-    response = QuranFileUtils.getImageFromSD(context, widthParam, filename);
-    if (!response.isSuccessful()) {
-      // let's only try if an sdcard is found... otherwise, let's tell
-      // the user to mount their sdcard and try again.
-      if (response.getErrorCode() != Response.ERROR_SD_CARD_NOT_FOUND) {
-        Timber.d("failed to get %d with name %s from sd...", page, filename);
-        response = QuranFileUtils.getImageFromWeb(okHttpClient, context, filename);
-      }
-    }
-    return response;
-  }
-
   public static long displayMarkerPopup(Context context, int page,
       long lastPopupTime) {
     if (System.currentTimeMillis() - lastPopupTime < 3000) {
@@ -0,0 +1,158 @@
+package com.quran.labs.androidquran.ui.helpers;
+
+import com.quran.labs.androidquran.data.Constants;
+
+import android.os.SystemClock;
+import android.util.SparseArray;
+
+import java.util.concurrent.Future;
+
+/**
+ * Prefetches page images ahead of the reader into the page cache of the
+ * {@link QuranPageWorker}. The prefetcher watches which pages get selected
+ * to figure out the reading direction and speed, and prefetches deeper when
+ * pages are flipped faster than they can be loaded. Prefetches that no
+ * longer make sense (because the reader changed direction or jumped to a
+ * different page) are cancelled.
+ */
+public class QuranPagePrefetcher {
+  private static final int MAX_PREFETCH_DEPTH = 4;
+  // readers pausing longer than this aren't flipping through pages
+  private static final long MAX_PAGE_INTERVAL = 30 * 1000;
+  private static final long DEFAULT_PAGE_INTERVAL = 5 * 1000;
+  // the view pager already keeps the pages on each side of the current one
+  private static final int OFFSCREEN_PAGE_LIMIT = 1;
+
+  private final QuranPageWorker mWorker;
+  private final int mPagesPerScreen;
+  private final SparseArray<Future<?>> mPendingPrefetches = new SparseArray<>();
+
+  private String mWidthParam;
+  private int mLastPage = -1;
+  // assume the reader is reading forward until we know otherwise
+  private int mDirection = 1;
+  private long mLastPageSelectedTime;
+  private long mAveragePageInterval = DEFAULT_PAGE_INTERVAL;
+
+  /**
+   * @param worker the page worker to prefetch pages with
+   * @param pagesPerScreen the number of pages shown per screen (2 in
+   *                       dual page mode, 1 otherwise)
+   */
+  public QuranPagePrefetcher(QuranPageWorker worker, int pagesPerScreen) {
+    mWorker = worker;
+    mPagesPerScreen = pagesPerScreen;
+  }
+
+  /**
+   * Called when a page is selected.
+   * @param widthParam the width parameter of the images being shown
+   * @param page the page that was selected (the last page on screen in
+   *             dual page mode)
+   */
+  public void onPageSelected(String widthParam, int page) {
+    final long now = SystemClock.uptimeMillis();
+    final int delta = mLastPage < 0 ? 0 : page - mLastPage;
+    final boolean isJump = Math.abs(delta) > mPagesPerScreen;
+    final int direction = delta == 0 ? mDirection : (delta > 0 ? 1 : -1);
+
+    if (!widthParam.equals(mWidthParam) || isJump || direction != mDirection) {
+      // everything pending is either for the wrong width or in the
+      // wrong direction now.
+      cancelAll();
+    }
+
+    if (mLastPage >= 0 && delta != 0 && !isJump) {
+      final long interval = Math.min(now - mLastPageSelectedTime, MAX_PAGE_INTERVAL);
+      mAveragePageInterval = (mAveragePageInterval + interval) / 2;
+    } else if (isJump) {
+      // after a jump, we know nothing about how fast this reader reads
+      mAveragePageInterval = DEFAULT_PAGE_INTERVAL;
+    }
+
+    mWidthParam = widthParam;
+    mLastPage = page;
+    mDirection = direction;
+    mLastPageSelectedTime = now;
+
+    prefetch(page, direction);
+  }
+
+  private void prefetch(int page, int direction) {
+    final int depth = getPrefetchDepth();
+    cancelOutsideOf(page, direction, depth);
+
+    for (int i = OFFSCREEN_PAGE_LIMIT + 1; i <= OFFSCREEN_PAGE_LIMIT + depth; i++) {
+      // in dual page mode, the selected page is the last one on screen
+      final int lastPage = page + (direction * i * mPagesPerScreen);
+      for (int j = 0; j < mPagesPerScreen; j++) {
+        final int target = lastPage - j;
+        if (target < Constants.PAGES_FIRST || target > Constants.PAGES_LAST) {
+          continue;
+        }
+
+        final Future<?> pending = mPendingPrefetches.get(target);
+        if (pending == null || pending.isDone()) {
+          final Future<?> future = mWorker.prefetchPage(mWidthParam, target);
+          if (future == null) {
+            mPendingPrefetches.remove(target);
+          } else {
+            mPendingPrefetches.put(target, future);
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Get the number of screens to prefetch ahead of the offscreen pages.
+   * This is bounded by how many pages fit in the page cache (so that
+   * prefetched pages don't push out the pages on screen), and otherwise
+   * is deep enough to cover the time it takes to load a page given the
+   * rate at which the reader is flipping pages.
+   */
+  int getPrefetchDepth() {
+    final int cachedPages = mWorker.getCacheCapacityInPages();
+    final int pagesToKeep = mPagesPerScreen * (1 + 2 * OFFSCREEN_PAGE_LIMIT);
+    final int maxDepth = Math.min(MAX_PREFETCH_DEPTH,
+        (cachedPages - pagesToKeep) / mPagesPerScreen);
+    if (maxDepth <= 0) {
+      return 0;
+    }
+
+    final long loadTime = mWorker.getAverageLoadTime() * mPagesPerScreen;
+    final long interval = Math.max(1, mAveragePageInterval);
+    final int neededDepth = 1 + (int) (loadTime / interval);
+    return Math.min(maxDepth, neededDepth);
+  }
+
+  private void cancelOutsideOf(int page, int direction, int depth) {
+    final int first = page + direction * mPagesPerScreen;
+    final int last = page + direction *
+        (OFFSCREEN_PAGE_LIMIT + depth) * mPagesPerScreen;
+    // in dual page mode, the selected page is the last one on screen
+    final int min = Math.min(first, last) - (mPagesPerScreen - 1);
+    final int max = Math.max(first, last);
+    for (int i = mPendingPrefetches.size() - 1; i >= 0; i--) {
+      final int target = mPendingPrefetches.keyAt(i);
+      final Future<?> future = mPendingPrefetches.valueAt(i);
+      if (future.isDone()) {
+        mPendingPrefetches.removeAt(i);
+      } else if (target < min || target > max) {
+        future.cancel(false);
+        mPendingPrefetches.removeAt(i);
+      }
+    }
+  }
+
+  /**
+   * Cancel all pending prefetches.
+   */
+  public void cancelAll() {
+    for (int i = 0, size = mPendingPrefetches.size(); i < size; i++) {
+      mPendingPrefetches.valueAt(i).cancel(false);
+    }
+    mPendingPrefetches.clear();
+    mWorker.purgeCancelledTasks();
+  }
+}
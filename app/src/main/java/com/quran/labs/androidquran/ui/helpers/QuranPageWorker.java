@@ -1,30 +1,74 @@
 package com.quran.labs.androidquran.ui.helpers;
 
 import com.quran.labs.androidquran.common.Response;
+import com.quran.labs.androidquran.util.PageLoadMetrics;
 import com.quran.labs.androidquran.util.QuranExecutorService;
+import com.quran.labs.androidquran.util.QuranMemoryGovernor;
 import com.quran.labs.androidquran.util.QuranPageTask;
+import com.quran.labs.androidquran.util.QuranScreenInfo;
+import com.quran.labs.androidquran.util.TrimmableLruCache;
 
+import android.app.ActivityManager;
 import android.content.Context;
 import android.content.res.Resources;
 import android.graphics.Bitmap;
-import android.graphics.drawable.BitmapDrawable;
-import android.os.Build;
+import android.graphics.drawable.Drawable;
 import android.os.Handler;
 import android.os.Message;
+import android.support.annotation.NonNull;
 
-import java.util.concurrent.ExecutorService;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 public class QuranPageWorker {
   private static final int MSG_IMAGE_LOADED = 1;
+  // fraction of the app's memory class to use for decoded pages
+  private static final int CACHE_MEMORY_DIVISOR = 8;
+  // fraction of the page cache size to use for previews of tiled pages
+  private static final int PREVIEW_CACHE_DIVISOR = 4;
+  private static final int DEFAULT_THREAD_COUNT = 1;
+  // tablets show two pages at once, so decode them in parallel
+  private static final int TABLET_THREAD_COUNT = 2;
+  // downloads run on their own pool so they never block pages on the sdcard
+  private static final int DOWNLOAD_THREAD_COUNT = 2;
+  // pages waiting to be downloaded, beyond which downloads are refused
+  private static final int DOWNLOAD_QUEUE_SIZE = 16;
 
   private volatile static QuranPageWorker sInstance;
 
   private Context mContext;
   private Resources mResources;
+  private final TrimmableLruCache<String, RecyclingBitmapDrawable> mBitmapCache;
+  // tiles of pages too large to decode at once (see TiledPageDrawable)
+  private final TrimmableLruCache<TiledPageDrawable.TileKey, Bitmap> mTileCache;
+  // previews of tiled pages, which are drawn until their tiles are decoded
+  private final TrimmableLruCache<String, Bitmap> mPreviewCache;
+  private final QuranExecutorService mExecutorService;
+  private final ThreadPoolExecutor mDownloadExecutorService;
+  private final QuranExecutorService.Prioritizer mPrioritizer;
+  // pages being loaded, by cache key, so that requests for a page that is
+  // already loading wait for that load instead of loading it again.
+  private final Map<String, PendingLoad> mPendingLoads = new HashMap<>();
 
-  private static final ExecutorService sExecutorService =
-      new QuranExecutorService();
+  // the range of pages currently on screen, or -1 if unknown
+  private volatile int mFirstVisiblePage = -1;
+  private volatile int mLastVisiblePage = -1;
+
+  // running average of how long it takes to load a page, in milliseconds
+  private long mAverageLoadTime;
+  // size of the last page put in the cache, in bytes
+  private int mLastPageSize;
 
   private static class WorkerHandler extends Handler {
     @Override
@@ -53,34 +97,352 @@ public class QuranPageWorker {
   private QuranPageWorker(Context context) {
     mContext = context.getApplicationContext();
     mResources = mContext.getResources();
+
+    final int memoryClass = ((ActivityManager) mContext
+        .getSystemService(Context.ACTIVITY_SERVICE)).getMemoryClass();
+    final int cacheSize = 1024 * 1024 * memoryClass / CACHE_MEMORY_DIVISOR;
+    mBitmapCache = new TrimmableLruCache<String, RecyclingBitmapDrawable>(cacheSize) {
+      @Override
+      protected int sizeOf(String key, RecyclingBitmapDrawable drawable) {
+        final Bitmap bitmap = drawable.getBitmap();
+        return bitmap.getRowBytes() * bitmap.getHeight();
+      }
+
+      @Override
+      protected void entryRemoved(boolean evicted, String key,
+          RecyclingBitmapDrawable oldValue, RecyclingBitmapDrawable newValue) {
+        // once it's no longer displayed either, the bitmap goes to the pool
+        oldValue.setIsCached(false);
+      }
+    };
+    mTileCache = new TrimmableLruCache<TiledPageDrawable.TileKey, Bitmap>(cacheSize) {
+      @Override
+      protected int sizeOf(TiledPageDrawable.TileKey key, Bitmap tile) {
+        return tile.getRowBytes() * tile.getHeight();
+      }
+    };
+    mPreviewCache = new TrimmableLruCache<String, Bitmap>(
+        cacheSize / PREVIEW_CACHE_DIVISOR) {
+      @Override
+      protected int sizeOf(String key, Bitmap preview) {
+        return preview.getRowBytes() * preview.getHeight();
+      }
+    };
+    final QuranMemoryGovernor governor = QuranMemoryGovernor.getInstance();
+    governor.register(mBitmapCache);
+    governor.register(mTileCache);
+    governor.register(mPreviewCache);
+
+    final QuranScreenInfo qsi = QuranScreenInfo.getOrMakeInstance(mContext);
+    final int threadCount = qsi.isTablet(mContext) ?
+        Math.min(TABLET_THREAD_COUNT, Runtime.getRuntime().availableProcessors()) :
+        DEFAULT_THREAD_COUNT;
+    mExecutorService = new QuranExecutorService(threadCount);
+    mDownloadExecutorService = new ThreadPoolExecutor(DOWNLOAD_THREAD_COUNT,
+        DOWNLOAD_THREAD_COUNT, 0, TimeUnit.MILLISECONDS,
+        new ArrayBlockingQueue<Runnable>(DOWNLOAD_QUEUE_SIZE),
+        new ThreadPoolExecutor.AbortPolicy());
+    mPrioritizer = new QuranExecutorService.Prioritizer() {
+      @Override
+      public int getPriority(Runnable task, int currentPriority) {
+        return task instanceof QuranPageTask ?
+            getPriorityForPage(((QuranPageTask) task).getPageNumber()) :
+            currentPriority;
+      }
+    };
+  }
+
+  /**
+   * Sets the range of pages currently visible on screen, bumping the
+   * priority of any queued loads for those pages (and their neighbors)
+   * ahead of loads for pages that are further away.
+   * @param firstPage the first visible page
+   * @param lastPage the last visible page (same as the first page except
+   *                 in dual page mode)
+   */
+  public void setVisiblePages(int firstPage, int lastPage) {
+    mFirstVisiblePage = firstPage;
+    mLastVisiblePage = lastPage;
+    mExecutorService.reprioritize(mPrioritizer);
+  }
+
+  private int getPriorityForPage(int page) {
+    final int first = mFirstVisiblePage;
+    final int last = mLastVisiblePage;
+    if (first < 0 || (page >= first && page <= last)) {
+      return QuranExecutorService.PRIORITY_VISIBLE;
+    }
+
+    final int pagesOnScreen = last - first + 1;
+    if (page >= first - pagesOnScreen && page <= last + pagesOnScreen) {
+      return QuranExecutorService.PRIORITY_ADJACENT;
+    }
+    return QuranExecutorService.PRIORITY_PREFETCH;
+  }
+
+  private static String getCacheKey(String widthParam, int page) {
+    return widthParam + ":" + page;
   }
 
+  /**
+   * loads a page image. if the page is already in the memory cache, the
+   * tracker is notified immediately and null is returned; otherwise, a
+   * task is submitted to load the page in the background (or, if the page
+   * is already being loaded, the tracker is notified when that load is
+   * done). cancelling the returned future only cancels the load once no
+   * one else is waiting for it.
+   */
   public Future<?> loadPage(String widthParam, int page, AyahTracker tracker) {
-    QuranPageTask task = new QuranPageTask(mContext,
-        widthParam, tracker, page);
-    return sExecutorService.submit(task);
+    final RecyclingBitmapDrawable cached =
+        mBitmapCache.get(getCacheKey(widthParam, page));
+    if (cached != null) {
+      final Response response = Response.fromPage(page);
+      if (tracker != null) {
+        tracker.onLoadImageResponse(cached, response);
+      }
+      return null;
+    }
+    return requestPage(widthParam, page, tracker);
+  }
+
+  /**
+   * Prefetch a page into the page cache, unless it's already cached.
+   * @return the future for the prefetch, or null if there is nothing to do
+   */
+  public Future<?> prefetchPage(String widthParam, int page) {
+    if (mBitmapCache.get(getCacheKey(widthParam, page)) != null) {
+      return null;
+    }
+    return requestPage(widthParam, page, null);
+  }
+
+  private Future<?> requestPage(String widthParam, int page, AyahTracker tracker) {
+    final String key = getCacheKey(widthParam, page);
+    synchronized (mPendingLoads) {
+      PendingLoad load = mPendingLoads.get(key);
+      if (load == null) {
+        load = new PendingLoad(key, widthParam, page);
+        mPendingLoads.put(key, load);
+        startLoad(load);
+      } else if (load.mIsCancelled) {
+        // everyone gave up on it, but it is still running. if it already
+        // gave up on the page too, it is loaded again once it's done.
+        load.mIsCancelled = false;
+        load.mNeedsRestart = !load.mTask.resume();
+      }
+
+      final PageRequest request = new PageRequest(load, tracker);
+      load.mRequests.add(request);
+      return request;
+    }
+  }
+
+  private void startLoad(PendingLoad load) {
+    // pages that can't fit in the cache are drawn in tiles instead
+    load.mTask = new QuranPageTask(mContext, load.mWidthParam,
+        load.mPage, mBitmapCache.maxSize(), mPreviewCache.get(load.mKey),
+        mDownloadExecutorService);
+    load.mFuture = mExecutorService.submit(
+        load.mTask, getPriorityForPage(load.mPage));
+  }
+
+  /**
+   * Remove any cancelled tasks from the queue
+   */
+  public void purgeCancelledTasks() {
+    mExecutorService.purge();
+  }
+
+  /**
+   * @return the average time it takes to load a page, in milliseconds
+   */
+  public long getAverageLoadTime() {
+    return mAverageLoadTime;
+  }
+
+  /**
+   * @return an estimate of how many pages fit in the page cache, or 0 if
+   * no pages have been loaded yet. this goes down under memory pressure,
+   * which also lowers how far ahead pages are prefetched.
+   */
+  public int getCacheCapacityInPages() {
+    return mLastPageSize == 0 ? 0 : mBitmapCache.getLimit() / mLastPageSize;
   }
 
   // once complete, see if ImageView is still around and set bitmap.
   protected void onImageLoaded(QuranPageTask.QuranTaskData quranTaskData) {
+    final String key = getCacheKey(
+        quranTaskData.getWidthParam(), quranTaskData.getPageNumber());
+    synchronized (mPendingLoads) {
+      final PendingLoad load = mPendingLoads.get(key);
+      if (load != null && load.mNeedsRestart) {
+        // this is the empty result of a load that was given up on before
+        // someone asked for the page again
+        load.mNeedsRestart = false;
+        if (!load.mRequests.isEmpty()) {
+          startLoad(load);
+          return;
+        }
+      }
+    }
+
     final Response response = quranTaskData.getResponse();
-    BitmapDrawable drawable = null;
+    Drawable drawable = null;
     if (response != null) {
       final Bitmap bitmap = response.getBitmap();
       if (bitmap != null) {
-        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB) {
-          drawable = new BitmapDrawable(mResources, bitmap);
-        } else {
-          drawable = new RecyclingBitmapDrawable(mResources, bitmap);
+        mAverageLoadTime = mAverageLoadTime == 0 ? quranTaskData.getLoadTime() :
+            (mAverageLoadTime + quranTaskData.getLoadTime()) / 2;
+      }
+
+      if (response.isTiled()) {
+        // tiled pages aren't cached, only their previews and tiles are
+        if (bitmap != null && response.getWidthParam() != null) {
+          mPreviewCache.put(getCacheKey(
+              response.getWidthParam(), response.getPageNumber()), bitmap);
+          mPreviewCache.trimToLimit();
+        }
+        drawable = new TiledPageDrawable(response.getPageNumber(),
+            response.getRegionDecoder(), bitmap, mTileCache);
+      } else if (bitmap != null) {
+        mLastPageSize = bitmap.getRowBytes() * bitmap.getHeight();
+        final RecyclingBitmapDrawable bitmapDrawable =
+            new RecyclingBitmapDrawable(mResources, bitmap);
+        if (response.getWidthParam() != null) {
+          bitmapDrawable.setIsCached(true);
+          mBitmapCache.put(getCacheKey(
+              response.getWidthParam(), response.getPageNumber()), bitmapDrawable);
+          mBitmapCache.trimToLimit();
+        }
+        drawable = bitmapDrawable;
+      }
+    }
+
+    final List<PageRequest> requests;
+    synchronized (mPendingLoads) {
+      final PendingLoad load = mPendingLoads.remove(key);
+      if (load == null) {
+        requests = new ArrayList<>();
+      } else {
+        requests = load.mRequests;
+        load.mDone.countDown();
+      }
+    }
+
+    int notified = 0;
+    for (int i = 0, size = requests.size(); i < size; i++) {
+      final AyahTracker ayahTracker = requests.get(i).mTrackerReference.get();
+      if (ayahTracker != null) {
+        ayahTracker.onLoadImageResponse(drawable,
+            Response.lightResponse(response));
+        notified++;
+      }
+    }
+
+    if (notified == 0 && drawable instanceof TiledPageDrawable) {
+      // no one is going to display it (ex a prefetch)
+      ((TiledPageDrawable) drawable).release();
+    }
+
+    PageLoadMetrics.getInstance().recordSince(PageLoadMetrics.STAGE_DELIVERY,
+        quranTaskData.getWidthParam(), quranTaskData.getSubmitTime());
+  }
+
+  /**
+   * A page being loaded, along with everyone waiting for it. All but the
+   * latch are guarded by mPendingLoads.
+   */
+  private static class PendingLoad {
+    final String mKey;
+    final String mWidthParam;
+    final int mPage;
+    final List<PageRequest> mRequests = new ArrayList<>();
+    // counted down once the result is delivered (or never coming)
+    final CountDownLatch mDone = new CountDownLatch(1);
+    QuranPageTask mTask;
+    Future<?> mFuture;
+    // whether everyone waiting for it gave up on it
+    boolean mIsCancelled;
+    // whether it must be started again when its (empty) result comes in
+    boolean mNeedsRestart;
+
+    PendingLoad(String key, String widthParam, int page) {
+      mKey = key;
+      mWidthParam = widthParam;
+      mPage = page;
+    }
+  }
+
+  /**
+   * The future returned to each caller waiting on a {@link PendingLoad}
+   */
+  private class PageRequest implements Future<Object> {
+    final PendingLoad mLoad;
+    // use a WeakReference to ensure the AyahTracker can be gc
+    final WeakReference<AyahTracker> mTrackerReference;
+    volatile boolean mIsCancelled;
+
+    PageRequest(PendingLoad load, AyahTracker tracker) {
+      mLoad = load;
+      mTrackerReference = new WeakReference<>(tracker);
+    }
+
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+      synchronized (mPendingLoads) {
+        if (mIsCancelled || mLoad.mDone.getCount() == 0 ||
+            !mLoad.mRequests.remove(this)) {
+          // already cancelled or delivered
+          return false;
         }
+
+        mIsCancelled = true;
+        if (mLoad.mRequests.isEmpty()) {
+          mLoad.mIsCancelled = true;
+          // this also stops the page from being downloaded, if it isn't yet.
+          // if the task already started, it stays pending until its result
+          // comes in (and the page still gets cached then), so that asking
+          // for the page again doesn't start another load.
+          if (!mLoad.mTask.cancel()) {
+            // the task never started, so no result is coming for this load
+            mLoad.mFuture.cancel(false);
+            mPendingLoads.remove(mLoad.mKey);
+            mLoad.mDone.countDown();
+          }
+        }
+        return true;
+      }
+    }
+
+    @Override
+    public boolean isCancelled() {
+      return mIsCancelled;
+    }
+
+    @Override
+    public boolean isDone() {
+      return mIsCancelled || mLoad.mDone.getCount() == 0;
+    }
+
+    @Override
+    public Object get() throws InterruptedException, ExecutionException {
+      if (mIsCancelled) {
+        throw new CancellationException();
       }
+      mLoad.mDone.await();
+      return null;
     }
 
-    final AyahTracker ayahTracker =
-        quranTaskData.getAyahTrackerReference().get();
-    if (ayahTracker != null) {
-      ayahTracker.onLoadImageResponse(drawable,
-          Response.lightResponse(response));
+    @Override
+    public Object get(long timeout, @NonNull TimeUnit unit)
+        throws InterruptedException, ExecutionException, TimeoutException {
+      if (mIsCancelled) {
+        throw new CancellationException();
+      }
+      if (!mLoad.mDone.await(timeout, unit)) {
+        throw new TimeoutException();
+      }
+      return null;
     }
   }
 }
@@ -1,6 +1,7 @@
 package com.quran.labs.androidquran.ui.helpers;
 
 import com.quran.labs.androidquran.BuildConfig;
+import com.quran.labs.androidquran.util.QuranBitmapPool;
 
 import android.content.res.Resources;
 import android.graphics.Bitmap;
@@ -11,6 +12,9 @@ import timber.log.Timber;
 /**
  * taken from android documentation bitmap-fun example
  * http://developer.android.com/training/displaying-bitmaps/cache-bitmap.html
+ *
+ * instead of recycling the bitmap once it is no longer displayed or cached,
+ * the bitmap is returned to the {@link QuranBitmapPool} for reuse.
  */
 public class RecyclingBitmapDrawable extends BitmapDrawable {
 
@@ -18,6 +22,7 @@ public class RecyclingBitmapDrawable extends BitmapDrawable {
     private int mDisplayRefCount = 0;
 
     private boolean mHasBeenDisplayed;
+    private boolean mIsReleased;
 
     public RecyclingBitmapDrawable(Resources res, Bitmap bitmap) {
         super(res, bitmap);
@@ -40,7 +45,7 @@ public class RecyclingBitmapDrawable extends BitmapDrawable {
             }
         }
 
-        // Check to see if recycle() can be called
+        // Check to see if the bitmap can be released
         checkState();
     }
 
@@ -59,21 +64,22 @@ public class RecyclingBitmapDrawable extends BitmapDrawable {
             }
         }
 
-        // Check to see if recycle() can be called
+        // Check to see if the bitmap can be released
         checkState();
     }
 
     private synchronized void checkState() {
         // If the drawable cache and display ref counts = 0, and this drawable
-        // has been displayed, then recycle
+        // has been displayed, then give the bitmap back to the pool
         if (mCacheRefCount <= 0 && mDisplayRefCount <= 0 && mHasBeenDisplayed
-                && hasValidBitmap()) {
+                && hasValidBitmap() && !mIsReleased) {
             if (BuildConfig.DEBUG) {
-                Timber.d("No longer being used or cached so recycling. "
+                Timber.d("No longer being used or cached so releasing. "
                         + toString());
             }
 
-            getBitmap().recycle();
+            mIsReleased = true;
+            QuranBitmapPool.getInstance().put(getBitmap());
         }
     }
 
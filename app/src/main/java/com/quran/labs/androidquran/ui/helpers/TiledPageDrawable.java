@@ -0,0 +1,361 @@
+package com.quran.labs.androidquran.ui.helpers;
+
+import com.quran.labs.androidquran.util.TrimmableLruCache;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.BitmapRegionDecoder;
+import android.graphics.Canvas;
+import android.graphics.ColorFilter;
+import android.graphics.Paint;
+import android.graphics.PixelFormat;
+import android.graphics.Rect;
+import android.graphics.RectF;
+import android.graphics.drawable.Drawable;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.support.annotation.NonNull;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import timber.log.Timber;
+
+/**
+ * A drawable for page images that are too large to decode all at once.
+ * Only the tiles of the page that are visible are decoded (in the
+ * background, at a sample size matching the scale the page is drawn at),
+ * and decoded tiles are kept in an LRU cache shared by all tiled pages.
+ * Tiles are cached by page rather than by drawable, so coming back to a
+ * page reuses the tiles that are still cached. Until a tile is decoded, a
+ * low resolution preview of the page is drawn in its place.
+ *
+ * The view drawing this is responsible for telling it which part of the
+ * page is visible through {@link #setVisibleRegion(RectF, float)}. Tiles
+ * that are no longer visible by the time they would be decoded (because
+ * the page was panned or zoomed since they were requested) are skipped, so
+ * that the visible tiles don't wait behind them.
+ */
+public class TiledPageDrawable extends Drawable {
+  // size of a decoded tile, in pixels
+  private static final int TILE_SIZE = 256;
+
+  // tiles are decoded one at a time, in the order they're requested
+  private static final ExecutorService sTileExecutor =
+      Executors.newSingleThreadExecutor();
+  private static final Handler sHandler = new Handler(Looper.getMainLooper());
+
+  private final int mPage;
+  private final BitmapRegionDecoder mDecoder;
+  private final Bitmap mPreview;
+  private final TrimmableLruCache<TileKey, Bitmap> mTileCache;
+  private final int mWidth;
+  private final int mHeight;
+  private final Paint mPaint = new Paint(Paint.FILTER_BITMAP_FLAG);
+  private final Set<TileKey> mPendingTiles = new HashSet<>();
+  // reused to look tiles up while drawing
+  private final TileKey mLookupKey = new TileKey();
+
+  // the visible part of the page, in page coordinates
+  private final RectF mVisibleRegion = new RectF();
+  private final Rect mTileRect = new Rect();
+  private boolean mHasVisibleRegion;
+  private float mScale = 1.0f;
+  // the tiles drawn last, from VisibleTiles.pack, for the tile thread to check
+  private volatile long mVisibleTiles = VisibleTiles.NONE;
+
+  private int mDisplayRefCount = 0;
+  private boolean mHasBeenDisplayed;
+  private volatile boolean mIsReleased;
+
+  /**
+   * @param page the page number
+   * @param decoder the region decoder for the page image
+   * @param preview a low resolution preview of the page, or null
+   * @param tileCache the cache to keep decoded tiles in
+   */
+  public TiledPageDrawable(int page, BitmapRegionDecoder decoder,
+      Bitmap preview, TrimmableLruCache<TileKey, Bitmap> tileCache) {
+    mPage = page;
+    mDecoder = decoder;
+    mPreview = preview;
+    mTileCache = tileCache;
+    mWidth = decoder.getWidth();
+    mHeight = decoder.getHeight();
+  }
+
+  /**
+   * Set the part of the page that is visible.
+   * @param region the visible region in page coordinates, or null if
+   *               nothing is visible
+   * @param scale the scale at which the page is being drawn
+   */
+  public void setVisibleRegion(RectF region, float scale) {
+    mHasVisibleRegion = region != null && scale > 0;
+    if (mHasVisibleRegion) {
+      mVisibleRegion.set(region);
+      mScale = scale;
+    }
+  }
+
+  @Override
+  public void draw(@NonNull Canvas canvas) {
+    // image views set the bounds to the intrinsic size, so the tiles can
+    // be drawn in page coordinates.
+    final Rect bounds = getBounds();
+    if (mPreview != null) {
+      canvas.drawBitmap(mPreview, null, bounds, mPaint);
+    }
+
+    if (!mHasVisibleRegion || mIsReleased) {
+      mVisibleTiles = VisibleTiles.NONE;
+      return;
+    }
+
+    final int sampleSize = getSampleSize(mScale);
+    final int tileSize = TILE_SIZE * sampleSize;
+    final int firstColumn = Math.max(0, (int) (mVisibleRegion.left / tileSize));
+    final int lastColumn = Math.min((mWidth - 1) / tileSize,
+        (int) (mVisibleRegion.right / tileSize));
+    final int firstRow = Math.max(0, (int) (mVisibleRegion.top / tileSize));
+    final int lastRow = Math.min((mHeight - 1) / tileSize,
+        (int) (mVisibleRegion.bottom / tileSize));
+    mVisibleTiles = VisibleTiles.pack(sampleSize,
+        firstRow, lastRow, firstColumn, lastColumn);
+
+    for (int row = firstRow; row <= lastRow; row++) {
+      for (int column = firstColumn; column <= lastColumn; column++) {
+        mTileRect.set(column * tileSize, row * tileSize,
+            Math.min(mWidth, (column + 1) * tileSize),
+            Math.min(mHeight, (row + 1) * tileSize));
+        mLookupKey.set(TileKey.pack(mPage, mWidth, sampleSize, row, column));
+        final Bitmap tile = mTileCache.get(mLookupKey);
+        if (tile != null) {
+          canvas.drawBitmap(tile, null, mTileRect, mPaint);
+        } else if (!mPendingTiles.contains(mLookupKey)) {
+          final TileKey key = mLookupKey.copy();
+          mPendingTiles.add(key);
+          sTileExecutor.execute(new TileTask(key, new Rect(mTileRect),
+              sampleSize, row, column));
+        }
+      }
+    }
+  }
+
+  /**
+   * Get the largest power of 2 sample size that still decodes tiles with
+   * at least as many pixels as they take on screen.
+   */
+  static int getSampleSize(float scale) {
+    int sampleSize = 1;
+    while (sampleSize * 2 * scale <= 1.0f) {
+      sampleSize *= 2;
+    }
+    return sampleSize;
+  }
+
+  private void onTileDecoded(TileKey key, Bitmap tile, boolean isSkipped) {
+    mPendingTiles.remove(key);
+    if (mIsReleased) {
+      return;
+    }
+
+    if (tile != null) {
+      mTileCache.put(key, tile);
+      mTileCache.trimToLimit();
+      invalidateSelf();
+    } else if (isSkipped) {
+      // it may have become visible again since it was skipped, in which
+      // case drawing asks for it again
+      invalidateSelf();
+    }
+  }
+
+  /**
+   * Notify the drawable that the displayed state has changed. Once it is no
+   * longer displayed anywhere, its tiles and decoder are released.
+   */
+  public void setIsDisplayed(boolean isDisplayed) {
+    if (isDisplayed) {
+      mDisplayRefCount++;
+      mHasBeenDisplayed = true;
+    } else {
+      mDisplayRefCount--;
+    }
+
+    if (mDisplayRefCount <= 0 && mHasBeenDisplayed) {
+      release();
+    }
+  }
+
+  /**
+   * Release the tiles and decoder of this page. This happens automatically
+   * once the drawable is no longer displayed.
+   */
+  public void release() {
+    if (mIsReleased) {
+      return;
+    }
+    mIsReleased = true;
+    mPendingTiles.clear();
+
+    // the tiles stay cached for the next time the page is shown
+    // recycle on the tile thread so that it never happens mid-decode
+    sTileExecutor.execute(new Runnable() {
+      @Override
+      public void run() {
+        mDecoder.recycle();
+      }
+    });
+  }
+
+  @Override
+  public int getIntrinsicWidth() {
+    return mWidth;
+  }
+
+  @Override
+  public int getIntrinsicHeight() {
+    return mHeight;
+  }
+
+  @Override
+  public void setAlpha(int alpha) {
+    mPaint.setAlpha(alpha);
+    invalidateSelf();
+  }
+
+  @Override
+  public void setColorFilter(ColorFilter colorFilter) {
+    mPaint.setColorFilter(colorFilter);
+    invalidateSelf();
+  }
+
+  @Override
+  public int getOpacity() {
+    return PixelFormat.TRANSLUCENT;
+  }
+
+  /**
+   * The key of a decoded tile: the page, the width of the page image (pages
+   * come in different widths), the sample size, the row and the column,
+   * packed into a long. Keys are mutable so that drawing can look tiles up
+   * without allocating; keys put in a cache must not be changed.
+   */
+  public static final class TileKey {
+    private long mValue;
+
+    TileKey() {
+    }
+
+    private TileKey(long value) {
+      mValue = value;
+    }
+
+    static long pack(int page, int width, int sampleSize, int row, int column) {
+      return ((long) (width & 0xffff) << 40) |
+          ((long) (page & 0xfff) << 28) |
+          ((long) (Integer.numberOfTrailingZeros(sampleSize) & 0xf) << 24) |
+          ((row & 0xfff) << 12) | (column & 0xfff);
+    }
+
+    void set(long value) {
+      mValue = value;
+    }
+
+    TileKey copy() {
+      return new TileKey(mValue);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      return o instanceof TileKey && ((TileKey) o).mValue == mValue;
+    }
+
+    @Override
+    public int hashCode() {
+      return (int) (mValue ^ (mValue >>> 32));
+    }
+  }
+
+  /**
+   * The range of visible tiles and their sample size, packed into a long so
+   * that the tile thread can read them all at once.
+   */
+  static final class VisibleTiles {
+    // no tiles are visible
+    static final long NONE = -1;
+
+    private VisibleTiles() {
+    }
+
+    static long pack(int sampleSize,
+        int firstRow, int lastRow, int firstColumn, int lastColumn) {
+      return ((long) (Integer.numberOfTrailingZeros(sampleSize) & 0xf) << 48) |
+          ((long) (firstRow & 0xfff) << 36) | ((long) (lastRow & 0xfff) << 24) |
+          ((firstColumn & 0xfff) << 12) | (lastColumn & 0xfff);
+    }
+
+    /**
+     * @return whether the tile is one of the visible tiles
+     */
+    static boolean contains(long visibleTiles,
+        int sampleSize, int row, int column) {
+      if (visibleTiles == NONE ||
+          (visibleTiles >>> 48) != Integer.numberOfTrailingZeros(sampleSize)) {
+        return false;
+      }
+      final int firstRow = (int) ((visibleTiles >>> 36) & 0xfff);
+      final int lastRow = (int) ((visibleTiles >>> 24) & 0xfff);
+      final int firstColumn = (int) ((visibleTiles >>> 12) & 0xfff);
+      final int lastColumn = (int) (visibleTiles & 0xfff);
+      return row >= firstRow && row <= lastRow &&
+          column >= firstColumn && column <= lastColumn;
+    }
+  }
+
+  private class TileTask implements Runnable {
+    private final TileKey mKey;
+    private final Rect mRegion;
+    private final int mSampleSize;
+    private final int mRow;
+    private final int mColumn;
+
+    TileTask(TileKey key, Rect region, int sampleSize, int row, int column) {
+      mKey = key;
+      mRegion = region;
+      mSampleSize = sampleSize;
+      mRow = row;
+      mColumn = column;
+    }
+
+    @Override
+    public void run() {
+      Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+      Bitmap tile = null;
+      final boolean isSkipped =
+          !VisibleTiles.contains(mVisibleTiles, mSampleSize, mRow, mColumn);
+      if (!mIsReleased && !isSkipped) {
+        final BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inPreferredConfig = Bitmap.Config.ALPHA_8;
+        options.inSampleSize = mSampleSize;
+        try {
+          tile = mDecoder.decodeRegion(mRegion, options);
+        } catch (OutOfMemoryError | IllegalStateException e) {
+          Timber.d(e, "unable to decode tile %s of page %d", mRegion, mPage);
+        }
+      }
+
+      final Bitmap result = tile;
+      sHandler.post(new Runnable() {
+        @Override
+        public void run() {
+          onTileDecoded(mKey, result, isSkipped);
+        }
+      });
+    }
+  }
+}
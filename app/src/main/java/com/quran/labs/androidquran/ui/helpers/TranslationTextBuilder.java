@@ -0,0 +1,107 @@
+package com.quran.labs.androidquran.ui.helpers;
+
+import com.quran.labs.androidquran.common.QuranAyah;
+import com.quran.labs.androidquran.model.translation.ArabicDatabaseUtils;
+
+import android.content.Context;
+import android.graphics.Typeface;
+import android.os.Build;
+import android.text.SpannableString;
+import android.text.SpannableStringBuilder;
+import android.text.Spanned;
+import android.text.SpannedString;
+import android.text.TextUtils;
+import android.text.style.RelativeSizeSpan;
+import android.text.style.StyleSpan;
+
+/**
+ * Builds the styled text shown for each ayah in the translation view. This
+ * is done when the ayahs are loaded, on a background thread, and the text
+ * is kept with each ayah, so the view only has to lay it out.
+ */
+public class TranslationTextBuilder {
+  private static final boolean USE_UTHMANI_SPAN =
+      Build.VERSION.SDK_INT > Build.VERSION_CODES.JELLY_BEAN_MR1;
+  private static final float ARABIC_RELATIVE_SIZE = 1.4f;
+
+  private static CharSequence sBasmallah;
+
+  private TranslationTextBuilder() {
+  }
+
+  /**
+   * @return the text of the ayah, and build it if it isn't built yet
+   */
+  public static CharSequence getDisplayText(Context context, QuranAyah ayah) {
+    CharSequence text = ayah.getDisplayText();
+    if (text == null) {
+      text = buildAyahText(context, ayah);
+      ayah.setDisplayText(text);
+    }
+    return text;
+  }
+
+  /**
+   * @return the arabic text (if any), translation and other translations
+   * of the ayah, in the way they're shown
+   */
+  public static CharSequence buildAyahText(Context context, QuranAyah ayah) {
+    final SpannableStringBuilder builder = new SpannableStringBuilder();
+
+    // arabic
+    String ayahText = ayah.getText();
+    if (!TextUtils.isEmpty(ayahText)) {
+      ayahText = ArabicDatabaseUtils.getAyahWithoutBasmallah(
+          ayah.getSura(), ayah.getAyah(), ayahText);
+
+      SpannableString arabicText = new SpannableString(ayahText);
+      if (USE_UTHMANI_SPAN) {
+        UthmaniSpan uthmaniSpan = new UthmaniSpan(context);
+        int length = ayahText.length();
+        arabicText.setSpan(uthmaniSpan, 0, length,
+            Spanned.SPAN_EXCLUSIVE_EXCLUSIVE);
+        arabicText.setSpan(new RelativeSizeSpan(ARABIC_RELATIVE_SIZE),
+            0, length, Spanned.SPAN_EXCLUSIVE_EXCLUSIVE);
+        arabicText.setSpan(new VerseLineHeightSpan(),
+            0, length, Spanned.SPAN_EXCLUSIVE_EXCLUSIVE);
+      }
+      builder.append(arabicText).append("\n\n");
+    }
+
+    // translation
+    builder.append(ayah.getTranslation());
+
+    // other translations, each after its name
+    for (int i = 0, count = ayah.getExtraTranslationCount(); i < count; i++) {
+      final String extraText = ayah.getExtraTranslation(i);
+      if (extraText != null) {
+        final SpannableString name =
+            new SpannableString(ayah.getExtraTranslationName(i));
+        name.setSpan(new StyleSpan(Typeface.BOLD), 0, name.length(),
+            Spanned.SPAN_EXCLUSIVE_EXCLUSIVE);
+        builder.append("\n\n").append(name).append("\n").append(extraText);
+      }
+    }
+
+    // the text is shared between threads, so it shouldn't be mutable
+    return new SpannedString(builder);
+  }
+
+  /**
+   * @return the basmallah shown before the first ayah of each sura
+   */
+  public static synchronized CharSequence getBasmallah(Context context) {
+    if (sBasmallah == null) {
+      SpannableString str = new SpannableString(ArabicDatabaseUtils.AR_BASMALLAH);
+      if (USE_UTHMANI_SPAN) {
+        UthmaniSpan uthmaniSpan = new UthmaniSpan(context);
+        int length = str.length();
+        str.setSpan(uthmaniSpan, 0, length, Spanned.SPAN_EXCLUSIVE_EXCLUSIVE);
+        str.setSpan(new RelativeSizeSpan(ARABIC_RELATIVE_SIZE),
+            0, length, Spanned.SPAN_EXCLUSIVE_EXCLUSIVE);
+      }
+      sBasmallah = new SpannedString(str);
+    }
+    return sBasmallah;
+  }
+}
@@ -2,6 +2,9 @@ package com.quran.labs.androidquran.ui.util;
 
 import com.quran.labs.androidquran.common.AyahBounds;
 import com.quran.labs.androidquran.common.QuranAyah;
+import com.quran.labs.androidquran.data.AyahHitIndex;
+import com.quran.labs.androidquran.data.AyahKey;
+import com.quran.labs.androidquran.util.IntSet;
 import com.quran.labs.androidquran.widgets.AyahToolBar;
 import com.quran.labs.androidquran.widgets.HighlightingImageView;
 
@@ -11,33 +14,34 @@ import android.support.annotation.NonNull;
 import android.util.SparseArray;
 import android.widget.ImageView;
 
-import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
-import java.util.Set;
 
 import timber.log.Timber;
 
 public class ImageAyahUtils {
 
-   private static QuranAyah getAyahFromKey(String key){
-      String[] parts = key.split(":");
-      QuranAyah result = null;
-      if (parts.length == 2){
-         try {
-            int sura = Integer.parseInt(parts[0]);
-            int ayah = Integer.parseInt(parts[1]);
-            result = new QuranAyah(sura, ayah);
-         }
-         catch (Exception e){
-           // no op
-         }
-      }
-      return result;
+   private static QuranAyah getAyahFromKey(int key){
+      return new QuranAyah(AyahKey.getSura(key), AyahKey.getAyah(key));
    }
 
+  public static QuranAyah getAyahFromCoordinates(AyahHitIndex hitIndex,
+      HighlightingImageView imageView, float xc, float yc) {
+    if (hitIndex == null || imageView == null) {
+      return null;
+    }
+
+    float[] pageXY = getPageXY(xc, yc, imageView);
+    if (pageXY == null) {
+      return null;
+    }
+
+    final int entry = hitIndex.findEntry(pageXY[0], pageXY[1]);
+    return entry < 0 ? null :
+        new QuranAyah(hitIndex.getSura(entry), hitIndex.getAyah(entry));
+  }
+
    public static QuranAyah getAyahFromCoordinates(
-           Map<String, List<AyahBounds>> coords,
+           SparseArray<List<AyahBounds>> coords,
            HighlightingImageView imageView, float xc, float yc) {
       if (coords == null || imageView == null){ return null; }
 
@@ -49,21 +53,21 @@ public class ImageAyahUtils {
       int closestLine = -1;
       int closestDelta = -1;
 
-      final SparseArray<List<String>> lineAyahs = new SparseArray<>();
-      final Set<String> keys = coords.keySet();
-      for (String key : keys){
-         List<AyahBounds> bounds = coords.get(key);
+      final SparseArray<IntSet> lineAyahs = new SparseArray<>();
+      for (int k = 0, keys = coords.size(); k < keys; k++){
+         final int key = coords.keyAt(k);
+         List<AyahBounds> bounds = coords.valueAt(k);
          if (bounds == null){ continue; }
 
          for (AyahBounds b : bounds){
             // only one AyahBound will exist for an ayah on a particular line
             int line = b.getLine();
-            List<String> items = lineAyahs.get(line);
+            IntSet items = lineAyahs.get(line);
             if (items == null){
-               items = new ArrayList<>();
+               items = new IntSet();
+               lineAyahs.put(line, items);
             }
             items.add(key);
-            lineAyahs.put(line, items);
 
             final RectF boundsRect = b.getBounds();
             if (boundsRect.contains(x, y)) {
@@ -81,11 +85,12 @@ public class ImageAyahUtils {
 
       if (closestLine > -1){
          int leastDeltaX = -1;
-         String closestAyah = null;
-         List<String> ayat = lineAyahs.get(closestLine);
+         int closestAyah = -1;
+         IntSet ayat = lineAyahs.get(closestLine);
          if (ayat != null){
             Timber.d("no exact match, " + ayat.size() + " candidates.");
-            for (String ayah : ayat){
+            for (int a = 0, size = ayat.size(); a < size; a++){
+               final int ayah = ayat.get(a);
                List<AyahBounds> bounds = coords.get(ayah);
                if (bounds == null){ continue; }
                for (AyahBounds b : bounds){
@@ -113,8 +118,9 @@ public class ImageAyahUtils {
             }
          }
 
-         if (closestAyah != null){
-            Timber.d("fell back to closest ayah of " + closestAyah);
+         if (closestAyah != -1){
+            Timber.d("fell back to closest ayah of " + AyahKey.getSura(closestAyah) +
+                ":" + AyahKey.getAyah(closestAyah));
             return getAyahFromKey(closestAyah);
          }
       }
@@ -183,15 +189,14 @@ public class ImageAyahUtils {
   }
 
   public static RectF getYBoundsForHighlight(
-      Map<String, List<AyahBounds>> coordinateData, int sura, int ayah) {
-    if (coordinateData == null ||
-        coordinateData.get(sura + ":" + ayah) == null) {
+      SparseArray<List<AyahBounds>> coordinateData, int sura, int ayah) {
+    final List<AyahBounds> ayahBounds = coordinateData == null ?
+        null : coordinateData.get(AyahKey.of(sura, ayah));
+    if (ayahBounds == null) {
       return null;
     }
 
-
     RectF ayahBoundsRect = null;
-    final List<AyahBounds> ayahBounds = coordinateData.get(sura + ":" + ayah);
     for (AyahBounds bounds : ayahBounds) {
       if (ayahBoundsRect == null) {
         ayahBoundsRect = bounds.getBounds();
@@ -0,0 +1,90 @@
+package com.quran.labs.androidquran.util;
+
+import java.util.Arrays;
+
+/**
+ * A set of ints, kept as a sorted array. Meant for small sets (like the
+ * ayahs highlighted on a page) that are checked and iterated much more
+ * often than they are changed. Iterate by index to avoid allocating:
+ *
+ * for (int i = 0, size = set.size(); i < size; i++) { set.get(i); }
+ */
+public class IntSet {
+  private static final int DEFAULT_CAPACITY = 8;
+
+  private int[] mValues;
+  private int mSize;
+
+  public IntSet() {
+    this(DEFAULT_CAPACITY);
+  }
+
+  public IntSet(int capacity) {
+    mValues = new int[Math.max(1, capacity)];
+  }
+
+  /**
+   * @return true if the value was added, false if it was already there
+   */
+  public boolean add(int value) {
+    int index = Arrays.binarySearch(mValues, 0, mSize, value);
+    if (index >= 0) {
+      return false;
+    }
+
+    index = -(index + 1);
+    if (mSize == mValues.length) {
+      mValues = Arrays.copyOf(mValues, mSize * 2);
+    }
+    System.arraycopy(mValues, index, mValues, index + 1, mSize - index);
+    mValues[index] = value;
+    mSize++;
+    return true;
+  }
+
+  public void addAll(IntSet other) {
+    for (int i = 0; i < other.mSize; i++) {
+      add(other.mValues[i]);
+    }
+  }
+
+  /**
+   * @return true if the value was removed, false if it wasn't there
+   */
+  public boolean remove(int value) {
+    final int index = Arrays.binarySearch(mValues, 0, mSize, value);
+    if (index < 0) {
+      return false;
+    }
+
+    System.arraycopy(mValues, index + 1, mValues, index, mSize - index - 1);
+    mSize--;
+    return true;
+  }
+
+  public boolean contains(int value) {
+    return Arrays.binarySearch(mValues, 0, mSize, value) >= 0;
+  }
+
+  /**
+   * @return the value at the given index, in ascending order
+   */
+  public int get(int index) {
+    if (index >= mSize) {
+      throw new IndexOutOfBoundsException(index + " >= " + mSize);
+    }
+    return mValues[index];
+  }
+
+  public int size() {
+    return mSize;
+  }
+
+  public boolean isEmpty() {
+    return mSize == 0;
+  }
+
+  public void clear() {
+    mSize = 0;
+  }
+}
@@ -0,0 +1,79 @@
+package com.quran.labs.androidquran.util;
+
+/**
+ * A histogram of latencies, in milliseconds, with buckets that get wider
+ * as latencies get larger (so that it stays small no matter how many
+ * samples it holds). Percentiles are reported as the upper bound of the
+ * bucket they fall in.
+ */
+public class LatencyHistogram {
+  private static final long[] BUCKET_BOUNDS = {
+      1, 2, 3, 4, 5, 6, 8, 10, 12, 16, 20, 25, 32, 40, 50, 64, 80, 100,
+      128, 160, 200, 256, 320, 400, 512, 640, 800, 1024, 1280, 1600, 2048,
+      2560, 3200, 4096, 5120, 6400, 8192, 10240, Long.MAX_VALUE };
+
+  private final long[] mCounts = new long[BUCKET_BOUNDS.length];
+  private long mCount;
+  private long mMax;
+
+  public synchronized void record(long millis) {
+    int low = 0;
+    int high = BUCKET_BOUNDS.length - 1;
+    while (low < high) {
+      final int mid = (low + high) >>> 1;
+      if (millis <= BUCKET_BOUNDS[mid]) {
+        high = mid;
+      } else {
+        low = mid + 1;
+      }
+    }
+    mCounts[low]++;
+    mCount++;
+    mMax = Math.max(mMax, millis);
+  }
+
+  /**
+   * @param percentile the percentile, between 0 and 1 (ex 0.95 for p95)
+   * @return the latency that the given percentile of samples are at or
+   * below, or 0 if there are no samples
+   */
+  public synchronized long getPercentile(double percentile) {
+    if (mCount == 0) {
+      return 0;
+    }
+
+    final long rank = Math.max(1, (long) Math.ceil(percentile * mCount));
+    long seen = 0;
+    for (int i = 0; i < mCounts.length; i++) {
+      seen += mCounts[i];
+      if (seen >= rank) {
+        // the last bucket is unbounded, and nothing is above the max
+        return Math.min(BUCKET_BOUNDS[i], mMax);
+      }
+    }
+    return mMax;
+  }
+
+  public synchronized long getCount() {
+    return mCount;
+  }
+
+  public synchronized long getMax() {
+    return mMax;
+  }
+
+  public synchronized void clear() {
+    for (int i = 0; i < mCounts.length; i++) {
+      mCounts[i] = 0;
+    }
+    mCount = 0;
+    mMax = 0;
+  }
+
+  @Override
+  public synchronized String toString() {
+    return "n=" + mCount + " p50=" + getPercentile(0.5) + "ms p95=" +
+        getPercentile(0.95) + "ms p99=" + getPercentile(0.99) + "ms max=" +
+        mMax + "ms";
+  }
+}
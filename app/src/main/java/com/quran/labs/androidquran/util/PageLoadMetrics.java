@@ -0,0 +1,105 @@
+package com.quran.labs.androidquran.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency histograms for each stage of loading a page, per page width,
+ * so that it's possible to tell why pages are slow to load.
+ */
+public class PageLoadMetrics {
+  // time spent waiting for a thread, on both the sdcard and network pools
+  public static final int STAGE_QUEUE_WAIT = 0;
+  // reading the page from the sdcard
+  public static final int STAGE_FILE_READ = 1;
+  // decoding the page that was read from the sdcard
+  public static final int STAGE_DECODE = 2;
+  // downloading (and decoding, since it's streamed) a page
+  public static final int STAGE_NETWORK = 3;
+  // time between a page being loaded and it being given to the ui
+  public static final int STAGE_DELIVERY = 4;
+
+  private static final String[] STAGE_NAMES =
+      { "queue wait", "file read", "decode", "network", "delivery" };
+
+  private static final PageLoadMetrics sInstance = new PageLoadMetrics();
+
+  // histograms by stage, then width
+  private final List<Map<String, LatencyHistogram>> mHistograms;
+
+  public static PageLoadMetrics getInstance() {
+    return sInstance;
+  }
+
+  PageLoadMetrics() {
+    mHistograms = new ArrayList<>(STAGE_NAMES.length);
+    for (int i = 0; i < STAGE_NAMES.length; i++) {
+      mHistograms.add(new TreeMap<String, LatencyHistogram>());
+    }
+  }
+
+  /**
+   * Get a monotonic timestamp to measure stages with.
+   */
+  public static long now() {
+    return System.nanoTime();
+  }
+
+  /**
+   * Record how long a stage took
+   * @param stage the stage (one of the STAGE_ constants)
+   * @param widthParam the width of the page being loaded
+   * @param startTime the time at which the stage started, from {@link #now()}
+   */
+  public void recordSince(int stage, String widthParam, long startTime) {
+    record(stage, widthParam,
+        TimeUnit.NANOSECONDS.toMillis(now() - startTime));
+  }
+
+  public void record(int stage, String widthParam, long millis) {
+    getHistogram(stage, widthParam).record(millis);
+  }
+
+  /**
+   * @return the histogram for the given stage and width (which is empty if
+   * nothing was recorded for them yet)
+   */
+  public LatencyHistogram getHistogram(int stage, String widthParam) {
+    final Map<String, LatencyHistogram> histograms = mHistograms.get(stage);
+    final String key = String.valueOf(widthParam);
+    synchronized (histograms) {
+      LatencyHistogram histogram = histograms.get(key);
+      if (histogram == null) {
+        histogram = new LatencyHistogram();
+        histograms.put(key, histogram);
+      }
+      return histogram;
+    }
+  }
+
+  public void clear() {
+    for (Map<String, LatencyHistogram> histograms : mHistograms) {
+      synchronized (histograms) {
+        histograms.clear();
+      }
+    }
+  }
+
+  @Override
+  public String toString() {
+    final StringBuilder builder = new StringBuilder("page load latencies:");
+    for (int i = 0; i < STAGE_NAMES.length; i++) {
+      final Map<String, LatencyHistogram> histograms = mHistograms.get(i);
+      synchronized (histograms) {
+        for (Map.Entry<String, LatencyHistogram> entry : histograms.entrySet()) {
+          builder.append("\n").append(STAGE_NAMES[i]).append(" ")
+              .append(entry.getKey()).append(": ").append(entry.getValue());
+        }
+      }
+    }
+    return builder.toString();
+  }
+}
@@ -0,0 +1,141 @@
+package com.quran.labs.androidquran.util;
+
+import android.graphics.Bitmap;
+import android.support.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A small pool of page bitmaps that are no longer displayed or cached,
+ * used as BitmapFactory.Options.inBitmap when decoding new pages. Since
+ * all pages of a given width decode to ALPHA_8 bitmaps of the same size,
+ * reusing them avoids allocating a multi-megabyte bitmap on every decode.
+ */
+public class QuranBitmapPool implements QuranMemoryGovernor.MemoryConsumer {
+  private static final int MAX_POOL_SIZE = 3;
+
+  private static final QuranBitmapPool sInstance = new QuranBitmapPool();
+
+  private final List<Bitmap> mPool = new ArrayList<>(MAX_POOL_SIZE);
+  // bitmaps still being read (ex being stored), once for each hold, and
+  // those of them that were put in the pool while held
+  private final List<Bitmap> mHeld = new ArrayList<>();
+  private final List<Bitmap> mPutWhileHeld = new ArrayList<>();
+  private int mMaxPoolSize = MAX_POOL_SIZE;
+  private int mHitCount;
+  private int mMissCount;
+
+  public static QuranBitmapPool getInstance() {
+    return sInstance;
+  }
+
+  private QuranBitmapPool() {
+    QuranMemoryGovernor.getInstance().register(this);
+  }
+
+  /**
+   * Get a bitmap from the pool that can be reused for decoding an image
+   * of the given dimensions and config.
+   * @return a bitmap to reuse, or null if there isn't one in the pool
+   */
+  @Nullable
+  public synchronized Bitmap get(int width, int height, Bitmap.Config config) {
+    for (int i = mPool.size() - 1; i >= 0; i--) {
+      final Bitmap bitmap = mPool.get(i);
+      if (bitmap.isRecycled()) {
+        mPool.remove(i);
+      } else if (bitmap.getWidth() == width && bitmap.getHeight() == height &&
+          bitmap.getConfig() == config) {
+        mPool.remove(i);
+        mHitCount++;
+        return bitmap;
+      }
+    }
+    mMissCount++;
+    return null;
+  }
+
+  /**
+   * Return a bitmap to the pool. The bitmap must no longer be displayed
+   * or referenced by any cache, since its pixels will be overwritten.
+   * @return whether or not the bitmap was added to the pool
+   */
+  public synchronized boolean put(Bitmap bitmap) {
+    if (bitmap == null || bitmap.isRecycled() || !bitmap.isMutable() ||
+        mPool.contains(bitmap) || mMaxPoolSize == 0) {
+      return false;
+    }
+
+    if (mHeld.contains(bitmap)) {
+      // it goes in the pool once it is released
+      if (!mPutWhileHeld.contains(bitmap)) {
+        mPutWhileHeld.add(bitmap);
+      }
+      return false;
+    }
+
+    if (mPool.size() >= mMaxPoolSize) {
+      // drop the oldest bitmap
+      mPool.remove(0);
+    }
+    mPool.add(bitmap);
+    return true;
+  }
+
+  /**
+   * Keep a bitmap out of the pool until it is released, even if it is put
+   * in the pool in the meantime, so that its pixels aren't overwritten
+   * while they are being read.
+   */
+  public synchronized void hold(Bitmap bitmap) {
+    mHeld.add(bitmap);
+  }
+
+  /**
+   * Release a bitmap held with {@link #hold(Bitmap)}, adding it to the pool
+   * if it was put in the pool while it was held.
+   */
+  public synchronized void release(Bitmap bitmap) {
+    mHeld.remove(bitmap);
+    if (!mHeld.contains(bitmap) && mPutWhileHeld.remove(bitmap)) {
+      put(bitmap);
+    }
+  }
+
+  public synchronized void clear() {
+    mPool.clear();
+  }
+
+  @Override
+  public synchronized long getMemoryCost() {
+    long cost = 0;
+    for (int i = 0, size = mPool.size(); i < size; i++) {
+      final Bitmap bitmap = mPool.get(i);
+      cost += bitmap.getRowBytes() * bitmap.getHeight();
+    }
+    return cost;
+  }
+
+  @Override
+  public synchronized void setCapacityFraction(float fraction) {
+    mMaxPoolSize = (int) (MAX_POOL_SIZE * fraction);
+    while (mPool.size() > mMaxPoolSize) {
+      mPool.remove(0);
+    }
+  }
+
+  public synchronized int getHitCount() {
+    return mHitCount;
+  }
+
+  public synchronized int getMissCount() {
+    return mMissCount;
+  }
+
+  @Override
+  public synchronized String toString() {
+    return "bitmap pool: " + mPool.size() + " pooled, " +
+        mHitCount + " hits, " + mMissCount + " misses";
+  }
+}
@@ -2,40 +2,104 @@ package com.quran.labs.androidquran.util;
 
 import android.support.annotation.NonNull;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.Future;
 import java.util.concurrent.FutureTask;
 import java.util.concurrent.PriorityBlockingQueue;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 // based on PicassoExecutorService
 public class QuranExecutorService extends ThreadPoolExecutor {
+  // priority classes, in the order in which they are run
+  public static final int PRIORITY_VISIBLE = 0;
+  public static final int PRIORITY_ADJACENT = 1;
+  public static final int PRIORITY_PREFETCH = 2;
+
   private static final int DEFAULT_THREAD_COUNT = 1;
 
+  private final AtomicLong mSequence = new AtomicLong();
+
+  public interface Prioritizer {
+    /**
+     * Get the priority class for a task
+     * @param task the task that was submitted
+     * @param currentPriority the current priority class of the task
+     * @return the new priority class of the task
+     */
+    int getPriority(Runnable task, int currentPriority);
+  }
+
   public QuranExecutorService() {
-    super(DEFAULT_THREAD_COUNT, DEFAULT_THREAD_COUNT, 0,
+    this(DEFAULT_THREAD_COUNT);
+  }
+
+  public QuranExecutorService(int threadCount) {
+    super(threadCount, threadCount, 0,
         TimeUnit.MILLISECONDS, new PriorityBlockingQueue<Runnable>());
   }
 
   @Override
   public Future<?> submit(Runnable task) {
-    final QuranFutureTask qft = new QuranFutureTask((QuranPageTask) task);
+    return submit(task, PRIORITY_VISIBLE);
+  }
+
+  public Future<?> submit(Runnable task, int priority) {
+    final QuranFutureTask qft =
+        new QuranFutureTask(task, priority, mSequence.incrementAndGet());
     execute(qft);
     return qft;
   }
 
+  /**
+   * Re-evaluate the priority of all queued tasks (for example, when the
+   * user swipes to a different page). Tasks that are already running are
+   * not affected.
+   * @param prioritizer the prioritizer that decides the new priorities
+   */
+  public void reprioritize(Prioritizer prioritizer) {
+    final BlockingQueue<Runnable> queue = getQueue();
+    final List<Runnable> queued = new ArrayList<>(queue);
+    for (int i = 0, size = queued.size(); i < size; i++) {
+      final Runnable runnable = queued.get(i);
+      if (runnable instanceof QuranFutureTask) {
+        final QuranFutureTask qft = (QuranFutureTask) runnable;
+        final int priority = prioritizer.getPriority(qft.mTask, qft.mPriority);
+        // the queue doesn't re-sort mutated items, so take the task out
+        // and put it back in with its new priority. if it's no longer in
+        // the queue, a worker already picked it up.
+        if (priority != qft.mPriority && queue.remove(qft)) {
+          qft.mPriority = priority;
+          queue.offer(qft);
+        }
+      }
+    }
+  }
+
   private static final class QuranFutureTask extends
-      FutureTask<QuranPageTask> implements Comparable<QuranFutureTask> {
-    private final long mPriority;
+      FutureTask<Void> implements Comparable<QuranFutureTask> {
+    private final Runnable mTask;
+    private final long mSequence;
+    private volatile int mPriority;
 
-    public QuranFutureTask(QuranPageTask task) {
+    public QuranFutureTask(Runnable task, int priority, long sequence) {
       super(task, null);
-      mPriority = System.currentTimeMillis();
+      mTask = task;
+      mPriority = priority;
+      mSequence = sequence;
     }
 
     @Override
     public int compareTo(@NonNull QuranFutureTask another) {
-      return (int) (another.mPriority - mPriority);
+      if (mPriority != another.mPriority) {
+        return mPriority < another.mPriority ? -1 : 1;
+      }
+      // within a priority class, the most recent request runs first
+      return mSequence == another.mSequence ? 0 :
+          (mSequence > another.mSequence ? -1 : 1);
     }
   }
 }
@@ -7,9 +7,13 @@ import com.quran.labs.androidquran.data.QuranFileConstants;
 import android.content.Context;
 import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
+import android.graphics.BitmapRegionDecoder;
+import android.graphics.Rect;
 import android.os.Environment;
+import android.os.SystemClock;
 import android.support.annotation.Nullable;
 
+import java.io.BufferedInputStream;
 import java.io.Closeable;
 import java.io.File;
 import java.io.FileInputStream;
@@ -21,6 +25,9 @@ import java.text.NumberFormat;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import okhttp3.Call;
 import okhttp3.OkHttpClient;
@@ -46,6 +53,18 @@ public class QuranFileUtils {
   private static final String AYAHINFO_DIRECTORY = QuranFileConstants.AYAHINFO_DIRECTORY;
   private static final String IMAGES_DIRECTORY = QuranFileConstants.IMAGES_DIRECTORY;
 
+  // enough to read the header of a page image before resetting the stream
+  private static final int BOUNDS_READ_LIMIT = 64 * 1024;
+  private static final String PARTIAL_FILE_EXTENSION = ".part";
+  // tiled pages show a preview decoded at this sample size until the
+  // visible tiles are decoded
+  private static final int PREVIEW_SAMPLE_SIZE = 4;
+
+  // stats for pages downloaded and saved without re-encoding
+  private static final AtomicInteger sSavedPageCount = new AtomicInteger();
+  private static final AtomicLong sSavedPageBytes = new AtomicLong();
+  private static final AtomicLong sSavedPageTime = new AtomicLong();
+
   // check if the images with the given width param have a version
   // that we specify (ex if version is 3, check for a .v3 file).
   public static boolean isVersion(Context context, String widthParam, int version) {
@@ -138,7 +157,130 @@ public class QuranFileUtils {
     return state.equals(Environment.MEDIA_MOUNTED);
   }
 
+  /**
+   * Load a page image from the sdcard.
+   * @param maxPageBytes pages larger than this are not decoded, and are
+   *                     returned as tiled responses instead.
+   * @param preview a preview of the page from an earlier load, used instead
+   *                of decoding one again if the page is tiled, or null
+   */
   public static Response getImageFromSD(Context context, String widthParam,
+      String filename, long maxPageBytes, @Nullable Bitmap preview) {
+    final String path = getPagePath(context, widthParam, filename);
+    if (path == null) {
+      return new Response(Response.ERROR_SD_CARD_NOT_FOUND);
+    }
+
+    final PageLoadMetrics metrics = PageLoadMetrics.getInstance();
+    final File file = new File(path);
+    final RawPageStore rawPageStore = RawPageStore.getInstance(context);
+    final long startTime = PageLoadMetrics.now();
+    Bitmap bitmap = rawPageStore.get(file);
+    if (bitmap != null) {
+      // stored pages don't need decoding
+      metrics.recordSince(PageLoadMetrics.STAGE_FILE_READ, widthParam, startTime);
+      return new Response(bitmap);
+    }
+
+    // the page is decoded as it is read, so the time spent reading is
+    // measured by the stream, and the rest of the time is decoding.
+    final long decodeStartTime = PageLoadMetrics.now();
+    FileInputStream fileStream = null;
+    TimedInputStream timedStream = null;
+    try {
+      fileStream = new FileInputStream(file);
+      timedStream = new TimedInputStream(fileStream);
+      InputStream stream = new BufferedInputStream(timedStream, BOUNDS_READ_LIMIT);
+      final BitmapFactory.Options options = getPageDecodeOptions();
+      options.inJustDecodeBounds = true;
+      stream.mark(BOUNDS_READ_LIMIT);
+      BitmapFactory.decodeStream(stream, null, options);
+      stream.reset();
+      if (options.outWidth <= 0 || options.outHeight <= 0) {
+        return new Response(Response.ERROR_FILE_NOT_FOUND);
+      } else if ((long) options.outWidth * options.outHeight > maxPageBytes) {
+        // ALPHA_8 pages take a byte per pixel. only the header was read so
+        // far, and the region decoder reads the rest as it needs it.
+        return getTiledImage(path, preview);
+      }
+
+      options.inJustDecodeBounds = false;
+      if (setReusableBitmap(options)) {
+        try {
+          bitmap = BitmapFactory.decodeStream(stream, null, options);
+        } catch (IllegalArgumentException iae) {
+          Timber.d(iae, "unable to reuse bitmap for %s", path);
+        }
+
+        if (bitmap == null) {
+          // the pooled bitmap wasn't used, so give it back and decode the
+          // file again from the start
+          QuranBitmapPool.getInstance().put(options.inBitmap);
+          options.inBitmap = null;
+          fileStream.getChannel().position(0);
+          stream = new BufferedInputStream(timedStream, BOUNDS_READ_LIMIT);
+        }
+      }
+
+      if (bitmap == null) {
+        bitmap = BitmapFactory.decodeStream(stream, null, options);
+      }
+    } catch (IOException ioe) {
+      Timber.d(ioe, "unable to read %s", path);
+    } finally {
+      closeQuietly(fileStream);
+      if (timedStream != null) {
+        final long readTime = timedStream.getReadTime();
+        metrics.record(PageLoadMetrics.STAGE_FILE_READ, widthParam,
+            TimeUnit.NANOSECONDS.toMillis(readTime));
+        metrics.record(PageLoadMetrics.STAGE_DECODE, widthParam,
+            TimeUnit.NANOSECONDS.toMillis(
+                PageLoadMetrics.now() - decodeStartTime - readTime));
+      }
+    }
+
+    if (bitmap == null) {
+      return new Response(Response.ERROR_FILE_NOT_FOUND);
+    }
+    rawPageStore.put(file, bitmap);
+    return new Response(bitmap);
+  }
+
+  /**
+   * Load a page image from the sdcard without decoding all of it at once,
+   * for pages that are too large to decode on this device.
+   */
+  public static Response getTiledImageFromSD(Context context,
+      String widthParam, String filename, @Nullable Bitmap preview) {
+    final String path = getPagePath(context, widthParam, filename);
+    return path == null ? new Response(Response.ERROR_SD_CARD_NOT_FOUND) :
+        getTiledImage(path, preview);
+  }
+
+  private static Response getTiledImage(String path,
+      @Nullable Bitmap cachedPreview) {
+    BitmapRegionDecoder decoder = null;
+    try {
+      decoder = BitmapRegionDecoder.newInstance(path, false);
+      Bitmap preview = cachedPreview;
+      if (preview == null) {
+        final BitmapFactory.Options options = getPageDecodeOptions();
+        options.inSampleSize = PREVIEW_SAMPLE_SIZE;
+        preview = decoder.decodeRegion(
+            new Rect(0, 0, decoder.getWidth(), decoder.getHeight()), options);
+      }
+      return new Response(decoder, preview);
+    } catch (IOException | OutOfMemoryError e) {
+      Timber.e(e, "unable to open %s for tiled decoding", path);
+      if (decoder != null) {
+        decoder.recycle();
+      }
+      return new Response(Response.ERROR_FILE_NOT_FOUND);
+    }
+  }
+
+  @Nullable
+  private static String getPagePath(Context context, String widthParam,
       String filename) {
     String location;
     if (widthParam != null) {
@@ -146,17 +288,27 @@ public class QuranFileUtils {
     } else {
       location = getQuranImagesDirectory(context);
     }
+    return location == null ? null : location + File.separator + filename;
+  }
 
-    if (location == null) {
-      return new Response(Response.ERROR_SD_CARD_NOT_FOUND);
-    }
-
+  private static BitmapFactory.Options getPageDecodeOptions() {
     BitmapFactory.Options options = new BitmapFactory.Options();
     options.inPreferredConfig = Bitmap.Config.ALPHA_8;
-    final Bitmap bitmap = BitmapFactory.decodeFile(location +
-        File.separator + filename, options);
-    return bitmap == null ? new Response(Response.ERROR_FILE_NOT_FOUND) :
-        new Response(bitmap);
+    // decoded pages are mutable so that they can be reused by the pool
+    options.inMutable = true;
+    return options;
+  }
+
+  /**
+   * Sets a pooled bitmap as inBitmap on the options, if one matching the
+   * dimensions decoded in options.outWidth and options.outHeight exists.
+   * @return whether or not a reusable bitmap was set
+   */
+  private static boolean setReusableBitmap(BitmapFactory.Options options) {
+    options.inSampleSize = 1;
+    options.inBitmap = QuranBitmapPool.getInstance().get(
+        options.outWidth, options.outHeight, Bitmap.Config.ALPHA_8);
+    return options.inBitmap != null;
   }
 
   public static boolean writeNoMediaFile(Context context) {
@@ -231,18 +383,33 @@ public class QuranFileUtils {
     final Call call = okHttpClient.newCall(request);
 
     InputStream stream = null;
+    TeeInputStream teeStream = null;
+    File tempFile = null;
     try {
       final okhttp3.Response response = call.execute();
       if (response.isSuccessful()) {
         stream = response.body().byteStream();
+
+        // write the downloaded bytes as is while decoding them, instead
+        // of re-encoding the decoded bitmap as a png afterwards.
+        String path = getQuranImagesDirectory(context);
+        int warning = Response.WARN_SD_CARD_NOT_FOUND;
+        if (path != null && QuranFileUtils.makeQuranDirectory(context)) {
+          tempFile = new File(path, filename + PARTIAL_FILE_EXTENSION);
+          try {
+            teeStream = new TeeInputStream(stream, new FileOutputStream(tempFile));
+            stream = teeStream;
+          } catch (IOException ioe) {
+            warning = Response.WARN_COULD_NOT_SAVE_FILE;
+          }
+        }
+
         final Bitmap bitmap = decodeBitmapStream(stream);
         if (bitmap != null) {
-          String path = getQuranImagesDirectory(context);
-          int warning = Response.WARN_SD_CARD_NOT_FOUND;
-          if (path != null && QuranFileUtils.makeQuranDirectory(context)) {
-            path += File.separator + filename;
-            warning = tryToSaveBitmap(bitmap, path) ? 0 :
-                Response.WARN_COULD_NOT_SAVE_FILE;
+          if (teeStream != null) {
+            warning = savePageFromStream(teeStream, tempFile,
+                new File(path, filename)) ? 0 : Response.WARN_COULD_NOT_SAVE_FILE;
+            tempFile = null;
           }
           return new Response(bitmap, warning);
         }
@@ -251,16 +418,42 @@ public class QuranFileUtils {
       Timber.e(ioe, "exception downloading file");
     } finally {
       closeQuietly(stream);
+      if (tempFile != null) {
+        // something went wrong before we could save the file
+        tempFile.delete();
+      }
     }
 
     return isRetry ? new Response(Response.ERROR_DOWNLOADING_ERROR) :
         getImageFromWeb(okHttpClient, context, filename, true);
   }
 
-  private static Bitmap decodeBitmapStream(InputStream is) {
-    BitmapFactory.Options options = new BitmapFactory.Options();
-    options.inPreferredConfig = Bitmap.Config.ALPHA_8;
-    return BitmapFactory.decodeStream(is, null, options);
+  private static Bitmap decodeBitmapStream(InputStream is) throws IOException {
+    final InputStream stream = new BufferedInputStream(is, BOUNDS_READ_LIMIT);
+    final BitmapFactory.Options options = getPageDecodeOptions();
+    options.inJustDecodeBounds = true;
+    stream.mark(BOUNDS_READ_LIMIT);
+    BitmapFactory.decodeStream(stream, null, options);
+    stream.reset();
+
+    options.inJustDecodeBounds = false;
+    if (options.outWidth > 0 && options.outHeight > 0) {
+      setReusableBitmap(options);
+    }
+
+    Bitmap bitmap = null;
+    try {
+      bitmap = BitmapFactory.decodeStream(stream, null, options);
+    } catch (IllegalArgumentException iae) {
+      // the stream was already consumed, so we can't try again without
+      // the pooled bitmap - the caller will retry the download instead.
+      Timber.d(iae, "unable to reuse bitmap while decoding stream");
+    }
+
+    if (bitmap == null && options.inBitmap != null) {
+      QuranBitmapPool.getInstance().put(options.inBitmap);
+    }
+    return bitmap;
   }
 
   public static void closeQuietly(Closeable closeable) {
@@ -273,24 +466,27 @@ public class QuranFileUtils {
     }
   }
 
-  private static boolean tryToSaveBitmap(Bitmap bitmap, String savePath) {
-    FileOutputStream output = null;
-    try {
-      output = new FileOutputStream(savePath);
-      return bitmap.compress(Bitmap.CompressFormat.PNG, 100, output);
-    } catch (IOException ioe) {
-      // do nothing
-    } finally {
-      try {
-        if (output != null) {
-          output.flush();
-          output.close();
-        }
-      } catch (Exception e) {
-        // ignore...
-      }
+  private static boolean savePageFromStream(TeeInputStream teeStream,
+      File tempFile, File destination) {
+    final long start = SystemClock.uptimeMillis();
+    final boolean saved = teeStream.finish() && tempFile.renameTo(destination);
+    if (saved) {
+      sSavedPageCount.incrementAndGet();
+      sSavedPageBytes.addAndGet(teeStream.getBytesWritten());
+      sSavedPageTime.addAndGet(SystemClock.uptimeMillis() - start);
+    } else {
+      tempFile.delete();
     }
-    return false;
+    return saved;
+  }
+
+  /**
+   * @return statistics about pages saved directly from the network
+   */
+  public static String getSavedPageStats() {
+    return "pages saved from the network: " + sSavedPageCount.get() +
+        " (" + sSavedPageBytes.get() + " bytes written without re-encoding, " +
+        sSavedPageTime.get() + "ms to finish saving)";
   }
 
   @Nullable
@@ -0,0 +1,161 @@
+package com.quran.labs.androidquran.util;
+
+import android.content.ComponentCallbacks2;
+import android.content.res.Configuration;
+import android.os.Handler;
+import android.os.Looper;
+import android.support.annotation.NonNull;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import timber.log.Timber;
+
+/**
+ * Shrinks the app's in-memory caches when the system is low on memory (as
+ * reported through {@link ComponentCallbacks2}), and grows them back once
+ * the pressure has eased. Caches register themselves as
+ * {@link MemoryConsumer}s, and are all limited to the same fraction of
+ * their normal capacity.
+ *
+ * Since the system never says when memory pressure is over, capacity is
+ * restored in steps once some time has passed without another trim.
+ */
+public class QuranMemoryGovernor implements ComponentCallbacks2 {
+  private static final float CAPACITY_FULL = 1.0f;
+  private static final float CAPACITY_REDUCED = 0.5f;
+  private static final float CAPACITY_LOW = 0.25f;
+  private static final float CAPACITY_NONE = 0.0f;
+  private static final long RESTORE_DELAY = 60 * 1000;
+
+  private static final QuranMemoryGovernor sInstance = new QuranMemoryGovernor();
+
+  private final List<MemoryConsumer> mConsumers = new CopyOnWriteArrayList<>();
+  private final Handler mHandler = new Handler(Looper.getMainLooper());
+  private final Runnable mRestoreRunnable = new Runnable() {
+    @Override
+    public void run() {
+      restoreCapacity();
+    }
+  };
+  private volatile float mCapacityFraction = CAPACITY_FULL;
+  private int mTrimCount;
+
+  public interface MemoryConsumer {
+    /**
+     * @return an estimate of the memory currently used, in bytes
+     */
+    long getMemoryCost();
+
+    /**
+     * Limit the memory used to a fraction of the normal capacity, evicting
+     * whatever no longer fits.
+     * @param fraction the fraction of the normal capacity to use, from 0
+     *                 (use nothing) to 1 (the normal capacity)
+     */
+    void setCapacityFraction(float fraction);
+  }
+
+  public static QuranMemoryGovernor getInstance() {
+    return sInstance;
+  }
+
+  private QuranMemoryGovernor() {
+  }
+
+  /**
+   * Register a cache, which is immediately limited to the current capacity
+   */
+  public void register(@NonNull MemoryConsumer consumer) {
+    mConsumers.add(consumer);
+    if (mCapacityFraction < CAPACITY_FULL) {
+      consumer.setCapacityFraction(mCapacityFraction);
+    }
+  }
+
+  public void unregister(@NonNull MemoryConsumer consumer) {
+    mConsumers.remove(consumer);
+  }
+
+  /**
+   * @return the fraction of their normal capacity that caches may use
+   */
+  public float getCapacityFraction() {
+    return mCapacityFraction;
+  }
+
+  @Override
+  public void onTrimMemory(int level) {
+    final float fraction;
+    if (level >= TRIM_MEMORY_COMPLETE) {
+      fraction = CAPACITY_NONE;
+    } else if (level >= TRIM_MEMORY_MODERATE) {
+      fraction = CAPACITY_LOW;
+    } else if (level >= TRIM_MEMORY_BACKGROUND) {
+      fraction = CAPACITY_REDUCED;
+    } else if (level == TRIM_MEMORY_UI_HIDDEN) {
+      // not memory pressure, just the ui going away
+      return;
+    } else if (level >= TRIM_MEMORY_RUNNING_CRITICAL) {
+      fraction = CAPACITY_NONE;
+    } else if (level >= TRIM_MEMORY_RUNNING_LOW) {
+      fraction = CAPACITY_LOW;
+    } else {
+      fraction = CAPACITY_REDUCED;
+    }
+    trim(fraction);
+  }
+
+  @Override
+  public void onLowMemory() {
+    trim(CAPACITY_NONE);
+  }
+
+  @Override
+  public void onConfigurationChanged(Configuration newConfig) {
+  }
+
+  private void trim(float fraction) {
+    mTrimCount++;
+    mHandler.removeCallbacks(mRestoreRunnable);
+    if (fraction < mCapacityFraction) {
+      Timber.d("memory pressure, limiting caches to %f of capacity", fraction);
+      setCapacityFraction(fraction);
+    }
+    mHandler.postDelayed(mRestoreRunnable, RESTORE_DELAY);
+  }
+
+  private void restoreCapacity() {
+    final float fraction = mCapacityFraction == CAPACITY_NONE ?
+        CAPACITY_LOW : Math.min(CAPACITY_FULL, mCapacityFraction * 2);
+    setCapacityFraction(fraction);
+    if (fraction < CAPACITY_FULL) {
+      mHandler.postDelayed(mRestoreRunnable, RESTORE_DELAY);
+    }
+  }
+
+  private void setCapacityFraction(float fraction) {
+    mCapacityFraction = fraction;
+    for (MemoryConsumer consumer : mConsumers) {
+      consumer.setCapacityFraction(fraction);
+    }
+  }
+
+  /**
+   * @return an estimate of the memory used by all registered caches
+   */
+  public long getMemoryCost() {
+    long cost = 0;
+    for (MemoryConsumer consumer : mConsumers) {
+      cost += consumer.getMemoryCost();
+    }
+    return cost;
+  }
+
+  @Override
+  public String toString() {
+    return "memory governor: " + mConsumers.size() + " caches using " +
+        getMemoryCost() + " bytes, at " + (int) (mCapacityFraction * 100) +
+        "% capacity after " + mTrimCount + " trims";
+  }
+}
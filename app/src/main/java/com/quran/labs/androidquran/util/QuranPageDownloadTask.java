@@ -0,0 +1,66 @@
+package com.quran.labs.androidquran.util;
+
+import com.crashlytics.android.Crashlytics;
+import com.quran.labs.androidquran.common.Response;
+
+import android.content.Context;
+import android.os.Process;
+import android.util.Log;
+
+import okhttp3.OkHttpClient;
+
+/**
+ * Downloads a page that isn't on the sdcard. This runs on its own pool,
+ * separate from the one decoding pages from the sdcard, so that a slow
+ * network never delays loading pages that we already have.
+ */
+public class QuranPageDownloadTask implements Runnable {
+  private static final String TAG = "QuranPageDownloadTask";
+
+  private final int mPageNumber;
+  private final String mWidthParam;
+  private final Context mContext;
+  private final OkHttpClient mOkHttpClient;
+  private final long mStartTime;
+  private final long mQueuedTime;
+
+  QuranPageDownloadTask(Context context, OkHttpClient okHttpClient,
+      String widthParam, int page, long startTime) {
+    mContext = context;
+    mOkHttpClient = okHttpClient;
+    mWidthParam = widthParam;
+    mPageNumber = page;
+    mStartTime = startTime;
+    mQueuedTime = PageLoadMetrics.now();
+  }
+
+  @Override
+  public void run() {
+    Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+
+    final PageLoadMetrics metrics = PageLoadMetrics.getInstance();
+    metrics.recordSince(PageLoadMetrics.STAGE_QUEUE_WAIT, mWidthParam, mQueuedTime);
+
+    final Response response;
+    try {
+      final long networkStartTime = PageLoadMetrics.now();
+      response = QuranFileUtils.getImageFromWeb(mOkHttpClient, mContext,
+          QuranFileUtils.getPageFileName(mPageNumber));
+      metrics.recordSince(PageLoadMetrics.STAGE_NETWORK, mWidthParam,
+          networkStartTime);
+    } catch (OutOfMemoryError oom) {
+      Crashlytics.log(Log.WARN, TAG,
+          "out of memory exception downloading page " +
+              mPageNumber + ", " + mWidthParam);
+      // let the worker know that this page is no longer loading
+      QuranPageTask.submitResult(null, mPageNumber, mWidthParam, mStartTime);
+      throw oom;
+    }
+
+    if (response.getBitmap() == null) {
+      Crashlytics.log(Log.WARN, TAG, "unable to download page " +
+          mPageNumber + " [" + response.getErrorCode() + "]");
+    }
+    QuranPageTask.submitResult(response, mPageNumber, mWidthParam, mStartTime);
+  }
+}
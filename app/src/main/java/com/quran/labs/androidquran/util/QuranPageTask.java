@@ -3,54 +3,151 @@ package com.quran.labs.androidquran.util;
 import com.crashlytics.android.Crashlytics;
 import com.quran.labs.androidquran.QuranApplication;
 import com.quran.labs.androidquran.common.Response;
-import com.quran.labs.androidquran.ui.helpers.AyahTracker;
-import com.quran.labs.androidquran.ui.helpers.QuranDisplayHelper;
 import com.quran.labs.androidquran.ui.helpers.QuranPageWorker;
 
 import android.content.Context;
+import android.graphics.Bitmap;
 import android.os.Process;
+import android.os.SystemClock;
 import android.util.Log;
 
-import java.lang.ref.WeakReference;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
 
 import javax.inject.Inject;
 
 import okhttp3.OkHttpClient;
+import timber.log.Timber;
 
 public class QuranPageTask implements Runnable {
   private static final String TAG = "QuranPageTask";
 
   private int mPageNumber;
   private String mWidthParam;
+  private final long mMaxPageBytes;
+  private final Bitmap mPreview;
+  private final long mQueuedTime;
   private Context mContext;
-  private final WeakReference<AyahTracker> mAyahTrackerWeakReference;
+  private final ThreadPoolExecutor mDownloadExecutor;
+  // guarded by this: whether the page is no longer wanted, whether the
+  // task started running, whether it gave up on the page because it was
+  // no longer wanted, and its download once handed off to the download pool
+  // (along with when loading the page started, from uptimeMillis)
+  private boolean mIsCancelled;
+  private boolean mHasStarted;
+  private boolean mHasGivenUp;
+  private Runnable mDownloadRunnable;
+  private long mDownloadStartTime;
 
   @Inject OkHttpClient okHttpClient;
 
-  public QuranPageTask(Context context, String widthParam,
-      AyahTracker tracker, int page) {
+  /**
+   * @param maxPageBytes pages larger than this are tiled
+   * @param preview the preview of the page from when it was last tiled,
+   *                or null
+   */
+  public QuranPageTask(Context context, String widthParam, int page,
+      long maxPageBytes, Bitmap preview, ThreadPoolExecutor downloadExecutor) {
     mPageNumber = page;
     mWidthParam = widthParam;
-    // use a WeakReference to ensure the AyahTracker can be gc
-    mAyahTrackerWeakReference = new WeakReference<>(tracker);
+    mMaxPageBytes = maxPageBytes;
+    mPreview = preview;
+    mQueuedTime = PageLoadMetrics.now();
+    mDownloadExecutor = downloadExecutor;
     mContext = context.getApplicationContext();
     ((QuranApplication) mContext).getApplicationComponent().inject(this);
   }
 
+  public int getPageNumber() {
+    return mPageNumber;
+  }
+
+  public String getWidthParam() {
+    return mWidthParam;
+  }
+
+  /**
+   * Stop loading the page. If the page is waiting to be downloaded, the
+   * download is cancelled too; a download that already started finishes
+   * (and still saves the page).
+   * @return whether the task already started, in which case a result is
+   * still submitted for the page. if it didn't, it never will.
+   */
+  public boolean cancel() {
+    final boolean hasStarted;
+    boolean removedDownload = false;
+    final long startTime;
+    synchronized (this) {
+      mIsCancelled = true;
+      hasStarted = mHasStarted;
+      if (mDownloadRunnable != null && !mHasGivenUp &&
+          mDownloadExecutor.remove(mDownloadRunnable)) {
+        mHasGivenUp = true;
+        removedDownload = true;
+      }
+      startTime = mDownloadStartTime;
+    }
+
+    if (removedDownload) {
+      // it will never run, so let the worker know that this page is no
+      // longer loading
+      submitResult(null, mPageNumber, mWidthParam, startTime);
+    }
+    return hasStarted;
+  }
+
+  /**
+   * Undo {@link #cancel()}, when the page is wanted again.
+   * @return whether the page is still being loaded. if not, the task gave
+   * up on it and submits (or already submitted) an empty result.
+   */
+  public synchronized boolean resume() {
+    if (!mHasStarted || mHasGivenUp) {
+      return false;
+    }
+    mIsCancelled = false;
+    return true;
+  }
+
+  /**
+   * @return whether to go ahead with the download, which is given up on if
+   * the page is no longer wanted
+   */
+  private synchronized boolean shouldDownload() {
+    if (mIsCancelled) {
+      mHasGivenUp = true;
+    }
+    return !mIsCancelled;
+  }
+
   @Override
   public void run() {
+    synchronized (this) {
+      if (mIsCancelled) {
+        return;
+      }
+      mHasStarted = true;
+    }
+
     Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+    PageLoadMetrics.getInstance().recordSince(
+        PageLoadMetrics.STAGE_QUEUE_WAIT, mWidthParam, mQueuedTime);
+    final long startTime = SystemClock.uptimeMillis();
+    final String filename = QuranFileUtils.getPageFileName(mPageNumber);
 
     Response response = null;
     OutOfMemoryError oom = null;
 
     try {
-      response = QuranDisplayHelper.getQuranPage(okHttpClient, mContext, mWidthParam, mPageNumber);
+      response = QuranFileUtils.getImageFromSD(
+          mContext, mWidthParam, filename, mMaxPageBytes, mPreview);
     } catch (OutOfMemoryError me){
       Crashlytics.log(Log.WARN, TAG,
           "out of memory exception loading page " +
-              mPageNumber + ", " + mWidthParam);
+              mPageNumber + ", " + mWidthParam + ", using tiles instead");
       oom = me;
+      response = QuranFileUtils.getTiledImageFromSD(
+          mContext, mWidthParam, filename, mPreview);
     }
 
     if (response == null ||
@@ -63,46 +160,142 @@ public class QuranPageTask implements Runnable {
         if (param.equals(mWidthParam)){
           param = QuranScreenInfo.getInstance().getTabletWidthParam();
         }
-        response = QuranDisplayHelper.getQuranPage(okHttpClient, mContext, param, mPageNumber);
-        if (response.getBitmap() == null){
-          Crashlytics.log(Log.WARN, TAG,
-              "bitmap still null, giving up... [" +
-                  response.getErrorCode() + "]");
+        response = QuranFileUtils.getImageFromSD(
+            mContext, param, filename, mMaxPageBytes, null);
+        if (response != null && response.getBitmap() != null) {
+          // cache it under the width it really is, not the one requested
+          submitResult(response, mPageNumber, mWidthParam, param, startTime);
+          return;
         }
       }
-      Crashlytics.log(Log.WARN, TAG, "got response back as null... [" +
-          (response == null ? "" : response.getErrorCode()));
     }
 
     if ((response == null ||
         response.getBitmap() == null) && oom != null) {
+      // let the worker know that this page is no longer loading
+      submitResult(null, mPageNumber, mWidthParam, startTime);
       throw oom;
     }
 
+    if (response != null && !response.isSuccessful() &&
+        response.getErrorCode() != Response.ERROR_SD_CARD_NOT_FOUND) {
+      // the page isn't on the sdcard, so download it on the network
+      // pipeline so that a slow download doesn't hold up pages that are.
+      Timber.d("failed to get %d with name %s from sd...", mPageNumber, filename);
+      startDownload(startTime);
+      return;
+    }
+
+    if (response == null) {
+      Crashlytics.log(Log.WARN, TAG, "got response back as null...");
+    }
+    submitResult(response, mPageNumber, mWidthParam, startTime);
+  }
+
+  /**
+   * Hand the page off to the download pool, unless it is no longer wanted
+   * or the download queue is full, in which case the worker is told that
+   * the page is no longer loading.
+   */
+  private void startDownload(final long startTime) {
+    final QuranPageDownloadTask download = new QuranPageDownloadTask(
+        mContext, okHttpClient, mWidthParam, mPageNumber, startTime);
+    final Runnable runnable = new Runnable() {
+      @Override
+      public void run() {
+        if (shouldDownload()) {
+          download.run();
+        } else {
+          submitResult(null, mPageNumber, mWidthParam, startTime);
+        }
+      }
+    };
+
+    Response response = null;
+    synchronized (this) {
+      if (shouldDownload()) {
+        try {
+          mDownloadExecutor.execute(runnable);
+          mDownloadRunnable = runnable;
+          mDownloadStartTime = startTime;
+          return;
+        } catch (RejectedExecutionException ree) {
+          Crashlytics.log(Log.WARN, TAG,
+              "too many pages downloading, not downloading " + mPageNumber);
+          response = new Response(Response.ERROR_DOWNLOADING_ERROR);
+        }
+      }
+    }
+    submitResult(response, mPageNumber, mWidthParam, startTime);
+  }
+
+  static void submitResult(Response response, int page, String widthParam,
+      long startTime) {
+    submitResult(response, page, widthParam, widthParam, startTime);
+  }
+
+  /**
+   * Hand a loaded page to the worker
+   * @param response the page, or null if it couldn't be loaded
+   * @param page the page number
+   * @param widthParam the width the page was requested with
+   * @param loadedWidthParam the width of the page that was loaded, which
+   *                         differs from the requested one on tablets
+   *                         when only the other width is on the sdcard
+   * @param startTime when loading the page started, from
+   *                  {@link SystemClock#uptimeMillis()}
+   */
+  static void submitResult(Response response, int page, String widthParam,
+      String loadedWidthParam, long startTime) {
     if (response != null) {
-      response.setPageData(mPageNumber, mWidthParam);
+      response.setPageData(page, loadedWidthParam);
     }
 
-    final QuranTaskData data = new QuranTaskData(
-        response, mAyahTrackerWeakReference);
+    final QuranTaskData data = new QuranTaskData(response, page, widthParam,
+        SystemClock.uptimeMillis() - startTime);
     QuranPageWorker.submitResult(data);
   }
 
   public static class QuranTaskData {
     private final Response mResponse;
-    private final WeakReference<AyahTracker> mAyahTrackerWeakReference;
+    private final int mPageNumber;
+    private final String mWidthParam;
+    private final long mLoadTime;
+    private final long mSubmitTime;
 
-    public QuranTaskData(Response response, WeakReference<AyahTracker> trackerRef) {
+    public QuranTaskData(Response response, int page, String widthParam,
+        long loadTime) {
       mResponse = response;
-      mAyahTrackerWeakReference = trackerRef;
+      mPageNumber = page;
+      mWidthParam = widthParam;
+      mLoadTime = loadTime;
+      mSubmitTime = PageLoadMetrics.now();
     }
 
     public Response getResponse() {
       return mResponse;
     }
 
-    public WeakReference<AyahTracker> getAyahTrackerReference() {
-      return mAyahTrackerWeakReference;
+    public int getPageNumber() {
+      return mPageNumber;
+    }
+
+    public String getWidthParam() {
+      return mWidthParam;
+    }
+
+    /**
+     * @return the time it took to load the page, in milliseconds
+     */
+    public long getLoadTime() {
+      return mLoadTime;
+    }
+
+    /**
+     * @return when the result was submitted, from {@link PageLoadMetrics#now()}
+     */
+    public long getSubmitTime() {
+      return mSubmitTime;
     }
   }
 }
@@ -11,6 +11,12 @@ import android.preference.PreferenceManager;
 import android.support.annotation.NonNull;
 import android.support.annotation.VisibleForTesting;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
 
 public class QuranSettings {
   private static final String PREFS_FILE = "com.quran.labs.androidquran.per_installation";
@@ -69,6 +75,15 @@ public class QuranSettings {
         Constants.DEFAULT_NIGHT_MODE_TEXT_BRIGHTNESS);
   }
 
+  /**
+   * @return the disk budget, in megabytes, for uncompressed pages kept by
+   * the {@link RawPageStore}, or 0 if pages shouldn't be kept at all.
+   */
+  public int getRawPageCacheSize() {
+    return mPrefs.getInt(Constants.PREF_RAW_PAGE_CACHE_SIZE,
+        Constants.DEFAULT_RAW_PAGE_CACHE_SIZE);
+  }
+
   public boolean shouldOverlayPageInfo() {
     return mPrefs.getBoolean(Constants.PREF_OVERLAY_PAGE_INFO, true);
   }
@@ -229,6 +244,34 @@ public class QuranSettings {
     mPerInstallationPrefs.edit().remove(Constants.PREF_ACTIVE_TRANSLATION).apply();
   }
 
+  /**
+   * @return the translations shown after the active translation, sorted
+   * so that they're always shown in the same order
+   */
+  @NonNull
+  public List<String> getExtraTranslations() {
+    final Set<String> translations = mPerInstallationPrefs.getStringSet(
+        Constants.PREF_EXTRA_TRANSLATIONS, null);
+    final List<String> result = translations == null ?
+        new ArrayList<String>() : new ArrayList<>(translations);
+    Collections.sort(result);
+    return result;
+  }
+
+  public void setExtraTranslations(@NonNull Set<String> translations) {
+    // the set returned by getStringSet can't be modified, so store a copy
+    mPerInstallationPrefs.edit().putStringSet(Constants.PREF_EXTRA_TRANSLATIONS,
+        new HashSet<>(translations)).apply();
+  }
+
+  public void removeExtraTranslation(String translation) {
+    final Set<String> translations =
+        new HashSet<>(getExtraTranslations());
+    if (translations.remove(translation)) {
+      setExtraTranslations(translations);
+    }
+  }
+
   public int getVersion() {
     return mPerInstallationPrefs.getInt(Constants.PREF_VERSION, 0);
   }
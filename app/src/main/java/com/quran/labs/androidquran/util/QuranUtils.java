@@ -2,6 +2,9 @@ package com.quran.labs.androidquran.util;
 
 import com.quran.labs.androidquran.R;
 import com.quran.labs.androidquran.data.Constants;
+import com.quran.labs.androidquran.database.DatabaseHandler;
+import com.quran.labs.androidquran.task.QuranTaskExecutor;
+import com.quran.labs.androidquran.widgets.TranslationView;
 
 import android.app.ActivityManager;
 import android.content.Context;
@@ -164,7 +167,15 @@ public class QuranUtils {
 
     int memClass = ((ActivityManager)context
         .getSystemService(Context.ACTIVITY_SERVICE)).getMemoryClass();
-    builder.append("memory class: ").append(memClass).append("\n\n");
+    builder.append("memory class: ").append(memClass).append("\n");
+    builder.append(QuranBitmapPool.getInstance()).append("\n");
+    builder.append(QuranFileUtils.getSavedPageStats()).append("\n");
+    builder.append(RawPageStore.getInstance(context)).append("\n");
+    builder.append(PageLoadMetrics.getInstance()).append("\n");
+    builder.append(QuranTaskExecutor.getStats()).append("\n");
+    builder.append(TranslationView.getStats()).append("\n");
+    builder.append(DatabaseHandler.getStats()).append("\n");
+    builder.append(QuranMemoryGovernor.getInstance()).append("\n\n");
     return builder.toString();
   }
 }
@@ -0,0 +1,341 @@
+package com.quran.labs.androidquran.util;
+
+import com.quran.labs.androidquran.task.QuranTaskExecutor;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+
+import timber.log.Timber;
+
+/**
+ * Keeps the uncompressed ALPHA_8 pixels of recently read pages on disk, so
+ * that loading them again is a copy from a memory mapped file instead of a
+ * png decode (inflating the png is most of the time it takes to load a
+ * page). Pages are evicted least recently used first once the store grows
+ * past its disk budget.
+ *
+ * Each stored page starts with a header recording the size and modified
+ * time of the png it was decoded from, so that pages whose png changed
+ * (ex after a patch is applied) are ignored and decoded again.
+ */
+public class RawPageStore {
+  private static final String STORE_DIRECTORY = "raw_pages";
+  private static final String PARTIAL_FILE_EXTENSION = ".part";
+
+  private static final int MAGIC = 0x51524157;
+  // magic, width, height, byte count, source length, source modified time
+  private static final int HEADER_SIZE = 4 * 4 + 2 * 8;
+
+  private static RawPageStore sInstance;
+
+  private final File mDirectory;
+  // relative path of each stored page to its size, in access order
+  private final LinkedHashMap<String, Long> mEntries =
+      new LinkedHashMap<>(16, 0.75f, true);
+  private volatile long mMaxSize;
+  private long mSize;
+  private boolean mIsInitialized;
+  private int mHitCount;
+  private int mMissCount;
+
+  public static synchronized RawPageStore getInstance(@NonNull Context context) {
+    if (sInstance == null) {
+      final Context appContext = context.getApplicationContext();
+      final long maxSize = 1024L * 1024L *
+          QuranSettings.getInstance(appContext).getRawPageCacheSize();
+      sInstance = new RawPageStore(
+          new File(appContext.getCacheDir(), STORE_DIRECTORY), maxSize);
+    }
+    return sInstance;
+  }
+
+  RawPageStore(File directory, long maxSize) {
+    mDirectory = directory;
+    mMaxSize = maxSize;
+  }
+
+  /**
+   * Change the disk budget of the store, evicting pages if necessary.
+   * @param maxSize the maximum size, in bytes, or 0 to disable the store
+   */
+  public synchronized void setMaxSize(long maxSize) {
+    mMaxSize = maxSize;
+    initializeIfNecessary();
+    trimToSize(maxSize);
+  }
+
+  /**
+   * Get the stored pixels for a page image.
+   * @param source the png file of the page
+   * @return the page as a mutable ALPHA_8 bitmap, or null if the page isn't
+   * stored or was stored from a different version of the png.
+   */
+  @Nullable
+  public Bitmap get(@NonNull File source) {
+    if (mMaxSize <= 0) {
+      return null;
+    }
+
+    final String key = getKey(source);
+    final File file = new File(mDirectory, key);
+    final MappedByteBuffer buffer;
+    synchronized (this) {
+      initializeIfNecessary();
+      if (mEntries.get(key) == null) {
+        mMissCount++;
+        return null;
+      }
+      // map it while holding the lock, so that it isn't trimmed in between.
+      // stored files are only ever deleted or replaced, never written in
+      // place, so the mapping stays valid once the lock is released.
+      buffer = map(file, key);
+    }
+
+    Bitmap bitmap = null;
+    try {
+      if (buffer != null &&
+          buffer.remaining() >= HEADER_SIZE && buffer.getInt() == MAGIC) {
+        final int width = buffer.getInt();
+        final int height = buffer.getInt();
+        final int byteCount = buffer.getInt();
+        final long sourceLength = buffer.getLong();
+        final long sourceModified = buffer.getLong();
+        if (width > 0 && height > 0 && byteCount == buffer.remaining() &&
+            sourceLength == source.length() &&
+            sourceModified == source.lastModified()) {
+          bitmap = getBitmap(width, height, byteCount);
+          if (bitmap != null) {
+            bitmap.copyPixelsFromBuffer(buffer);
+          }
+        }
+      }
+    } catch (RuntimeException e) {
+      Timber.d(e, "unable to read stored page %s", key);
+      if (bitmap != null) {
+        QuranBitmapPool.getInstance().put(bitmap);
+        bitmap = null;
+      }
+    }
+
+    synchronized (this) {
+      if (bitmap == null) {
+        // stale or corrupt, so get rid of it
+        mMissCount++;
+        remove(key, file);
+      } else {
+        mHitCount++;
+        file.setLastModified(System.currentTimeMillis());
+      }
+    }
+    return bitmap;
+  }
+
+  @Nullable
+  private static MappedByteBuffer map(File file, String key) {
+    RandomAccessFile raf = null;
+    try {
+      raf = new RandomAccessFile(file, "r");
+      final FileChannel channel = raf.getChannel();
+      return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+    } catch (IOException | RuntimeException e) {
+      Timber.d(e, "unable to map stored page %s", key);
+      return null;
+    } finally {
+      // the mapping stays valid after the file is closed
+      QuranFileUtils.closeQuietly(raf);
+    }
+  }
+
+  @Nullable
+  private Bitmap getBitmap(int width, int height, int byteCount) {
+    Bitmap bitmap = QuranBitmapPool.getInstance().get(
+        width, height, Bitmap.Config.ALPHA_8);
+    if (bitmap == null) {
+      bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ALPHA_8);
+    }
+
+    if (bitmap.getByteCount() != byteCount) {
+      // stored with a different row stride than we have now
+      QuranBitmapPool.getInstance().put(bitmap);
+      return null;
+    }
+    return bitmap;
+  }
+
+  /**
+   * Store the pixels of a page image that was just decoded. The page is
+   * written in the background, so that showing it doesn't wait for the
+   * disk, and the bitmap is held back from the {@link QuranBitmapPool}
+   * until it has been written.
+   * @param source the png file the page was decoded from
+   * @param bitmap the decoded page
+   */
+  public void put(@NonNull final File source, @NonNull final Bitmap bitmap) {
+    final long size = HEADER_SIZE + bitmap.getByteCount();
+    if (bitmap.getConfig() != Bitmap.Config.ALPHA_8 || size > mMaxSize) {
+      return;
+    }
+
+    final QuranBitmapPool pool = QuranBitmapPool.getInstance();
+    pool.hold(bitmap);
+    try {
+      QuranTaskExecutor.BACKGROUND.execute("store raw page", new Runnable() {
+        @Override
+        public void run() {
+          try {
+            write(source, bitmap, size);
+          } finally {
+            pool.release(bitmap);
+          }
+        }
+      });
+    } catch (RejectedExecutionException ree) {
+      // too much going on in the background; the page is stored next time
+      pool.release(bitmap);
+    }
+  }
+
+  private void write(File source, Bitmap bitmap, long size) {
+    final String key = getKey(source);
+    final File file = new File(mDirectory, key);
+    final File directory = file.getParentFile();
+    if (!directory.isDirectory() && !directory.mkdirs()) {
+      return;
+    }
+
+    // write to a partial file first so that a page is never read while it
+    // is only partially written.
+    final File partialFile = new File(directory,
+        file.getName() + PARTIAL_FILE_EXTENSION + Thread.currentThread().getId());
+    boolean written = false;
+    RandomAccessFile raf = null;
+    try {
+      raf = new RandomAccessFile(partialFile, "rw");
+      raf.setLength(size);
+      final MappedByteBuffer buffer =
+          raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+      buffer.putInt(MAGIC);
+      buffer.putInt(bitmap.getWidth());
+      buffer.putInt(bitmap.getHeight());
+      buffer.putInt(bitmap.getByteCount());
+      buffer.putLong(source.length());
+      buffer.putLong(source.lastModified());
+      // not forced to disk, the system writes it back when it gets to it
+      bitmap.copyPixelsToBuffer(buffer);
+      written = true;
+    } catch (IOException | RuntimeException e) {
+      Timber.d(e, "unable to store page %s", key);
+    } finally {
+      QuranFileUtils.closeQuietly(raf);
+    }
+
+    synchronized (this) {
+      initializeIfNecessary();
+      if (written && partialFile.renameTo(file)) {
+        final Long previous = mEntries.put(key, size);
+        mSize += size - (previous == null ? 0 : previous);
+        trimToSize(mMaxSize);
+      } else {
+        partialFile.delete();
+      }
+    }
+  }
+
+  private static String getKey(File source) {
+    // the images directory name includes the width
+    return source.getParentFile().getName() + File.separator + source.getName();
+  }
+
+  private void remove(String key, File file) {
+    final Long size = mEntries.remove(key);
+    if (size != null) {
+      mSize -= size;
+    }
+    file.delete();
+  }
+
+  private void trimToSize(long maxSize) {
+    final Iterator<Map.Entry<String, Long>> iterator =
+        mEntries.entrySet().iterator();
+    while (mSize > maxSize && iterator.hasNext()) {
+      final Map.Entry<String, Long> entry = iterator.next();
+      new File(mDirectory, entry.getKey()).delete();
+      mSize -= entry.getValue();
+      iterator.remove();
+    }
+  }
+
+  /**
+   * Build the index of stored pages from what is on disk, with the least
+   * recently used pages first.
+   */
+  private void initializeIfNecessary() {
+    if (mIsInitialized) {
+      return;
+    }
+    mIsInitialized = true;
+
+    final File[] directories = mDirectory.listFiles();
+    if (directories == null) {
+      return;
+    }
+
+    final List<File> files = new ArrayList<>();
+    for (File directory : directories) {
+      final File[] pages = directory.listFiles();
+      if (pages == null) {
+        continue;
+      }
+
+      for (File page : pages) {
+        if (page.getName().contains(PARTIAL_FILE_EXTENSION)) {
+          // left over from a write that didn't finish
+          page.delete();
+        } else {
+          files.add(page);
+        }
+      }
+    }
+
+    Collections.sort(files, new Comparator<File>() {
+      @Override
+      public int compare(File lhs, File rhs) {
+        final long lhsModified = lhs.lastModified();
+        final long rhsModified = rhs.lastModified();
+        return lhsModified == rhsModified ? 0 :
+            (lhsModified < rhsModified ? -1 : 1);
+      }
+    });
+
+    for (int i = 0, size = files.size(); i < size; i++) {
+      final File file = files.get(i);
+      final long length = file.length();
+      mEntries.put(file.getParentFile().getName() +
+          File.separator + file.getName(), length);
+      mSize += length;
+    }
+    trimToSize(mMaxSize);
+  }
+
+  @Override
+  public synchronized String toString() {
+    return "raw page store: " + mEntries.size() + " pages, " + mSize + "/" +
+        mMaxSize + " bytes, " + mHitCount + " hits, " + mMissCount + " misses";
+  }
+}
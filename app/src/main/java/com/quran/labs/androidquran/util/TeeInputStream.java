@@ -0,0 +1,114 @@
+package com.quran.labs.androidquran.util;
+
+import android.support.annotation.NonNull;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * An InputStream that copies everything read from it to an OutputStream.
+ * Failing to write to the OutputStream doesn't fail the reads - instead,
+ * the copy is marked as failed and further writes are skipped.
+ */
+class TeeInputStream extends FilterInputStream {
+  private static final int DRAIN_BUFFER_SIZE = 8 * 1024;
+
+  private final OutputStream mOutput;
+  private boolean mWriteFailed;
+  private long mBytesWritten;
+
+  TeeInputStream(InputStream input, OutputStream output) {
+    super(input);
+    mOutput = output;
+  }
+
+  @Override
+  public int read() throws IOException {
+    final int result = super.read();
+    if (result != -1 && !mWriteFailed) {
+      try {
+        mOutput.write(result);
+        mBytesWritten++;
+      } catch (IOException ioe) {
+        mWriteFailed = true;
+      }
+    }
+    return result;
+  }
+
+  @Override
+  public int read(@NonNull byte[] buffer, int offset, int count) throws IOException {
+    final int result = super.read(buffer, offset, count);
+    if (result > 0 && !mWriteFailed) {
+      try {
+        mOutput.write(buffer, offset, result);
+        mBytesWritten += result;
+      } catch (IOException ioe) {
+        mWriteFailed = true;
+      }
+    }
+    return result;
+  }
+
+  @Override
+  public long skip(long count) throws IOException {
+    // skipped bytes still need to be copied
+    final byte[] buffer = new byte[(int) Math.min(count, DRAIN_BUFFER_SIZE)];
+    long skipped = 0;
+    while (skipped < count) {
+      final int read = read(buffer, 0, (int) Math.min(buffer.length, count - skipped));
+      if (read == -1) {
+        break;
+      }
+      skipped += read;
+    }
+    return skipped;
+  }
+
+  @Override
+  public boolean markSupported() {
+    // resetting would copy the same bytes twice
+    return false;
+  }
+
+  @Override
+  public void mark(int readLimit) {
+  }
+
+  @Override
+  public void reset() throws IOException {
+    throw new IOException("mark/reset not supported");
+  }
+
+  @Override
+  public void close() throws IOException {
+    QuranFileUtils.closeQuietly(mOutput);
+    super.close();
+  }
+
+  /**
+   * Read the rest of the input (the reader may have stopped before the
+   * end), and close the output.
+   * @return whether or not all the input was copied to the output
+   */
+  boolean finish() {
+    try {
+      final byte[] buffer = new byte[DRAIN_BUFFER_SIZE];
+      //noinspection StatementWithEmptyBody
+      while (read(buffer, 0, buffer.length) != -1) {
+      }
+      mOutput.flush();
+      mOutput.close();
+    } catch (IOException ioe) {
+      mWriteFailed = true;
+      QuranFileUtils.closeQuietly(mOutput);
+    }
+    return !mWriteFailed;
+  }
+
+  long getBytesWritten() {
+    return mBytesWritten;
+  }
+}
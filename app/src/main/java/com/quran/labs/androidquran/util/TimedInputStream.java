@@ -0,0 +1,58 @@
+package com.quran.labs.androidquran.util;
+
+import android.support.annotation.NonNull;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * An InputStream that keeps track of how long reading from it takes, so
+ * that reading a file can be measured separately from decoding it while
+ * it is being read.
+ */
+class TimedInputStream extends FilterInputStream {
+  private long mReadTime;
+
+  TimedInputStream(InputStream input) {
+    super(input);
+  }
+
+  @Override
+  public int read() throws IOException {
+    final long start = PageLoadMetrics.now();
+    try {
+      return super.read();
+    } finally {
+      mReadTime += PageLoadMetrics.now() - start;
+    }
+  }
+
+  @Override
+  public int read(@NonNull byte[] buffer, int offset, int count) throws IOException {
+    final long start = PageLoadMetrics.now();
+    try {
+      return super.read(buffer, offset, count);
+    } finally {
+      mReadTime += PageLoadMetrics.now() - start;
+    }
+  }
+
+  @Override
+  public long skip(long count) throws IOException {
+    final long start = PageLoadMetrics.now();
+    try {
+      return super.skip(count);
+    } finally {
+      mReadTime += PageLoadMetrics.now() - start;
+    }
+  }
+
+  /**
+   * @return the time spent reading so far, in the units of
+   * {@link PageLoadMetrics#now()}
+   */
+  long getReadTime() {
+    return mReadTime;
+  }
+}
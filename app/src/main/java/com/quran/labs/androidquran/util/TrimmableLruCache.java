@@ -0,0 +1,45 @@
+package com.quran.labs.androidquran.util;
+
+import android.support.v4.util.LruCache;
+
+/**
+ * An LruCache that can be limited to less than its maximum size by the
+ * {@link QuranMemoryGovernor}. Since LruCache only evicts down to its
+ * maximum size on put, callers should call {@link #trimToLimit()} after
+ * putting something in the cache.
+ *
+ * {@link #sizeOf(Object, Object)} should return sizes in bytes.
+ */
+public class TrimmableLruCache<K, V> extends LruCache<K, V>
+    implements QuranMemoryGovernor.MemoryConsumer {
+  private volatile int mLimit;
+
+  public TrimmableLruCache(int maxSize) {
+    super(maxSize);
+    mLimit = maxSize;
+  }
+
+  /**
+   * @return the current size limit of the cache
+   */
+  public int getLimit() {
+    return mLimit;
+  }
+
+  public void trimToLimit() {
+    if (mLimit < maxSize()) {
+      trimToSize(mLimit);
+    }
+  }
+
+  @Override
+  public long getMemoryCost() {
+    return size();
+  }
+
+  @Override
+  public void setCapacityFraction(float fraction) {
+    mLimit = (int) (maxSize() * fraction);
+    trimToSize(mLimit);
+  }
+}
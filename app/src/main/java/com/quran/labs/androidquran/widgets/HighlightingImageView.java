@@ -9,24 +9,30 @@ import android.graphics.Matrix;
 import android.graphics.Paint;
 import android.graphics.Paint.Align;
 import android.graphics.Paint.FontMetrics;
+import android.graphics.Rect;
 import android.graphics.RectF;
 import android.graphics.drawable.Drawable;
 import android.support.annotation.NonNull;
 import android.support.v4.content.ContextCompat;
 import android.util.AttributeSet;
 import android.util.SparseArray;
+import android.view.ViewParent;
+import android.widget.ScrollView;
 
 import com.quran.labs.androidquran.R;
 import com.quran.labs.androidquran.common.AyahBounds;
+import com.quran.labs.androidquran.data.AyahKey;
 import com.quran.labs.androidquran.data.Constants;
 import com.quran.labs.androidquran.data.QuranInfo;
+import com.quran.labs.androidquran.ui.helpers.HighlightRects;
 import com.quran.labs.androidquran.ui.helpers.HighlightType;
+import com.quran.labs.androidquran.ui.helpers.TiledPageDrawable;
+import com.quran.labs.androidquran.util.IntSet;
 import com.quran.labs.androidquran.util.QuranUtils;
 
-import java.util.HashSet;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
 import java.util.SortedMap;
 import java.util.TreeMap;
 
@@ -37,7 +43,7 @@ public class HighlightingImageView extends RecyclingImageView {
   private static float sMinFontSize = 0;
 
   // Sorted map so we use highest priority highlighting when iterating
-  private SortedMap<HighlightType, Set<String>> mCurrentHighlights =
+  private SortedMap<HighlightType, IntSet> mCurrentHighlights =
       new TreeMap<>();
   private boolean mColorFilterOn = false;
   private boolean mIsNightMode = false;
@@ -47,13 +53,22 @@ public class HighlightingImageView extends RecyclingImageView {
   // cached objects for onDraw
   private static SparseArray<Paint> mSparsePaintArray = new SparseArray<>();
   private RectF mScaledRect = new RectF();
-  private Set<String> mAlreadyHighlighted = new HashSet<>();
+  private IntSet mAlreadyHighlighted = new IntSet();
+  // highlights are turned into rects when they change, not on every draw
+  private HighlightRects mHighlightRects = new HighlightRects();
+  private List<Paint> mHighlightPaints = new ArrayList<>();
+  private HighlightRectDrawer mHighlightRectDrawer = new HighlightRectDrawer();
+  private boolean mHighlightsChanged;
+  private Rect mVisibleRect = new Rect();
+  private RectF mVisibleRegion = new RectF();
+  private Matrix mInverseMatrix = new Matrix();
+  private float[] mMatrixValues = new float[9];
 
   // Params for drawing text
   private OverlayParams mOverlayParams = null;
   private RectF mPageBounds = null;
   private boolean mDidDraw = false;
-  private Map<String, List<AyahBounds>> mCoordinatesData;
+  private SparseArray<List<AyahBounds>> mCoordinatesData;
 
   public HighlightingImageView(Context context) {
     this(context, null);
@@ -70,28 +85,32 @@ public class HighlightingImageView extends RecyclingImageView {
   }
 
   public void unHighlight(int sura, int ayah, HighlightType type) {
-    Set<String> highlights = mCurrentHighlights.get(type);
-    if (highlights != null && highlights.remove(sura + ":" + ayah)) {
+    IntSet highlights = mCurrentHighlights.get(type);
+    if (highlights != null && highlights.remove(AyahKey.of(sura, ayah))) {
+      mHighlightsChanged = true;
       invalidate();
     }
   }
 
-  public void highlightAyat(Set<String> ayahKeys, HighlightType type) {
-    Set<String> highlights = mCurrentHighlights.get(type);
+  public void highlightAyat(IntSet ayahKeys, HighlightType type) {
+    IntSet highlights = mCurrentHighlights.get(type);
     if (highlights == null) {
-      highlights = new HashSet<>();
+      highlights = new IntSet();
       mCurrentHighlights.put(type, highlights);
     }
     highlights.addAll(ayahKeys);
+    mHighlightsChanged = true;
   }
 
   public void unHighlight(HighlightType type) {
     mCurrentHighlights.remove(type);
+    mHighlightsChanged = true;
     invalidate();
   }
 
-  public void setCoordinateData(Map<String, List<AyahBounds>> data) {
+  public void setCoordinateData(SparseArray<List<AyahBounds>> data) {
     mCoordinatesData = data;
+    mHighlightsChanged = true;
   }
 
   public void setNightMode(boolean isNightMode, int textBrightness) {
@@ -105,16 +124,17 @@ public class HighlightingImageView extends RecyclingImageView {
   }
 
   public void highlightAyah(int sura, int ayah, HighlightType type) {
-    Set<String> highlights = mCurrentHighlights.get(type);
+    IntSet highlights = mCurrentHighlights.get(type);
     if (highlights == null) {
-      highlights = new HashSet<>();
+      highlights = new IntSet();
       mCurrentHighlights.put(type, highlights);
     } else if (!type.isMultipleHighlightsAllowed()) {
       // If multiple highlighting not allowed (e.g. audio)
       // clear all others of this type first
       highlights.clear();
     }
-    highlights.add(sura + ":" + ayah);
+    highlights.add(AyahKey.of(sura, ayah));
+    mHighlightsChanged = true;
   }
 
   @Override
@@ -285,11 +305,50 @@ public class HighlightingImageView extends RecyclingImageView {
     }
   }
 
+  /**
+   * Called when the part of this view that is visible changes without
+   * this view being redrawn (ex when a parent scrolls).
+   */
+  public void onVisibleRegionChanged() {
+    if (getDrawable() instanceof TiledPageDrawable) {
+      invalidate();
+    }
+  }
+
+  private void updateVisibleRegion(TiledPageDrawable drawable) {
+    // only the parent scroll view (in landscape) hides parts of the page.
+    // pages that are off screen in the view pager are treated as visible
+    // so that they're ready by the time they're swiped to.
+    mVisibleRect.set(0, 0, getWidth(), getHeight());
+    final ViewParent parent = getParent();
+    if (parent instanceof ScrollView) {
+      final ScrollView scrollView = (ScrollView) parent;
+      final int top = scrollView.getScrollY() - getTop();
+      mVisibleRect.top = Math.max(0, top);
+      mVisibleRect.bottom = Math.min(getHeight(), top + scrollView.getHeight());
+    }
+
+    final Matrix matrix = getImageMatrix();
+    if (mVisibleRect.isEmpty() || !matrix.invert(mInverseMatrix)) {
+      drawable.setVisibleRegion(null, 0);
+      return;
+    }
+
+    mVisibleRegion.set(mVisibleRect);
+    mVisibleRegion.offset(-getPaddingLeft(), -getPaddingTop());
+    mInverseMatrix.mapRect(mVisibleRegion);
+    matrix.getValues(mMatrixValues);
+    drawable.setVisibleRegion(mVisibleRegion, mMatrixValues[Matrix.MSCALE_X]);
+  }
+
   @Override
   protected void onDraw(@NonNull Canvas canvas) {
-    super.onDraw(canvas);
-
     final Drawable d = getDrawable();
+    if (d instanceof TiledPageDrawable) {
+      updateVisibleRegion((TiledPageDrawable) d);
+    }
+
+    super.onDraw(canvas);
     if (d == null) {
       // no image, forget it.
       return;
@@ -304,22 +363,57 @@ public class HighlightingImageView extends RecyclingImageView {
     }
 
     // Draw each ayah highlight
-    if (mCoordinatesData != null && !mCurrentHighlights.isEmpty()) {
-      mAlreadyHighlighted.clear();
-      for (Map.Entry<HighlightType, Set<String>> entry : mCurrentHighlights.entrySet()) {
-        Paint paint = getPaintForHighlightType(entry.getKey());
-        for (String ayah : entry.getValue()) {
-           if (mAlreadyHighlighted.contains(ayah)) continue;
-           List<AyahBounds> rangesToDraw = mCoordinatesData.get(ayah);
-           if (rangesToDraw != null && !rangesToDraw.isEmpty()) {
-             for (AyahBounds b : rangesToDraw) {
-               matrix.mapRect(mScaledRect, b.getBounds());
-               canvas.drawRect(mScaledRect, paint);
-             }
-             mAlreadyHighlighted.add(ayah);
-           }
+    if (mHighlightsChanged) {
+      updateHighlightRects();
+    }
+
+    if (!mHighlightRects.isEmpty()) {
+      mHighlightRectDrawer.mCanvas = canvas;
+      mHighlightRectDrawer.mMatrix = matrix;
+      mHighlightRects.draw(mHighlightRectDrawer);
+      mHighlightRectDrawer.mCanvas = null;
+    }
+  }
+
+  private void updateHighlightRects() {
+    mHighlightsChanged = false;
+    mHighlightRects.clear();
+    mHighlightPaints.clear();
+    if (mCoordinatesData == null) {
+      return;
+    }
+
+    // each ayah is only highlighted by its highest priority highlight
+    mAlreadyHighlighted.clear();
+    for (Map.Entry<HighlightType, IntSet> entry : mCurrentHighlights.entrySet()) {
+      mHighlightRects.startLayer();
+      mHighlightPaints.add(getPaintForHighlightType(entry.getKey()));
+      final IntSet ayahKeys = entry.getValue();
+      for (int a = 0, ayahs = ayahKeys.size(); a < ayahs; a++) {
+        final int ayah = ayahKeys.get(a);
+        if (mAlreadyHighlighted.contains(ayah)) continue;
+        List<AyahBounds> rangesToDraw = mCoordinatesData.get(ayah);
+        if (rangesToDraw != null && !rangesToDraw.isEmpty()) {
+          for (int i = 0, size = rangesToDraw.size(); i < size; i++) {
+            final RectF bounds = rangesToDraw.get(i).getBounds();
+            mHighlightRects.addRect(
+                bounds.left, bounds.top, bounds.right, bounds.bottom);
+          }
+          mAlreadyHighlighted.add(ayah);
         }
       }
     }
   }
+
+  private class HighlightRectDrawer implements HighlightRects.RectDrawer {
+    Canvas mCanvas;
+    Matrix mMatrix;
+
+    @Override
+    public void drawRect(int layer, float left, float top, float right, float bottom) {
+      mScaledRect.set(left, top, right, bottom);
+      mMatrix.mapRect(mScaledRect);
+      mCanvas.drawRect(mScaledRect, mHighlightPaints.get(layer));
+    }
+  }
 }
@@ -31,6 +31,13 @@ public class QuranImagePageLayout extends QuranPageLayout {
     return mImageView;
   }
 
+  @Override
+  public void onScrollChanged(ObservableScrollView scrollView,
+      int x, int y, int oldx, int oldy) {
+    super.onScrollChanged(scrollView, x, y, oldx, oldy);
+    mImageView.onVisibleRegionChanged();
+  }
+
   @Override
   public void setPageController(PageController controller, int pageNumber) {
     super.setPageController(controller, pageNumber);
@@ -7,6 +7,7 @@ import android.util.AttributeSet;
 import android.widget.ImageView;
 
 import com.quran.labs.androidquran.ui.helpers.RecyclingBitmapDrawable;
+import com.quran.labs.androidquran.ui.helpers.TiledPageDrawable;
 
 /**
  * taken from android documentation bitmap-fun example
@@ -60,6 +61,8 @@ public class RecyclingImageView extends ImageView {
         if (drawable instanceof RecyclingBitmapDrawable) {
             // The drawable is a CountingBitmapDrawable, so notify it
             ((RecyclingBitmapDrawable) drawable).setIsDisplayed(isDisplayed);
+        } else if (drawable instanceof TiledPageDrawable) {
+            ((TiledPageDrawable) drawable).setIsDisplayed(isDisplayed);
         } else if (drawable instanceof LayerDrawable) {
             // The drawable is a LayerDrawable, so recurse on each layer
             LayerDrawable layerDrawable = (LayerDrawable) drawable;
@@ -0,0 +1,414 @@
+package com.quran.labs.androidquran.widgets;
+
+import android.content.Context;
+import android.graphics.Typeface;
+import android.os.SystemClock;
+import android.support.annotation.StyleRes;
+import android.support.v7.widget.RecyclerView;
+import android.view.ActionMode;
+import android.view.Menu;
+import android.view.MenuItem;
+import android.view.MotionEvent;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.LinearLayout;
+import android.widget.TextView;
+
+import com.quran.labs.androidquran.ui.helpers.VerseLineHeightSpan;
+
+import java.util.List;
+
+/**
+ * Shows the rows built by {@link TranslationLayoutBuilder}. Binding a row
+ * only sets its (already built) text and colors, and the text of each ayah
+ * is drawn from its cached layout, so nothing is measured or laid out.
+ *
+ * Selecting text needs a TextView, which lays its text out again on the
+ * main thread, so only the ayah the user starts selecting text in (by long
+ * pressing it) is shown in one, until the selection is done.
+ */
+class TranslationAdapter extends RecyclerView.Adapter<TranslationAdapter.RowHolder>
+    implements TranslationRows.Listener {
+  // the view type of the text of the ayah being selected, which isn't a row type
+  private static final int TYPE_SELECTABLE_AYAH_TEXT = 100;
+
+  private final Context mContext;
+  private final View.OnClickListener mOnClickListener;
+  private final TranslationRows mRows = new TranslationRows(this);
+
+  private int mLeftRightMargin;
+  private int mTopBottomMargin;
+  private int mFooterSpacerHeight;
+  private int mDividerColor;
+  private int mHeaderColor;
+  @StyleRes private int mHeaderStyle;
+  @StyleRes private int mTextStyle;
+  private int mFontSize;
+  private int mTextColor;
+  private int mHighlightedTextColor;
+  private int mHighlightedAyah;
+  // the ayah whose text is selectable, and where to start selecting it
+  private int mSelectableAyah;
+  private boolean mIsSelectionPending;
+  private float mSelectionX;
+  private float mSelectionY;
+
+  TranslationAdapter(Context context, View.OnClickListener onClickListener) {
+    mContext = context;
+    mOnClickListener = onClickListener;
+  }
+
+  void setDimensions(int leftRightMargin,
+      int topBottomMargin, int footerSpacerHeight) {
+    mLeftRightMargin = leftRightMargin;
+    mTopBottomMargin = topBottomMargin;
+    mFooterSpacerHeight = footerSpacerHeight;
+  }
+
+  void setHeaderStyle(int dividerColor, int headerColor,
+      @StyleRes int headerStyle) {
+    mDividerColor = dividerColor;
+    mHeaderColor = headerColor;
+    mHeaderStyle = headerStyle;
+  }
+
+  void setTextStyle(@StyleRes int textStyle, int fontSize,
+      int textColor, int highlightedTextColor) {
+    mTextStyle = textStyle;
+    mFontSize = fontSize;
+    mTextColor = textColor;
+    mHighlightedTextColor = highlightedTextColor;
+    notifyDataSetChanged();
+  }
+
+  void setRows(List<TranslationViewRow> rows) {
+    mRows.set(rows);
+    mHighlightedAyah = 0;
+    mSelectableAyah = 0;
+    mIsSelectionPending = false;
+    notifyDataSetChanged();
+  }
+
+  void appendRows(List<TranslationViewRow> rows) {
+    mRows.append(rows);
+  }
+
+  /**
+   * @return how many positions the rows that were already shown moved by
+   */
+  int prependRows(List<TranslationViewRow> rows) {
+    return mRows.prepend(rows);
+  }
+
+  void trimRows(int firstAyahId, int lastAyahId) {
+    mRows.trim(firstAyahId, lastAyahId);
+  }
+
+  /**
+   * @return the position of the header of the ayah, or -1 if it isn't shown
+   */
+  int getAyahPosition(int ayahId) {
+    return mRows.getAyahPosition(ayahId);
+  }
+
+  /**
+   * @return the ayah id of the first ayah at or after the position, or 0
+   */
+  int getAyahIdFrom(int position) {
+    return mRows.getAyahIdFrom(position);
+  }
+
+  void setHighlightedAyah(int ayahId) {
+    if (mHighlightedAyah != ayahId) {
+      notifyAyahChanged(mHighlightedAyah);
+      mHighlightedAyah = ayahId;
+      notifyAyahChanged(ayahId);
+    }
+  }
+
+  private void notifyAyahChanged(int ayahId) {
+    final int position = ayahId > 0 ? getAyahPosition(ayahId) : -1;
+    if (position > -1) {
+      // the header and the text
+      notifyItemRangeChanged(position, 2);
+    }
+  }
+
+  @Override
+  public void onRowsInserted(int position, int count) {
+    notifyItemRangeInserted(position, count);
+  }
+
+  @Override
+  public void onRowsRemoved(int position, int count) {
+    notifyItemRangeRemoved(position, count);
+  }
+
+  @Override
+  public int getItemCount() {
+    return mRows.size();
+  }
+
+  @Override
+  public int getItemViewType(int position) {
+    final TranslationViewRow row = mRows.get(position);
+    if (row.type == TranslationViewRow.TYPE_AYAH_TEXT &&
+        row.ayahId == mSelectableAyah) {
+      return TYPE_SELECTABLE_AYAH_TEXT;
+    }
+    return row.type;
+  }
+
+  /**
+   * Show the text of the ayah at the position in a selectable TextView, and
+   * start selecting text at the given point once it is shown.
+   */
+  private void startSelection(int position, float x, float y) {
+    endSelection();
+    mSelectableAyah = mRows.get(position).ayahId;
+    mIsSelectionPending = true;
+    mSelectionX = x;
+    mSelectionY = y;
+    notifyItemChanged(position);
+  }
+
+  /**
+   * Go back to drawing the text of the selectable ayah from its layout.
+   */
+  private void endSelection() {
+    final int position = mSelectableAyah > 0 ? getAyahPosition(mSelectableAyah) : -1;
+    mSelectableAyah = 0;
+    mIsSelectionPending = false;
+    if (position > -1) {
+      // the text is right after the header
+      notifyItemChanged(position + 1);
+    }
+  }
+
+  @Override
+  public RowHolder onCreateViewHolder(ViewGroup parent, int viewType) {
+    final View view;
+    switch (viewType) {
+      case TranslationViewRow.TYPE_SURA_HEADER: {
+        view = createSuraHeader();
+        break;
+      }
+      case TranslationViewRow.TYPE_AYAH_TEXT: {
+        view = new TranslationTextView(mContext);
+        break;
+      }
+      case TYPE_SELECTABLE_AYAH_TEXT: {
+        final TextView textView = new TextView(mContext);
+        textView.setTextIsSelectable(true);
+        view = textView;
+        break;
+      }
+      case TranslationViewRow.TYPE_SPACER: {
+        view = new View(mContext);
+        break;
+      }
+      case TranslationViewRow.TYPE_BASMALLAH:
+      case TranslationViewRow.TYPE_AYAH_HEADER:
+      default: {
+        view = new TextView(mContext);
+      }
+    }
+
+    final RecyclerView.LayoutParams params = new RecyclerView.LayoutParams(
+        ViewGroup.LayoutParams.MATCH_PARENT, ViewGroup.LayoutParams.WRAP_CONTENT);
+    if (viewType == TranslationViewRow.TYPE_SPACER) {
+      params.height = mFooterSpacerHeight;
+    } else if (viewType == TranslationViewRow.TYPE_BASMALLAH) {
+      params.setMargins(mLeftRightMargin, mTopBottomMargin / 2,
+          mLeftRightMargin, mTopBottomMargin / 2);
+    } else if (viewType != TranslationViewRow.TYPE_SURA_HEADER) {
+      params.setMargins(mLeftRightMargin, mTopBottomMargin,
+          mLeftRightMargin, mTopBottomMargin);
+    }
+    view.setLayoutParams(params);
+    view.setOnClickListener(mOnClickListener);
+
+    final RowHolder holder = new RowHolder(view);
+    if (viewType == TranslationViewRow.TYPE_AYAH_TEXT) {
+      view.setOnLongClickListener(new View.OnLongClickListener() {
+        @Override
+        public boolean onLongClick(View v) {
+          final int position = holder.getAdapterPosition();
+          if (position == RecyclerView.NO_POSITION) {
+            return false;
+          }
+          final TranslationTextView textView = (TranslationTextView) v;
+          startSelection(position, textView.getLastDownX(), textView.getLastDownY());
+          return true;
+        }
+      });
+    } else if (viewType == TYPE_SELECTABLE_AYAH_TEXT) {
+      ((TextView) view).setCustomSelectionActionModeCallback(
+          new SelectionCallback(view));
+    }
+    return holder;
+  }
+
+  private View createSuraHeader() {
+    final LinearLayout layout = new LinearLayout(mContext);
+    layout.setOrientation(LinearLayout.VERTICAL);
+
+    View view = new View(mContext);
+    view.setBackgroundColor(mHeaderColor);
+    LinearLayout.LayoutParams params = new LinearLayout.LayoutParams(
+        ViewGroup.LayoutParams.MATCH_PARENT, 2);
+    params.topMargin = mTopBottomMargin;
+    layout.addView(view, params);
+
+    TextView headerView = new TextView(mContext);
+    params = new LinearLayout.LayoutParams(ViewGroup.LayoutParams.MATCH_PARENT,
+        ViewGroup.LayoutParams.WRAP_CONTENT);
+    params.leftMargin = mLeftRightMargin;
+    params.rightMargin = mLeftRightMargin;
+    params.topMargin = mTopBottomMargin / 2;
+    params.bottomMargin = mTopBottomMargin / 2;
+    headerView.setTextAppearance(mContext, mHeaderStyle);
+    layout.addView(headerView, params);
+
+    view = new View(mContext);
+    view.setBackgroundColor(mDividerColor);
+    layout.addView(view, ViewGroup.LayoutParams.MATCH_PARENT, 2);
+    return layout;
+  }
+
+  @Override
+  public void onBindViewHolder(RowHolder holder, int position) {
+    final TranslationViewRow row = mRows.get(position);
+    final boolean isHighlighted =
+        row.ayahId > 0 && row.ayahId == mHighlightedAyah;
+    final int textColor = isHighlighted ? mHighlightedTextColor : mTextColor;
+    switch (holder.getItemViewType()) {
+      case TranslationViewRow.TYPE_SURA_HEADER: {
+        final TextView headerView =
+            (TextView) ((LinearLayout) holder.itemView).getChildAt(1);
+        headerView.setText(row.text);
+        break;
+      }
+      case TranslationViewRow.TYPE_BASMALLAH: {
+        final TextView basmallahView = (TextView) holder.itemView;
+        basmallahView.setTextAppearance(mContext, mTextStyle);
+        basmallahView.setTextColor(mTextColor);
+        basmallahView.setTextSize(mFontSize);
+        basmallahView.setText(row.text);
+        break;
+      }
+      case TranslationViewRow.TYPE_AYAH_HEADER: {
+        final TextView headerView = (TextView) holder.itemView;
+        headerView.setTextAppearance(mContext, mTextStyle);
+        headerView.setTextColor(textColor);
+        headerView.setTextSize(mFontSize);
+        headerView.setTypeface(null, Typeface.BOLD);
+        headerView.setText(row.text);
+        break;
+      }
+      case TranslationViewRow.TYPE_AYAH_TEXT: {
+        final TranslationTextView textView = (TranslationTextView) holder.itemView;
+        textView.setLayout(row.layout);
+        textView.setTextColor(textColor);
+        break;
+      }
+      case TYPE_SELECTABLE_AYAH_TEXT: {
+        final TextView textView = (TextView) holder.itemView;
+        textView.setTextAppearance(mContext, mTextStyle);
+        textView.setTextColor(textColor);
+        textView.setTextSize(mFontSize);
+        if (TranslationLayoutBuilder.hasArabic(row.ayah)) {
+          textView.setLineSpacing(VerseLineHeightSpan.TRANSLATION_LINE_HEIGHT_ADDITION,
+              VerseLineHeightSpan.TRANSLATION_LINE_HEIGHT_MULTIPLY);
+        } else {
+          textView.setLineSpacing(0, 1.0f);
+        }
+        textView.setText(row.text);
+        if (mIsSelectionPending) {
+          mIsSelectionPending = false;
+          startSelection(textView, mSelectionX, mSelectionY);
+        }
+        break;
+      }
+    }
+  }
+
+  /**
+   * Start selecting text in the text view at the given point, once it is
+   * shown. The long press that started the selection was on the view it
+   * replaced, so the text view is told where the touch was first.
+   */
+  private static void startSelection(final TextView textView,
+      final float x, final float y) {
+    textView.post(new Runnable() {
+      @Override
+      public void run() {
+        final long now = SystemClock.uptimeMillis();
+        final MotionEvent event =
+            MotionEvent.obtain(now, now, MotionEvent.ACTION_DOWN, x, y, 0);
+        textView.onTouchEvent(event);
+        event.setAction(MotionEvent.ACTION_CANCEL);
+        textView.onTouchEvent(event);
+        event.recycle();
+        textView.performLongClick();
+      }
+    });
+  }
+
+  @Override
+  public void onViewAttachedToWindow(RowHolder holder) {
+    super.onViewAttachedToWindow(holder);
+    if (holder.getItemViewType() == TYPE_SELECTABLE_AYAH_TEXT) {
+      // selectable text views that were detached don't start selections
+      // again until they are enabled again
+      holder.itemView.setEnabled(false);
+      holder.itemView.setEnabled(true);
+    }
+  }
+
+  /**
+   * Keeps the text's own selection actions (copy, select all, ...), and
+   * goes back to drawing the text from its layout once they're done.
+   */
+  private class SelectionCallback implements ActionMode.Callback {
+    private final View mView;
+
+    SelectionCallback(View view) {
+      mView = view;
+    }
+
+    @Override
+    public boolean onCreateActionMode(ActionMode mode, Menu menu) {
+      return true;
+    }
+
+    @Override
+    public boolean onPrepareActionMode(ActionMode mode, Menu menu) {
+      return false;
+    }
+
+    @Override
+    public boolean onActionItemClicked(ActionMode mode, MenuItem item) {
+      return false;
+    }
+
+    @Override
+    public void onDestroyActionMode(ActionMode mode) {
+      // not while the recycler view may be in the middle of a layout
+      mView.post(new Runnable() {
+        @Override
+        public void run() {
+          if (!mIsSelectionPending) {
+            endSelection();
+          }
+        }
+      });
+    }
+  }
+
+  static class RowHolder extends RecyclerView.ViewHolder {
+    RowHolder(View itemView) {
+      super(itemView);
+    }
+  }
+}
@@ -0,0 +1,180 @@
+package com.quran.labs.androidquran.widgets;
+
+import com.quran.labs.androidquran.common.QuranAyah;
+import com.quran.labs.androidquran.data.QuranInfo;
+import com.quran.labs.androidquran.ui.helpers.TranslationTextBuilder;
+import com.quran.labs.androidquran.ui.helpers.VerseLineHeightSpan;
+import com.quran.labs.androidquran.util.QuranMemoryGovernor;
+import com.quran.labs.androidquran.util.TrimmableLruCache;
+
+import android.app.ActivityManager;
+import android.content.Context;
+import android.text.Layout;
+import android.text.StaticLayout;
+import android.text.TextPaint;
+import android.text.TextUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Builds the rows of a {@link TranslationView}, including the layout of
+ * the text of each ayah, so that it can be done off the main thread. The
+ * text itself is normally built when the ayahs are loaded (see
+ * {@link TranslationTextBuilder}).
+ *
+ * Layouts are cached by ayah, text size and width, so that showing a page
+ * again (or changing its colors) doesn't lay out its text again.
+ */
+class TranslationLayoutBuilder {
+  // fraction of the memory class to use for cached layouts
+  private static final int CACHE_MEMORY_DIVISOR = 64;
+  // rough size of a layout and of each of its lines, excluding the text
+  private static final int LAYOUT_OVERHEAD = 128;
+  private static final int LINE_OVERHEAD = 32;
+
+  private static TrimmableLruCache<LayoutKey, Layout> sLayoutCache;
+
+  private TranslationLayoutBuilder() {
+  }
+
+  private static synchronized TrimmableLruCache<LayoutKey, Layout> getLayoutCache(
+      Context context) {
+    if (sLayoutCache == null) {
+      final int memoryClass = ((ActivityManager) context
+          .getSystemService(Context.ACTIVITY_SERVICE)).getMemoryClass();
+      sLayoutCache = new TrimmableLruCache<LayoutKey, Layout>(
+          1024 * 1024 * memoryClass / CACHE_MEMORY_DIVISOR) {
+        @Override
+        protected int sizeOf(LayoutKey key, Layout layout) {
+          return LAYOUT_OVERHEAD + LINE_OVERHEAD * layout.getLineCount() +
+              2 * layout.getText().length();
+        }
+      };
+      QuranMemoryGovernor.getInstance().register(sLayoutCache);
+    }
+    return sLayoutCache;
+  }
+
+  /**
+   * Build the rows for a list of ayahs.
+   * @param context the context
+   * @param ayat the ayahs to show
+   * @param withSuraHeaders whether to show sura names (and the basmallah)
+   *                        before the first ayah of each sura
+   * @param currentSura the sura of the rows these rows come after, which
+   *                    doesn't get a header again, or 0 if there are none
+   * @param withFooter whether to add space after the last ayah
+   * @param textSize the size of the text, in pixels
+   * @param width the width to lay out the text of each ayah in
+   * @return the rows
+   */
+  static List<TranslationViewRow> buildRows(Context context,
+      List<QuranAyah> ayat, boolean withSuraHeaders, int currentSura,
+      boolean withFooter, float textSize, int width) {
+    final TrimmableLruCache<LayoutKey, Layout> cache = getLayoutCache(context);
+    final TextPaint paint = new TextPaint(TextPaint.ANTI_ALIAS_FLAG);
+    paint.setTextSize(textSize);
+
+    final List<TranslationViewRow> rows = new ArrayList<>();
+    for (int i = 0, ayatSize = ayat.size(); i < ayatSize; i++) {
+      final QuranAyah ayah = ayat.get(i);
+      final int sura = ayah.getSura();
+      if (withSuraHeaders && sura != currentSura) {
+        rows.add(new TranslationViewRow(TranslationViewRow.TYPE_SURA_HEADER,
+            sura, QuranInfo.getSuraName(context, sura, true)));
+        if (ayah.getAyah() == 1 && (sura != 1 && sura != 9)) {
+          // explicitly add basmallah
+          rows.add(new TranslationViewRow(TranslationViewRow.TYPE_BASMALLAH,
+              sura, TranslationTextBuilder.getBasmallah(context)));
+        }
+        currentSura = sura;
+      }
+
+      final int ayahId = QuranInfo.getAyahId(sura, ayah.getAyah());
+      final CharSequence text = TranslationTextBuilder.getDisplayText(context, ayah);
+      final LayoutKey key = new LayoutKey(ayahId, textSize, width, ayah);
+      Layout layout = cache.get(key);
+      if (layout == null) {
+        layout = createLayout(text, paint, width, hasArabic(ayah));
+        cache.put(key, layout);
+      }
+
+      rows.add(new TranslationViewRow(TranslationViewRow.TYPE_AYAH_HEADER,
+          sura, ayahId, ayah, sura + ":" + ayah.getAyah()));
+      rows.add(new TranslationViewRow(TranslationViewRow.TYPE_AYAH_TEXT,
+          sura, ayahId, ayah, text, layout));
+    }
+    cache.trimToLimit();
+
+    if (withFooter) {
+      rows.add(new TranslationViewRow(TranslationViewRow.TYPE_SPACER, 0, null));
+    }
+    return rows;
+  }
+
+  /**
+   * @return whether the text of the ayah starts with its arabic text, which
+   * is shown with more space between the lines
+   */
+  static boolean hasArabic(QuranAyah ayah) {
+    return !TextUtils.isEmpty(ayah.getText());
+  }
+
+  private static Layout createLayout(CharSequence text,
+      TextPaint paint, int width, boolean hasArabic) {
+    final float spacingMultiplier = hasArabic ?
+        VerseLineHeightSpan.TRANSLATION_LINE_HEIGHT_MULTIPLY : 1.0f;
+    final float spacingAddition = hasArabic ?
+        VerseLineHeightSpan.TRANSLATION_LINE_HEIGHT_ADDITION : 0.0f;
+    return new StaticLayout(text, paint, width, Layout.Alignment.ALIGN_NORMAL,
+        spacingMultiplier, spacingAddition, true);
+  }
+
+  /**
+   * The key of a cached layout: the ayah, the text size and the width. The
+   * same ayah can be shown with or without arabic, or with other
+   * translations, so a hash of its text is part of the key too.
+   */
+  private static final class LayoutKey {
+    private final int mAyahId;
+    private final float mTextSize;
+    private final int mWidth;
+    private final int mTextHash;
+
+    LayoutKey(int ayahId, float textSize, int width, QuranAyah ayah) {
+      mAyahId = ayahId;
+      mTextSize = textSize;
+      mWidth = width;
+
+      int textHash = hashCode(ayah.getText());
+      textHash = 31 * textHash + hashCode(ayah.getTranslation());
+      for (int i = 0, count = ayah.getExtraTranslationCount(); i < count; i++) {
+        textHash = 31 * textHash + hashCode(ayah.getExtraTranslation(i));
+      }
+      mTextHash = textHash;
+    }
+
+    private static int hashCode(String text) {
+      return text == null ? 0 : text.hashCode();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (!(o instanceof LayoutKey)) {
+        return false;
+      }
+      final LayoutKey key = (LayoutKey) o;
+      return key.mAyahId == mAyahId && key.mTextSize == mTextSize &&
+          key.mWidth == mWidth && key.mTextHash == mTextHash;
+    }
+
+    @Override
+    public int hashCode() {
+      int result = mAyahId;
+      result = 31 * result + Float.floatToIntBits(mTextSize);
+      result = 31 * result + mWidth;
+      return 31 * result + mTextHash;
+    }
+  }
+}
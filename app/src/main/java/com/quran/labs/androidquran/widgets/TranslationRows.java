@@ -0,0 +1,148 @@
+package com.quran.labs.androidquran.widgets;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The rows shown by a {@link TranslationAdapter}. Rows are added to and
+ * removed from either end as ayahs are streamed in and out, and every
+ * change is passed on to a {@link Listener} so that the adapter can notify
+ * the view of exactly the rows that changed.
+ */
+class TranslationRows {
+  private final Listener mListener;
+  private List<TranslationViewRow> mRows = new ArrayList<>();
+
+  TranslationRows(Listener listener) {
+    mListener = listener;
+  }
+
+  /**
+   * Replace all the rows. The listener isn't told about this one, since
+   * everything changed.
+   */
+  void set(List<TranslationViewRow> rows) {
+    mRows = new ArrayList<>(rows);
+  }
+
+  int size() {
+    return mRows.size();
+  }
+
+  TranslationViewRow get(int position) {
+    return mRows.get(position);
+  }
+
+  /**
+   * Add rows after the ayahs that are shown (and before the footer).
+   */
+  void append(List<TranslationViewRow> rows) {
+    int position = mRows.size();
+    if (position > 0 &&
+        mRows.get(position - 1).type == TranslationViewRow.TYPE_SPACER) {
+      position--;
+    }
+    mRows.addAll(position, rows);
+    mListener.onRowsInserted(position, rows.size());
+  }
+
+  /**
+   * Add rows before the ayahs that are shown. If the shown ayahs start with
+   * the header of the sura the new rows end in, that header is removed.
+   * @return how many positions the rows that were already shown moved by
+   */
+  int prepend(List<TranslationViewRow> rows) {
+    int headers = 0;
+    if (!rows.isEmpty()) {
+      final int sura = rows.get(rows.size() - 1).sura;
+      while (headers < mRows.size() && mRows.get(headers).sura == sura &&
+          (mRows.get(headers).type == TranslationViewRow.TYPE_SURA_HEADER ||
+           mRows.get(headers).type == TranslationViewRow.TYPE_BASMALLAH)) {
+        headers++;
+      }
+      if (headers > 0) {
+        mRows.subList(0, headers).clear();
+        mListener.onRowsRemoved(0, headers);
+      }
+    }
+    mRows.addAll(0, rows);
+    mListener.onRowsInserted(0, rows.size());
+    return rows.size() - headers;
+  }
+
+  /**
+   * Remove the rows of the ayahs outside of the given range, along with the
+   * headers before them.
+   */
+  void trim(int firstAyahId, int lastAyahId) {
+    // rows before the first ayah in the range
+    int start = 0;
+    while (start < mRows.size() && !isAyahRowAtOrAfter(start, firstAyahId)) {
+      start++;
+    }
+    // headers right before it stay with it
+    while (start > 0 && mRows.get(start - 1).ayahId == 0 &&
+        mRows.get(start - 1).type != TranslationViewRow.TYPE_SPACER) {
+      start--;
+    }
+    if (start > 0) {
+      mRows.subList(0, start).clear();
+      mListener.onRowsRemoved(0, start);
+    }
+
+    // rows after the last ayah in the range, except for the footer
+    int end = mRows.size();
+    if (end > 0 && mRows.get(end - 1).type == TranslationViewRow.TYPE_SPACER) {
+      end--;
+    }
+    int keep = end;
+    while (keep > 0 && (mRows.get(keep - 1).ayahId == 0 ||
+        mRows.get(keep - 1).ayahId > lastAyahId)) {
+      keep--;
+    }
+    if (keep < end) {
+      mRows.subList(keep, end).clear();
+      mListener.onRowsRemoved(keep, end - keep);
+    }
+  }
+
+  private boolean isAyahRowAtOrAfter(int position, int ayahId) {
+    final int rowAyahId = mRows.get(position).ayahId;
+    return rowAyahId >= ayahId ||
+        mRows.get(position).type == TranslationViewRow.TYPE_SPACER;
+  }
+
+  /**
+   * @return the position of the header of the ayah, or -1 if it isn't shown
+   */
+  int getAyahPosition(int ayahId) {
+    for (int i = 0, size = mRows.size(); i < size; i++) {
+      final TranslationViewRow row = mRows.get(i);
+      if (row.type == TranslationViewRow.TYPE_AYAH_HEADER && row.ayahId == ayahId) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * @return the ayah id of the first ayah row at or after the position, or
+   * 0 if there isn't one
+   */
+  int getAyahIdFrom(int position) {
+    for (int i = Math.max(position, 0), size = mRows.size(); i < size; i++) {
+      final int ayahId = mRows.get(i).ayahId;
+      if (ayahId > 0) {
+        return ayahId;
+      }
+    }
+    return 0;
+  }
+
+  interface Listener {
+
+    void onRowsInserted(int position, int count);
+
+    void onRowsRemoved(int position, int count);
+  }
+}
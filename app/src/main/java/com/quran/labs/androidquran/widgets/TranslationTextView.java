@@ -0,0 +1,82 @@
+package com.quran.labs.androidquran.widgets;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.text.Layout;
+import android.view.MotionEvent;
+import android.view.View;
+
+/**
+ * Draws text that was already laid out, so that binding a row of a
+ * {@link TranslationView} doesn't measure or lay out any text. Its text
+ * can't be selected; when the user long presses it to select text, the
+ * {@link TranslationAdapter} swaps it for a selectable TextView.
+ */
+class TranslationTextView extends View {
+  private Layout mLayout;
+  private int mTextColor;
+  // where the last touch started, to start selecting text there
+  private float mLastDownX;
+  private float mLastDownY;
+
+  public TranslationTextView(Context context) {
+    super(context);
+  }
+
+  public void setLayout(Layout layout) {
+    if (mLayout != layout) {
+      final boolean heightChanged = mLayout == null ||
+          layout == null || mLayout.getHeight() != layout.getHeight();
+      mLayout = layout;
+      if (heightChanged) {
+        requestLayout();
+      }
+      invalidate();
+    }
+  }
+
+  public void setTextColor(int textColor) {
+    if (mTextColor != textColor) {
+      mTextColor = textColor;
+      invalidate();
+    }
+  }
+
+  public float getLastDownX() {
+    return mLastDownX;
+  }
+
+  public float getLastDownY() {
+    return mLastDownY;
+  }
+
+  @Override
+  public boolean onTouchEvent(MotionEvent event) {
+    if (event.getActionMasked() == MotionEvent.ACTION_DOWN) {
+      mLastDownX = event.getX();
+      mLastDownY = event.getY();
+    }
+    return super.onTouchEvent(event);
+  }
+
+  @Override
+  protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+    final int height = (mLayout == null ? 0 : mLayout.getHeight()) +
+        getPaddingTop() + getPaddingBottom();
+    setMeasuredDimension(MeasureSpec.getSize(widthMeasureSpec), height);
+  }
+
+  @Override
+  protected void onDraw(Canvas canvas) {
+    if (mLayout == null) {
+      return;
+    }
+
+    canvas.save();
+    canvas.translate(getPaddingLeft(), getPaddingTop());
+    // layouts are only drawn on the main thread, so they can share a paint
+    mLayout.getPaint().setColor(mTextColor);
+    mLayout.draw(canvas);
+    canvas.restore();
+  }
+}
@@ -3,59 +3,73 @@ package com.quran.labs.androidquran.widgets;
 import android.content.Context;
 import android.content.res.Resources;
 import android.graphics.Color;
-import android.graphics.Typeface;
-import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
 import android.support.annotation.StyleRes;
 import android.support.v4.content.ContextCompat;
-import android.text.SpannableString;
-import android.text.Spanned;
-import android.text.TextUtils;
-import android.text.style.RelativeSizeSpan;
+import android.support.v7.widget.LinearLayoutManager;
+import android.support.v7.widget.RecyclerView;
 import android.util.AttributeSet;
-import android.util.SparseArray;
+import android.util.TypedValue;
+import android.view.GestureDetector;
+import android.view.MotionEvent;
 import android.view.View;
-import android.widget.LinearLayout;
-import android.widget.ScrollView;
-import android.widget.TextView;
 
 import com.quran.labs.androidquran.R;
 import com.quran.labs.androidquran.common.QuranAyah;
 import com.quran.labs.androidquran.data.QuranInfo;
-import com.quran.labs.androidquran.model.translation.ArabicDatabaseUtils;
-import com.quran.labs.androidquran.ui.helpers.UthmaniSpan;
-import com.quran.labs.androidquran.ui.helpers.VerseLineHeightSpan;
+import com.quran.labs.androidquran.task.QuranTaskExecutor;
+import com.quran.labs.androidquran.util.LatencyHistogram;
 import com.quran.labs.androidquran.util.QuranScreenInfo;
 import com.quran.labs.androidquran.util.QuranSettings;
 
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
 import java.util.List;
-
-public class TranslationView extends ScrollView {
-  private static final boolean USE_UTHMANI_SPAN =
-      Build.VERSION.SDK_INT > Build.VERSION_CODES.JELLY_BEAN_MR1;
-  private static final float ARABIC_RELATIVE_SIZE = 1.4f;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Shows the translation of a list of ayahs. Only the visible rows have
+ * views, and the rows are built (and the text of each ayah laid out, or
+ * taken from the layout cache) on a background thread, so long pages and
+ * tafaseer hold up the main thread as little as possible. The text of an
+ * ayah is only shown in a (selectable) TextView once it is long pressed.
+ */
+public class TranslationView extends RecyclerView {
+  private static final Handler sMainHandler = new Handler(Looper.getMainLooper());
+  // what to do with the rows once they're laid out
+  private static final int LAYOUT_REPLACE = 0;
+  private static final int LAYOUT_APPEND = 1;
+  private static final int LAYOUT_PREPEND = 2;
+  // how close to either end of the rows to ask for more ayahs
+  private static final int EDGE_ROWS = 10;
+  // main thread time spent binding the rows of each page that is shown
+  private static final LatencyHistogram sPageBindTimes = new LatencyHistogram();
 
   private Context mContext;
-  private int mDividerColor;
-  private int mLeftRightMargin;
-  private int mTopBottomMargin;
-  @StyleRes private int mTextStyle;
-  @StyleRes private int mHighlightedStyle;
   private int mFontSize;
-  private int mHeaderColor;
-  private int mHeaderStyle;
-  private int mFooterSpacerHeight;
-  private int mLastHighlightedAyah;
+  private int mLeftRightMargin;
+  private int mHighlightedTextColor;
+  // ayah to highlight once the rows are laid out
+  private int mPendingHighlightedAyah;
   private boolean mIsNightMode;
   private int mNightModeTextColor;
   private boolean mIsInAyahActionMode;
   private boolean mIsDataMissing;
 
   private List<QuranAyah> mAyat;
-  private SparseArray<TextView> mAyahMap;
-  private SparseArray<TextView> mAyahHeaderMap;
-
-  private LinearLayout mLinearLayout;
+  // incremented every time the rows are laid out again, so that rows that
+  // were laid out for older ayahs, sizes or widths are dropped
+  private volatile int mLayoutGeneration;
+  // whether the next layout binds the rows of a new page
+  private boolean mIsBindingPage;
+
+  private LinearLayoutManager mLayoutManager;
+  private TranslationAdapter mAdapter;
   private TranslationClickedListener mTranslationClickedListener;
+  private OnScrollEdgeListener mOnScrollEdgeListener;
+  private GestureDetector mGestureDetector;
 
   public TranslationView(Context context) {
     this(context, null);
@@ -72,41 +86,56 @@ public class TranslationView extends ScrollView {
 
   public void setIsInAyahActionMode(boolean isInAyahActionMode) {
     mIsInAyahActionMode = isInAyahActionMode;
+    updateTextStyle();
   }
 
   public void init(Context context) {
     mContext = context;
-    mAyahMap = new SparseArray<>();
-    mAyahHeaderMap = new SparseArray<>();
     mIsDataMissing = true;
 
-    setFillViewport(true);
-    mLinearLayout = new LinearLayout(context);
-    mLinearLayout.setOrientation(LinearLayout.VERTICAL);
-    addView(mLinearLayout, ScrollView.LayoutParams.MATCH_PARENT,
-        ScrollView.LayoutParams.WRAP_CONTENT);
-    mLinearLayout.setOnClickListener(new OnClickListener() {
-      @Override
-      public void onClick(View v) {
-        if (mTranslationClickedListener != null) {
-          mTranslationClickedListener.onTranslationClicked();
-        }
-      }
-    });
+    mLayoutManager = new LinearLayoutManager(context);
+    setLayoutManager(mLayoutManager);
+    mAdapter = new TranslationAdapter(context, mOnAyahClickListener);
 
     Resources resources = getResources();
-    mDividerColor = ContextCompat.getColor(context, R.color.translation_hdr_color);
     mLeftRightMargin = resources.getDimensionPixelSize(
         R.dimen.translation_left_right_margin);
-    mTopBottomMargin = resources.getDimensionPixelSize(
-        R.dimen.translation_top_bottom_margin);
-    mFooterSpacerHeight = resources.getDimensionPixelSize(
-        R.dimen.translation_footer_spacer);
-    mHeaderColor = ContextCompat.getColor(context, R.color.translation_sura_header);
-    mHeaderStyle = R.style.translation_sura_title;
+    mAdapter.setDimensions(mLeftRightMargin,
+        resources.getDimensionPixelSize(R.dimen.translation_top_bottom_margin),
+        resources.getDimensionPixelSize(R.dimen.translation_footer_spacer));
+    mAdapter.setHeaderStyle(
+        ContextCompat.getColor(context, R.color.translation_hdr_color),
+        ContextCompat.getColor(context, R.color.translation_sura_header),
+        R.style.translation_sura_title);
+    mHighlightedTextColor =
+        ContextCompat.getColor(context, R.color.translation_highlight);
+    setAdapter(mAdapter);
+    addOnScrollListener(new OnScrollListener() {
+      @Override
+      public void onScrolled(RecyclerView recyclerView, int dx, int dy) {
+        checkScrollEdges();
+      }
+    });
+    // rows handle their own taps, so these are taps between or below them
+    mGestureDetector = new GestureDetector(context,
+        new GestureDetector.SimpleOnGestureListener() {
+          @Override
+          public boolean onSingleTapUp(MotionEvent e) {
+            if (findChildViewUnder(e.getX(), e.getY()) == null) {
+              mOnAyahClickListener.onClick(TranslationView.this);
+            }
+            return false;
+          }
+        });
     initResources();
   }
 
+  @Override
+  public boolean onTouchEvent(MotionEvent e) {
+    mGestureDetector.onTouchEvent(e);
+    return super.onTouchEvent(e);
+  }
+
   private void initResources() {
     QuranSettings settings = QuranSettings.getInstance(mContext);
     mFontSize = settings.getTranslationTextSize();
@@ -116,11 +145,21 @@ public class TranslationView extends ScrollView {
       int brightness = settings.getNightModeTextBrightness();
       mNightModeTextColor = Color.rgb(brightness, brightness, brightness);
     }
-    mTextStyle = mIsNightMode ? R.style.TranslationText_NightMode :
-        R.style.TranslationText;
-    mHighlightedStyle = mIsNightMode ?
-        R.style.TranslationText_NightMode_Highlighted :
-        R.style.TranslationText_Highlighted;
+    updateTextStyle();
+  }
+
+  private void updateTextStyle() {
+    @StyleRes final int textStyle = mIsNightMode ?
+        R.style.TranslationText_NightMode : R.style.TranslationText;
+    final int textColor;
+    if (mIsInAyahActionMode) {
+      textColor = Color.WHITE;
+    } else if (mIsNightMode) {
+      textColor = mNightModeTextColor;
+    } else {
+      textColor = Color.BLACK;
+    }
+    mAdapter.setTextStyle(textStyle, mFontSize, textColor, mHighlightedTextColor);
   }
 
   public void refresh() {
@@ -143,238 +182,232 @@ public class TranslationView extends ScrollView {
     if (isNightMode) {
       mNightModeTextColor = Color.rgb(textBrightness, textBrightness, textBrightness);
     }
-    mTextStyle = mIsNightMode ? R.style.TranslationText_NightMode :
-        R.style.TranslationText;
-    mHighlightedStyle = mIsNightMode ?
-        R.style.TranslationText_NightMode_Highlighted :
-        R.style.TranslationText_Highlighted;
-    if (mAyat != null) {
-      setAyahs(mAyat);
-    }
+    // only the colors change, so the text doesn't need to be laid out again
+    updateTextStyle();
   }
 
   public void setAyahs(List<QuranAyah> ayat) {
-    mLastHighlightedAyah = -1;
-
-    mLinearLayout.removeAllViews();
-    mAyahMap.clear();
-    mAyahHeaderMap.clear();
     mAyat = ayat;
+    layoutRows();
+  }
 
-    int currentSura = 0;
-    for (int i = 0, ayatSize = ayat.size(); i < ayatSize; i++) {
-      QuranAyah ayah = ayat.get(i);
+  @Override
+  protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+    super.onSizeChanged(w, h, oldw, oldh);
+    if (w != oldw && mAyat != null) {
+      layoutRows();
+    }
+  }
 
-      final int sura = ayah.getSura();
-      if (!mIsInAyahActionMode && sura != currentSura) {
-        addSuraHeader(sura);
-        if (ayah.getAyah() == 1 && (sura != 1 && sura != 9)) {
-          // explicitly add basmallah
-          addBasmallah();
-        }
-        currentSura = sura;
-      }
-      addTextForAyah(ayah);
+  /**
+   * Add ayahs after the ones that are shown, for reading continuously.
+   */
+  public void appendAyahs(List<QuranAyah> ayat) {
+    if (mAyat == null || mAyat.isEmpty()) {
+      setAyahs(ayat);
+      return;
     }
 
-    addFooterSpacer();
+    final int currentSura = mAyat.get(mAyat.size() - 1).getSura();
+    mAyat = concat(mAyat, ayat);
+    layoutRows(LAYOUT_APPEND, ayat, currentSura);
   }
 
-  public void unhighlightAyat() {
-    if (mLastHighlightedAyah > 0) {
-      TextView text = mAyahMap.get(mLastHighlightedAyah);
-      if (text != null) {
-        text.setTextAppearance(mContext, mTextStyle);
-        text.setTextSize(mFontSize);
-      }
-
-      text = mAyahHeaderMap.get(mLastHighlightedAyah);
-      if (text != null) {
-        styleAyahHeader(text, mTextStyle);
-      }
+  /**
+   * Add ayahs before the ones that are shown, for reading continuously.
+   */
+  public void prependAyahs(List<QuranAyah> ayat) {
+    if (mAyat == null || mAyat.isEmpty()) {
+      setAyahs(ayat);
+      return;
     }
-    mLastHighlightedAyah = -1;
+
+    mAyat = concat(ayat, mAyat);
+    layoutRows(LAYOUT_PREPEND, ayat, 0);
   }
 
-  public void highlightAyah(int ayahId) {
-    if (mLastHighlightedAyah > 0) {
-      unhighlightAyat();
+  /**
+   * Stop showing the ayahs outside of the given range of ayah ids.
+   */
+  public void trimAyahs(int firstAyahId, int lastAyahId) {
+    if (mAyat == null) {
+      return;
     }
 
-    TextView text = mAyahMap.get(ayahId);
-    if (text != null) {
-      text.setTextAppearance(mContext, mHighlightedStyle);
-      text.setTextSize(mFontSize);
-      mLastHighlightedAyah = ayahId;
-
-      TextView header = mAyahHeaderMap.get(ayahId);
-      if (header != null) {
-        styleAyahHeader(header, mHighlightedStyle);
+    final List<QuranAyah> ayat = new ArrayList<>(mAyat.size());
+    for (int i = 0, size = mAyat.size(); i < size; i++) {
+      final QuranAyah ayah = mAyat.get(i);
+      final int ayahId = QuranInfo.getAyahId(ayah.getSura(), ayah.getAyah());
+      if (ayahId >= firstAyahId && ayahId <= lastAyahId) {
+        ayat.add(ayah);
       }
-
-      int screenHeight = QuranScreenInfo.getInstance().getHeight();
-      int y = text.getTop() - (int) (0.25 * screenHeight);
-      smoothScrollTo(getScrollX(), y);
-    } else {
-      mLastHighlightedAyah = -1;
     }
+    mAyat = ayat;
+    mAdapter.trimRows(firstAyahId, lastAyahId);
   }
 
-  private OnClickListener mOnAyahClickListener = new OnClickListener() {
-    @Override
-    public void onClick(View v) {
-      if (mTranslationClickedListener != null) {
-        mTranslationClickedListener.onTranslationClicked();
-      }
+  private static List<QuranAyah> concat(List<QuranAyah> first,
+      List<QuranAyah> second) {
+    final List<QuranAyah> result = new ArrayList<>(first.size() + second.size());
+    result.addAll(first);
+    result.addAll(second);
+    return result;
+  }
+
+  /**
+   * Lay out the rows for the current ayahs on a background thread. Nothing
+   * happens until the width of the view is known.
+   */
+  private void layoutRows() {
+    ++mLayoutGeneration;
+    layoutRows(LAYOUT_REPLACE, mAyat, 0);
+  }
+
+  private void layoutRows(int mode, List<QuranAyah> ayat, int currentSura) {
+    final int width = getWidth() - getPaddingLeft() - getPaddingRight() -
+        2 * mLeftRightMargin;
+    if (width <= 0) {
+      // all the ayahs are laid out once the width is known
+      return;
     }
-  };
 
-  private void addFooterSpacer() {
-    final LinearLayout.LayoutParams params = new LinearLayout.LayoutParams(
-        LayoutParams.MATCH_PARENT, mFooterSpacerHeight);
-    final View view = new View(mContext);
-    mLinearLayout.addView(view, params);
-  }
-
-  private void addTextForAyah(QuranAyah ayah) {
-    LinearLayout.LayoutParams params = new LinearLayout.LayoutParams(
-        LayoutParams.MATCH_PARENT,
-        LayoutParams.WRAP_CONTENT);
-    params.setMargins(mLeftRightMargin, mTopBottomMargin,
-        mLeftRightMargin, mTopBottomMargin);
-
-    final int suraNumber = ayah.getSura();
-    final int ayahNumber = ayah.getAyah();
-    final int ayahId = QuranInfo.getAyahId(suraNumber, ayahNumber);
-    TextView ayahHeader = new TextView(mContext);
-    styleAyahHeader(ayahHeader, mTextStyle);
-    ayahHeader.setText(suraNumber + ":" + ayahNumber);
-    mLinearLayout.addView(ayahHeader, params);
-    mAyahHeaderMap.put(ayahId, ayahHeader);
-
-    TextView ayahView = new TextView(mContext);
-    ayahView.setOnClickListener(mOnAyahClickListener);
-    mAyahMap.put(ayahId, ayahView);
-
-    ayahView.setTextAppearance(mContext, mTextStyle);
-    if (mIsInAyahActionMode) {
-      ayahView.setTextColor(Color.WHITE);
-    } else if (mIsNightMode) {
-      ayahView.setTextColor(mNightModeTextColor);
+    final float textSize = TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_SP,
+        mFontSize, getResources().getDisplayMetrics());
+    final LayoutRunnable layout = new LayoutRunnable(this, mLayoutGeneration,
+        mode, ayat, !mIsInAyahActionMode, currentSura, textSize, width);
+    try {
+      QuranTaskExecutor.TEXT_LAYOUT.execute("TranslationLayout", layout);
+    } catch (RejectedExecutionException ree) {
+      // lay the rows out here rather than not showing them at all
+      layout.run();
     }
-    ayahView.setTextSize(mFontSize);
-
-    // arabic
-    String ayahText = ayah.getText();
-    if (!TextUtils.isEmpty(ayahText)) {
-      ayahText = ArabicDatabaseUtils.getAyahWithoutBasmallah(suraNumber, ayahNumber, ayahText);
-
-      // Ayah Text
-      ayahView.setLineSpacing(VerseLineHeightSpan.TRANSLATION_LINE_HEIGHT_ADDITION,
-          VerseLineHeightSpan.TRANSLATION_LINE_HEIGHT_MULTIPLY);
-
-      SpannableString arabicText = new SpannableString(ayahText);
-      if (USE_UTHMANI_SPAN) {
-        UthmaniSpan uthmaniSpan = new UthmaniSpan(mContext);
-        int length = ayahText.length();
-        arabicText.setSpan(uthmaniSpan, 0, length,
-            Spanned.SPAN_EXCLUSIVE_EXCLUSIVE);
-        arabicText.setSpan(new RelativeSizeSpan(ARABIC_RELATIVE_SIZE),
-            0, length, Spanned.SPAN_EXCLUSIVE_EXCLUSIVE);
-        arabicText.setSpan(new VerseLineHeightSpan(),
-            0, length, Spanned.SPAN_EXCLUSIVE_EXCLUSIVE);
-      }
-      ayahView.setText(arabicText);
-      ayahView.append("\n\n");
+  }
+
+  private void onRowsLaidOut(int generation,
+      int mode, List<TranslationViewRow> rows) {
+    if (generation != mLayoutGeneration) {
+      return;
     }
 
-    // translation
-    String translationText = ayah.getTranslation();
+    if (mode == LAYOUT_APPEND) {
+      mAdapter.appendRows(rows);
+    } else if (mode == LAYOUT_PREPEND) {
+      prependRows(rows);
+    } else {
+      mAdapter.setRows(rows);
+      mIsBindingPage = true;
+    }
 
-    SpannableString translation = new SpannableString(translationText);
-    ayahView.append(translation);
+    if (mPendingHighlightedAyah > 0) {
+      final int ayahId = mPendingHighlightedAyah;
+      mPendingHighlightedAyah = 0;
+      highlightAyah(ayahId);
+    }
 
-    params = new LinearLayout.LayoutParams(
-        LayoutParams.MATCH_PARENT,
-        LayoutParams.WRAP_CONTENT);
-    params.setMargins(mLeftRightMargin, mTopBottomMargin,
-        mLeftRightMargin, mTopBottomMargin);
-    setTextSelectable(ayahView);
-    mLinearLayout.addView(ayahView, params);
+    if (mOnScrollEdgeListener != null) {
+      // the new rows may not fill the screen, so there may be more to load
+      post(new Runnable() {
+        @Override
+        public void run() {
+          checkScrollEdges();
+        }
+      });
+    }
   }
 
-  private void styleAyahHeader(TextView headerView, @StyleRes int style) {
-    headerView.setTextAppearance(mContext, style);
-    if (mIsInAyahActionMode) {
-      headerView.setTextColor(Color.WHITE);
-    } else if (mIsNightMode) {
-      headerView.setTextColor(mNightModeTextColor);
+  /**
+   * Add rows before the ones that are shown, keeping the rows that were
+   * on screen where they were. Otherwise, when the first row is at the
+   * top, the new rows push everything down.
+   */
+  private void prependRows(List<TranslationViewRow> rows) {
+    final int first = mLayoutManager.findFirstVisibleItemPosition();
+    final View firstView = first == NO_POSITION ?
+        null : mLayoutManager.findViewByPosition(first);
+    final int offset = firstView == null ? 0 : firstView.getTop() -
+        ((LayoutParams) firstView.getLayoutParams()).topMargin - getPaddingTop();
+
+    final int shift = mAdapter.prependRows(rows);
+    if (firstView != null) {
+      mLayoutManager.scrollToPositionWithOffset(Math.max(0, first + shift), offset);
     }
-    headerView.setTextSize(mFontSize);
-    headerView.setTypeface(null, Typeface.BOLD);
   }
 
-  private void setTextSelectable(TextView ayahView) {
-    ayahView.setTextIsSelectable(true);
+  /**
+   * @return the ayah id of the first ayah on screen, or 0 if none are shown
+   */
+  public int getFirstVisibleAyahId() {
+    final int first = mLayoutManager.findFirstVisibleItemPosition();
+    return first == NO_POSITION ? 0 : mAdapter.getAyahIdFrom(first);
   }
 
-  private void addSuraHeader(int currentSura) {
-    View view = new View(mContext);
-
-    view.setBackgroundColor(mHeaderColor);
-    LinearLayout.LayoutParams params = new LinearLayout.LayoutParams(
-        LayoutParams.MATCH_PARENT, 2);
-    params.topMargin = mTopBottomMargin;
-    mLinearLayout.addView(view, params);
-
-    String suraName = QuranInfo.getSuraName(mContext, currentSura, true);
-
-    TextView headerView = new TextView(mContext);
-    params = new LinearLayout.LayoutParams(LayoutParams.MATCH_PARENT,
-        LayoutParams.WRAP_CONTENT);
-    params.leftMargin = mLeftRightMargin;
-    params.rightMargin = mLeftRightMargin;
-    params.topMargin = mTopBottomMargin / 2;
-    params.bottomMargin = mTopBottomMargin / 2;
-    headerView.setTextAppearance(mContext, mHeaderStyle);
-    headerView.setText(suraName);
-    mLinearLayout.addView(headerView, params);
+  private void checkScrollEdges() {
+    final int count = mAdapter.getItemCount();
+    if (mOnScrollEdgeListener == null || count == 0) {
+      return;
+    }
 
-    view = new View(mContext);
-    view.setBackgroundColor(mDividerColor);
-    mLinearLayout.addView(view, LayoutParams.MATCH_PARENT, 2);
+    final int first = mLayoutManager.findFirstVisibleItemPosition();
+    final int last = mLayoutManager.findLastVisibleItemPosition();
+    if (first != NO_POSITION && first < EDGE_ROWS) {
+      mOnScrollEdgeListener.onNearStart();
+    }
+    if (last != NO_POSITION && last >= count - EDGE_ROWS) {
+      mOnScrollEdgeListener.onNearEnd();
+    }
   }
 
-  private void addBasmallah() {
-    TextView tv = new TextView(mContext);
-    tv.setTextAppearance(mContext, mTextStyle);
-    if (mIsNightMode) {
-      tv.setTextColor(mNightModeTextColor);
+  @Override
+  protected void onLayout(boolean changed, int l, int t, int r, int b) {
+    final long start = System.nanoTime();
+    super.onLayout(changed, l, t, r, b);
+    if (mIsBindingPage) {
+      mIsBindingPage = false;
+      sPageBindTimes.record(
+          TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
     }
-    tv.setTextSize(mFontSize);
-
-    SpannableString str = new SpannableString(ArabicDatabaseUtils.AR_BASMALLAH);
+  }
 
-    if (USE_UTHMANI_SPAN) {
-      UthmaniSpan uthmaniSpan = new UthmaniSpan(mContext);
-      int length = str.length();
-      str.setSpan(uthmaniSpan, 0, length, Spanned.SPAN_EXCLUSIVE_EXCLUSIVE);
-      str.setSpan(new RelativeSizeSpan(ARABIC_RELATIVE_SIZE),
-          0, length, Spanned.SPAN_EXCLUSIVE_EXCLUSIVE);
-    }
+  /**
+   * @return how long binding the rows of a page takes on the main thread
+   */
+  public static String getStats() {
+    return "translation page bind: " + sPageBindTimes;
+  }
 
-    tv.setText(str);
+  public void unhighlightAyat() {
+    mAdapter.setHighlightedAyah(0);
+    mPendingHighlightedAyah = 0;
+  }
 
-    LinearLayout.LayoutParams params =
-        new LinearLayout.LayoutParams(LayoutParams.MATCH_PARENT, LayoutParams.WRAP_CONTENT);
-    params.leftMargin = mLeftRightMargin;
-    params.rightMargin = mLeftRightMargin;
-    params.topMargin = mTopBottomMargin / 2;
-    params.bottomMargin = mTopBottomMargin / 2;
+  public void highlightAyah(int ayahId) {
+    final int position = mAdapter.getAyahPosition(ayahId);
+    if (position > -1) {
+      mAdapter.setHighlightedAyah(ayahId);
 
-    mLinearLayout.addView(tv, params);
+      int screenHeight = QuranScreenInfo.getInstance().getHeight();
+      int offset = (int) (0.25 * screenHeight);
+      View header = mLayoutManager.findViewByPosition(position);
+      if (header != null) {
+        smoothScrollBy(0, header.getTop() - offset);
+      } else {
+        mLayoutManager.scrollToPositionWithOffset(position, offset);
+      }
+    } else {
+      // the rows may not be laid out yet
+      mPendingHighlightedAyah = ayahId;
+    }
   }
 
+  private OnClickListener mOnAyahClickListener = new OnClickListener() {
+    @Override
+    public void onClick(View v) {
+      if (mTranslationClickedListener != null) {
+        mTranslationClickedListener.onTranslationClicked();
+      }
+    }
+  };
+
   public void setTranslationClickedListener(
       TranslationClickedListener listener) {
     mTranslationClickedListener = listener;
@@ -384,4 +417,67 @@ public class TranslationView extends ScrollView {
 
     void onTranslationClicked();
   }
+
+  public void setOnScrollEdgeListener(OnScrollEdgeListener listener) {
+    mOnScrollEdgeListener = listener;
+  }
+
+  /**
+   * Notified when scrolling gets close to either end of the ayahs shown,
+   * so that more can be added with {@link #appendAyahs(List)} or
+   * {@link #prependAyahs(List)}.
+   */
+  public interface OnScrollEdgeListener {
+
+    void onNearStart();
+
+    void onNearEnd();
+  }
+
+  private static class LayoutRunnable implements Runnable {
+    private final WeakReference<TranslationView> mTranslationView;
+    private final Context mContext;
+    private final int mGeneration;
+    private final int mMode;
+    private final List<QuranAyah> mAyat;
+    private final boolean mWithSuraHeaders;
+    private final int mCurrentSura;
+    private final float mTextSize;
+    private final int mWidth;
+
+    LayoutRunnable(TranslationView view, int generation, int mode,
+        List<QuranAyah> ayat, boolean withSuraHeaders, int currentSura,
+        float textSize, int width) {
+      mTranslationView = new WeakReference<>(view);
+      mContext = view.getContext().getApplicationContext();
+      mGeneration = generation;
+      mMode = mode;
+      mAyat = ayat;
+      mWithSuraHeaders = withSuraHeaders;
+      mCurrentSura = currentSura;
+      mTextSize = textSize;
+      mWidth = width;
+    }
+
+    @Override
+    public void run() {
+      final TranslationView view = mTranslationView.get();
+      if (view == null || view.mLayoutGeneration != mGeneration) {
+        return;
+      }
+
+      final List<TranslationViewRow> rows = TranslationLayoutBuilder.buildRows(
+          mContext, mAyat, mWithSuraHeaders, mCurrentSura,
+          mMode == LAYOUT_REPLACE, mTextSize, mWidth);
+      sMainHandler.post(new Runnable() {
+        @Override
+        public void run() {
+          final TranslationView view = mTranslationView.get();
+          if (view != null) {
+            view.onRowsLaidOut(mGeneration, mMode, rows);
+          }
+        }
+      });
+    }
+  }
 }
@@ -0,0 +1,45 @@
+package com.quran.labs.androidquran.widgets;
+
+import com.quran.labs.androidquran.common.QuranAyah;
+
+import android.text.Layout;
+
+/**
+ * One row of a {@link TranslationView}, along with its text (and the layout
+ * of the text of ayah text rows), which are built off the main thread.
+ */
+class TranslationViewRow {
+  static final int TYPE_SURA_HEADER = 0;
+  static final int TYPE_BASMALLAH = 1;
+  static final int TYPE_AYAH_HEADER = 2;
+  static final int TYPE_AYAH_TEXT = 3;
+  static final int TYPE_SPACER = 4;
+
+  final int type;
+  final int sura;
+  // ayah id of the ayah header and text rows, 0 for the others
+  final int ayahId;
+  final QuranAyah ayah;
+  final CharSequence text;
+  // the laid out text of ayah text rows, null for the others
+  final Layout layout;
+
+  TranslationViewRow(int type, int sura, CharSequence text) {
+    this(type, sura, 0, null, text);
+  }
+
+  TranslationViewRow(int type, int sura, int ayahId,
+      QuranAyah ayah, CharSequence text) {
+    this(type, sura, ayahId, ayah, text, null);
+  }
+
+  TranslationViewRow(int type, int sura, int ayahId,
+      QuranAyah ayah, CharSequence text, Layout layout) {
+    this.type = type;
+    this.sura = sura;
+    this.ayahId = ayahId;
+    this.ayah = ayah;
+    this.text = text;
+    this.layout = layout;
+  }
+}
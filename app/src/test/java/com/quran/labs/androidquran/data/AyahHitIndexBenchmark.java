@@ -0,0 +1,393 @@
+package com.quran.labs.androidquran.data;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Compares tap lookups through {@link AyahHitIndex} with the linear scan
+ * the page views used to do, over every page of a real ayah info database.
+ * The ayah info databases are downloaded rather than kept in the repo, so
+ * this only runs when the quran.ayahinfo system property points at one
+ * (or at a csv export of its glyphs table):
+ *
+ * ./gradlew testDebugUnitTest -Dquran.ayahinfo=/path/to/ayahinfo_1024.db
+ *
+ * sqlite3 -csv ayahinfo_1024.db "select page_number, line_number,
+ *   sura_number, ayah_number, position, min_x, min_y, max_x, max_y
+ *   from glyphs order by page_number, sura_number, ayah_number, position"
+ */
+public class AyahHitIndexBenchmark {
+  private static final String AYAHINFO_PROPERTY = "quran.ayahinfo";
+  private static final String GLYPHS_QUERY = "SELECT " +
+      "page_number, line_number, sura_number, ayah_number, position, " +
+      "min_x, min_y, max_x, max_y FROM glyphs " +
+      "ORDER BY page_number, sura_number, ayah_number, position";
+  // distance between the sampled tap points, in page pixels
+  private static final int STEP = 16;
+  // rounds of lookups, after as many rounds to warm up
+  private static final int ROUNDS = 5;
+
+  private GlyphIndex glyphIndex;
+  private int lastPage;
+
+  @Before
+  public void setup() throws IOException, SQLException {
+    final String path = System.getProperty(AYAHINFO_PROPERTY);
+    assumeTrue(path != null && new File(path).isFile());
+
+    final GlyphIndex.Builder builder = new GlyphIndex.Builder();
+    if (path.endsWith(".csv")) {
+      readCsv(path, builder);
+    } else {
+      readDatabase(path, builder);
+    }
+    glyphIndex = builder.build();
+  }
+
+  private void readCsv(String path, GlyphIndex.Builder builder) throws IOException {
+    final BufferedReader reader = new BufferedReader(new FileReader(path));
+    try {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        final String[] parts = line.split(",");
+        final int[] values = new int[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+          values[i] = Integer.parseInt(parts[i].trim());
+        }
+        addGlyph(builder, values);
+      }
+    } finally {
+      reader.close();
+    }
+  }
+
+  private void readDatabase(String path, GlyphIndex.Builder builder) throws SQLException {
+    final Connection connection = DriverManager.getConnection("jdbc:sqlite:" + path);
+    try {
+      final Statement statement = connection.createStatement();
+      final ResultSet results = statement.executeQuery(GLYPHS_QUERY);
+      final int[] values = new int[9];
+      while (results.next()) {
+        for (int i = 0; i < values.length; i++) {
+          values[i] = results.getInt(i + 1);
+        }
+        addGlyph(builder, values);
+      }
+      results.close();
+      statement.close();
+    } finally {
+      connection.close();
+    }
+  }
+
+  private void addGlyph(GlyphIndex.Builder builder, int[] values) {
+    builder.addGlyph(values[0], values[1], values[2], values[3], values[4],
+        values[5], values[6], values[7], values[8]);
+    lastPage = Math.max(lastPage, values[0]);
+  }
+
+  @Test
+  public void benchmarkAllPages() {
+    final List<AyahHitIndex> hitIndexes = new ArrayList<>();
+    final List<Map<String, List<int[]>>> maps = new ArrayList<>();
+    // the taps on each page that hit an ayah, and the ones that miss
+    final List<float[]> hits = new ArrayList<>();
+    final List<float[]> misses = new ArrayList<>();
+
+    long buildTime = System.nanoTime();
+    for (int page = 1; page <= lastPage; page++) {
+      hitIndexes.add(glyphIndex.getHitIndex(page));
+    }
+    buildTime = System.nanoTime() - buildTime;
+
+    int compared = 0;
+    int mismatches = 0;
+    for (int page = 1; page <= lastPage; page++) {
+      final AyahHitIndex hitIndex = hitIndexes.get(page - 1);
+      final Map<String, List<int[]>> map = getPageMap(page);
+      maps.add(map);
+
+      final float[] points = getPoints(page);
+      final float[] pageHits = new float[points.length];
+      final float[] pageMisses = new float[points.length];
+      int hitCount = 0;
+      int missCount = 0;
+      for (int i = 0; i < points.length; i += 2) {
+        final float x = points[i];
+        final float y = points[i + 1];
+        if (isHit(map, x, y)) {
+          pageHits[hitCount++] = x;
+          pageHits[hitCount++] = y;
+        } else {
+          pageMisses[missCount++] = x;
+          pageMisses[missCount++] = y;
+        }
+
+        // taps equally close to two ayahs can go either way
+        final String expected = getUnambiguousAyah(map, x, y);
+        if (expected != null) {
+          final int entry = hitIndex.findEntry(x, y);
+          if (!expected.equals(hitIndex.getSura(entry) + ":" + hitIndex.getAyah(entry))) {
+            mismatches++;
+          }
+          compared++;
+        }
+      }
+      hits.add(copyOf(pageHits, hitCount));
+      misses.add(copyOf(pageMisses, missCount));
+    }
+    assertThat(mismatches).isEqualTo(0);
+
+    System.out.println(lastPage + " pages, " + glyphIndex.getEntryCount() +
+        " line entries, hit indexes built in " + buildTime / 1000 + "us, " +
+        compared + " taps matched the linear scan");
+    report("hits", hitIndexes, maps, hits);
+    report("misses", hitIndexes, maps, misses);
+  }
+
+  private static void report(String name, List<AyahHitIndex> hitIndexes,
+      List<Map<String, List<int[]>>> maps, List<float[]> points) {
+    long taps = 0;
+    for (float[] pagePoints : points) {
+      taps += pagePoints.length / 2;
+    }
+    if (taps == 0) {
+      return;
+    }
+
+    int checksum = 0;
+    long scanTime = 0;
+    long indexTime = 0;
+    for (int round = 0; round < 2 * ROUNDS; round++) {
+      final long scanStart = System.nanoTime();
+      for (int page = 0; page < points.size(); page++) {
+        final Map<String, List<int[]>> map = maps.get(page);
+        final float[] pagePoints = points.get(page);
+        for (int i = 0; i < pagePoints.length; i += 2) {
+          final String ayah = linearScan(map, pagePoints[i], pagePoints[i + 1]);
+          checksum += ayah == null ? 0 : ayah.length();
+        }
+      }
+
+      final long indexStart = System.nanoTime();
+      for (int page = 0; page < points.size(); page++) {
+        final AyahHitIndex hitIndex = hitIndexes.get(page);
+        final float[] pagePoints = points.get(page);
+        for (int i = 0; i < pagePoints.length; i += 2) {
+          checksum += hitIndex.findEntry(pagePoints[i], pagePoints[i + 1]);
+        }
+      }
+      final long end = System.nanoTime();
+
+      // the first rounds warm up the jit
+      if (round >= ROUNDS) {
+        scanTime += indexStart - scanStart;
+        indexTime += end - indexStart;
+      }
+    }
+
+    System.out.println(name + ": " + taps + " taps, linear scan " +
+        scanTime / (ROUNDS * taps) + "ns per tap, hit index " +
+        indexTime / (ROUNDS * taps) + "ns per tap (checksum " + checksum + ")");
+  }
+
+  private static float[] copyOf(float[] values, int length) {
+    final float[] result = new float[length];
+    System.arraycopy(values, 0, result, 0, length);
+    return result;
+  }
+
+  /**
+   * @return x, y pairs on a grid covering the page and its margins, between
+   * whole pixels
+   */
+  private float[] getPoints(int page) {
+    int maxX = 0;
+    int maxY = 0;
+    for (int i = glyphIndex.getFirstEntry(page); i < glyphIndex.getEndEntry(page); i++) {
+      maxX = Math.max(maxX, glyphIndex.getMaxX(i));
+      maxY = Math.max(maxY, glyphIndex.getMaxY(i));
+    }
+
+    final int columns = (maxX + 2 * STEP) / STEP;
+    final int rows = (maxY + 2 * STEP) / STEP;
+    final float[] points = new float[2 * columns * rows];
+    int point = 0;
+    for (int row = 0; row < rows; row++) {
+      for (int column = 0; column < columns; column++) {
+        points[point++] = column * STEP + STEP / 2 + 0.5f;
+        points[point++] = row * STEP + STEP / 2 + 0.5f;
+      }
+    }
+    return points;
+  }
+
+  /**
+   * @return the line, left, top, right and bottom of each entry of each
+   * ayah on the page, in the order the page's ayahs are read
+   */
+  private Map<String, List<int[]>> getPageMap(int page) {
+    final Map<String, List<int[]>> map = new LinkedHashMap<>();
+    for (int i = glyphIndex.getFirstEntry(page); i < glyphIndex.getEndEntry(page); i++) {
+      final String key = glyphIndex.getSura(i) + ":" + glyphIndex.getAyah(i);
+      List<int[]> bounds = map.get(key);
+      if (bounds == null) {
+        bounds = new ArrayList<>();
+        map.put(key, bounds);
+      }
+      bounds.add(new int[]{ glyphIndex.getLine(i), glyphIndex.getMinX(i),
+          glyphIndex.getMinY(i), glyphIndex.getMaxX(i), glyphIndex.getMaxY(i) });
+    }
+    return map;
+  }
+
+  private static boolean isHit(Map<String, List<int[]>> map, float x, float y) {
+    for (List<int[]> bounds : map.values()) {
+      for (int[] b : bounds) {
+        if (x >= b[1] && y >= b[2] && x <= b[3] && y <= b[4]) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  /**
+   * @return the ayah the linear scan finds, or null if another ayah would
+   * have done just as well: the tap is in overlapping ayahs, or is about as
+   * close (within the pixel the scan rounds down to) to two lines, or to two
+   * ayahs on the closest line
+   */
+  private static String getUnambiguousAyah(Map<String, List<int[]>> map, float x, float y) {
+    final Set<String> containing = new HashSet<>();
+    float closestDelta = Float.MAX_VALUE;
+    for (Map.Entry<String, List<int[]>> entry : map.entrySet()) {
+      for (int[] b : entry.getValue()) {
+        if (x >= b[1] && y >= b[2] && x <= b[3] && y <= b[4]) {
+          containing.add(entry.getKey());
+        }
+        closestDelta = Math.min(closestDelta,
+            Math.min(Math.abs(b[4] - y), Math.abs(b[2] - y)));
+      }
+    }
+    if (!containing.isEmpty()) {
+      return containing.size() == 1 ? containing.iterator().next() : null;
+    }
+
+    final Set<Integer> closestLines = new HashSet<>();
+    for (List<int[]> bounds : map.values()) {
+      for (int[] b : bounds) {
+        if (Math.min(Math.abs(b[4] - y), Math.abs(b[2] - y)) < closestDelta + 1) {
+          closestLines.add(b[0]);
+        }
+      }
+    }
+    if (closestLines.size() != 1) {
+      return null;
+    }
+    final int line = closestLines.iterator().next();
+
+    float closestDeltaX = Float.MAX_VALUE;
+    for (Map.Entry<String, List<int[]>> entry : map.entrySet()) {
+      for (int[] b : entry.getValue()) {
+        if (b[0] == line) {
+          if (x >= b[1] && x <= b[3]) {
+            containing.add(entry.getKey());
+          }
+          closestDeltaX = Math.min(closestDeltaX,
+              Math.min(Math.abs(b[3] - x), Math.abs(b[1] - x)));
+        }
+      }
+    }
+    if (!containing.isEmpty()) {
+      return containing.size() == 1 ? containing.iterator().next() : null;
+    }
+
+    final Set<String> closestAyahs = new HashSet<>();
+    for (Map.Entry<String, List<int[]>> entry : map.entrySet()) {
+      for (int[] b : entry.getValue()) {
+        if (b[0] == line &&
+            Math.min(Math.abs(b[3] - x), Math.abs(b[1] - x)) < closestDeltaX + 1) {
+          closestAyahs.add(entry.getKey());
+        }
+      }
+    }
+    return closestAyahs.size() == 1 ? closestAyahs.iterator().next() : null;
+  }
+
+  /**
+   * The lookup ImageAyahUtils.getAyahFromCoordinates does over the page's
+   * map of ayah bounds, minus the android types.
+   */
+  private static String linearScan(Map<String, List<int[]>> coords, float x, float y) {
+    int closestLine = -1;
+    int closestDelta = -1;
+
+    final Map<Integer, List<String>> lineAyahs = new LinkedHashMap<>();
+    for (String key : coords.keySet()) {
+      for (int[] b : coords.get(key)) {
+        List<String> items = lineAyahs.get(b[0]);
+        if (items == null) {
+          items = new ArrayList<>();
+        }
+        items.add(key);
+        lineAyahs.put(b[0], items);
+
+        if (x >= b[1] && y >= b[2] && x < b[3] && y < b[4]) {
+          return key;
+        }
+
+        int delta = Math.min((int) Math.abs(b[4] - y), (int) Math.abs(b[2] - y));
+        if (closestDelta == -1 || delta < closestDelta) {
+          closestLine = b[0];
+          closestDelta = delta;
+        }
+      }
+    }
+
+    if (closestLine > -1) {
+      int leastDeltaX = -1;
+      String closestAyah = null;
+      for (String ayah : lineAyahs.get(closestLine)) {
+        for (int[] b : coords.get(ayah)) {
+          if (b[0] > closestLine) {
+            break;
+          }
+
+          if (b[0] == closestLine) {
+            if (b[3] >= x && b[1] <= x) {
+              return ayah;
+            }
+
+            int delta = Math.min((int) Math.abs(b[3] - x), (int) Math.abs(b[1] - x));
+            if (leastDeltaX == -1 || delta < leastDeltaX) {
+              closestAyah = ayah;
+              leastDeltaX = delta;
+            }
+          }
+        }
+      }
+      return closestAyah;
+    }
+    return null;
+  }
+}
@@ -0,0 +1,203 @@
+package com.quran.labs.androidquran.data;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assume.assumeTrue;
+
+public class AyahHitIndexTest {
+  private GlyphIndex glyphIndex;
+  private AyahHitIndex hitIndex;
+
+  @Before
+  public void setup() {
+    // page 2: 1:1 on line 1, then 1:2 and 1:3 on line 2, with 1:3 wrapping
+    // to line 3. glyphs are added in ayah order, not line or x order.
+    glyphIndex = new GlyphIndex.Builder()
+        .addGlyph(1, 1, 1, 7, 1, 0, 0, 100, 50)
+        .addGlyph(2, 1, 1, 1, 1, 10, 10, 90, 50)
+        .addGlyph(2, 2, 1, 2, 2, 60, 60, 90, 100)
+        .addGlyph(2, 2, 1, 3, 3, 10, 60, 50, 100)
+        .addGlyph(2, 3, 1, 3, 4, 40, 110, 90, 150)
+        .build();
+    hitIndex = glyphIndex.getHitIndex(2);
+  }
+
+  @Test
+  public void testExactMatches() {
+    assertAyah(hitIndex.findEntry(50, 30), 1);
+    assertAyah(hitIndex.findEntry(70, 80), 2);
+    assertAyah(hitIndex.findEntry(20, 80), 3);
+    assertAyah(hitIndex.findEntry(60, 120), 3);
+  }
+
+  @Test
+  public void testClosestMatches() {
+    // between 1:3 and 1:2 on line 2, closer to 1:2
+    assertAyah(hitIndex.findEntry(58, 80), 2);
+    // in the margin to the right of line 1
+    assertAyah(hitIndex.findEntry(200, 20), 1);
+    // between lines 1 and 2, closer to line 2
+    assertAyah(hitIndex.findEntry(20, 57), 3);
+    // above and below the page
+    assertAyah(hitIndex.findEntry(50, -10), 1);
+    assertAyah(hitIndex.findEntry(0, 500), 3);
+  }
+
+  @Test
+  public void testTapBetweenLines() {
+    // between lines 1 and 2, closer to the bottom of line 1
+    assertAyah(hitIndex.findEntry(20, 53), 1);
+    // between lines 2 and 3, closer to the top of line 3
+    assertAyah(hitIndex.findEntry(20, 108), 3);
+  }
+
+  @Test
+  public void testTapBetweenLinesPicksClosestLineOnPage() {
+    // small marks on lines 2 and 3 sit inside the top of line 1, so line 1
+    // isn't next to the gap between it and line 4 once lines are sorted
+    GlyphIndex index = new GlyphIndex.Builder()
+        .addGlyph(3, 1, 2, 1, 1, 0, 0, 100, 50)
+        .addGlyph(3, 2, 2, 2, 2, 10, 5, 20, 10)
+        .addGlyph(3, 3, 2, 3, 3, 30, 8, 40, 12)
+        .addGlyph(3, 4, 2, 4, 4, 0, 58, 100, 100)
+        .build();
+    AyahHitIndex pageIndex = index.getHitIndex(3);
+
+    final int entry = pageIndex.findEntry(50, 53);
+    assertThat(pageIndex.getSura(entry)).isEqualTo(2);
+    assertThat(pageIndex.getAyah(entry)).isEqualTo(1);
+  }
+
+  @Test
+  public void testMatchesLinearScan() {
+    assertMatchesLinearScan(glyphIndex, 2);
+    assertMatchesLinearScan(glyphIndex, 1);
+  }
+
+  @Test
+  public void testLookupsDoNotAllocate() {
+    final ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+    assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+    final com.sun.management.ThreadMXBean threadBean =
+        (com.sun.management.ThreadMXBean) bean;
+    assumeTrue(threadBean.isThreadAllocatedMemorySupported());
+    threadBean.setThreadAllocatedMemoryEnabled(true);
+
+    // taps on a grid over the page and its margins, both hits and misses
+    final long threadId = Thread.currentThread().getId();
+    int lookups = 0;
+    int checksum = 0;
+    final long before = threadBean.getThreadAllocatedBytes(threadId);
+    for (int y = -20; y < 200; y += 5) {
+      for (int x = -20; x < 140; x += 5) {
+        checksum += hitIndex.findEntry(x, y);
+        lookups++;
+      }
+    }
+    final long allocated = threadBean.getThreadAllocatedBytes(threadId) - before;
+
+    assertThat(checksum).isAtLeast(0);
+    assertThat(allocated).isLessThan((long) lookups);
+  }
+
+  @Test
+  public void testEmptyPage() {
+    GlyphIndex index = new GlyphIndex.Builder()
+        .addGlyph(1, 1, 1, 1, 1, 0, 0, 10, 10)
+        .build();
+    assertThat(index.getHitIndex(2)).isNull();
+  }
+
+  /**
+   * Check taps on a grid over the page and its margins against the linear
+   * scan the page views used to do. The taps are between whole pixels, so
+   * none are equally close to two ayahs.
+   */
+  private static void assertMatchesLinearScan(GlyphIndex index, int page) {
+    // line, left, top, right, bottom of each glyph, by ayah
+    final Map<String, List<int[]>> coords = new LinkedHashMap<>();
+    for (int i = index.getFirstEntry(page); i < index.getEndEntry(page); i++) {
+      final String key = index.getSura(i) + ":" + index.getAyah(i);
+      List<int[]> bounds = coords.get(key);
+      if (bounds == null) {
+        bounds = new ArrayList<>();
+        coords.put(key, bounds);
+      }
+      bounds.add(new int[]{ index.getLine(i), index.getMinX(i),
+          index.getMinY(i), index.getMaxX(i), index.getMaxY(i) });
+    }
+
+    final AyahHitIndex pageIndex = index.getHitIndex(page);
+    for (float y = -20.5f; y < 200; y += 3) {
+      for (float x = -20.5f; x < 140; x += 3) {
+        final int entry = pageIndex.findEntry(x, y);
+        assertThat(pageIndex.getSura(entry) + ":" + pageIndex.getAyah(entry))
+            .isEqualTo(linearScan(coords, x, y));
+      }
+    }
+  }
+
+  /**
+   * The lookup ImageAyahUtils.getAyahFromCoordinates did over the map of
+   * ayah bounds of a page.
+   */
+  private static String linearScan(Map<String, List<int[]>> coords, float x, float y) {
+    int closestLine = -1;
+    int closestDelta = -1;
+    final Map<Integer, List<String>> lineAyahs = new LinkedHashMap<>();
+    for (Map.Entry<String, List<int[]>> entry : coords.entrySet()) {
+      for (int[] b : entry.getValue()) {
+        List<String> items = lineAyahs.get(b[0]);
+        if (items == null) {
+          items = new ArrayList<>();
+          lineAyahs.put(b[0], items);
+        }
+        items.add(entry.getKey());
+
+        if (x >= b[1] && y >= b[2] && x < b[3] && y < b[4]) {
+          return entry.getKey();
+        }
+
+        final int delta = Math.min((int) Math.abs(b[4] - y), (int) Math.abs(b[2] - y));
+        if (closestDelta == -1 || delta < closestDelta) {
+          closestLine = b[0];
+          closestDelta = delta;
+        }
+      }
+    }
+
+    int leastDeltaX = -1;
+    String closestAyah = null;
+    for (String ayah : lineAyahs.get(closestLine)) {
+      for (int[] b : coords.get(ayah)) {
+        if (b[0] == closestLine) {
+          if (b[3] >= x && b[1] <= x) {
+            return ayah;
+          }
+
+          final int delta = Math.min((int) Math.abs(b[3] - x), (int) Math.abs(b[1] - x));
+          if (leastDeltaX == -1 || delta < leastDeltaX) {
+            closestAyah = ayah;
+            leastDeltaX = delta;
+          }
+        }
+      }
+    }
+    return closestAyah;
+  }
+
+  private void assertAyah(int entry, int ayah) {
+    assertThat(entry).isAtLeast(0);
+    assertThat(hitIndex.getSura(entry)).isEqualTo(1);
+    assertThat(hitIndex.getAyah(entry)).isEqualTo(ayah);
+  }
+}
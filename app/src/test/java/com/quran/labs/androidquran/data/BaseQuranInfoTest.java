@@ -0,0 +1,41 @@
+package com.quran.labs.androidquran.data;
+
+import org.junit.Test;
+
+import static com.google.common.truth.Truth.assertThat;
+
+public class BaseQuranInfoTest {
+
+  @Test
+  public void testGetSuraAyahFromAyahId() {
+    assertSuraAyah(BaseQuranInfo.getSuraAyahFromAyahId(1), 1, 1);
+    assertSuraAyah(BaseQuranInfo.getSuraAyahFromAyahId(7), 1, 7);
+    assertSuraAyah(BaseQuranInfo.getSuraAyahFromAyahId(8), 2, 1);
+    assertSuraAyah(BaseQuranInfo.getSuraAyahFromAyahId(293), 2, 286);
+    assertSuraAyah(BaseQuranInfo.getSuraAyahFromAyahId(294), 3, 1);
+    assertSuraAyah(BaseQuranInfo.getSuraAyahFromAyahId(6236), 114, 6);
+  }
+
+  @Test
+  public void testGetSuraAyahFromAyahIdRoundTrips() {
+    for (int sura = 1; sura <= Constants.SURAS_COUNT; sura++) {
+      for (int ayah = 1; ayah <= BaseQuranInfo.getNumAyahs(sura); ayah++) {
+        assertSuraAyah(BaseQuranInfo.getSuraAyahFromAyahId(
+            BaseQuranInfo.getAyahId(sura, ayah)), sura, ayah);
+      }
+    }
+  }
+
+  @Test
+  public void testGetSuraAyahFromAyahIdOutOfRange() {
+    assertThat(BaseQuranInfo.getSuraAyahFromAyahId(0)).isNull();
+    assertThat(BaseQuranInfo.getSuraAyahFromAyahId(-5)).isNull();
+    assertThat(BaseQuranInfo.getSuraAyahFromAyahId(6237)).isNull();
+  }
+
+  private static void assertSuraAyah(SuraAyah suraAyah, int sura, int ayah) {
+    assertThat(suraAyah).isNotNull();
+    assertThat(suraAyah.sura).isEqualTo(sura);
+    assertThat(suraAyah.ayah).isEqualTo(ayah);
+  }
+}
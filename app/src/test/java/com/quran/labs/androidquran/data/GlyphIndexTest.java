@@ -0,0 +1,65 @@
+package com.quran.labs.androidquran.data;
+
+import org.junit.Test;
+
+import static com.google.common.truth.Truth.assertThat;
+
+public class GlyphIndexTest {
+
+  @Test
+  public void testGlyphsOnTheSameLineAreMerged() {
+    GlyphIndex index = new GlyphIndex.Builder()
+        .addGlyph(1, 1, 1, 1, 1, 10, 10, 20, 20)
+        .addGlyph(1, 1, 1, 1, 2, 30, 5, 40, 15)
+        .addGlyph(1, 2, 1, 1, 3, 10, 30, 20, 40)
+        .addGlyph(1, 2, 1, 2, 4, 30, 30, 40, 40)
+        .build();
+
+    assertThat(index.getEntryCount()).isEqualTo(3);
+    assertThat(index.getFirstEntry(1)).isEqualTo(0);
+    assertThat(index.getEndEntry(1)).isEqualTo(3);
+
+    assertThat(index.getPosition(0)).isEqualTo(1);
+    assertThat(index.getMinX(0)).isEqualTo(10);
+    assertThat(index.getMinY(0)).isEqualTo(5);
+    assertThat(index.getMaxX(0)).isEqualTo(40);
+    assertThat(index.getMaxY(0)).isEqualTo(20);
+
+    assertThat(index.getLine(1)).isEqualTo(2);
+    assertThat(index.getAyah(2)).isEqualTo(2);
+  }
+
+  @Test
+  public void testPageSlices() {
+    GlyphIndex.Builder builder = new GlyphIndex.Builder();
+    // enough glyphs to grow the arrays, with pages 3 and 5 missing
+    for (int page = 1; page <= 6; page++) {
+      if (page == 3 || page == 5) {
+        continue;
+      }
+
+      for (int line = 1; line <= 500; line++) {
+        builder.addGlyph(page, line, page, line, line, 0, 0, 10, 10);
+      }
+    }
+    GlyphIndex index = builder.build();
+
+    assertThat(index.getEntryCount()).isEqualTo(2000);
+    assertThat(index.hasPage(3)).isFalse();
+    assertThat(index.hasPage(5)).isFalse();
+    assertThat(index.hasPage(7)).isFalse();
+    assertThat(index.hasPage(-1)).isFalse();
+
+    assertThat(index.getFirstEntry(4)).isEqualTo(1000);
+    assertThat(index.getEndEntry(4)).isEqualTo(1500);
+    assertThat(index.getSura(index.getFirstEntry(6))).isEqualTo(6);
+    assertThat(index.getEndEntry(6)).isEqualTo(2000);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testUnorderedPagesAreRejected() {
+    new GlyphIndex.Builder()
+        .addGlyph(2, 1, 1, 1, 1, 0, 0, 10, 10)
+        .addGlyph(1, 1, 1, 1, 1, 0, 0, 10, 10);
+  }
+}
@@ -0,0 +1,96 @@
+package com.quran.labs.androidquran.data;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import static com.google.common.truth.Truth.assertThat;
+
+public class PageBoundsTableTest {
+  @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+  private File database;
+
+  @Before
+  public void setup() throws IOException {
+    database = folder.newFile("ayahinfo_1024.db");
+    writeBytes(database, 100);
+  }
+
+  @Test
+  public void testReadsWhatWasWritten() {
+    PageBoundsTable table = new PageBoundsTable(3);
+    table.setBounds(1, 10, 20, 300, 400);
+    table.setBounds(3, 0, 0, 0, 0);
+    assertThat(table.write(database)).isTrue();
+
+    PageBoundsTable read = PageBoundsTable.read(database);
+    assertThat(read).isNotNull();
+    assertThat(read.hasPage(1)).isTrue();
+    assertThat(read.getLeft(1)).isEqualTo(10);
+    assertThat(read.getTop(1)).isEqualTo(20);
+    assertThat(read.getRight(1)).isEqualTo(300);
+    assertThat(read.getBottom(1)).isEqualTo(400);
+    // an empty rect is still a page with bounds
+    assertThat(read.hasPage(3)).isTrue();
+    assertThat(read.hasPage(0)).isFalse();
+    assertThat(read.hasPage(2)).isFalse();
+    assertThat(read.hasPage(4)).isFalse();
+  }
+
+  @Test
+  public void testComputesBoundsFromGlyphIndex() {
+    GlyphIndex index = new GlyphIndex.Builder()
+        .addGlyph(1, 1, 1, 1, 1, 100, 10, 200, 50)
+        .addGlyph(1, 2, 1, 2, 2, 20, 60, 180, 90)
+        .addGlyph(3, 1, 2, 1, 1, 30, 15, 40, 25)
+        .build();
+
+    PageBoundsTable table = PageBoundsTable.fromGlyphIndex(index);
+    assertThat(table.hasPage(1)).isTrue();
+    assertThat(table.getLeft(1)).isEqualTo(20);
+    assertThat(table.getTop(1)).isEqualTo(10);
+    assertThat(table.getRight(1)).isEqualTo(200);
+    assertThat(table.getBottom(1)).isEqualTo(90);
+    assertThat(table.hasPage(2)).isFalse();
+    assertThat(table.hasPage(3)).isTrue();
+    assertThat(table.getRight(3)).isEqualTo(40);
+    assertThat(table.hasPage(4)).isFalse();
+  }
+
+  @Test
+  public void testIgnoresBoundsOfAChangedDatabase() throws IOException {
+    PageBoundsTable table = new PageBoundsTable(1);
+    table.setBounds(1, 10, 20, 300, 400);
+    assertThat(table.write(database)).isTrue();
+
+    writeBytes(database, 200);
+    assertThat(PageBoundsTable.read(database)).isNull();
+  }
+
+  @Test
+  public void testIgnoresTruncatedFiles() throws IOException {
+    PageBoundsTable table = new PageBoundsTable(1);
+    table.setBounds(1, 10, 20, 300, 400);
+    assertThat(table.write(database)).isTrue();
+
+    File file = PageBoundsTable.getFile(database);
+    assertThat(file.length()).isGreaterThan(4L);
+    writeBytes(file, 4);
+    assertThat(PageBoundsTable.read(database)).isNull();
+  }
+
+  private static void writeBytes(File file, int count) throws IOException {
+    FileOutputStream output = new FileOutputStream(file);
+    try {
+      output.write(new byte[count]);
+    } finally {
+      output.close();
+    }
+  }
+}
@@ -0,0 +1,138 @@
+package com.quran.labs.androidquran.database;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static com.google.common.truth.Truth.assertThat;
+
+public class IdlePoolTest {
+  private static final long IDLE_TIME = 60;
+
+  private FakePool pool;
+
+  @Before
+  public void setup() {
+    pool = new FakePool();
+  }
+
+  @Test
+  public void testAcquireCountsUsers() {
+    final Resource resource = pool.acquire();
+    assertThat(pool.acquire()).isSameAs(resource);
+    assertThat(pool.opens).isEqualTo(1);
+    assertThat(pool.getUsers()).isEqualTo(2);
+
+    pool.release(10);
+    pool.release(10);
+    assertThat(pool.getUsers()).isEqualTo(0);
+  }
+
+  @Test
+  public void testSweepKeepsDatabaseInUse() {
+    pool.acquire();
+    // still in use long after it was opened
+    assertThat(pool.closeIfIdle(IDLE_TIME, 1000)).isTrue();
+    assertThat(pool.isOpen()).isTrue();
+    assertThat(pool.closes).isEqualTo(0);
+  }
+
+  @Test
+  public void testSweepClosesIdleDatabase() {
+    pool.acquire();
+    pool.release(100);
+
+    // not idle for long enough yet
+    assertThat(pool.closeIfIdle(IDLE_TIME, 100 + IDLE_TIME - 1)).isTrue();
+    assertThat(pool.closeIfIdle(IDLE_TIME, 100 + IDLE_TIME)).isFalse();
+    assertThat(pool.isOpen()).isFalse();
+    assertThat(pool.closes).isEqualTo(1);
+
+    // nothing left to close
+    assertThat(pool.closeIfIdle(0, 1000)).isFalse();
+    assertThat(pool.closes).isEqualTo(1);
+  }
+
+  @Test
+  public void testAcquireReopensClosedDatabase() {
+    final Resource resource = pool.acquire();
+    pool.release(0);
+    pool.closeIfIdle(0, 0);
+
+    final Resource reopened = pool.acquire();
+    assertThat(reopened).isNotSameAs(resource);
+    assertThat(reopened.isOpen).isTrue();
+    assertThat(pool.opens).isEqualTo(2);
+    assertThat(pool.getUsers()).isEqualTo(1);
+  }
+
+  @Test
+  public void testAcquireReopensDatabaseClosedElsewhere() {
+    final Resource resource = pool.acquire();
+    pool.release(0);
+    resource.isOpen = false;
+
+    assertThat(pool.acquire()).isNotSameAs(resource);
+    assertThat(pool.opens).isEqualTo(2);
+  }
+
+  @Test
+  public void testFailedOpenIsNotAUser() {
+    pool.canOpen = false;
+    assertThat(pool.acquire()).isNull();
+    assertThat(pool.getUsers()).isEqualTo(0);
+    assertThat(pool.isOpen()).isFalse();
+  }
+
+  @Test
+  public void testLeaseReleasesOnce() {
+    // a cursor closed twice only releases its database once
+    pool.acquire();
+    pool.acquire();
+    final IdlePool<Resource>.Lease lease = pool.lease();
+
+    assertThat(lease.release(10)).isTrue();
+    assertThat(lease.release(20)).isFalse();
+    assertThat(pool.getUsers()).isEqualTo(1);
+  }
+
+  @Test
+  public void testSweepWaitsForLease() {
+    pool.acquire();
+    final IdlePool<Resource>.Lease lease = pool.lease();
+    assertThat(pool.closeIfIdle(0, 100)).isTrue();
+
+    lease.release(100);
+    assertThat(pool.closeIfIdle(IDLE_TIME, 100 + IDLE_TIME)).isFalse();
+    assertThat(pool.closes).isEqualTo(1);
+  }
+
+  private static class Resource {
+    boolean isOpen = true;
+  }
+
+  private static class FakePool extends IdlePool<Resource> {
+    boolean canOpen = true;
+    int opens;
+    int closes;
+
+    @Override
+    protected Resource open() {
+      if (!canOpen) {
+        return null;
+      }
+      opens++;
+      return new Resource();
+    }
+
+    @Override
+    protected boolean isOpen(Resource resource) {
+      return resource.isOpen;
+    }
+
+    @Override
+    protected void close(Resource resource) {
+      resource.isOpen = false;
+      closes++;
+    }
+  }
+}
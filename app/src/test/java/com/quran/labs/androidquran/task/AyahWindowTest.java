@@ -0,0 +1,72 @@
+package com.quran.labs.androidquran.task;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static com.google.common.truth.Truth.assertThat;
+
+public class AyahWindowTest {
+  private static final int BATCH_SIZE = 10;
+  private static final int MAX_AYAHS = 30;
+  private static final int LAST_AYAH_ID = 100;
+
+  private AyahWindow window;
+
+  @Before
+  public void setup() {
+    window = new AyahWindow(BATCH_SIZE, MAX_AYAHS, LAST_AYAH_ID);
+  }
+
+  @Test
+  public void testStartIsClamped() {
+    assertThat(window.getStartAyahId(0)).isEqualTo(1);
+    assertThat(window.getStartAyahId(50)).isEqualTo(50);
+    assertThat(window.getStartAyahId(500)).isEqualTo(LAST_AYAH_ID);
+  }
+
+  @Test
+  public void testEmptyWindowHasNothingAround() {
+    assertThat(window.hasNext()).isFalse();
+    assertThat(window.hasPrevious()).isFalse();
+  }
+
+  @Test
+  public void testAppendGrowsUntilFull() {
+    assertThat(window.append(41, 50)).isFalse();
+    assertThat(window.append(51, 60)).isFalse();
+    assertThat(window.append(61, 70)).isFalse();
+    assertThat(window.getFirstAyahId()).isEqualTo(41);
+    assertThat(window.getLastAyahId()).isEqualTo(70);
+
+    // one more batch drops the first one
+    assertThat(window.append(71, 80)).isTrue();
+    assertThat(window.getFirstAyahId()).isEqualTo(51);
+    assertThat(window.getLastAyahId()).isEqualTo(80);
+  }
+
+  @Test
+  public void testPrependDropsTheEnd() {
+    window.append(41, 50);
+    window.append(51, 60);
+    window.append(61, 70);
+
+    assertThat(window.hasPrevious()).isTrue();
+    assertThat(window.getPreviousBatchStart()).isEqualTo(31);
+    assertThat(window.prepend(31)).isTrue();
+    assertThat(window.getFirstAyahId()).isEqualTo(31);
+    assertThat(window.getLastAyahId()).isEqualTo(60);
+  }
+
+  @Test
+  public void testBatchesStopAtTheEnds() {
+    window.append(5, 14);
+    assertThat(window.getPreviousBatchStart()).isEqualTo(1);
+    window.prepend(1);
+    assertThat(window.hasPrevious()).isFalse();
+
+    window.clear();
+    window.append(95, window.getNextBatchEnd(95));
+    assertThat(window.getLastAyahId()).isEqualTo(LAST_AYAH_ID);
+    assertThat(window.hasNext()).isFalse();
+  }
+}
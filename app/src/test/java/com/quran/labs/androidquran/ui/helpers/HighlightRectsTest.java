@@ -0,0 +1,103 @@
+package com.quran.labs.androidquran.ui.helpers;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assume.assumeTrue;
+
+public class HighlightRectsTest {
+  private HighlightRects highlightRects;
+
+  @Before
+  public void setup() {
+    highlightRects = new HighlightRects();
+    // enough rects to have to grow the initial storage
+    for (int layer = 0; layer < 3; layer++) {
+      highlightRects.startLayer();
+      for (int i = 0; i < 40; i++) {
+        highlightRects.addRect(layer, i, layer + 10, i + 10);
+      }
+    }
+  }
+
+  @Test
+  public void testDrawsLayersInOrder() {
+    final List<String> drawn = new ArrayList<>();
+    final HighlightRects rects = new HighlightRects();
+    rects.startLayer();
+    rects.addRect(1, 2, 3, 4);
+    rects.startLayer();
+    rects.startLayer();
+    rects.addRect(5, 6, 7, 8);
+    rects.addRect(9, 10, 11, 12);
+
+    rects.draw(new HighlightRects.RectDrawer() {
+      @Override
+      public void drawRect(int layer, float left, float top, float right, float bottom) {
+        drawn.add(layer + ":" + (int) left + "," + (int) top + "," +
+            (int) right + "," + (int) bottom);
+      }
+    });
+    assertThat(drawn).containsExactly(
+        "0:1,2,3,4", "2:5,6,7,8", "2:9,10,11,12").inOrder();
+    assertThat(rects.getLayerCount()).isEqualTo(3);
+    assertThat(rects.getRectCount(1)).isEqualTo(0);
+  }
+
+  @Test
+  public void testClearReusesLayers() {
+    highlightRects.clear();
+    assertThat(highlightRects.isEmpty()).isTrue();
+
+    highlightRects.startLayer();
+    highlightRects.addRect(1, 1, 2, 2);
+    assertThat(highlightRects.getLayerCount()).isEqualTo(1);
+    assertThat(highlightRects.getRectCount(0)).isEqualTo(1);
+    assertThat(highlightRects.isEmpty()).isFalse();
+  }
+
+  @Test
+  public void testDrawDoesNotAllocate() {
+    final java.lang.management.ThreadMXBean bean =
+        ManagementFactory.getThreadMXBean();
+    assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+    final com.sun.management.ThreadMXBean threadBean =
+        (com.sun.management.ThreadMXBean) bean;
+    assumeTrue(threadBean.isThreadAllocatedMemorySupported());
+    threadBean.setThreadAllocatedMemoryEnabled(true);
+
+    final CountingDrawer drawer = new CountingDrawer();
+    final long threadId = Thread.currentThread().getId();
+
+    // warm up so that class loading and compilation aren't counted
+    for (int i = 0; i < 1000; i++) {
+      highlightRects.draw(drawer);
+    }
+
+    final int draws = 10000;
+    final long before = threadBean.getThreadAllocatedBytes(threadId);
+    for (int i = 0; i < draws; i++) {
+      highlightRects.draw(drawer);
+    }
+    final long allocated = threadBean.getThreadAllocatedBytes(threadId) - before;
+
+    assertThat(drawer.count).isEqualTo((1000L + draws) * 3 * 40);
+    // allow for what reading the allocation counter itself may allocate,
+    // which is far less than a single allocation per draw would be.
+    assertThat(allocated).isLessThan((long) draws);
+  }
+
+  private static class CountingDrawer implements HighlightRects.RectDrawer {
+    long count;
+
+    @Override
+    public void drawRect(int layer, float left, float top, float right, float bottom) {
+      count++;
+    }
+  }
+}
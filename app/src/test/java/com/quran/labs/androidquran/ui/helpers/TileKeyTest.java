@@ -0,0 +1,50 @@
+package com.quran.labs.androidquran.ui.helpers;
+
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static com.google.common.truth.Truth.assertThat;
+
+public class TileKeyTest {
+
+  @Test
+  public void testPackIsUniquePerTile() {
+    final Set<Long> keys = new HashSet<>();
+    final int[] pages = { 1, 2, 604 };
+    final int[] widths = { 1024, 1260, 1920 };
+    final int[] sampleSizes = { 1, 2, 4, 8 };
+    int count = 0;
+    for (int page : pages) {
+      for (int width : widths) {
+        for (int sampleSize : sampleSizes) {
+          for (int row = 0; row < 20; row++) {
+            for (int column = 0; column < 10; column++) {
+              keys.add(TiledPageDrawable.TileKey.pack(
+                  page, width, sampleSize, row, column));
+              count++;
+            }
+          }
+        }
+      }
+    }
+    assertThat(keys).hasSize(count);
+  }
+
+  @Test
+  public void testLookupKeyMatchesCachedKey() {
+    final TiledPageDrawable.TileKey lookup = new TiledPageDrawable.TileKey();
+    lookup.set(TiledPageDrawable.TileKey.pack(3, 1260, 2, 4, 5));
+    final TiledPageDrawable.TileKey cached = lookup.copy();
+
+    final Set<TiledPageDrawable.TileKey> cache = new HashSet<>();
+    cache.add(cached);
+    assertThat(cache.contains(lookup)).isTrue();
+
+    // changing the lookup key doesn't change the cached one
+    lookup.set(TiledPageDrawable.TileKey.pack(3, 1260, 2, 4, 6));
+    assertThat(cache.contains(lookup)).isFalse();
+    assertThat(cache.contains(cached)).isTrue();
+  }
+}
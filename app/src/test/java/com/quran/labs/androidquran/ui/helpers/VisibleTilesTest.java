@@ -0,0 +1,38 @@
+package com.quran.labs.androidquran.ui.helpers;
+
+import org.junit.Test;
+
+import static com.google.common.truth.Truth.assertThat;
+
+public class VisibleTilesTest {
+
+  @Test
+  public void testTileInVisibleRange() {
+    final long visible = TiledPageDrawable.VisibleTiles.pack(2, 3, 5, 0, 4);
+    assertThat(TiledPageDrawable.VisibleTiles.contains(visible, 2, 3, 0)).isTrue();
+    assertThat(TiledPageDrawable.VisibleTiles.contains(visible, 2, 5, 4)).isTrue();
+    assertThat(TiledPageDrawable.VisibleTiles.contains(visible, 2, 4, 2)).isTrue();
+  }
+
+  @Test
+  public void testTileScrolledOffScreen() {
+    final long visible = TiledPageDrawable.VisibleTiles.pack(1, 10, 12, 2, 3);
+    assertThat(TiledPageDrawable.VisibleTiles.contains(visible, 1, 9, 2)).isFalse();
+    assertThat(TiledPageDrawable.VisibleTiles.contains(visible, 1, 13, 2)).isFalse();
+    assertThat(TiledPageDrawable.VisibleTiles.contains(visible, 1, 10, 1)).isFalse();
+    assertThat(TiledPageDrawable.VisibleTiles.contains(visible, 1, 10, 4)).isFalse();
+  }
+
+  @Test
+  public void testTileAtOlderSampleSize() {
+    // zoomed in since the tile was requested at sample size 4
+    final long visible = TiledPageDrawable.VisibleTiles.pack(1, 0, 20, 0, 10);
+    assertThat(TiledPageDrawable.VisibleTiles.contains(visible, 4, 1, 1)).isFalse();
+    assertThat(TiledPageDrawable.VisibleTiles.contains(visible, 1, 1, 1)).isTrue();
+  }
+
+  @Test
+  public void testNothingVisible() {
+    assertThat(TiledPageDrawable.VisibleTiles.contains(-1, 1, 0, 0)).isFalse();
+  }
+}
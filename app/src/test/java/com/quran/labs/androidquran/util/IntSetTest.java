@@ -0,0 +1,51 @@
+package com.quran.labs.androidquran.util;
+
+import com.quran.labs.androidquran.data.AyahKey;
+
+import org.junit.Test;
+
+import static com.google.common.truth.Truth.assertThat;
+
+public class IntSetTest {
+
+  @Test
+  public void testKeepsValuesSortedAndUnique() {
+    IntSet set = new IntSet(2);
+    assertThat(set.add(AyahKey.of(2, 255))).isTrue();
+    assertThat(set.add(AyahKey.of(1, 7))).isTrue();
+    assertThat(set.add(AyahKey.of(2, 6))).isTrue();
+    assertThat(set.add(AyahKey.of(1, 7))).isFalse();
+
+    assertThat(set.size()).isEqualTo(3);
+    assertThat(set.get(0)).isEqualTo(AyahKey.of(1, 7));
+    assertThat(set.get(1)).isEqualTo(AyahKey.of(2, 6));
+    assertThat(set.get(2)).isEqualTo(AyahKey.of(2, 255));
+    assertThat(AyahKey.getSura(set.get(2))).isEqualTo(2);
+    assertThat(AyahKey.getAyah(set.get(2))).isEqualTo(255);
+  }
+
+  @Test
+  public void testRemoveAndAddAll() {
+    IntSet set = new IntSet();
+    for (int i = 10; i > 0; i--) {
+      set.add(i);
+    }
+
+    assertThat(set.remove(5)).isTrue();
+    assertThat(set.remove(5)).isFalse();
+    assertThat(set.contains(5)).isFalse();
+    assertThat(set.contains(6)).isTrue();
+
+    IntSet other = new IntSet();
+    other.add(5);
+    other.add(20);
+    set.addAll(other);
+    assertThat(set.size()).isEqualTo(11);
+    assertThat(set.get(4)).isEqualTo(5);
+    assertThat(set.get(10)).isEqualTo(20);
+
+    set.clear();
+    assertThat(set.isEmpty()).isTrue();
+    assertThat(set.contains(20)).isFalse();
+  }
+}
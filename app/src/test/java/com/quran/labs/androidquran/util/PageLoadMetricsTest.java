@@ -0,0 +1,73 @@
+package com.quran.labs.androidquran.util;
+
+import org.junit.Test;
+
+import static com.google.common.truth.Truth.assertThat;
+
+public class PageLoadMetricsTest {
+
+  @Test
+  public void testPercentiles() {
+    final LatencyHistogram histogram = new LatencyHistogram();
+    for (int i = 1; i <= 100; i++) {
+      histogram.record(i);
+    }
+
+    assertThat(histogram.getCount()).isEqualTo(100L);
+    assertThat(histogram.getPercentile(0.5)).isEqualTo(50L);
+    // 95 falls in the (80, 100] bucket
+    assertThat(histogram.getPercentile(0.95)).isEqualTo(100L);
+    assertThat(histogram.getPercentile(0.99)).isEqualTo(100L);
+    assertThat(histogram.getMax()).isEqualTo(100L);
+  }
+
+  @Test
+  public void testPercentilesNeverExceedMax() {
+    final LatencyHistogram histogram = new LatencyHistogram();
+    histogram.record(0);
+    histogram.record(70);
+    histogram.record(50000);
+
+    assertThat(histogram.getPercentile(0.1)).isEqualTo(1L);
+    // reported as the upper bound of the (64, 80] bucket
+    assertThat(histogram.getPercentile(0.5)).isEqualTo(80L);
+    assertThat(histogram.getPercentile(0.99)).isEqualTo(50000L);
+  }
+
+  @Test
+  public void testEmptyHistogram() {
+    final LatencyHistogram histogram = new LatencyHistogram();
+    assertThat(histogram.getCount()).isEqualTo(0L);
+    assertThat(histogram.getPercentile(0.5)).isEqualTo(0L);
+  }
+
+  @Test
+  public void testStagesAndWidthsAreSeparate() {
+    final PageLoadMetrics metrics = new PageLoadMetrics();
+    metrics.record(PageLoadMetrics.STAGE_DECODE, "_1024", 40);
+    metrics.record(PageLoadMetrics.STAGE_DECODE, "_1024", 40);
+    metrics.record(PageLoadMetrics.STAGE_DECODE, "_1920", 200);
+    metrics.record(PageLoadMetrics.STAGE_FILE_READ, "_1024", 3);
+
+    assertThat(metrics.getHistogram(PageLoadMetrics.STAGE_DECODE, "_1024")
+        .getPercentile(0.99)).isEqualTo(40L);
+    assertThat(metrics.getHistogram(PageLoadMetrics.STAGE_DECODE, "_1920")
+        .getPercentile(0.5)).isEqualTo(200L);
+    assertThat(metrics.getHistogram(PageLoadMetrics.STAGE_FILE_READ, "_1024")
+        .getCount()).isEqualTo(1L);
+    assertThat(metrics.getHistogram(PageLoadMetrics.STAGE_NETWORK, "_1024")
+        .getCount()).isEqualTo(0L);
+    assertThat(metrics.toString()).contains("decode _1920: n=1 p50=200ms");
+  }
+
+  @Test
+  public void testRecordSinceUsesElapsedTime() {
+    final PageLoadMetrics metrics = new PageLoadMetrics();
+    final long start = PageLoadMetrics.now() - 30 * 1000 * 1000L;
+    metrics.recordSince(PageLoadMetrics.STAGE_DELIVERY, "_1024", start);
+
+    final LatencyHistogram histogram =
+        metrics.getHistogram(PageLoadMetrics.STAGE_DELIVERY, "_1024");
+    assertThat(histogram.getMax()).isAtLeast(30L);
+  }
+}
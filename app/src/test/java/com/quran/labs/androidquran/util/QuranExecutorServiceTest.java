@@ -0,0 +1,102 @@
+package com.quran.labs.androidquran.util;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static com.google.common.truth.Truth.assertThat;
+
+public class QuranExecutorServiceTest {
+  private QuranExecutorService executorService;
+  private CountDownLatch blockingLatch;
+  private List<Integer> executionOrder;
+
+  @Before
+  public void setup() {
+    executorService = new QuranExecutorService(1);
+    blockingLatch = new CountDownLatch(1);
+    executionOrder = Collections.synchronizedList(new ArrayList<Integer>());
+
+    // keep the only worker busy so that everything else gets queued
+    executorService.submit(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          blockingLatch.await();
+        } catch (InterruptedException ie) {
+          // no op
+        }
+      }
+    });
+  }
+
+  @After
+  public void cleanup() {
+    executorService.shutdownNow();
+  }
+
+  @Test
+  public void testPriorityClassesRunInOrder() throws Exception {
+    submit(1, QuranExecutorService.PRIORITY_PREFETCH);
+    submit(2, QuranExecutorService.PRIORITY_VISIBLE);
+    submit(3, QuranExecutorService.PRIORITY_ADJACENT);
+    submit(4, QuranExecutorService.PRIORITY_VISIBLE);
+
+    runQueuedTasks();
+    // visible first (newest first), then adjacent, then prefetch
+    assertThat(executionOrder).containsExactly(4, 2, 3, 1).inOrder();
+  }
+
+  @Test
+  public void testReprioritize() throws Exception {
+    submit(1, QuranExecutorService.PRIORITY_VISIBLE);
+    submit(2, QuranExecutorService.PRIORITY_PREFETCH);
+    submit(3, QuranExecutorService.PRIORITY_ADJACENT);
+
+    // the user swiped, so what was being prefetched is now visible
+    executorService.reprioritize(new QuranExecutorService.Prioritizer() {
+      @Override
+      public int getPriority(Runnable task, int currentPriority) {
+        final int id = ((RecordingTask) task).id;
+        if (id == 2) {
+          return QuranExecutorService.PRIORITY_VISIBLE;
+        } else if (id == 1) {
+          return QuranExecutorService.PRIORITY_PREFETCH;
+        }
+        return currentPriority;
+      }
+    });
+
+    runQueuedTasks();
+    assertThat(executionOrder).containsExactly(2, 3, 1).inOrder();
+  }
+
+  private void submit(int id, int priority) {
+    executorService.submit(new RecordingTask(id), priority);
+  }
+
+  private void runQueuedTasks() throws InterruptedException {
+    blockingLatch.countDown();
+    executorService.shutdown();
+    assertThat(executorService.awaitTermination(5, TimeUnit.SECONDS)).isTrue();
+  }
+
+  private class RecordingTask implements Runnable {
+    final int id;
+
+    RecordingTask(int id) {
+      this.id = id;
+    }
+
+    @Override
+    public void run() {
+      executionOrder.add(id);
+    }
+  }
+}
@@ -0,0 +1,57 @@
+package com.quran.labs.androidquran.util;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import static com.google.common.truth.Truth.assertThat;
+
+public class TeeInputStreamTest {
+
+  private static byte[] getData(int size) {
+    final byte[] data = new byte[size];
+    for (int i = 0; i < size; i++) {
+      data[i] = (byte) i;
+    }
+    return data;
+  }
+
+  @Test
+  public void testFinishCopiesUnreadInput() throws IOException {
+    final byte[] data = getData(20000);
+    final ByteArrayOutputStream output = new ByteArrayOutputStream();
+    final TeeInputStream stream =
+        new TeeInputStream(new ByteArrayInputStream(data), output);
+
+    // a decoder may stop reading before the end of the stream
+    final byte[] buffer = new byte[100];
+    assertThat(stream.read(buffer, 0, buffer.length)).isEqualTo(100);
+    assertThat(stream.read()).isEqualTo(100);
+    assertThat(stream.skip(1000)).isEqualTo(1000);
+
+    assertThat(stream.finish()).isTrue();
+    assertThat(stream.getBytesWritten()).isEqualTo((long) data.length);
+    assertThat(output.toByteArray()).isEqualTo(data);
+  }
+
+  @Test
+  public void testWriteFailureDoesNotFailReads() throws IOException {
+    final byte[] data = getData(1000);
+    final OutputStream output = new OutputStream() {
+      @Override
+      public void write(int b) throws IOException {
+        throw new IOException("disk full");
+      }
+    };
+    final TeeInputStream stream =
+        new TeeInputStream(new ByteArrayInputStream(data), output);
+
+    final byte[] buffer = new byte[data.length];
+    assertThat(stream.read(buffer, 0, buffer.length)).isEqualTo(data.length);
+    assertThat(buffer).isEqualTo(data);
+    assertThat(stream.finish()).isFalse();
+  }
+}
@@ -0,0 +1,56 @@
+package com.quran.labs.androidquran.util;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.TimeUnit;
+
+import static com.google.common.truth.Truth.assertThat;
+
+public class TimedInputStreamTest {
+
+  @Test
+  public void testMeasuresOnlyTimeSpentReading() throws IOException {
+    final InputStream slowStream = new ByteArrayInputStream(new byte[1000]) {
+      @Override
+      public synchronized int read(byte[] buffer, int offset, int count) {
+        sleep(20);
+        return super.read(buffer, offset, count);
+      }
+    };
+
+    final TimedInputStream stream = new TimedInputStream(slowStream);
+    final byte[] buffer = new byte[100];
+    assertThat(stream.read(buffer, 0, buffer.length)).isEqualTo(100);
+    // time spent between reads (ex decoding) doesn't count
+    sleep(200);
+    assertThat(stream.read(buffer, 0, buffer.length)).isEqualTo(100);
+
+    final long readTime = TimeUnit.NANOSECONDS.toMillis(stream.getReadTime());
+    assertThat(readTime).isAtLeast(40L);
+    assertThat(readTime).isLessThan(200L);
+  }
+
+  @Test
+  public void testReadsPassThrough() throws IOException {
+    final byte[] data = { 1, 2, 3, 4, 5 };
+    final TimedInputStream stream =
+        new TimedInputStream(new ByteArrayInputStream(data));
+    assertThat(stream.read()).isEqualTo(1);
+    assertThat(stream.skip(2)).isEqualTo(2L);
+    final byte[] buffer = new byte[10];
+    assertThat(stream.read(buffer, 0, buffer.length)).isEqualTo(2);
+    assertThat(buffer[0]).isEqualTo((byte) 4);
+    assertThat(stream.read()).isEqualTo(-1);
+  }
+
+  private static void sleep(long millis) {
+    try {
+      Thread.sleep(millis);
+    } catch (InterruptedException ie) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
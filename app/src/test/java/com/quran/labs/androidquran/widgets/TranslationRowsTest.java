@@ -0,0 +1,153 @@
+package com.quran.labs.androidquran.widgets;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.google.common.truth.Truth.assertThat;
+
+public class TranslationRowsTest {
+  private List<String> changes;
+  private TranslationRows rows;
+
+  @Before
+  public void setup() {
+    changes = new ArrayList<>();
+    rows = new TranslationRows(new TranslationRows.Listener() {
+      @Override
+      public void onRowsInserted(int position, int count) {
+        changes.add("+" + position + ":" + count);
+      }
+
+      @Override
+      public void onRowsRemoved(int position, int count) {
+        changes.add("-" + position + ":" + count);
+      }
+    });
+  }
+
+  @Test
+  public void testAppendGoesBeforeFooter() {
+    final List<TranslationViewRow> page = new ArrayList<>();
+    addAyahs(page, 2, 10, 11);
+    page.add(spacer());
+    rows.set(page);
+
+    final List<TranslationViewRow> more = new ArrayList<>();
+    addAyahs(more, 2, 12, 13);
+    rows.append(more);
+
+    assertThat(changes).containsExactly("+4:4");
+    assertThat(rows.size()).isEqualTo(9);
+    assertThat(rows.get(4).ayahId).isEqualTo(12);
+    assertThat(rows.get(8).type).isEqualTo(TranslationViewRow.TYPE_SPACER);
+  }
+
+  @Test
+  public void testPrependDropsRepeatedSuraHeader() {
+    // the shown rows start at the beginning of sura 2
+    final List<TranslationViewRow> page = new ArrayList<>();
+    page.add(suraHeader(2));
+    page.add(basmallah(2));
+    addAyahs(page, 2, 8, 9);
+    rows.set(page);
+
+    // the rows before them end in sura 2 as well
+    final List<TranslationViewRow> before = new ArrayList<>();
+    before.add(suraHeader(2));
+    addAyahs(before, 2, 6, 7);
+    // 2:8 moves from position 2 to position 5
+    assertThat(rows.prepend(before)).isEqualTo(3);
+
+    assertThat(changes).containsExactly("-0:2", "+0:5").inOrder();
+    assertThat(rows.size()).isEqualTo(9);
+    assertThat(rows.get(0).type).isEqualTo(TranslationViewRow.TYPE_SURA_HEADER);
+    assertThat(rows.get(5).ayahId).isEqualTo(8);
+  }
+
+  @Test
+  public void testPrependKeepsHeaderOfOtherSura() {
+    final List<TranslationViewRow> page = new ArrayList<>();
+    page.add(suraHeader(3));
+    addAyahs(page, 3, 20, 21);
+    rows.set(page);
+
+    final List<TranslationViewRow> before = new ArrayList<>();
+    addAyahs(before, 2, 18, 19);
+    assertThat(rows.prepend(before)).isEqualTo(4);
+
+    assertThat(changes).containsExactly("+0:4");
+    assertThat(rows.get(4).type).isEqualTo(TranslationViewRow.TYPE_SURA_HEADER);
+  }
+
+  @Test
+  public void testTrimKeepsHeadersAndFooter() {
+    final List<TranslationViewRow> page = new ArrayList<>();
+    addAyahs(page, 2, 18, 19);
+    page.add(suraHeader(3));
+    addAyahs(page, 3, 20, 21);
+    page.add(spacer());
+    rows.set(page);
+
+    rows.trim(20, 20);
+
+    // 2:18 and 2:19 before the range, 3:21 after it
+    assertThat(changes).containsExactly("-0:4", "-3:2").inOrder();
+    assertThat(rows.size()).isEqualTo(4);
+    assertThat(rows.get(0).type).isEqualTo(TranslationViewRow.TYPE_SURA_HEADER);
+    assertThat(rows.get(1).ayahId).isEqualTo(20);
+    assertThat(rows.get(3).type).isEqualTo(TranslationViewRow.TYPE_SPACER);
+  }
+
+  @Test
+  public void testGetAyahPosition() {
+    final List<TranslationViewRow> page = new ArrayList<>();
+    page.add(suraHeader(2));
+    addAyahs(page, 2, 8, 9);
+    rows.set(page);
+
+    assertThat(rows.getAyahPosition(8)).isEqualTo(1);
+    assertThat(rows.getAyahPosition(9)).isEqualTo(3);
+    assertThat(rows.getAyahPosition(10)).isEqualTo(-1);
+    assertThat(changes).isEmpty();
+  }
+
+  @Test
+  public void testGetAyahIdFrom() {
+    final List<TranslationViewRow> page = new ArrayList<>();
+    page.add(suraHeader(2));
+    addAyahs(page, 2, 8, 9);
+    page.add(spacer());
+    rows.set(page);
+
+    // the sura header belongs to the ayah after it
+    assertThat(rows.getAyahIdFrom(0)).isEqualTo(8);
+    assertThat(rows.getAyahIdFrom(2)).isEqualTo(8);
+    assertThat(rows.getAyahIdFrom(3)).isEqualTo(9);
+    assertThat(rows.getAyahIdFrom(5)).isEqualTo(0);
+  }
+
+  private static void addAyahs(List<TranslationViewRow> rows,
+      int sura, int firstAyahId, int lastAyahId) {
+    for (int ayahId = firstAyahId; ayahId <= lastAyahId; ayahId++) {
+      rows.add(new TranslationViewRow(TranslationViewRow.TYPE_AYAH_HEADER,
+          sura, ayahId, null, sura + ":" + ayahId));
+      rows.add(new TranslationViewRow(TranslationViewRow.TYPE_AYAH_TEXT,
+          sura, ayahId, null, "text of " + ayahId));
+    }
+  }
+
+  private static TranslationViewRow suraHeader(int sura) {
+    return new TranslationViewRow(TranslationViewRow.TYPE_SURA_HEADER, sura, "sura " + sura);
+  }
+
+  private static TranslationViewRow basmallah(int sura) {
+    return new TranslationViewRow(TranslationViewRow.TYPE_BASMALLAH, sura, "basmallah");
+  }
+
+  private static TranslationViewRow spacer() {
+    return new TranslationViewRow(TranslationViewRow.TYPE_SPACER, 0, null);
+  }
+}